@@ -2,8 +2,10 @@ package com.example.api_gestion_almacen;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class ApiGestionAlmacenApplication {
 
 	public static void main(String[] args) {
@@ -1,12 +1,24 @@
 package com.example.api_gestion_almacen;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import com.example.api_gestion_almacen.controladores.InterceptorVersiones;
+
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
+    @Autowired
+    private InterceptorVersiones interceptorVersiones;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(interceptorVersiones).addPathPatterns("/api/**");
+    }
+
     @Override
     public void addCorsMappings(CorsRegistry registry) {
         registry.addMapping("/api/**")
@@ -15,9 +27,9 @@ public class WebConfig implements WebMvcConfigurer {
                     "http://localhost:8081",
                     "http://13.48.178.15:8080"  // Add your production domain here
                 )
-                .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
-                .allowedHeaders("Origin", "Content-Type", "Accept", "Authorization")
-                .exposedHeaders("Access-Control-Allow-Origin")
+                .allowedMethods("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS")
+                .allowedHeaders("Origin", "Content-Type", "Accept", "Authorization", "If-None-Match", "Idempotency-Key")
+                .exposedHeaders("Access-Control-Allow-Origin", "Authorization", "ETag", "Idempotent-Replayed")
                 .allowCredentials(true)
                 .maxAge(3600); // Cache preflight requests for 1 hour
     }
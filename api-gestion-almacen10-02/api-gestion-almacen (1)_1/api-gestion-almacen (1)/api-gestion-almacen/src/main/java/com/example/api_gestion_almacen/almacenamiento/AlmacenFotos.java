@@ -0,0 +1,31 @@
+package com.example.api_gestion_almacen.almacenamiento;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Almacén de fotos direccionado por contenido.
+ * Cada foto se identifica por el hash SHA-256 de sus bytes, de modo que
+ * dos imágenes idénticas se guardan una sola vez. Los usuarios solo guardan
+ * la referencia (el hash) en su fila.
+ */
+public interface AlmacenFotos {
+
+    /**
+     * Guarda una foto si no existía ya.
+     *
+     * @param contenido Bytes de la imagen.
+     * @return El hash SHA-256 en hexadecimal que identifica la foto.
+     * @throws IOException si no se puede escribir en el almacén.
+     */
+    String guardar(byte[] contenido) throws IOException;
+
+    /**
+     * Busca una foto por su hash.
+     *
+     * @param hash Hash SHA-256 en hexadecimal.
+     * @return La foto almacenada, o vacío si no existe.
+     * @throws IOException si no se puede leer del almacén.
+     */
+    Optional<FotoAlmacenada> buscar(String hash) throws IOException;
+}
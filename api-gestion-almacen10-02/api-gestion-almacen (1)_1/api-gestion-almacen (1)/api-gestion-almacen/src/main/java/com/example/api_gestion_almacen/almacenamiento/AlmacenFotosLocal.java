@@ -0,0 +1,130 @@
+package com.example.api_gestion_almacen.almacenamiento;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Implementación de {@link AlmacenFotos} sobre el sistema de archivos local.
+ * Las fotos se guardan en {@code <directorio>/<2 primeros caracteres del hash>/<hash>}
+ * para no acumular miles de archivos en un único directorio.
+ */
+@Component
+public class AlmacenFotosLocal implements AlmacenFotos {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AlmacenFotosLocal.class);
+    private static final Pattern HASH_VALIDO = Pattern.compile("[0-9a-f]{64}");
+
+    @Value("${almacen.fotos.directorio:./fotos}")
+    private String directorio;
+
+    private Path raiz;
+
+    @PostConstruct
+    void inicializar() throws IOException {
+        raiz = Paths.get(directorio).toAbsolutePath().normalize();
+        Files.createDirectories(raiz);
+        LOGGER.info("Almacén de fotos local en {}", raiz);
+    }
+
+    @Override
+    public String guardar(byte[] contenido) throws IOException {
+        String hash = calcularHash(contenido);
+        Path destino = ruta(hash);
+        if (Files.exists(destino)) {
+            return hash; // Contenido ya almacenado: no se duplica
+        }
+
+        Files.createDirectories(destino.getParent());
+        Path temporal = Files.createTempFile(destino.getParent(), hash, ".tmp");
+        try {
+            Files.write(temporal, contenido);
+            // El renombrado atómico evita que un lector vea un archivo a medio escribir
+            Files.move(temporal, destino, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Otro hilo guardó la misma foto a la vez; el contenido es idéntico
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+        return hash;
+    }
+
+    @Override
+    public Optional<FotoAlmacenada> buscar(String hash) throws IOException {
+        if (hash == null || !HASH_VALIDO.matcher(hash).matches()) {
+            return Optional.empty();
+        }
+        Path archivo = ruta(hash);
+        if (!Files.isRegularFile(archivo)) {
+            LOGGER.warn("Referencia a foto inexistente: {}", hash);
+            return Optional.empty();
+        }
+        return Optional.of(new FotoLocal(hash, archivo, Files.size(archivo), leerTipo(archivo)));
+    }
+
+    /**
+     * Obtiene la ruta del archivo que corresponde a un hash.
+     *
+     * @param hash Hash SHA-256 en hexadecimal.
+     * @return Ruta dentro del directorio del almacén.
+     */
+    Path ruta(String hash) {
+        return raiz.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static String leerTipo(Path archivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            ByteBuffer cabecera = ByteBuffer.allocate(TiposImagen.BYTES_CABECERA);
+            while (cabecera.hasRemaining() && canal.read(cabecera) > 0) {
+                // Leer hasta completar la cabecera o llegar al final del archivo
+            }
+            return TiposImagen.detectar(cabecera.array(), cabecera.position());
+        }
+    }
+
+    /**
+     * Calcula el hash SHA-256 en hexadecimal de un contenido.
+     *
+     * @param contenido Bytes a resumir.
+     * @return Hash en hexadecimal (64 caracteres).
+     */
+    public static String calcularHash(byte[] contenido) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(contenido));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    private record FotoLocal(String hash, Path ruta, long tamano, String tipoContenido) implements FotoAlmacenada {
+
+        @Override
+        public SeekableByteChannel abrir() throws IOException {
+            return FileChannel.open(ruta, StandardOpenOption.READ);
+        }
+
+        @Override
+        public Optional<Path> rutaLocal() {
+            return Optional.of(ruta);
+        }
+    }
+}
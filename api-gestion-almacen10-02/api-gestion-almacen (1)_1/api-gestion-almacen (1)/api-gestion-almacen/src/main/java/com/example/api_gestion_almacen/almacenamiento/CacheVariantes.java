@@ -0,0 +1,42 @@
+package com.example.api_gestion_almacen.almacenamiento;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caché LRU en memoria de variantes de fotos, acotada por el total de bytes.
+ * Al expulsar una entrada no se pierde nada: la variante sigue en disco.
+ */
+final class CacheVariantes {
+
+    private final long capacidadBytes;
+    private final LinkedHashMap<String, byte[]> entradas = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytesOcupados;
+
+    CacheVariantes(long capacidadBytes) {
+        this.capacidadBytes = capacidadBytes;
+    }
+
+    synchronized byte[] obtener(String clave) {
+        return entradas.get(clave);
+    }
+
+    synchronized void guardar(String clave, byte[] contenido) {
+        // Una sola entrada no puede desplazar a una parte importante de la caché
+        if (contenido.length > capacidadBytes / 8) {
+            return;
+        }
+        byte[] anterior = entradas.put(clave, contenido);
+        if (anterior != null) {
+            bytesOcupados -= anterior.length;
+        }
+        bytesOcupados += contenido.length;
+
+        Iterator<Map.Entry<String, byte[]>> iterador = entradas.entrySet().iterator();
+        while (bytesOcupados > capacidadBytes && iterador.hasNext()) {
+            bytesOcupados -= iterador.next().getValue().length;
+            iterador.remove();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.api_gestion_almacen.almacenamiento;
+
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Foto guardada en un {@link AlmacenFotos}, lista para enviarse al cliente.
+ */
+public interface FotoAlmacenada {
+
+    /**
+     * @return Hash SHA-256 del contenido; sirve como ETag fuerte.
+     */
+    String hash();
+
+    /**
+     * @return Tamaño en bytes.
+     */
+    long tamano();
+
+    /**
+     * @return Tipo MIME de la imagen.
+     */
+    String tipoContenido();
+
+    /**
+     * Abre un canal de lectura sobre el contenido. Si el almacén es local el
+     * canal es un {@link java.nio.channels.FileChannel}, lo que permite usar transferTo.
+     *
+     * @return Canal posicionable; el llamador debe cerrarlo.
+     * @throws IOException si no se puede abrir.
+     */
+    SeekableByteChannel abrir() throws IOException;
+
+    /**
+     * @return Ruta en disco si la foto está en el sistema de archivos local.
+     */
+    Optional<Path> rutaLocal();
+}
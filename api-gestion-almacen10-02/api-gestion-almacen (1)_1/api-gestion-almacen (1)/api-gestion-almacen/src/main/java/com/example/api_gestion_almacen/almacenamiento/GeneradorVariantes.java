@@ -0,0 +1,269 @@
+package com.example.api_gestion_almacen.almacenamiento;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Genera y sirve versiones reducidas (miniaturas cuadradas) de las fotos de usuario.
+ * Las variantes se generan en segundo plano en un ejecutor acotado cuando se guarda
+ * una foto, se escriben en disco y se mantienen las más usadas en una caché LRU en memoria.
+ * Si se pide una variante que aún no existe se genera en el momento. Las imágenes de más
+ * píxeles de los permitidos no se decodifican: se comprueban sus dimensiones en la cabecera.
+ */
+@Component
+public class GeneradorVariantes {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GeneradorVariantes.class);
+    private static final float CALIDAD_JPEG = 0.85f;
+
+    @Autowired
+    private AlmacenFotos almacenFotos;
+
+    @Value("${almacen.fotos.directorio:./fotos}")
+    private String directorio;
+
+    @Value("${almacen.fotos.variantes.tamanos:64,128,256}")
+    private int[] tamanos;
+
+    @Value("${almacen.fotos.variantes.cache-bytes:33554432}")
+    private long capacidadCache;
+
+    @Value("${almacen.fotos.variantes.hilos:2}")
+    private int hilos;
+
+    @Value("${almacen.fotos.variantes.maximo-pixeles:25000000}")
+    private long maximoPixeles; // Una imagen decodificada ocupa 4 bytes por píxel
+
+    private Path raizVariantes;
+    private CacheVariantes cache;
+    private ThreadPoolExecutor ejecutor;
+    private final ConcurrentHashMap<String, CompletableFuture<Optional<VarianteFoto>>> enCurso = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void inicializar() throws IOException {
+        Arrays.sort(tamanos);
+        raizVariantes = Paths.get(directorio).toAbsolutePath().normalize().resolve("variantes");
+        Files.createDirectories(raizVariantes);
+        cache = new CacheVariantes(capacidadCache);
+
+        AtomicInteger contador = new AtomicInteger();
+        // Cola acotada: si se llena, las variantes se generarán bajo demanda al pedirlas
+        ejecutor = new ThreadPoolExecutor(hilos, hilos, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(256), tarea -> {
+            Thread hilo = new Thread(tarea, "variantes-foto-" + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        }, new ThreadPoolExecutor.DiscardPolicy());
+        ejecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    void detener() {
+        ejecutor.shutdownNow();
+    }
+
+    /**
+     * Programa la generación de todas las variantes de una foto recién guardada.
+     *
+     * @param hash Hash de la foto original.
+     */
+    public void programar(String hash) {
+        ejecutor.execute(() -> {
+            for (int tamano : tamanos) {
+                generar(hash, tamano);
+            }
+        });
+    }
+
+    /**
+     * Ajusta un tamaño pedido por el cliente al menor tamaño configurado que lo cubra.
+     *
+     * @param solicitado Lado en píxeles solicitado.
+     * @return El tamaño de variante a servir, o vacío si es mayor que todas las variantes
+     *         (en ese caso se sirve la foto original).
+     */
+    public Optional<Integer> ajustarTamano(int solicitado) {
+        for (int tamano : tamanos) {
+            if (tamano >= solicitado) {
+                return Optional.of(tamano);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Obtiene una variante de la foto: primero de memoria, después de disco y,
+     * si no existe, generándola a partir del original.
+     *
+     * @param hash Hash de la foto original.
+     * @param tamano Uno de los tamaños configurados (ver {@link #ajustarTamano(int)}).
+     * @return La variante, o vacío si el original no existe o no se puede decodificar.
+     */
+    public Optional<VarianteFoto> obtener(String hash, int tamano) {
+        String clave = clave(hash, tamano);
+        byte[] enMemoria = cache.obtener(clave);
+        if (enMemoria != null) {
+            return Optional.of(new VarianteFoto(hash, tamano, enMemoria, TiposImagen.detectar(enMemoria, enMemoria.length)));
+        }
+        CompletableFuture<Optional<VarianteFoto>> futuro = new CompletableFuture<>();
+        CompletableFuture<Optional<VarianteFoto>> existente = enCurso.putIfAbsent(clave, futuro);
+        if (existente != null) {
+            return existente.join(); // Otra petición ya la está generando
+        }
+        try {
+            Optional<VarianteFoto> variante = cargarOGenerar(hash, tamano);
+            futuro.complete(variante);
+            return variante;
+        } catch (RuntimeException e) {
+            futuro.completeExceptionally(e);
+            throw e;
+        } finally {
+            enCurso.remove(clave);
+        }
+    }
+
+    private void generar(String hash, int tamano) {
+        try {
+            obtener(hash, tamano);
+        } catch (RuntimeException e) {
+            LOGGER.warn("No se pudo generar la variante {} de la foto {}: {}", tamano, hash, e.getMessage());
+        }
+    }
+
+    private Optional<VarianteFoto> cargarOGenerar(String hash, int tamano) {
+        String clave = clave(hash, tamano);
+        Path archivo = raizVariantes.resolve(hash.substring(0, 2)).resolve(clave);
+        try {
+            byte[] contenido;
+            if (Files.isRegularFile(archivo)) {
+                contenido = Files.readAllBytes(archivo);
+            } else {
+                Optional<byte[]> generado = redimensionar(hash, tamano);
+                if (generado.isEmpty()) {
+                    return Optional.empty();
+                }
+                contenido = generado.get();
+                escribir(archivo, contenido);
+            }
+            cache.guardar(clave, contenido);
+            return Optional.of(new VarianteFoto(hash, tamano, contenido, TiposImagen.detectar(contenido, contenido.length)));
+        } catch (IOException e) {
+            throw new RuntimeException("Error al generar la variante de la foto: " + e.getMessage(), e);
+        }
+    }
+
+    private Optional<byte[]> redimensionar(String hash, int tamano) throws IOException {
+        Optional<FotoAlmacenada> original = almacenFotos.buscar(hash);
+        if (original.isEmpty()) {
+            return Optional.empty();
+        }
+        BufferedImage imagen;
+        try (InputStream entrada = Channels.newInputStream(original.get().abrir());
+             ImageInputStream flujo = ImageIO.createImageInputStream(entrada)) {
+            Iterator<ImageReader> lectores = flujo == null ? null : ImageIO.getImageReaders(flujo);
+            if (lectores == null || !lectores.hasNext()) {
+                LOGGER.debug("Formato de imagen no soportado para variantes: {}", hash);
+                return Optional.empty();
+            }
+            ImageReader lector = lectores.next();
+            try {
+                lector.setInput(flujo, true, true);
+                // Las dimensiones salen de la cabecera, antes de reservar memoria para los píxeles
+                long pixeles = (long) lector.getWidth(0) * lector.getHeight(0);
+                if (pixeles > maximoPixeles) {
+                    LOGGER.warn("La foto {} tiene {} píxeles; no se generan variantes de más de {}", hash, pixeles, maximoPixeles);
+                    return Optional.empty();
+                }
+                imagen = lector.read(0);
+            } finally {
+                lector.dispose();
+            }
+        }
+
+        // Recorte cuadrado centrado y escalado por mitades para conservar calidad
+        int lado = Math.min(imagen.getWidth(), imagen.getHeight());
+        BufferedImage actual = imagen.getSubimage((imagen.getWidth() - lado) / 2, (imagen.getHeight() - lado) / 2, lado, lado);
+        boolean alfa = imagen.getColorModel().hasAlpha();
+        int tipo = alfa ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        int ladoActual = lado;
+        do {
+            ladoActual = Math.max(tamano, ladoActual / 2);
+            BufferedImage reducida = new BufferedImage(ladoActual, ladoActual, tipo);
+            Graphics2D grafico = reducida.createGraphics();
+            grafico.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            grafico.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            grafico.drawImage(actual, 0, 0, ladoActual, ladoActual, null);
+            grafico.dispose();
+            actual = reducida;
+        } while (ladoActual > tamano);
+
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        if (alfa) {
+            ImageIO.write(actual, "png", salida);
+        } else {
+            ImageWriter escritor = ImageIO.getImageWritersByFormatName("jpeg").next();
+            ImageWriteParam parametros = escritor.getDefaultWriteParam();
+            parametros.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            parametros.setCompressionQuality(CALIDAD_JPEG);
+            try (MemoryCacheImageOutputStream destino = new MemoryCacheImageOutputStream(salida)) {
+                escritor.setOutput(destino);
+                escritor.write(null, new IIOImage(actual, null, null), parametros);
+            } finally {
+                escritor.dispose();
+            }
+        }
+        return Optional.of(salida.toByteArray());
+    }
+
+    private static void escribir(Path archivo, byte[] contenido) throws IOException {
+        Files.createDirectories(archivo.getParent());
+        Path temporal = Files.createTempFile(archivo.getParent(), archivo.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temporal, contenido);
+            Files.move(temporal, archivo, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Generada a la vez por otro hilo
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    private static String clave(String hash, int tamano) {
+        return hash + "-" + tamano;
+    }
+}
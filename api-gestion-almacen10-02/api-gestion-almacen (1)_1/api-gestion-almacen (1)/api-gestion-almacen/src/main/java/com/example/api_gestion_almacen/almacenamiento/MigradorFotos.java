@@ -0,0 +1,61 @@
+package com.example.api_gestion_almacen.almacenamiento;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Traslada al almacén de fotos las imágenes que aún están en la antigua
+ * columna LONGBLOB {@code usuarios.foto}. Se ejecuta al arrancar, por lotes
+ * pequeños para no cargar todas las fotos en memoria a la vez, y deja la
+ * columna a NULL una vez guardada la referencia.
+ */
+@Component
+public class MigradorFotos {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MigradorFotos.class);
+    private static final int TAMANO_LOTE = 50;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AlmacenFotos almacenFotos;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrar() {
+        int migradas = 0;
+        try {
+            List<FotoPendiente> lote;
+            do {
+                lote = jdbcTemplate.query(
+                    "SELECT id, foto FROM usuarios WHERE foto IS NOT NULL AND foto_hash IS NULL LIMIT " + TAMANO_LOTE,
+                    (rs, fila) -> new FotoPendiente(rs.getLong("id"), rs.getBytes("foto")));
+                for (FotoPendiente pendiente : lote) {
+                    String hash = almacenFotos.guardar(pendiente.contenido());
+                    jdbcTemplate.update("UPDATE usuarios SET foto_hash = ?, foto = NULL WHERE id = ?", hash, pendiente.id());
+                    migradas++;
+                }
+            } while (lote.size() == TAMANO_LOTE);
+        } catch (DataAccessException e) {
+            // Esquemas creados después del cambio no tienen la columna antigua
+            LOGGER.debug("Sin fotos antiguas que migrar: {}", e.getMessage());
+        } catch (IOException e) {
+            LOGGER.error("Error al migrar fotos al almacén: {}", e.getMessage(), e);
+        }
+        if (migradas > 0) {
+            LOGGER.info("Fotos migradas al almacén: {}", migradas);
+        }
+    }
+
+    private record FotoPendiente(long id, byte[] contenido) {
+    }
+}
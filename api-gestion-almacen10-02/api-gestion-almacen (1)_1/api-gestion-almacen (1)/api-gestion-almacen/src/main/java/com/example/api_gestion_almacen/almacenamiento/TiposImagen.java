@@ -0,0 +1,35 @@
+package com.example.api_gestion_almacen.almacenamiento;
+
+/**
+ * Detecta el tipo MIME de una imagen a partir de su cabecera (números mágicos).
+ */
+public final class TiposImagen {
+
+    /** Bytes de cabecera necesarios para reconocer todos los formatos soportados. */
+    public static final int BYTES_CABECERA = 12;
+
+    private TiposImagen() {
+    }
+
+    /**
+     * @param cabecera Primeros bytes del archivo (puede ser más corta que {@link #BYTES_CABECERA}).
+     * @param longitud Número de bytes válidos en la cabecera.
+     * @return El tipo MIME detectado, o application/octet-stream si no se reconoce.
+     */
+    public static String detectar(byte[] cabecera, int longitud) {
+        if (longitud >= 3 && (cabecera[0] & 0xFF) == 0xFF && (cabecera[1] & 0xFF) == 0xD8 && (cabecera[2] & 0xFF) == 0xFF) {
+            return "image/jpeg";
+        }
+        if (longitud >= 4 && (cabecera[0] & 0xFF) == 0x89 && cabecera[1] == 'P' && cabecera[2] == 'N' && cabecera[3] == 'G') {
+            return "image/png";
+        }
+        if (longitud >= 4 && cabecera[0] == 'G' && cabecera[1] == 'I' && cabecera[2] == 'F' && cabecera[3] == '8') {
+            return "image/gif";
+        }
+        if (longitud >= 12 && cabecera[0] == 'R' && cabecera[1] == 'I' && cabecera[2] == 'F' && cabecera[3] == 'F'
+                && cabecera[8] == 'W' && cabecera[9] == 'E' && cabecera[10] == 'B' && cabecera[11] == 'P') {
+            return "image/webp";
+        }
+        return "application/octet-stream";
+    }
+}
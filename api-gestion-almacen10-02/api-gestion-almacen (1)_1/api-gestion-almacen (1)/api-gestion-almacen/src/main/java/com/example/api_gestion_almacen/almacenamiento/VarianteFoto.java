@@ -0,0 +1,19 @@
+package com.example.api_gestion_almacen.almacenamiento;
+
+/**
+ * Versión redimensionada de una foto, lista para enviarse al cliente.
+ *
+ * @param hash Hash de la foto original.
+ * @param tamano Lado en píxeles de la variante.
+ * @param contenido Bytes de la imagen codificada.
+ * @param tipoContenido Tipo MIME de la imagen.
+ */
+public record VarianteFoto(String hash, int tamano, byte[] contenido, String tipoContenido) {
+
+    /**
+     * @return Identificador de la variante, usado como ETag fuerte.
+     */
+    public String etiqueta() {
+        return hash + "-" + tamano;
+    }
+}
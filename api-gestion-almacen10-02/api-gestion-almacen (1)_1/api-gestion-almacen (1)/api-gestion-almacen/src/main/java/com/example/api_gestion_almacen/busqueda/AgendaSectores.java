@@ -0,0 +1,177 @@
+package com.example.api_gestion_almacen.busqueda;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.api_gestion_almacen.entidades.AlquilerEntidad.EstadoAlquiler;
+import com.example.api_gestion_almacen.repositorios.AlquilerRepositorio;
+
+/**
+ * Agenda en memoria de los alquileres activos de cada sector, como intervalos
+ * [inicio, fin).
+ *
+ * <p>Los intervalos de un sector nunca se solapan (se rechaza cualquier alquiler que lo
+ * haga), así que basta un {@link TreeMap} ordenado por inicio: el único intervalo que
+ * puede solapar con [a, b) es el de mayor inicio anterior a b, y el único que puede
+ * contener un instante t es el de mayor inicio no posterior a t. Ambas comprobaciones
+ * son O(log n).</p>
+ *
+ * <p>Se carga al arrancar, se actualiza después del commit de cada alquiler creado,
+ * finalizado o cancelado, y se reconcilia periódicamente con la base de datos, igual que
+ * {@link IndiceSectores}.</p>
+ */
+@Component
+public class AgendaSectores {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AgendaSectores.class);
+
+    @Autowired
+    private AlquilerRepositorio alquilerRepositorio;
+
+    private volatile Map<Long, TreeMap<LocalDateTime, Reserva>> porSector; // null hasta la primera carga
+    private final AtomicLong modificaciones = new AtomicLong(); // Para no pisar cambios con una recarga antigua
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarAlArrancar() {
+        try {
+            recargar();
+        } catch (DataAccessException e) {
+            LOGGER.warn("No se pudo cargar la agenda de sectores: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Reconciliación periódica con la base de datos.
+     */
+    @Scheduled(initialDelayString = "${alquileres.agenda.reconciliacion:PT5M}", fixedDelayString = "${alquileres.agenda.reconciliacion:PT5M}")
+    public void reconciliar() {
+        try {
+            recargar();
+        } catch (DataAccessException e) {
+            LOGGER.warn("No se pudo reconciliar la agenda de sectores: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Lee todos los alquileres activos y sustituye la agenda. Si mientras tanto se ha
+     * aplicado algún cambio incremental, la lectura puede ser anterior a él y se repite.
+     */
+    public void recargar() {
+        for (int intento = 0; intento < 3; intento++) {
+            long antes = modificaciones.get();
+            List<Reserva> reservas = alquilerRepositorio.listarReservas(EstadoAlquiler.ACTIVO);
+            Map<Long, TreeMap<LocalDateTime, Reserva>> nueva = new ConcurrentHashMap<>();
+            for (Reserva reserva : reservas) {
+                nueva.computeIfAbsent(reserva.sectorId(), id -> new TreeMap<>()).put(reserva.inicio(), reserva);
+            }
+            synchronized (this) {
+                if (modificaciones.get() == antes) {
+                    porSector = nueva;
+                    LOGGER.atDebug().addKeyValue("reservas", reservas.size()).log("Agenda de sectores recargada");
+                    return;
+                }
+            }
+        }
+        LOGGER.debug("Recarga de la agenda de sectores aplazada por cambios concurrentes");
+    }
+
+    /**
+     * Añade una reserva. Debe llamarse después del commit.
+     *
+     * @param reserva Reserva del alquiler creado.
+     */
+    public synchronized void agregar(Reserva reserva) {
+        modificaciones.incrementAndGet();
+        Map<Long, TreeMap<LocalDateTime, Reserva>> actual = porSector;
+        if (actual == null) {
+            return; // La primera carga leerá el estado confirmado
+        }
+        TreeMap<LocalDateTime, Reserva> agenda = actual.computeIfAbsent(reserva.sectorId(), id -> new TreeMap<>());
+        synchronized (agenda) {
+            agenda.put(reserva.inicio(), reserva);
+        }
+    }
+
+    /**
+     * Quita la reserva de un alquiler. Debe llamarse después del commit.
+     *
+     * @param reserva Reserva del alquiler finalizado o cancelado.
+     */
+    public synchronized void quitar(Reserva reserva) {
+        modificaciones.incrementAndGet();
+        Map<Long, TreeMap<LocalDateTime, Reserva>> actual = porSector;
+        TreeMap<LocalDateTime, Reserva> agenda = actual != null ? actual.get(reserva.sectorId()) : null;
+        if (agenda == null) {
+            return;
+        }
+        synchronized (agenda) {
+            Reserva existente = agenda.get(reserva.inicio());
+            if (existente != null && existente.alquilerId().equals(reserva.alquilerId())) {
+                agenda.remove(reserva.inicio());
+            }
+        }
+    }
+
+    /**
+     * Busca una reserva del sector que se solape con [inicio, fin).
+     *
+     * @param sectorId ID del sector.
+     * @param inicio Inicio del intervalo (incluido).
+     * @param fin Fin del intervalo (excluido).
+     * @return La reserva que se solapa, o vacío si el sector está libre en todo el intervalo.
+     */
+    public Optional<Reserva> solapada(Long sectorId, LocalDateTime inicio, LocalDateTime fin) {
+        TreeMap<LocalDateTime, Reserva> agenda = actual().get(sectorId);
+        if (agenda == null) {
+            return Optional.empty();
+        }
+        synchronized (agenda) {
+            Map.Entry<LocalDateTime, Reserva> anterior = agenda.lowerEntry(fin);
+            return anterior != null && anterior.getValue().fin().isAfter(inicio)
+                ? Optional.of(anterior.getValue()) : Optional.empty();
+        }
+    }
+
+    /**
+     * @param sectorId ID del sector.
+     * @param instante Instante a comprobar.
+     * @return La reserva que ocupa el sector en ese instante, o vacío si está libre.
+     */
+    public Optional<Reserva> vigente(Long sectorId, LocalDateTime instante) {
+        TreeMap<LocalDateTime, Reserva> agenda = actual().get(sectorId);
+        if (agenda == null) {
+            return Optional.empty();
+        }
+        synchronized (agenda) {
+            Map.Entry<LocalDateTime, Reserva> anterior = agenda.floorEntry(instante);
+            return anterior != null && anterior.getValue().contiene(instante)
+                ? Optional.of(anterior.getValue()) : Optional.empty();
+        }
+    }
+
+    private Map<Long, TreeMap<LocalDateTime, Reserva>> actual() {
+        Map<Long, TreeMap<LocalDateTime, Reserva>> actual = porSector;
+        if (actual == null) {
+            recargar();
+            actual = porSector;
+            if (actual == null) {
+                throw new IllegalStateException("Agenda de sectores no disponible");
+            }
+        }
+        return actual;
+    }
+}
@@ -0,0 +1,511 @@
+package com.example.api_gestion_almacen.busqueda;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.api_gestion_almacen.cache.VersionesColecciones;
+import com.example.api_gestion_almacen.cache.VersionesColecciones.Coleccion;
+import com.example.api_gestion_almacen.dtos.SectorDto;
+import com.example.api_gestion_almacen.entidades.SectorEntidad;
+import com.example.api_gestion_almacen.entidades.SectorEntidad.EstadoSector;
+import com.example.api_gestion_almacen.repositorios.SectorRepositorio;
+import com.example.api_gestion_almacen.series.SerieOcupacion;
+
+/**
+ * Índice en memoria de los sectores, fuente de las lecturas de {@code /api/sectores}.
+ *
+ * <p>Cada instantánea es inmutable: los sectores ordenados por ID, un mapa de ID y de
+ * nombre a su posición, un {@link BitSet} por {@link EstadoSector} sobre esas posiciones
+ * y las listas de DTO ya construidas. Para las búsquedas por rango hay además dos
+ * permutaciones de las posiciones ordenadas por metros cuadrados y por precio (en
+ * céntimos), con sus valores en arrays primitivos paralelos, y un índice invertido de
+ * los términos de las características (ver {@link Texto#caracteristicas}) a {@link BitSet}
+ * de posiciones. Los DTO se comparten entre
+ * peticiones y no deben modificarse. Cada cambio publica una instantánea nueva (copy-on-write); las lecturas
+ * no se bloquean.</p>
+ *
+ * <p>Se carga al arrancar, se actualiza después del commit de cada cambio de estado y se
+ * reconcilia periódicamente con la base de datos por si algo la modifica por otra vía.
+ * Cada instantánea publicada registra sus totales por estado en {@link SerieOcupacion}.</p>
+ */
+@Component
+public class IndiceSectores {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IndiceSectores.class);
+    private static final BitSet VACIO = new BitSet(); // Término sin sectores; no se modifica
+
+    @Autowired
+    private SectorRepositorio sectorRepositorio;
+
+    @Autowired
+    private VersionesColecciones versiones;
+
+    @Autowired
+    private SerieOcupacion serieOcupacion;
+
+    private volatile Instantanea instantanea; // null hasta la primera carga
+    private final AtomicLong modificaciones = new AtomicLong(); // Para no pisar cambios con una recarga antigua
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarAlArrancar() {
+        try {
+            recargar();
+        } catch (DataAccessException e) {
+            LOGGER.warn("No se pudo cargar el índice de sectores: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Reconciliación periódica con la base de datos.
+     */
+    @Scheduled(initialDelayString = "${sectores.indice.reconciliacion:PT5M}", fixedDelayString = "${sectores.indice.reconciliacion:PT5M}")
+    public void reconciliar() {
+        try {
+            recargar();
+        } catch (DataAccessException e) {
+            LOGGER.warn("No se pudo reconciliar el índice de sectores: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Lee todos los sectores y publica una instantánea nueva. Si mientras tanto se ha
+     * aplicado algún cambio incremental, la lectura puede ser anterior a él y se repite.
+     * Si la base de datos se ha modificado por otra vía, se incrementa la versión de los
+     * sectores para que los clientes no reciban un 304 con datos viejos.
+     */
+    public void recargar() {
+        for (int intento = 0; intento < 3; intento++) {
+            long antes = modificaciones.get();
+            List<SectorDto> sectores = sectorRepositorio.findAll().stream().map(IndiceSectores::aDto).toList();
+            synchronized (this) {
+                if (modificaciones.get() == antes) {
+                    Instantanea anterior = instantanea;
+                    instantanea = Instantanea.construir(sectores);
+                    if (anterior != null && anterior.huella != instantanea.huella) {
+                        versiones.incrementar(Coleccion.SECTORES);
+                    }
+                    serieOcupacion.registrar(instantanea.sectoresPorEstado, instantanea.metrosPorEstado);
+                    LOGGER.atDebug().addKeyValue("sectores", sectores.size()).log("Índice de sectores recargado");
+                    return;
+                }
+            }
+        }
+        LOGGER.debug("Recarga del índice de sectores aplazada por cambios concurrentes");
+    }
+
+    /**
+     * Sustituye un sector en el índice. Debe llamarse después del commit.
+     *
+     * @param sector Estado confirmado del sector.
+     */
+    public void actualizar(SectorDto sector) {
+        actualizar(List.of(sector));
+    }
+
+    /**
+     * Sustituye varios sectores publicando una sola instantánea. Debe llamarse después del commit.
+     *
+     * @param cambiados Estado confirmado de los sectores.
+     */
+    public synchronized void actualizar(Collection<SectorDto> cambiados) {
+        modificaciones.incrementAndGet();
+        Instantanea actual = instantanea;
+        if (actual == null || cambiados.isEmpty()) {
+            return; // La primera carga leerá el estado confirmado
+        }
+        Map<Long, SectorDto> porId = new HashMap<>();
+        cambiados.forEach(sector -> porId.put(sector.getId(), sector));
+        List<SectorDto> sectores = new ArrayList<>(actual.sectores.length + porId.size());
+        for (SectorDto existente : actual.sectores) {
+            SectorDto nuevo = porId.remove(existente.getId());
+            sectores.add(nuevo != null ? nuevo : existente);
+        }
+        sectores.addAll(porId.values());
+        instantanea = Instantanea.construir(sectores);
+        serieOcupacion.registrar(instantanea.sectoresPorEstado, instantanea.metrosPorEstado);
+    }
+
+    /**
+     * @return Todos los sectores ordenados por ID.
+     */
+    public List<SectorDto> todos() {
+        return actual().todos;
+    }
+
+    /**
+     * @param estado Estado buscado.
+     * @return Los sectores en ese estado, ordenados por ID.
+     */
+    public List<SectorDto> porEstado(EstadoSector estado) {
+        return actual().listasPorEstado.get(estado);
+    }
+
+    /**
+     * @param id ID del sector.
+     * @return El sector, o vacío si no existe.
+     */
+    public Optional<SectorDto> porId(Long id) {
+        Instantanea actual = actual();
+        Integer posicion = actual.posicionPorId.get(id);
+        return posicion != null ? Optional.of(actual.sectores[posicion]) : Optional.empty();
+    }
+
+    /**
+     * @param nombre Nombre del sector (sin distinguir mayúsculas, como MySQL).
+     * @return El sector, o vacío si no existe.
+     */
+    public Optional<SectorDto> porNombre(String nombre) {
+        Instantanea actual = actual();
+        Integer posicion = actual.posicionPorNombre.get(nombre.toLowerCase(Locale.ROOT));
+        return posicion != null ? Optional.of(actual.sectores[posicion]) : Optional.empty();
+    }
+
+    /**
+     * @param prefijoNombre Prefijo del nombre (sin distinguir mayúsculas), o null.
+     * @param estado Estado actual, o null para cualquiera.
+     * @return IDs de los sectores que cumplen ambos criterios, ordenados.
+     */
+    public List<Long> filtrar(String prefijoNombre, EstadoSector estado) {
+        Instantanea actual = actual();
+        String prefijo = prefijoNombre != null ? prefijoNombre.toLowerCase(Locale.ROOT) : null;
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < actual.sectores.length; i++) {
+            SectorDto sector = actual.sectores[i];
+            if ((estado == null || actual.porEstado.get(estado).get(i))
+                    && (prefijo == null || (sector.getNombre() != null && sector.getNombre().toLowerCase(Locale.ROOT).startsWith(prefijo)))) {
+                ids.add(sector.getId());
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * @param estado Estado buscado.
+     * @return Número de sectores en ese estado.
+     */
+    public int contar(EstadoSector estado) {
+        return actual().porEstado.get(estado).cardinality();
+    }
+
+    /**
+     * Busca sectores que cumplan todos los criterios indicados. Cada rango se resuelve con
+     * una búsqueda binaria sobre su array ordenado y se interseca como {@link BitSet} con
+     * el del estado y con los de las características; el resultado se recorre en el orden
+     * pedido sin volver a ordenar. Las facetas cuentan, para cada término de
+     * características, cuántas coincidencias lo tienen (intersección de bitsets).
+     *
+     * @param minMetrosCuadrados Superficie mínima, o null para no filtrar.
+     * @param maxCentimos Precio mensual máximo en céntimos, o null para no filtrar.
+     * @param estado Estado buscado, o null para cualquiera.
+     * @param caracteristicas Características buscadas (texto libre), o vacío para no filtrar.
+     * @param todas true si deben cumplirse todas las características; false si basta con una.
+     * @param orden Orden de los resultados.
+     * @param desde Posición del primer resultado a devolver.
+     * @param limite Número máximo de resultados.
+     * @return La página de sectores, el total de coincidencias y las facetas.
+     */
+    public Resultado buscar(Integer minMetrosCuadrados, Long maxCentimos, EstadoSector estado,
+                            Collection<String> caracteristicas, boolean todas, Orden orden, int desde, int limite) {
+        Instantanea actual = actual();
+        int n = actual.sectores.length;
+        BitSet candidatos;
+        if (estado != null) {
+            candidatos = (BitSet) actual.porEstado.get(estado).clone();
+        } else {
+            candidatos = new BitSet(n);
+            candidatos.set(0, n);
+        }
+        if (minMetrosCuadrados != null) {
+            // Desde el primer sector con m² >= mínimo hasta el final
+            candidatos.and(rango(actual.porMetros, primeroNoMenor(actual.metros, minMetrosCuadrados), n, n));
+        }
+        if (maxCentimos != null) {
+            // Desde el principio hasta el último sector con precio <= máximo
+            candidatos.and(rango(actual.porPrecio, 0, primeroMayor(actual.centimos, maxCentimos), n));
+        }
+        Set<String> terminos = new LinkedHashSet<>();
+        caracteristicas.forEach(texto -> terminos.addAll(Texto.caracteristicas(texto)));
+        if (!terminos.isEmpty()) {
+            BitSet conCaracteristicas = todas ? null : new BitSet(n);
+            for (String termino : terminos) {
+                BitSet bits = actual.porCaracteristica.getOrDefault(termino, VACIO);
+                if (todas) {
+                    candidatos.and(bits);
+                } else {
+                    conCaracteristicas.or(bits);
+                }
+            }
+            if (!todas) {
+                candidatos.and(conCaracteristicas);
+            }
+        }
+
+        Map<String, Integer> facetas = new LinkedHashMap<>();
+        actual.porCaracteristica.forEach((termino, bits) -> {
+            int cuenta = contarInterseccion(candidatos, bits);
+            if (cuenta > 0) {
+                facetas.put(termino, cuenta);
+            }
+        });
+
+        int total = candidatos.cardinality();
+        List<SectorDto> pagina = new ArrayList<>(Math.max(0, Math.min(limite, total - desde)));
+        int saltados = 0;
+        for (int i = 0; i < n && pagina.size() < limite; i++) {
+            int posicion = switch (orden) {
+                case ID -> i;
+                case METROS_ASC -> actual.porMetros[i];
+                case METROS_DESC -> actual.porMetros[n - 1 - i];
+                case PRECIO_ASC -> actual.porPrecio[i];
+                case PRECIO_DESC -> actual.porPrecio[n - 1 - i];
+            };
+            if (candidatos.get(posicion) && saltados++ >= desde) {
+                pagina.add(actual.sectores[posicion]);
+            }
+        }
+        return new Resultado(pagina, total, facetas);
+    }
+
+    /**
+     * @return Número de sectores que tiene cada término de características, por orden alfabético.
+     */
+    public Map<String, Integer> caracteristicas() {
+        Map<String, Integer> cuentas = new LinkedHashMap<>();
+        actual().porCaracteristica.forEach((termino, bits) -> cuentas.put(termino, bits.cardinality()));
+        return cuentas;
+    }
+
+    /**
+     * Convierte un precio a céntimos, la unidad de los arrays de precio del índice.
+     *
+     * @param precio Precio con dos decimales como máximo.
+     * @return El precio en céntimos.
+     */
+    public static long aCentimos(BigDecimal precio) {
+        return precio.movePointRight(2).setScale(0, RoundingMode.FLOOR).longValueExact();
+    }
+
+    /** Cardinalidad de la intersección sin construirla; recorre el término, normalmente el más disperso. */
+    private static int contarInterseccion(BitSet candidatos, BitSet termino) {
+        int cuenta = 0;
+        for (int i = termino.nextSetBit(0); i >= 0; i = termino.nextSetBit(i + 1)) {
+            if (candidatos.get(i)) {
+                cuenta++;
+            }
+        }
+        return cuenta;
+    }
+
+    private static BitSet rango(int[] permutacion, int desde, int hasta, int n) {
+        BitSet bits = new BitSet(n);
+        for (int i = desde; i < hasta; i++) {
+            bits.set(permutacion[i]);
+        }
+        return bits;
+    }
+
+    private static int primeroNoMenor(int[] valores, int minimo) {
+        int bajo = 0;
+        int alto = valores.length;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (valores[medio] < minimo) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return bajo;
+    }
+
+    private static int primeroMayor(long[] valores, long maximo) {
+        int bajo = 0;
+        int alto = valores.length;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (valores[medio] <= maximo) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return bajo;
+    }
+
+    /**
+     * Orden de los resultados de {@link #buscar}. Los empates se resuelven por ID.
+     */
+    public enum Orden {
+        ID("id"), METROS_ASC("m2"), METROS_DESC("-m2"), PRECIO_ASC("precio"), PRECIO_DESC("-precio");
+
+        private final String parametro;
+
+        Orden(String parametro) {
+            this.parametro = parametro;
+        }
+
+        /**
+         * @param parametro Valor del parámetro {@code orden}: id, m2, -m2, precio o -precio.
+         * @return El orden correspondiente ({@link #ID} si es null o vacío).
+         * @throws IllegalArgumentException si el valor no es válido.
+         */
+        public static Orden desde(String parametro) {
+            if (parametro == null || parametro.isBlank()) {
+                return ID;
+            }
+            for (Orden orden : values()) {
+                if (orden.parametro.equalsIgnoreCase(parametro.trim())) {
+                    return orden;
+                }
+            }
+            throw new IllegalArgumentException("Orden no válido: " + parametro);
+        }
+    }
+
+    /**
+     * Resultado de una búsqueda de sectores.
+     *
+     * @param sectores Página de sectores en el orden pedido.
+     * @param total Número total de coincidencias.
+     * @param facetas Coincidencias por término de características (solo los que tienen alguna).
+     */
+    public record Resultado(List<SectorDto> sectores, int total, Map<String, Integer> facetas) {
+    }
+
+    /**
+     * Convierte una entidad de sector a DTO.
+     *
+     * @param sector Entidad de sector.
+     * @return El DTO correspondiente.
+     */
+    public static SectorDto aDto(SectorEntidad sector) {
+        SectorDto dto = new SectorDto();
+        dto.setId(sector.getId());
+        dto.setNombre(sector.getNombre());
+        dto.setMetrosCuadrados(sector.getMetrosCuadrados());
+        dto.setPrecioMensual(sector.getPrecioMensual());
+        dto.setCaracteristicas(sector.getCaracteristicas());
+        dto.setEstado(sector.getEstado().name());
+        return dto;
+    }
+
+    private Instantanea actual() {
+        Instantanea actual = instantanea;
+        if (actual == null) {
+            recargar();
+            actual = instantanea;
+            if (actual == null) {
+                throw new IllegalStateException("Índice de sectores no disponible");
+            }
+        }
+        return actual;
+    }
+
+    /** Instantánea inmutable del índice. */
+    private static final class Instantanea {
+        private final SectorDto[] sectores;
+        private final Map<Long, Integer> posicionPorId;
+        private final Map<String, Integer> posicionPorNombre;
+        private final EnumMap<EstadoSector, BitSet> porEstado;
+        private final List<SectorDto> todos;
+        private final EnumMap<EstadoSector, List<SectorDto>> listasPorEstado;
+        private final int[] porMetros; // Posiciones ordenadas por m² (y por ID en los empates)
+        private final int[] metros;    // metros[i] = m² de porMetros[i]
+        private final int[] porPrecio; // Posiciones ordenadas por precio (y por ID en los empates)
+        private final long[] centimos; // centimos[i] = precio de porPrecio[i]
+        private final long huella;     // Resumen del contenido para detectar cambios al recargar
+        private final long[] sectoresPorEstado = new long[EstadoSector.values().length]; // Por ordinal
+        private final long[] metrosPorEstado = new long[EstadoSector.values().length];
+        private final TreeMap<String, BitSet> porCaracteristica = new TreeMap<>(); // Término -> posiciones
+
+        private Instantanea(SectorDto[] sectores, Map<Long, Integer> posicionPorId, Map<String, Integer> posicionPorNombre,
+                            EnumMap<EstadoSector, BitSet> porEstado, EnumMap<EstadoSector, List<SectorDto>> listasPorEstado) {
+            int n = sectores.length;
+            this.porMetros = IntStream.range(0, n).boxed()
+                .sorted(Comparator.comparingInt(i -> sectores[i].getMetrosCuadrados()))
+                .mapToInt(Integer::intValue).toArray();
+            this.metros = new int[n];
+            this.porPrecio = IntStream.range(0, n).boxed()
+                .sorted(Comparator.comparing(i -> sectores[i].getPrecioMensual()))
+                .mapToInt(Integer::intValue).toArray();
+            this.centimos = new long[n];
+            long resumen = 0;
+            for (int i = 0; i < n; i++) {
+                metros[i] = sectores[porMetros[i]].getMetrosCuadrados();
+                centimos[i] = aCentimos(sectores[porPrecio[i]].getPrecioMensual());
+                SectorDto sector = sectores[i];
+                int estado = EstadoSector.valueOf(sector.getEstado()).ordinal();
+                sectoresPorEstado[estado]++;
+                metrosPorEstado[estado] += sector.getMetrosCuadrados();
+                for (String termino : Texto.caracteristicas(sector.getCaracteristicas())) {
+                    porCaracteristica.computeIfAbsent(termino, t -> new BitSet(n)).set(i);
+                }
+                resumen = resumen * 1_000_003 + Objects.hash(sector.getId(), sector.getNombre(), sector.getMetrosCuadrados(),
+                    sector.getPrecioMensual(), sector.getCaracteristicas(), sector.getEstado());
+            }
+            this.huella = resumen;
+            this.sectores = sectores;
+            this.posicionPorId = posicionPorId;
+            this.posicionPorNombre = posicionPorNombre;
+            this.porEstado = porEstado;
+            this.todos = Collections.unmodifiableList(Arrays.asList(sectores));
+            this.listasPorEstado = listasPorEstado;
+        }
+
+        static Instantanea construir(List<SectorDto> lista) {
+            TreeMap<Long, SectorDto> ordenados = new TreeMap<>();
+            lista.forEach(sector -> ordenados.put(sector.getId(), sector));
+            SectorDto[] sectores = ordenados.values().toArray(new SectorDto[0]);
+
+            Map<Long, Integer> posicionPorId = new HashMap<>();
+            Map<String, Integer> posicionPorNombre = new HashMap<>();
+            EnumMap<EstadoSector, BitSet> porEstado = new EnumMap<>(EstadoSector.class);
+            for (EstadoSector estado : EstadoSector.values()) {
+                porEstado.put(estado, new BitSet(sectores.length));
+            }
+            for (int i = 0; i < sectores.length; i++) {
+                posicionPorId.put(sectores[i].getId(), i);
+                if (sectores[i].getNombre() != null) {
+                    posicionPorNombre.put(sectores[i].getNombre().toLowerCase(Locale.ROOT), i);
+                }
+                porEstado.get(EstadoSector.valueOf(sectores[i].getEstado())).set(i);
+            }
+
+            EnumMap<EstadoSector, List<SectorDto>> listasPorEstado = new EnumMap<>(EstadoSector.class);
+            porEstado.forEach((estado, bits) -> {
+                List<SectorDto> enEstado = new ArrayList<>(bits.cardinality());
+                bits.stream().forEach(i -> enEstado.add(sectores[i]));
+                listasPorEstado.put(estado, Collections.unmodifiableList(enEstado));
+            });
+            return new Instantanea(sectores, posicionPorId, posicionPorNombre, porEstado, listasPorEstado);
+        }
+    }
+}
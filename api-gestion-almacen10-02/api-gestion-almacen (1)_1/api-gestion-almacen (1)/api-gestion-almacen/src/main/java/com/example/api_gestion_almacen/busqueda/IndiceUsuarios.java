@@ -0,0 +1,317 @@
+package com.example.api_gestion_almacen.busqueda;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.example.api_gestion_almacen.dtos.UsuarioBusquedaDto;
+
+/**
+ * Índice en memoria para buscar usuarios por parte del nombre o del correo.
+ *
+ * <p>Cada usuario es un documento numerado en orden de inserción. Hay dos índices
+ * invertidos con listas de documentos como arrays de enteros ordenados:</p>
+ * <ul>
+ *   <li>trigramas del nombre y del correo, para términos de 3 o más caracteres;</li>
+ *   <li>palabras completas en un {@link TreeMap}, para términos más cortos (por prefijo).</li>
+ * </ul>
+ *
+ * <p>Las modificaciones marcan el documento anterior como eliminado y añaden uno nuevo;
+ * cuando los eliminados son muchos, el índice se compacta. Las búsquedas comparten un
+ * cerrojo de lectura y las modificaciones toman el de escritura.</p>
+ */
+@Component
+public class IndiceUsuarios {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IndiceUsuarios.class);
+    private static final int TAMANO_BLOQUE_CARGA = 10_000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final ReentrantReadWriteLock cerrojo = new ReentrantReadWriteLock();
+    private Estado estado = new Estado();
+    private volatile boolean cargado;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarAlArrancar() {
+        try {
+            cargar();
+        } catch (DataAccessException e) {
+            LOGGER.warn("No se pudo cargar el índice de usuarios: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Carga el índice completo recorriendo la tabla por bloques de ID.
+     */
+    public void cargar() {
+        long inicio = System.nanoTime();
+        cerrojo.writeLock().lock();
+        try {
+            Estado nuevo = new Estado();
+            long ultimoId = 0;
+            int leidos;
+            do {
+                List<Documento> bloque = jdbcTemplate.query(
+                    "SELECT id, nombre_completo, correo_electronico, rol_id FROM usuarios WHERE id > ? ORDER BY id LIMIT " + TAMANO_BLOQUE_CARGA,
+                    (rs, fila) -> new Documento(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getObject(4, Long.class)),
+                    ultimoId);
+                for (Documento documento : bloque) {
+                    nuevo.agregar(documento);
+                    ultimoId = documento.id();
+                }
+                leidos = bloque.size();
+            } while (leidos == TAMANO_BLOQUE_CARGA);
+            estado = nuevo;
+            cargado = true;
+            LOGGER.atInfo().addKeyValue("usuarios", nuevo.docPorId.size())
+                .addKeyValue("trigramas", nuevo.trigramas.size())
+                .addKeyValue("ms", (System.nanoTime() - inicio) / 1_000_000)
+                .log("Índice de búsqueda de usuarios cargado");
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Añade o sustituye un usuario en el índice.
+     *
+     * @param id ID del usuario.
+     * @param nombreCompleto Nombre completo.
+     * @param correoElectronico Correo electrónico.
+     * @param rolId ID del rol.
+     */
+    public void actualizar(Long id, String nombreCompleto, String correoElectronico, Long rolId) {
+        cerrojo.writeLock().lock();
+        try {
+            estado.eliminar(id);
+            estado.agregar(new Documento(id, nombreCompleto, correoElectronico, rolId));
+            compactarSiHaceFalta();
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Quita un usuario del índice.
+     *
+     * @param id ID del usuario.
+     */
+    public void eliminar(Long id) {
+        cerrojo.writeLock().lock();
+        try {
+            estado.eliminar(id);
+            compactarSiHaceFalta();
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Busca usuarios cuyo nombre o correo contengan todos los términos de la consulta.
+     *
+     * @param consulta Texto buscado; se separa en términos por espacios.
+     * @param desde Posición del primer resultado a devolver.
+     * @param limite Número máximo de resultados.
+     * @return Los resultados ordenados por relevancia y el total de coincidencias.
+     */
+    public Resultado buscar(String consulta, int desde, int limite) {
+        if (!cargado) {
+            cargar();
+        }
+        List<String> terminos = Texto.palabras(Texto.normalizar(consulta));
+        if (terminos.isEmpty()) {
+            return new Resultado(List.of(), 0);
+        }
+        cerrojo.readLock().lock();
+        try {
+            return estado.buscar(terminos, desde, limite);
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    private void compactarSiHaceFalta() {
+        if (estado.eliminados.cardinality() > 1000 && estado.eliminados.cardinality() > estado.numDocs / 4) {
+            Estado compactado = new Estado();
+            for (int doc = 0; doc < estado.numDocs; doc++) {
+                if (!estado.eliminados.get(doc)) {
+                    compactado.agregar(estado.documentos[doc]);
+                }
+            }
+            estado = compactado;
+        }
+    }
+
+    /**
+     * Resultado de una búsqueda.
+     *
+     * @param usuarios Página de usuarios ordenada por relevancia.
+     * @param total Número total de coincidencias.
+     */
+    public record Resultado(List<UsuarioBusquedaDto> usuarios, int total) {
+    }
+
+    private record Documento(Long id, String nombreCompleto, String correoElectronico, Long rolId,
+                             String nombre, String correo, List<String> palabrasNombre) {
+        Documento(Long id, String nombreCompleto, String correoElectronico, Long rolId) {
+            this(id, nombreCompleto, correoElectronico, rolId, Texto.normalizar(nombreCompleto),
+                Texto.normalizar(correoElectronico), Texto.palabras(Texto.normalizar(nombreCompleto)));
+        }
+    }
+
+    /** Estructuras del índice; se accede siempre con el cerrojo correspondiente. */
+    private static final class Estado {
+        private Documento[] documentos = new Documento[1024];
+        private int numDocs;
+        private final BitSet eliminados = new BitSet();
+        private final Map<Long, Integer> docPorId = new HashMap<>();
+        private final Map<Long, Postings> trigramas = new HashMap<>();
+        private final TreeMap<String, Postings> palabras = new TreeMap<>();
+
+        void agregar(Documento documento) {
+            if (numDocs == documentos.length) {
+                documentos = Arrays.copyOf(documentos, numDocs * 2);
+            }
+            int doc = numDocs++;
+            documentos[doc] = documento;
+            docPorId.put(documento.id(), doc);
+            indexarTrigramas(documento.nombre(), doc);
+            indexarTrigramas(documento.correo(), doc);
+            for (String palabra : documento.palabrasNombre()) {
+                palabras.computeIfAbsent(palabra, p -> new Postings()).agregar(doc);
+            }
+            for (String palabra : Texto.palabras(documento.correo())) {
+                palabras.computeIfAbsent(palabra, p -> new Postings()).agregar(doc);
+            }
+        }
+
+        void eliminar(Long id) {
+            Integer doc = docPorId.remove(id);
+            if (doc != null) {
+                eliminados.set(doc);
+            }
+        }
+
+        private void indexarTrigramas(String texto, int doc) {
+            for (int i = 0; i + 3 <= texto.length(); i++) {
+                trigramas.computeIfAbsent(trigrama(texto, i), t -> new Postings()).agregar(doc);
+            }
+        }
+
+        Resultado buscar(List<String> terminos, int desde, int limite) {
+            int[] candidatos = null;
+            for (String termino : terminos) {
+                int[] delTermino = termino.length() >= 3 ? porTrigramas(termino) : porPrefijo(termino);
+                candidatos = candidatos == null ? delTermino
+                    : Postings.interseccion(candidatos, candidatos.length, delTermino, delTermino.length);
+                if (candidatos.length == 0) {
+                    return new Resultado(List.of(), 0);
+                }
+            }
+
+            // Verificación y puntuación; clave = (puntuación invertida << 32) | documento
+            long[] claves = new long[candidatos.length];
+            int coincidencias = 0;
+            for (int doc : candidatos) {
+                if (eliminados.get(doc)) {
+                    continue;
+                }
+                int puntuacion = puntuar(documentos[doc], terminos);
+                if (puntuacion > 0) {
+                    claves[coincidencias++] = ((long) (Integer.MAX_VALUE - puntuacion) << 32) | doc;
+                }
+            }
+            Arrays.sort(claves, 0, coincidencias);
+
+            List<UsuarioBusquedaDto> pagina = new ArrayList<>(Math.max(0, Math.min(limite, coincidencias - desde)));
+            for (int i = desde; i < coincidencias && pagina.size() < limite; i++) {
+                Documento documento = documentos[(int) claves[i]];
+                int puntuacion = Integer.MAX_VALUE - (int) (claves[i] >>> 32);
+                pagina.add(new UsuarioBusquedaDto(documento.id(), documento.nombreCompleto(),
+                    documento.correoElectronico(), documento.rolId(), puntuacion));
+            }
+            return new Resultado(pagina, coincidencias);
+        }
+
+        private int[] porTrigramas(String termino) {
+            // Se intersecan empezando por la lista más corta
+            List<Postings> listas = new ArrayList<>();
+            for (int i = 0; i + 3 <= termino.length(); i++) {
+                Postings postings = trigramas.get(trigrama(termino, i));
+                if (postings == null) {
+                    return new int[0];
+                }
+                listas.add(postings);
+            }
+            listas.sort((a, b) -> Integer.compare(a.tamano(), b.tamano()));
+            int[] resultado = Arrays.copyOf(listas.get(0).documentos(), listas.get(0).tamano());
+            for (int i = 1; i < listas.size() && resultado.length > 0; i++) {
+                resultado = Postings.interseccion(resultado, resultado.length, listas.get(i).documentos(), listas.get(i).tamano());
+            }
+            return resultado;
+        }
+
+        private int[] porPrefijo(String prefijo) {
+            BitSet union = new BitSet(numDocs);
+            for (Postings postings : palabras.subMap(prefijo, true, prefijo + Character.MAX_VALUE, false).values()) {
+                int[] docs = postings.documentos();
+                for (int i = 0; i < postings.tamano(); i++) {
+                    union.set(docs[i]);
+                }
+            }
+            return union.stream().toArray();
+        }
+
+        /**
+         * Suma por término: correo exacto 10, inicio del correo 5, palabra del nombre
+         * exacta 6 o por prefijo 4, aparición en cualquier otra posición 1.
+         * Devuelve 0 si algún término no aparece (falso positivo de los trigramas).
+         */
+        private static int puntuar(Documento documento, List<String> terminos) {
+            int total = 0;
+            for (String termino : terminos) {
+                int puntuacion = 0;
+                if (documento.correo().equals(termino)) {
+                    puntuacion = 10;
+                } else if (documento.correo().startsWith(termino)) {
+                    puntuacion = 5;
+                }
+                for (String palabra : documento.palabrasNombre()) {
+                    if (palabra.equals(termino)) {
+                        puntuacion = Math.max(puntuacion, 6);
+                    } else if (palabra.startsWith(termino)) {
+                        puntuacion = Math.max(puntuacion, 4);
+                    }
+                }
+                if (puntuacion == 0 && (documento.nombre().contains(termino) || documento.correo().contains(termino))) {
+                    puntuacion = 1;
+                }
+                if (puntuacion == 0) {
+                    return 0;
+                }
+                total += puntuacion;
+            }
+            return total;
+        }
+
+        private static long trigrama(String texto, int i) {
+            return ((long) texto.charAt(i) << 32) | ((long) texto.charAt(i + 1) << 16) | texto.charAt(i + 2);
+        }
+    }
+}
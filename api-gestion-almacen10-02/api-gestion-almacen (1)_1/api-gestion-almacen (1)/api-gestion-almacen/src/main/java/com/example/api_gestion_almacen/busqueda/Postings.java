@@ -0,0 +1,95 @@
+package com.example.api_gestion_almacen.busqueda;
+
+import java.util.Arrays;
+
+/**
+ * Lista de documentos de un término, como array de enteros ordenado y creciente.
+ * Los documentos se numeran en orden de inserción, así que añadir al final
+ * mantiene el orden sin reordenar.
+ */
+final class Postings {
+
+    private int[] documentos = new int[4];
+    private int tamano;
+
+    void agregar(int documento) {
+        if (tamano > 0 && documentos[tamano - 1] == documento) {
+            return; // El mismo término aparece varias veces en el documento
+        }
+        if (tamano == documentos.length) {
+            documentos = Arrays.copyOf(documentos, tamano * 2);
+        }
+        documentos[tamano++] = documento;
+    }
+
+    int tamano() {
+        return tamano;
+    }
+
+    int[] documentos() {
+        return documentos;
+    }
+
+    /**
+     * Intersección de dos listas ordenadas.
+     *
+     * @param a Primera lista.
+     * @param tamanoA Elementos válidos de {@code a}.
+     * @param b Segunda lista.
+     * @param tamanoB Elementos válidos de {@code b}.
+     * @return Los documentos presentes en ambas, ordenados.
+     */
+    static int[] interseccion(int[] a, int tamanoA, int[] b, int tamanoB) {
+        if (tamanoA > tamanoB) {
+            return interseccion(b, tamanoB, a, tamanoA);
+        }
+        if ((long) tamanoA * 16 < tamanoB) {
+            return interseccionGalopando(a, tamanoA, b, tamanoB);
+        }
+        int[] resultado = new int[tamanoA];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < tamanoA && j < tamanoB) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                resultado[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(resultado, n);
+    }
+
+    /**
+     * Intersección cuando {@code b} es mucho más larga que {@code a}: cada elemento de
+     * {@code a} se localiza en {@code b} con búsqueda exponencial desde la última posición,
+     * en O(|a| log |b|) en lugar de recorrer {@code b} entera.
+     */
+    private static int[] interseccionGalopando(int[] a, int tamanoA, int[] b, int tamanoB) {
+        int[] resultado = new int[tamanoA];
+        int n = 0;
+        int desde = 0;
+        for (int i = 0; i < tamanoA && desde < tamanoB; i++) {
+            int buscado = a[i];
+            int salto = 1;
+            int hasta = desde;
+            while (hasta < tamanoB && b[hasta] < buscado) {
+                desde = hasta + 1;
+                hasta += salto;
+                salto <<= 1;
+            }
+            int posicion = Arrays.binarySearch(b, desde, Math.min(hasta + 1, tamanoB), buscado);
+            if (posicion >= 0) {
+                resultado[n++] = buscado;
+                desde = posicion + 1;
+            } else {
+                desde = -posicion - 1;
+            }
+        }
+        return Arrays.copyOf(resultado, n);
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.api_gestion_almacen.busqueda;
+
+import java.time.LocalDateTime;
+
+/**
+ * Intervalo [inicio, fin) durante el que un alquiler activo ocupa un sector.
+ *
+ * @param alquilerId ID del alquiler.
+ * @param sectorId ID del sector.
+ * @param inicio Fecha de inicio (incluida).
+ * @param fin Fecha de fin (excluida).
+ */
+public record Reserva(Long alquilerId, Long sectorId, LocalDateTime inicio, LocalDateTime fin) {
+
+    /**
+     * @param instante Instante a comprobar.
+     * @return true si el instante está dentro de la reserva.
+     */
+    public boolean contiene(LocalDateTime instante) {
+        return !instante.isBefore(inicio) && instante.isBefore(fin);
+    }
+}
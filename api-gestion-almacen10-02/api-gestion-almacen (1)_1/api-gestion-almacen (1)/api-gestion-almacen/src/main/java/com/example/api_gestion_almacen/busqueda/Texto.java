@@ -0,0 +1,74 @@
+package com.example.api_gestion_almacen.busqueda;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Normalización y troceado de texto para los índices de búsqueda:
+ * minúsculas, sin tildes y palabras separadas por cualquier carácter no alfanumérico.
+ */
+final class Texto {
+
+    private Texto() {
+    }
+
+    static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        String sinTildes = Normalizer.normalize(texto, Normalizer.Form.NFD);
+        StringBuilder resultado = new StringBuilder(sinTildes.length());
+        for (int i = 0; i < sinTildes.length(); i++) {
+            char c = sinTildes.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                resultado.append(c);
+            }
+        }
+        return resultado.toString().toLowerCase(Locale.ROOT).trim();
+    }
+
+    /**
+     * @param normalizado Texto ya normalizado.
+     * @return Sus palabras (secuencias alfanuméricas), en orden.
+     */
+    static List<String> palabras(String normalizado) {
+        List<String> palabras = new ArrayList<>();
+        int inicio = -1;
+        for (int i = 0; i <= normalizado.length(); i++) {
+            boolean alfanumerico = i < normalizado.length() && Character.isLetterOrDigit(normalizado.charAt(i));
+            if (alfanumerico && inicio < 0) {
+                inicio = i;
+            } else if (!alfanumerico && inicio >= 0) {
+                palabras.add(normalizado.substring(inicio, i));
+                inicio = -1;
+            }
+        }
+        return palabras;
+    }
+
+    /**
+     * Trocea un texto libre de características (por ejemplo {@code "Refrigerado, acceso camión"})
+     * en términos: los fragmentos separados por comas, punto y coma, barras o saltos de
+     * línea, normalizados y con sus palabras separadas por un único espacio.
+     *
+     * @param texto Texto de características, o null.
+     * @return Los términos distintos, en orden de aparición.
+     */
+    static Set<String> caracteristicas(String texto) {
+        Set<String> terminos = new LinkedHashSet<>();
+        if (texto == null) {
+            return terminos;
+        }
+        for (String fragmento : texto.split("[,;/\\n]")) {
+            String termino = String.join(" ", palabras(normalizar(fragmento)));
+            if (!termino.isEmpty()) {
+                terminos.add(termino);
+            }
+        }
+        return terminos;
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.api_gestion_almacen.cache;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Caché de lectura de usuarios por ID y por correo electrónico (Caffeine, W-TinyLFU),
+ * acotada en número de entradas y con caducidad tras la escritura.
+ *
+ * <p>Las entradas se guardan por ID; el índice por correo solo guarda el ID y se
+ * comprueba contra la entrada, así que un correo que ha cambiado de dueño nunca
+ * devuelve un usuario equivocado. Las búsquedas sin resultado no se guardan.</p>
+ *
+ * <p>Para que una carga lenta no vuelva a guardar un valor anterior a una escritura,
+ * cada invalidación incrementa un contador de generación; la carga que observa un
+ * cambio de generación descarta lo que acaba de guardar.</p>
+ */
+@Component
+public class CacheUsuarios {
+
+    @Value("${usuarios.cache.maximo:10000}")
+    private long maximoEntradas;
+
+    @Value("${usuarios.cache.ttl:PT10M}")
+    private Duration ttl;
+
+    private Cache<Long, UsuarioCacheado> porId;
+    private Cache<String, Long> idPorCorreo;
+    private final AtomicLong generacion = new AtomicLong();
+
+    @PostConstruct
+    void inicializar() {
+        porId = Caffeine.newBuilder()
+            .maximumSize(maximoEntradas)
+            .expireAfterWrite(ttl)
+            .recordStats()
+            .build();
+        idPorCorreo = Caffeine.newBuilder()
+            .maximumSize(maximoEntradas)
+            .expireAfterWrite(ttl)
+            .recordStats()
+            .build();
+    }
+
+    /**
+     * Busca un usuario por ID, cargándolo con {@code cargador} si no está en caché.
+     *
+     * @param id ID del usuario.
+     * @param cargador Consulta a la base de datos.
+     * @return El usuario, o vacío si no existe.
+     */
+    public Optional<UsuarioCacheado> buscarPorId(Long id, Function<Long, Optional<UsuarioCacheado>> cargador) {
+        UsuarioCacheado entrada = porId.getIfPresent(id);
+        if (entrada != null) {
+            return Optional.of(entrada);
+        }
+        return cargar(() -> cargador.apply(id));
+    }
+
+    /**
+     * Busca un usuario por correo electrónico, cargándolo con {@code cargador} si no está en caché.
+     *
+     * @param correo Correo electrónico.
+     * @param cargador Consulta a la base de datos.
+     * @return El usuario, o vacío si no existe.
+     */
+    public Optional<UsuarioCacheado> buscarPorCorreo(String correo, Function<String, Optional<UsuarioCacheado>> cargador) {
+        String clave = normalizar(correo);
+        Long id = idPorCorreo.getIfPresent(clave);
+        if (id != null) {
+            UsuarioCacheado entrada = porId.getIfPresent(id);
+            if (entrada != null && clave.equals(normalizar(entrada.correoElectronico()))) {
+                return Optional.of(entrada);
+            }
+        }
+        return cargar(() -> cargador.apply(correo));
+    }
+
+    /**
+     * Elimina de la caché un usuario y los correos indicados.
+     * Debe llamarse después de que la escritura sea visible en la base de datos.
+     *
+     * @param id ID del usuario (puede ser null si aún no existe).
+     * @param correos Correos afectados por la escritura (anterior y nuevo).
+     */
+    public void invalidar(Long id, String... correos) {
+        // Primero la generación: una carga que guarde después de este punto lo detectará
+        generacion.incrementAndGet();
+        if (id != null) {
+            UsuarioCacheado anterior = porId.asMap().remove(id);
+            if (anterior != null && anterior.correoElectronico() != null) {
+                idPorCorreo.invalidate(normalizar(anterior.correoElectronico()));
+            }
+        }
+        for (String correo : correos) {
+            if (correo != null) {
+                idPorCorreo.invalidate(normalizar(correo));
+            }
+        }
+    }
+
+    /**
+     * @return Aciertos, fallos, expulsiones y tamaño de cada índice de la caché.
+     */
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("porId", estadisticas(porId));
+        resultado.put("porCorreo", estadisticas(idPorCorreo));
+        return resultado;
+    }
+
+    private Optional<UsuarioCacheado> cargar(Supplier<Optional<UsuarioCacheado>> consulta) {
+        long generacionInicial = generacion.get();
+        Optional<UsuarioCacheado> cargado = consulta.get();
+        if (cargado.isEmpty() || generacion.get() != generacionInicial) {
+            return cargado;
+        }
+        UsuarioCacheado entrada = cargado.get();
+        porId.put(entrada.id(), entrada);
+        if (entrada.correoElectronico() != null) {
+            idPorCorreo.put(normalizar(entrada.correoElectronico()), entrada.id());
+        }
+        if (generacion.get() != generacionInicial) {
+            // Una escritura se ha colado entre la consulta y el guardado
+            porId.invalidate(entrada.id());
+        }
+        return cargado;
+    }
+
+    private static Map<String, Object> estadisticas(Cache<?, ?> cache) {
+        CacheStats stats = cache.stats();
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("entradas", cache.estimatedSize());
+        resultado.put("aciertos", stats.hitCount());
+        resultado.put("fallos", stats.missCount());
+        resultado.put("tasaAciertos", stats.hitRate());
+        resultado.put("expulsiones", stats.evictionCount());
+        return resultado;
+    }
+
+    private static String normalizar(String correo) {
+        // MySQL compara los correos sin distinguir mayúsculas
+        return correo.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.api_gestion_almacen.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import com.example.api_gestion_almacen.cache.VersionesColecciones.Coleccion;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Catálogos que cambian poco (sectores, roles) ya serializados a JSON y comprimidos con
+ * gzip, para enviarlos sin serializar ni comprimir en cada petición.
+ *
+ * <p>Cada instantánea se etiqueta con la versión de su colección en
+ * {@link VersionesColecciones}, leída antes que los datos: la primera petición después de
+ * una escritura ve otra versión y reconstruye la instantánea (una sola vez aunque lleguen
+ * varias a la vez); el resto solo compara dos números.</p>
+ */
+@Component
+public class CatalogosSerializados {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private VersionesColecciones versiones;
+
+    @Value("${server.compression.enabled:false}")
+    private boolean compresion;
+
+    @Value("${server.compression.min-response-size:2KB}")
+    private DataSize tamanoMinimoCompresion; // Por debajo no compensa, igual que para el servidor
+
+    private final Map<String, CatalogoSerializado> instantaneas = new ConcurrentHashMap<>();
+
+    /**
+     * Devuelve la instantánea vigente de un catálogo, reconstruyéndola si su colección ha cambiado.
+     *
+     * @param nombre Nombre del catálogo (una colección puede tener varios, por ejemplo filtrados).
+     * @param coleccion Colección de la que depende.
+     * @param contenido Elementos actuales del catálogo.
+     * @return La instantánea serializada.
+     */
+    public CatalogoSerializado obtener(String nombre, Coleccion coleccion, Supplier<? extends Collection<?>> contenido) {
+        long version = versiones.version(coleccion, null);
+        CatalogoSerializado actual = instantaneas.get(nombre);
+        if (actual != null && actual.version() == version) {
+            return actual;
+        }
+        synchronized (this) {
+            actual = instantaneas.get(nombre);
+            version = versiones.version(coleccion, null);
+            if (actual == null || actual.version() != version) {
+                actual = construir(version, contenido.get());
+                instantaneas.put(nombre, actual);
+            }
+            return actual;
+        }
+    }
+
+    private CatalogoSerializado construir(long version, Collection<?> elementos) {
+        try {
+            byte[] identidad = objectMapper.writeValueAsBytes(elementos);
+            byte[] gzip = null;
+            if (compresion && identidad.length >= tamanoMinimoCompresion.toBytes()) {
+                ByteArrayOutputStream salida = new ByteArrayOutputStream(identidad.length / 4 + 64);
+                try (GZIPOutputStream comprimido = new GZIPOutputStream(salida) {
+                    {
+                        def.setLevel(Deflater.BEST_COMPRESSION); // Se comprime una vez por versión
+                    }
+                }) {
+                    comprimido.write(identidad);
+                }
+                gzip = salida.size() < identidad.length ? salida.toByteArray() : null;
+            }
+            return new CatalogoSerializado(version, elementos.size(), identidad, gzip);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Catálogo serializado. Los arrays se comparten entre peticiones y no deben modificarse.
+     *
+     * @param version Versión de la colección con la que se construyó.
+     * @param elementos Número de elementos.
+     * @param identidad JSON sin comprimir.
+     * @param gzip JSON comprimido con gzip, o null si no compensa comprimirlo.
+     */
+    public record CatalogoSerializado(long version, int elementos, byte[] identidad, byte[] gzip) {
+    }
+}
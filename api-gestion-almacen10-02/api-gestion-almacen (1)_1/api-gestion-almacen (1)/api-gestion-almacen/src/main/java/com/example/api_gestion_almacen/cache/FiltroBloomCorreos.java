@@ -0,0 +1,225 @@
+package com.example.api_gestion_almacen.cache;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Filtro de Bloom con los correos registrados, para evitar la consulta de existencia
+ * en el alta cuando el correo es nuevo (el caso habitual).
+ *
+ * <p>Un "no" del filtro es definitivo; un "quizá" obliga a consultar la base de datos.
+ * La restricción única de {@code correo_electronico} sigue siendo el árbitro final, así
+ * que un falso negativo por una carrera durante la reconstrucción solo convierte el
+ * error en una violación de la restricción, nunca en un duplicado.</p>
+ *
+ * <p>Se construye al arrancar recorriendo la tabla por bloques de ID y se reconstruye
+ * periódicamente para descartar los correos que ya no existen. Hasta que la primera
+ * construcción termina responde siempre "quizá". Las altas que llegan durante una
+ * reconstrucción se añaden a los dos filtros.</p>
+ */
+@Component
+public class FiltroBloomCorreos {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FiltroBloomCorreos.class);
+    private static final int TAMANO_BLOQUE = 10_000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${usuarios.bloom.capacidad:1000000}")
+    private long capacidad; // Número de correos previsto; se amplía si la tabla lo supera
+
+    @Value("${usuarios.bloom.falsos-positivos:0.01}")
+    private double tasaObjetivo; // Probabilidad de falso positivo con la capacidad prevista
+
+    private volatile Bits actual; // null hasta la primera construcción
+    private volatile Bits enConstruccion;
+
+    private final AtomicLong consultas = new AtomicLong();
+    private final AtomicLong descartadas = new AtomicLong();
+    private final AtomicLong falsosPositivos = new AtomicLong();
+    private final AtomicLong reconstrucciones = new AtomicLong();
+
+    /**
+     * @param correo Correo electrónico.
+     * @return false si el correo seguro que no está registrado; true si puede estarlo.
+     */
+    public boolean podriaExistir(String correo) {
+        consultas.incrementAndGet();
+        Bits bits = actual;
+        if (bits == null) {
+            return true;
+        }
+        if (bits.contiene(hash(correo))) {
+            return true;
+        }
+        descartadas.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Anota que un "quizá" del filtro resultó no estar en la base de datos.
+     */
+    public void registrarFalsoPositivo() {
+        falsosPositivos.incrementAndGet();
+    }
+
+    /**
+     * Añade un correo recién registrado (alta o cambio de correo).
+     *
+     * @param correo Correo electrónico.
+     */
+    public void agregar(String correo) {
+        long h = hash(correo);
+        // Se lee antes el filtro en construcción: la reconstrucción publica el nuevo
+        // filtro antes de soltar la referencia, así que nunca se pierden los dos
+        Bits nuevos = enConstruccion;
+        Bits bits = actual;
+        if (nuevos != null) {
+            nuevos.agregar(h);
+        }
+        if (bits != null && bits != nuevos) {
+            bits.agregar(h);
+        }
+    }
+
+    /**
+     * Construye el filtro al arrancar y lo reconstruye periódicamente.
+     */
+    @Scheduled(initialDelayString = "PT0S", fixedDelayString = "${usuarios.bloom.reconstruccion:PT6H}")
+    public void reconstruir() {
+        long inicio = System.nanoTime();
+        try {
+            Long total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM usuarios", Long.class);
+            long elementos = Math.max(capacidad, total != null ? total * 3 / 2 : 0);
+            Bits nuevos = new Bits(elementos, tasaObjetivo);
+            enConstruccion = nuevos;
+
+            long ultimoId = 0;
+            List<Object[]> bloque;
+            do {
+                bloque = jdbcTemplate.query(
+                    "SELECT id, correo_electronico FROM usuarios WHERE id > ? ORDER BY id LIMIT " + TAMANO_BLOQUE,
+                    (rs, fila) -> new Object[] {rs.getLong(1), rs.getString(2)}, ultimoId);
+                for (Object[] fila : bloque) {
+                    ultimoId = (Long) fila[0];
+                    if (fila[1] != null) {
+                        nuevos.agregar(hash((String) fila[1]));
+                    }
+                }
+            } while (bloque.size() == TAMANO_BLOQUE);
+
+            actual = nuevos;
+            enConstruccion = null;
+            reconstrucciones.incrementAndGet();
+            LOGGER.atInfo().addKeyValue("correos", total)
+                .addKeyValue("bits", nuevos.numBits)
+                .addKeyValue("ms", (System.nanoTime() - inicio) / 1_000_000)
+                .log("Filtro de correos reconstruido");
+        } catch (DataAccessException e) {
+            enConstruccion = null;
+            LOGGER.warn("No se pudo reconstruir el filtro de correos: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return Consultas, descartes sin acceso a la base de datos, falsos positivos observados
+     *         y tasa de falsos positivos estimada por la ocupación de bits.
+     */
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        Bits bits = actual;
+        long totalConsultas = consultas.get();
+        long sinConsulta = descartadas.get();
+        long posibles = totalConsultas - sinConsulta;
+        long nuevos = sinConsulta + falsosPositivos.get(); // Consultas de correos que no existían
+        resultado.put("listo", bits != null);
+        resultado.put("consultas", totalConsultas);
+        resultado.put("descartadasSinConsulta", sinConsulta);
+        resultado.put("posiblesDuplicados", posibles);
+        resultado.put("falsosPositivos", falsosPositivos.get());
+        resultado.put("tasaFalsosPositivosObservada", nuevos > 0 ? (double) falsosPositivos.get() / nuevos : 0.0);
+        resultado.put("tasaFalsosPositivosEstimada", bits != null ? bits.tasaEstimada() : 1.0);
+        resultado.put("bits", bits != null ? bits.numBits : 0);
+        resultado.put("funcionesHash", bits != null ? bits.numHashes : 0);
+        resultado.put("reconstrucciones", reconstrucciones.get());
+        return resultado;
+    }
+
+    private static long hash(String correo) {
+        // FNV-1a de 64 bits sobre el correo normalizado, mezclado con el finalizador de MurmurHash3
+        String normalizado = correo.trim().toLowerCase(Locale.ROOT);
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < normalizado.length(); i++) {
+            h ^= normalizado.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mezclar(h);
+    }
+
+    private static long mezclar(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /** Array de bits concurrente; las posiciones se derivan por doble hash. */
+    private static final class Bits {
+        private final AtomicLongArray palabras;
+        private final long numBits;
+        private final int numHashes;
+
+        Bits(long elementos, double tasa) {
+            long m = (long) Math.ceil(-elementos * Math.log(tasa) / (Math.log(2) * Math.log(2)));
+            this.numBits = Math.max(64, (m + 63) / 64 * 64);
+            this.numHashes = Math.max(1, (int) Math.round((double) numBits / elementos * Math.log(2)));
+            this.palabras = new AtomicLongArray((int) (numBits / 64));
+        }
+
+        void agregar(long h) {
+            long h1 = h;
+            long h2 = mezclar(h) | 1;
+            for (int i = 0; i < numHashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, numBits);
+                long mascara = 1L << (bit & 63);
+                palabras.accumulateAndGet((int) (bit >>> 6), mascara, (a, b) -> a | b);
+            }
+        }
+
+        boolean contiene(long h) {
+            long h1 = h;
+            long h2 = mezclar(h) | 1;
+            for (int i = 0; i < numHashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, numBits);
+                if ((palabras.get((int) (bit >>> 6)) & (1L << (bit & 63))) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        double tasaEstimada() {
+            long activos = 0;
+            for (int i = 0; i < palabras.length(); i++) {
+                activos += Long.bitCount(palabras.get(i));
+            }
+            return Math.pow((double) activos / numBits, numHashes);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.api_gestion_almacen.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import com.example.api_gestion_almacen.dtos.RolDto;
+import com.example.api_gestion_almacen.repositorios.RolRepositorio;
+
+/**
+ * Registro en memoria de los roles. La tabla {@code roles} es pequeña y casi
+ * estática, así que se mantiene una instantánea inmutable que se sustituye
+ * entera (copy-on-write) cuando {@code RolServicio} crea, modifica o elimina
+ * un rol. Las lecturas no se bloquean ni consultan la base de datos.
+ */
+@Component
+public class RegistroRoles {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RegistroRoles.class);
+
+    @Autowired
+    private RolRepositorio rolRepositorio;
+
+    private volatile Map<Long, String> roles; // id -> nombre, ordenado por id; null hasta la primera carga
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarAlArrancar() {
+        try {
+            recargar();
+        } catch (DataAccessException e) {
+            LOGGER.warn("No se pudieron cargar los roles al arrancar: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Vuelve a leer la tabla de roles y publica la nueva instantánea de forma atómica.
+     * Debe llamarse después de confirmar cualquier escritura sobre roles.
+     */
+    public synchronized void recargar() {
+        Map<Long, String> nuevos = new LinkedHashMap<>();
+        rolRepositorio.findAll().stream()
+            .sorted((a, b) -> a.getId().compareTo(b.getId()))
+            .forEach(rol -> nuevos.put(rol.getId(), rol.getNombre()));
+        roles = Collections.unmodifiableMap(nuevos);
+        LOGGER.atInfo().addKeyValue("roles", nuevos.size()).log("Registro de roles cargado");
+    }
+
+    /**
+     * @param id ID del rol.
+     * @return true si el rol existe.
+     */
+    public boolean existe(Long id) {
+        return id != null && instantanea().containsKey(id);
+    }
+
+    /**
+     * @param id ID del rol.
+     * @return El rol, o vacío si no existe.
+     */
+    public Optional<RolDto> buscar(Long id) {
+        String nombre = id != null ? instantanea().get(id) : null;
+        return nombre != null ? Optional.of(aDto(id, nombre)) : Optional.empty();
+    }
+
+    /**
+     * @return Todos los roles ordenados por ID.
+     */
+    public List<RolDto> todos() {
+        Map<Long, String> actual = instantanea();
+        List<RolDto> lista = new ArrayList<>(actual.size());
+        actual.forEach((id, nombre) -> lista.add(aDto(id, nombre)));
+        return lista;
+    }
+
+    private Map<Long, String> instantanea() {
+        Map<Long, String> actual = roles;
+        if (actual == null) {
+            // Primer uso antes de ApplicationReadyEvent (o la carga inicial falló)
+            recargar();
+            actual = roles;
+        }
+        return actual;
+    }
+
+    private static RolDto aDto(Long id, String nombre) {
+        RolDto rol = new RolDto();
+        rol.setId(id);
+        rol.setNombre(nombre);
+        return rol;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.api_gestion_almacen.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Instant;
+
+import com.example.api_gestion_almacen.dtos.UsuarioDto;
+
+/**
+ * Entrada inmutable de la caché de usuarios.
+ * Guarda los datos públicos del usuario (sin foto) y, para poder autenticar sin
+ * consultar la base de datos, una huella SHA-256 de la contraseña con una sal
+ * aleatoria del proceso. La contraseña en claro nunca se guarda en memoria.
+ * También guarda el instante de revocación de sus sesiones, para validar los tokens.
+ */
+public final class UsuarioCacheado {
+
+    private static final byte[] SAL = nuevaSal();
+
+    private final UsuarioDto usuario;
+    private final byte[] huellaContrasena;
+    private final long sesionesDesde;
+
+    private UsuarioCacheado(UsuarioDto usuario, byte[] huellaContrasena, long sesionesDesde) {
+        this.usuario = usuario;
+        this.huellaContrasena = huellaContrasena;
+        this.sesionesDesde = sesionesDesde;
+    }
+
+    /**
+     * @param usuario Datos del usuario; se copian para que el llamante no pueda modificar la entrada.
+     * @param contrasena Contraseña almacenada del usuario (puede ser null en cuentas de Google).
+     * @param sesionesDesde Instante (ms) hasta el que sus sesiones están revocadas, o null si nunca se revocaron.
+     * @return La entrada de caché.
+     */
+    public static UsuarioCacheado crear(UsuarioDto usuario, String contrasena, Long sesionesDesde) {
+        return new UsuarioCacheado(copiar(usuario), contrasena != null ? huella(contrasena) : null,
+            sesionesDesde != null ? sesionesDesde : 0L);
+    }
+
+    /**
+     * @return Una copia del usuario, que el llamante puede modificar libremente.
+     */
+    public UsuarioDto usuario() {
+        return copiar(usuario);
+    }
+
+    public Long id() {
+        return usuario.getId();
+    }
+
+    public String correoElectronico() {
+        return usuario.getCorreoElectronico();
+    }
+
+    /**
+     * Compara una contraseña con la del usuario en tiempo constante.
+     *
+     * @param contrasena Contraseña enviada por el cliente.
+     * @return true si coincide con la almacenada.
+     */
+    public boolean contrasenaCoincide(String contrasena) {
+        return huellaContrasena != null && contrasena != null
+            && MessageDigest.isEqual(huellaContrasena, huella(contrasena));
+    }
+
+    /**
+     * @param emitido Instante de emisión de un token del usuario.
+     * @return true si el token se emitió después de la última revocación de sus sesiones.
+     */
+    public boolean aceptaSesion(Instant emitido) {
+        return emitido.toEpochMilli() > sesionesDesde;
+    }
+
+    private static byte[] huella(String contrasena) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(SAL);
+            return digest.digest(contrasena.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    private static byte[] nuevaSal() {
+        byte[] sal = new byte[16];
+        new SecureRandom().nextBytes(sal);
+        return sal;
+    }
+
+    private static UsuarioDto copiar(UsuarioDto origen) {
+        UsuarioDto copia = new UsuarioDto();
+        copia.setId(origen.getId());
+        copia.setNombreCompleto(origen.getNombreCompleto());
+        copia.setMovil(origen.getMovil());
+        copia.setCorreoElectronico(origen.getCorreoElectronico());
+        copia.setRolId(origen.getRolId());
+        copia.setFotoUrl(origen.getFotoUrl());
+        copia.setFechaCreacion(origen.getFechaCreacion());
+        copia.setCorreoConfirmado(origen.isCorreoConfirmado());
+        copia.setGoogle(origen.isGoogle());
+        return copia;
+    }
+}
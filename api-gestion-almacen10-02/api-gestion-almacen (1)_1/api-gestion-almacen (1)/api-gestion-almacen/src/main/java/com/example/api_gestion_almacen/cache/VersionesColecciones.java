@@ -0,0 +1,86 @@
+package com.example.api_gestion_almacen.cache;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Versión creciente de cada colección expuesta por la API. Los servicios la incrementan
+ * después de confirmar cada escritura y los GET la usan como ETag, de modo que una
+ * petición condicional se responde con 304 sin consultar ni serializar nada.
+ *
+ * <p>Las colecciones con clave (por ejemplo, los alquileres de un usuario) reparten sus
+ * claves en franjas con un contador cada una: la memoria no crece con el número de
+ * claves y, si dos claves comparten franja, lo peor que pasa es que una escritura en
+ * una invalide también el ETag de la otra.</p>
+ *
+ * <p>El ETag incluye una época tomada al arrancar, así que un reinicio (que vuelve a
+ * empezar los contadores) nunca produce un 304 con datos distintos.</p>
+ */
+@Component
+public class VersionesColecciones {
+
+    private static final int FRANJAS = 1024;
+
+    /** Colecciones versionadas. */
+    public enum Coleccion {
+        SECTORES, ROLES, USUARIOS, ALQUILERES
+    }
+
+    private final String epoca = Long.toString(System.currentTimeMillis(), 36);
+    private final EnumMap<Coleccion, AtomicLong> globales = new EnumMap<>(Coleccion.class);
+    private final EnumMap<Coleccion, AtomicLongArray> franjas = new EnumMap<>(Coleccion.class);
+
+    public VersionesColecciones() {
+        for (Coleccion coleccion : Coleccion.values()) {
+            globales.put(coleccion, new AtomicLong());
+            franjas.put(coleccion, new AtomicLongArray(FRANJAS));
+        }
+    }
+
+    /**
+     * Marca como modificada la colección completa. Debe llamarse después del commit.
+     *
+     * @param coleccion Colección modificada.
+     */
+    public void incrementar(Coleccion coleccion) {
+        globales.get(coleccion).incrementAndGet();
+    }
+
+    /**
+     * Marca como modificada la parte de la colección asociada a una clave (y la colección
+     * completa). Debe llamarse después del commit.
+     *
+     * @param coleccion Colección modificada.
+     * @param clave Clave afectada, por ejemplo el ID del usuario.
+     */
+    public void incrementar(Coleccion coleccion, Long clave) {
+        franjas.get(coleccion).incrementAndGet(franja(clave));
+        globales.get(coleccion).incrementAndGet();
+    }
+
+    /**
+     * @param coleccion Colección consultada.
+     * @param clave Clave dentro de la colección, o null para la colección completa.
+     * @return Versión actual.
+     */
+    public long version(Coleccion coleccion, Long clave) {
+        return clave == null ? globales.get(coleccion).get() : franjas.get(coleccion).get(franja(clave));
+    }
+
+    /**
+     * @param coleccion Colección consultada.
+     * @param clave Clave dentro de la colección, o null para la colección completa.
+     * @return Etiqueta entre comillas para usar como ETag débil.
+     */
+    public String etiqueta(Coleccion coleccion, Long clave) {
+        return "\"" + coleccion.name().toLowerCase(Locale.ROOT) + "-" + epoca + "-" + version(coleccion, clave) + "\"";
+    }
+
+    private static int franja(Long clave) {
+        return (Long.hashCode(clave) * 0x9E3779B9 >>> 22) & (FRANJAS - 1);
+    }
+}
@@ -1,14 +1,19 @@
 package com.example.api_gestion_almacen.controladores;
 
+import com.example.api_gestion_almacen.cache.VersionesColecciones.Coleccion;
 import com.example.api_gestion_almacen.dtos.AlquilerDto;
+import com.example.api_gestion_almacen.dtos.EstadisticasExpiracionDto;
+import com.example.api_gestion_almacen.dtos.IngresosDto;
+import com.example.api_gestion_almacen.dtos.PaginaDto;
 import com.example.api_gestion_almacen.entidades.AlquilerEntidad;
 import com.example.api_gestion_almacen.servicios.AlquilerServicio;
+import com.example.api_gestion_almacen.servicios.ExpiracionAlquileresServicio;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 /**
  * Controlador REST para gestionar las operaciones relacionadas con los alquileres.
@@ -20,6 +25,9 @@ public class AlquilerControlador {
     @Autowired
     private AlquilerServicio alquilerServicio;
 
+    @Autowired
+    private ExpiracionAlquileresServicio expiracionServicio;
+
     /**
      * Crea un nuevo alquiler.
      *
@@ -40,18 +48,51 @@ public class AlquilerControlador {
     }
 
     /**
-     * Lista todos los alquileres de un usuario específico.
+     * Obtiene los alquileres de un usuario paginados por cursor, con filtros opcionales.
      *
      * @param usuarioId ID del usuario cuyos alquileres se desean listar.
-     * @return ResponseEntity que contiene una lista de alquileres en formato DTO.
+     * @param estado Estado de los alquileres (ACTIVO, FINALIZADO o CANCELADO).
+     * @param desde Solo alquileres que terminan después de esta fecha (por ejemplo {@code 2025-01-01}).
+     * @param hasta Solo alquileres que empiezan antes de esta fecha.
+     * @param cursor Cursor devuelto por la página anterior; se omite para la primera página.
+     * @param tamano Número de alquileres por página; se limita al máximo configurado.
+     * @return ResponseEntity con la página de alquileres, o un estado 400 si los parámetros no son válidos.
      */
     @GetMapping("/usuario/{usuarioId}")
-    public ResponseEntity<List<AlquilerDto>> listarPorUsuario(@PathVariable Long usuarioId) {
-        List<AlquilerDto> alquileres = alquilerServicio.listarAlquileresUsuario(usuarioId)
-            .stream()
-            .map(this::convertirADto)
-            .collect(Collectors.toList());
-        return ResponseEntity.ok(alquileres);
+    @VersionadoPor(value = Coleccion.ALQUILERES, clave = "usuarioId")
+    public ResponseEntity<?> listarPorUsuario(@PathVariable Long usuarioId,
+                                              @RequestParam(required = false) String estado,
+                                              @RequestParam(required = false) String desde,
+                                              @RequestParam(required = false) String hasta,
+                                              @RequestParam(required = false) String cursor,
+                                              @RequestParam(required = false) Integer tamano) {
+        try {
+            PaginaDto<AlquilerDto> pagina = alquilerServicio.listarAlquileresUsuario(usuarioId, estado, desde, hasta, cursor, tamano);
+            return ResponseEntity.ok(pagina);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Informe de ingresos de los alquileres, por mes de inicio o por sector. Se calcula a
+     * partir de acumulados en memoria, sin recorrer los alquileres.
+     *
+     * @param desde Primer mes incluido (por ejemplo {@code 2025-01}).
+     * @param hasta Último mes incluido.
+     * @param agrupar {@code mes} (por defecto) o {@code sector}.
+     * @return ResponseEntity con un elemento por grupo, o un estado 400 si los parámetros no son válidos.
+     */
+    @GetMapping("/ingresos")
+    public ResponseEntity<?> ingresos(@RequestParam(required = false) String desde,
+                                      @RequestParam(required = false) String hasta,
+                                      @RequestParam(required = false) String agrupar) {
+        try {
+            List<IngresosDto> informe = alquilerServicio.consultarIngresos(desde, hasta, agrupar);
+            return ResponseEntity.ok(informe);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
 
     /**
@@ -66,6 +107,29 @@ public class AlquilerControlador {
         return ResponseEntity.ok().build();
     }
 
+    /**
+     * Cancela un alquiler específico, por ejemplo una reserva que aún no ha empezado.
+     *
+     * @param id ID del alquiler que se desea cancelar.
+     * @return ResponseEntity con un estado 200 OK si la operación fue exitosa.
+     */
+    @PostMapping("/{id}/cancelar")
+    public ResponseEntity<?> cancelarAlquiler(@PathVariable Long id) {
+        alquilerServicio.cancelarAlquiler(id);
+        return ResponseEntity.ok().build();
+    }
+
+    /**
+     * Métricas de la expiración automática de alquileres: vencimientos pendientes,
+     * retraso entre la fecha de fin y la finalización, y alquileres finalizados por segundo.
+     *
+     * @return ResponseEntity con las estadísticas de expiración.
+     */
+    @GetMapping("/expiracion/estadisticas")
+    public ResponseEntity<EstadisticasExpiracionDto> estadisticasExpiracion() {
+        return ResponseEntity.ok(expiracionServicio.estadisticas());
+    }
+
     /**
      * Convierte una entidad de alquiler a un objeto DTO.
      *
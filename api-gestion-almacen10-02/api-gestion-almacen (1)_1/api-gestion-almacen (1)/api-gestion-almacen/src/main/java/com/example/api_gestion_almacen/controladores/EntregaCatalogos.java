@@ -0,0 +1,76 @@
+package com.example.api_gestion_almacen.controladores;
+
+import java.io.IOException;
+import java.util.Locale;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import com.example.api_gestion_almacen.cache.CatalogosSerializados.CatalogoSerializado;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Envía un {@link CatalogoSerializado} tal cual: la variante gzip con su
+ * {@code Content-Encoding} si el cliente la acepta (el servidor no vuelve a comprimir una
+ * respuesta que ya lo indica) y la variante sin comprimir en otro caso.
+ */
+final class EntregaCatalogos {
+
+    private EntregaCatalogos() {
+    }
+
+    /**
+     * Escribe el catálogo en la respuesta.
+     *
+     * @param catalogo Catálogo a enviar.
+     * @param request Petición HTTP (cabecera {@code Accept-Encoding}).
+     * @param response Respuesta HTTP.
+     * @throws IOException si falla la escritura.
+     */
+    static void enviar(CatalogoSerializado catalogo, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        byte[] contenido = catalogo.identidad();
+        if (catalogo.gzip() != null && aceptaGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+            contenido = catalogo.gzip();
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(contenido.length);
+        response.getOutputStream().write(contenido);
+    }
+
+    /**
+     * @param cabecera Valor de {@code Accept-Encoding}, o null.
+     * @return true si acepta gzip con una calidad distinta de cero, explícitamente o con {@code *}.
+     */
+    static boolean aceptaGzip(String cabecera) {
+        if (cabecera == null) {
+            return false;
+        }
+        Boolean gzip = null;
+        boolean comodin = false;
+        for (String parte : cabecera.split(",")) {
+            String[] elementos = parte.split(";");
+            String codificacion = elementos[0].trim().toLowerCase(Locale.ROOT);
+            boolean aceptada = true;
+            for (int i = 1; i < elementos.length; i++) {
+                String parametro = elementos[i].trim().toLowerCase(Locale.ROOT);
+                if (parametro.startsWith("q=")) {
+                    try {
+                        aceptada = Double.parseDouble(parametro.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        aceptada = false;
+                    }
+                }
+            }
+            if (codificacion.equals("gzip") || codificacion.equals("x-gzip")) {
+                gzip = Boolean.TRUE.equals(gzip) || aceptada;
+            } else if (codificacion.equals("*")) {
+                comodin = aceptada;
+            }
+        }
+        return gzip != null ? gzip : comodin;
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.api_gestion_almacen.controladores;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import org.springframework.http.HttpHeaders;
+
+import com.example.api_gestion_almacen.almacenamiento.FotoAlmacenada;
+import com.example.api_gestion_almacen.almacenamiento.VarianteFoto;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Envía fotos y sus variantes al cliente con soporte de ETag fuerte, If-None-Match y rangos HTTP.
+ * Cuando la foto está en disco y el contenedor lo permite se usa sendfile de Tomcat
+ * (copia cero real del archivo al socket); si no, se usa FileChannel.transferTo.
+ */
+final class EntregaFotos {
+
+    private static final String SENDFILE_SOPORTADO = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_ARCHIVO = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_INICIO = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_FIN = "org.apache.tomcat.sendfile.end";
+
+    private EntregaFotos() {
+    }
+
+    /**
+     * Escribe la foto en la respuesta, completa o el rango solicitado.
+     *
+     * @param foto Foto a enviar.
+     * @param request Petición HTTP (cabeceras condicionales y de rango).
+     * @param response Respuesta HTTP.
+     * @throws IOException si falla la lectura o la escritura.
+     */
+    static void enviar(FotoAlmacenada foto, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long[] rango = prepararRespuesta(foto.hash(), foto.tamano(), foto.tipoContenido(), request, response);
+        if (rango == null) {
+            return;
+        }
+        long inicio = rango[0];
+        long fin = rango[1];
+
+        Optional<Path> ruta = foto.rutaLocal();
+        if (ruta.isPresent() && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SOPORTADO))) {
+            request.setAttribute(SENDFILE_ARCHIVO, ruta.get().toString());
+            request.setAttribute(SENDFILE_INICIO, inicio);
+            request.setAttribute(SENDFILE_FIN, fin + 1);
+            return;
+        }
+
+        try (SeekableByteChannel canal = foto.abrir()) {
+            OutputStream salida = response.getOutputStream();
+            copiar(canal, inicio, fin - inicio + 1, Channels.newChannel(salida));
+            salida.flush();
+        }
+    }
+
+    /**
+     * Escribe una variante en memoria de la foto, completa o el rango solicitado.
+     *
+     * @param variante Variante a enviar.
+     * @param request Petición HTTP (cabeceras condicionales y de rango).
+     * @param response Respuesta HTTP.
+     * @throws IOException si falla la escritura.
+     */
+    static void enviar(VarianteFoto variante, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        byte[] contenido = variante.contenido();
+        long[] rango = prepararRespuesta(variante.etiqueta(), contenido.length, variante.tipoContenido(), request, response);
+        if (rango == null) {
+            return;
+        }
+        response.getOutputStream().write(contenido, (int) rango[0], (int) (rango[1] - rango[0] + 1));
+    }
+
+    /**
+     * Resuelve las cabeceras condicionales y de rango y escribe las cabeceras de la respuesta.
+     *
+     * @return {inicio, fin} de los bytes que hay que enviar, o null si la respuesta
+     *         ya está completa (304, 416, HEAD o contenido vacío).
+     */
+    private static long[] prepararRespuesta(String etiqueta, long tamano, String tipoContenido,
+                                            HttpServletRequest request, HttpServletResponse response) {
+        String etag = "\"" + etiqueta + "\"";
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        // La URL de la foto no cambia al sustituirla: el cliente debe revalidar con el ETag
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+
+        if (coincideEtag(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return null;
+        }
+
+        long inicio = 0;
+        long fin = tamano - 1;
+        String rango = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (rango != null && (ifRange == null || ifRange.trim().equals(etag))) {
+            long[] limites = interpretarRango(rango, tamano);
+            if (limites == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + tamano);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return null;
+            }
+            if (limites.length == 2) {
+                inicio = limites[0];
+                fin = limites[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + inicio + "-" + fin + "/" + tamano);
+            }
+        }
+
+        long longitud = fin - inicio + 1;
+        response.setContentType(tipoContenido);
+        response.setContentLengthLong(longitud);
+        if ("HEAD".equals(request.getMethod()) || longitud <= 0) {
+            return null;
+        }
+        return new long[] {inicio, fin};
+    }
+
+    private static void copiar(SeekableByteChannel canal, long inicio, long longitud, WritableByteChannel destino)
+            throws IOException {
+        if (canal instanceof FileChannel archivo) {
+            long posicion = inicio;
+            long restante = longitud;
+            while (restante > 0) {
+                long enviados = archivo.transferTo(posicion, restante, destino);
+                if (enviados <= 0) {
+                    break;
+                }
+                posicion += enviados;
+                restante -= enviados;
+            }
+            return;
+        }
+        canal.position(inicio);
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long restante = longitud;
+        while (restante > 0) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), restante));
+            int leidos = canal.read(buffer);
+            if (leidos < 0) {
+                break;
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                destino.write(buffer);
+            }
+            restante -= leidos;
+        }
+    }
+
+    /**
+     * Comprueba si alguna de las etiquetas de If-None-Match coincide con el ETag.
+     */
+    static boolean coincideEtag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidata : ifNoneMatch.split(",")) {
+            String valor = candidata.trim();
+            if (valor.equals("*") || valor.equals(etag) || valor.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Interpreta una cabecera Range de un único rango de bytes. Una cabecera mal formada
+     * (límites no numéricos, con signo o invertidos) se ignora, como pide RFC 9110.
+     *
+     * @return {inicio, fin} del rango; un arreglo vacío si la cabecera no es aplicable
+     *         (se envía la foto completa); o null si el rango no es satisfacible.
+     */
+    static long[] interpretarRango(String cabecera, long tamano) {
+        if (!cabecera.startsWith("bytes=") || cabecera.indexOf(',') >= 0) {
+            return new long[0]; // Unidades desconocidas o rangos múltiples: respuesta completa
+        }
+        String especificacion = cabecera.substring("bytes=".length()).trim();
+        int guion = especificacion.indexOf('-');
+        if (guion < 0) {
+            return new long[0];
+        }
+        String desde = especificacion.substring(0, guion).trim();
+        String hasta = especificacion.substring(guion + 1).trim();
+        if (!desde.chars().allMatch(Character::isDigit) || !hasta.chars().allMatch(Character::isDigit)
+                || desde.isEmpty() && hasta.isEmpty()) {
+            return new long[0];
+        }
+        try {
+            long inicio;
+            long fin;
+            if (desde.isEmpty()) {
+                // Sufijo: los últimos N bytes
+                long sufijo = Long.parseLong(hasta);
+                if (sufijo == 0) {
+                    return null;
+                }
+                inicio = Math.max(0, tamano - sufijo);
+                fin = tamano - 1;
+            } else {
+                inicio = Long.parseLong(desde);
+                if (!hasta.isEmpty() && Long.parseLong(hasta) < inicio) {
+                    return new long[0];
+                }
+                fin = hasta.isEmpty() ? tamano - 1 : Math.min(Long.parseLong(hasta), tamano - 1);
+            }
+            if (inicio >= tamano) {
+                return null;
+            }
+            return new long[] {inicio, fin};
+        } catch (NumberFormatException e) {
+            return new long[0]; // Límite mayor que Long.MAX_VALUE
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.api_gestion_almacen.controladores;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import com.example.api_gestion_almacen.cache.VersionesColecciones;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * GET condicionales para los métodos anotados con {@link VersionadoPor}.
+ *
+ * <p>La versión se lee antes de ejecutar el controlador: si una escritura se confirma
+ * mientras tanto, la respuesta puede llevar datos más nuevos que su ETag, lo que solo
+ * provoca una descarga de más en la siguiente petición, nunca un 304 con datos viejos.</p>
+ */
+@Component
+public class InterceptorVersiones implements HandlerInterceptor {
+
+    @Autowired
+    private VersionesColecciones versiones;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod metodo)
+                || !("GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod()))) {
+            return true;
+        }
+        VersionadoPor versionado = metodo.getMethodAnnotation(VersionadoPor.class);
+        if (versionado == null) {
+            return true;
+        }
+        Long clave = null;
+        if (!versionado.clave().isEmpty()) {
+            clave = claveDeRuta(request, versionado.clave());
+            if (clave == null) {
+                return true; // Ruta no válida: que responda el controlador
+            }
+        }
+
+        String etiqueta = versiones.etiqueta(versionado.value(), clave);
+        // Débil: la compresión gzip cambia los bytes pero no el contenido
+        response.setHeader(HttpHeaders.ETAG, "W/" + etiqueta);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        if (EntregaFotos.coincideEtag(request.getHeader(HttpHeaders.IF_NONE_MATCH), etiqueta)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return false;
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Long claveDeRuta(HttpServletRequest request, String variable) {
+        Map<String, String> variables = (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        String valor = variables != null ? variables.get(variable) : null;
+        if (valor == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(valor);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -1,6 +1,6 @@
 package com.example.api_gestion_almacen.controladores;
 
-import java.util.List;
+import java.io.IOException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -14,9 +14,14 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.example.api_gestion_almacen.cache.CatalogosSerializados.CatalogoSerializado;
+import com.example.api_gestion_almacen.cache.VersionesColecciones.Coleccion;
 import com.example.api_gestion_almacen.dtos.RolDto; 
 import com.example.api_gestion_almacen.servicios.RolServicio; 
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
 /**
  * Controlador REST para gestionar operaciones relacionadas con roles.
  * Proporciona endpoints para crear, obtener, actualizar y eliminar roles
@@ -61,6 +66,7 @@ public class RolControlador {
      * @return El rol correspondiente al ID proporcionado.
      */
     @GetMapping(path = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @VersionadoPor(Coleccion.ROLES)
     public ResponseEntity<?> obtenerRolPorId(@PathVariable Long id) { 
         try {
             logger.info("Buscando rol con ID: {}", id);
@@ -83,19 +89,17 @@ public class RolControlador {
      * Obtiene todos los roles.
      * @author andres
      *
-     * @return Una lista de todos los roles disponibles.
+     * @param request Petición HTTP.
+     * @param response Respuesta HTTP, donde se escribe el listado ya serializado (y comprimido si el cliente lo acepta).
+     * @throws IOException si falla la escritura de la respuesta.
      */
     @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<?> obtenerTodosLosRoles() { 
-        try {
-            logger.info("Obteniendo lista de todos los roles");
-            List<RolDto> roles = rolServicio.obtenerTodosLosRoles();
-            logger.info("Total de roles encontrados: {}", roles.size());
-            return ResponseEntity.ok(roles);
-        } catch (Exception e) {
-            logger.error("Error al obtener roles: {}", e.getMessage(), e);
-            return ResponseEntity.badRequest().body("Error al obtener roles: " + e.getMessage());
-        }
+    @VersionadoPor(Coleccion.ROLES)
+    public void obtenerTodosLosRoles(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        logger.info("Obteniendo lista de todos los roles");
+        CatalogoSerializado roles = rolServicio.catalogoRoles();
+        logger.info("Total de roles encontrados: {}", roles.elementos());
+        EntregaCatalogos.enviar(roles, request, response);
     }
 
     /**
@@ -1,16 +1,32 @@
 package com.example.api_gestion_almacen.controladores;
 
+import com.example.api_gestion_almacen.busqueda.IndiceSectores;
+import com.example.api_gestion_almacen.cache.VersionesColecciones.Coleccion;
+import com.example.api_gestion_almacen.dtos.BusquedaSectoresDto;
+import com.example.api_gestion_almacen.dtos.CambioEstadoSectoresDto;
+import com.example.api_gestion_almacen.dtos.OcupacionDto;
+import com.example.api_gestion_almacen.dtos.ResultadoEstadoSectorDto;
 import com.example.api_gestion_almacen.dtos.SectorDto;
 import com.example.api_gestion_almacen.entidades.SectorEntidad;
+import com.example.api_gestion_almacen.eventos.DifusorEventosSector;
 import com.example.api_gestion_almacen.servicios.SectorServicio;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.math.BigDecimal;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 /**
  * Controlador REST para gestionar las operaciones relacionadas con los sectores.
@@ -23,32 +39,152 @@ public class SectorControlador {
     @Autowired
     private SectorServicio sectorServicio;
 
+    @Autowired
+    private DifusorEventosSector difusorEventos;
+
     /**
-     * Lista todos los sectores disponibles.
+     * Lista todos los sectores. El JSON se envía ya serializado (y comprimido si el
+     * cliente lo acepta) y solo se regenera cuando cambia algún sector.
      *
-     * @return ResponseEntity que contiene una lista de sectores en formato DTO.
+     * @param request Petición HTTP.
+     * @param response Respuesta HTTP donde se escribe la lista de sectores.
+     * @throws IOException si falla la escritura de la respuesta.
      */
-    @GetMapping
-    public ResponseEntity<List<SectorDto>> listarTodos() {
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    @VersionadoPor(Coleccion.SECTORES)
+    public void listarTodos(HttpServletRequest request, HttpServletResponse response) throws IOException {
         LOGGER.debug("Listando todos los sectores");
-        List<SectorDto> sectores = sectorServicio.listarTodos().stream()
-            .map(this::convertirADto)
-            .collect(Collectors.toList());
-        return ResponseEntity.ok(sectores);
+        EntregaCatalogos.enviar(sectorServicio.catalogoSectores(), request, response);
     }
 
     /**
-     * Lista todos los sectores que están disponibles.
+     * Lista todos los sectores que están disponibles, ya serializados como {@link #listarTodos}.
      *
-     * @return ResponseEntity que contiene una lista de sectores disponibles en formato DTO.
+     * @param request Petición HTTP.
+     * @param response Respuesta HTTP donde se escribe la lista de sectores disponibles.
+     * @throws IOException si falla la escritura de la respuesta.
      */
-    @GetMapping("/disponibles")
-    public ResponseEntity<List<SectorDto>> listarDisponibles() {
+    @GetMapping(path = "/disponibles", produces = MediaType.APPLICATION_JSON_VALUE)
+    @VersionadoPor(Coleccion.SECTORES)
+    public void listarDisponibles(HttpServletRequest request, HttpServletResponse response) throws IOException {
         LOGGER.debug("Listando sectores disponibles");
-        List<SectorDto> sectores = sectorServicio.listarDisponibles().stream()
-            .map(this::convertirADto)
-            .collect(Collectors.toList());
-        return ResponseEntity.ok(sectores);
+        EntregaCatalogos.enviar(sectorServicio.catalogoDisponibles(), request, response);
+    }
+
+    /**
+     * Lista los sectores libres durante todo un intervalo, para reservar con antelación.
+     * No lleva ETag: el resultado depende también de los alquileres.
+     *
+     * @param desde Inicio del intervalo (por ejemplo {@code 2025-03-01} o {@code 2025-03-01T08:00:00}).
+     * @param hasta Fin del intervalo, excluido.
+     * @return ResponseEntity con los sectores libres, o un estado 400 si las fechas no son válidas.
+     */
+    @GetMapping(path = "/disponibles", params = {"desde", "hasta"})
+    public ResponseEntity<?> listarDisponiblesEntre(@RequestParam String desde, @RequestParam String hasta) {
+        LOGGER.debug("Listando sectores disponibles entre {} y {}", desde, hasta);
+        try {
+            List<SectorDto> sectores = sectorServicio.listarDisponiblesEntre(desde, hasta);
+            return ResponseEntity.ok(sectores);
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Intervalo de disponibilidad no válido: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Flujo Server-Sent Events con los cambios de estado de los sectores, como alternativa
+     * a consultar periódicamente el listado. Cada evento {@code estado} lleva como ID su
+     * secuencia; al reconectar, el navegador la reenvía en {@code Last-Event-ID} y se
+     * reciben los eventos perdidos. Si ya no se conservan, llega un evento
+     * {@code resincronizar} y el cliente debe recargar el listado.
+     *
+     * @param ultimoId Último evento recibido antes de reconectar.
+     * @return El emisor SSE, o 503 si ya hay demasiados clientes conectados.
+     */
+    @GetMapping(path = "/eventos", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> eventos(@RequestHeader(value = "Last-Event-ID", required = false) Long ultimoId) {
+        LOGGER.debug("Nueva suscripción a eventos de sectores (Last-Event-ID: {})", ultimoId);
+        try {
+            return ResponseEntity.ok(difusorEventos.suscribir(ultimoId));
+        } catch (IllegalStateException e) {
+            // Sin cuerpo: la respuesta es text/event-stream. EventSource no reintenta tras un 503
+            LOGGER.warn("Suscripción a eventos de sectores rechazada: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "60").build();
+        }
+    }
+
+    /**
+     * Busca sectores por superficie mínima, precio máximo, estado y características, sin
+     * consultar la base de datos. La respuesta incluye, para cada término de
+     * características, cuántos sectores del resultado lo tienen.
+     *
+     * @param minM2 Superficie mínima en m².
+     * @param maxPrecio Precio mensual máximo.
+     * @param estado Estado de los sectores.
+     * @param caracteristica Características buscadas, por ejemplo {@code refrigerado} o {@code acceso camión}
+     *                       (se puede repetir el parámetro o separarlas por comas).
+     * @param modo {@code todas} (por defecto) o {@code alguna}.
+     * @param orden Orden de los resultados: id, m2, -m2, precio o -precio.
+     * @param cursor Cursor devuelto por la página anterior; se omite para la primera página.
+     * @param tamano Número de resultados por página.
+     * @return ResponseEntity con la página de sectores, o un estado 400 si los parámetros no son válidos.
+     */
+    @GetMapping("/buscar")
+    @VersionadoPor(Coleccion.SECTORES)
+    public ResponseEntity<?> buscar(@RequestParam(required = false) Integer minM2,
+                                    @RequestParam(required = false) BigDecimal maxPrecio,
+                                    @RequestParam(required = false) SectorEntidad.EstadoSector estado,
+                                    @RequestParam(required = false) List<String> caracteristica,
+                                    @RequestParam(required = false) String modo,
+                                    @RequestParam(required = false) String orden,
+                                    @RequestParam(required = false) String cursor,
+                                    @RequestParam(required = false) Integer tamano) {
+        LOGGER.debug("Buscando sectores: minM2={}, maxPrecio={}, estado={}, caracteristicas={} ({}), orden={}",
+            minM2, maxPrecio, estado, caracteristica, modo, orden);
+        try {
+            BusquedaSectoresDto pagina = sectorServicio.buscarSectores(minM2, maxPrecio, estado, caracteristica, modo,
+                orden, cursor, tamano);
+            return ResponseEntity.ok(pagina);
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Parámetros de búsqueda de sectores no válidos: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Lista los términos de características de los sectores con el número de sectores que
+     * tiene cada uno, para construir los filtros de {@code /buscar}.
+     *
+     * @return ResponseEntity con el número de sectores por término.
+     */
+    @GetMapping("/caracteristicas")
+    @VersionadoPor(Coleccion.SECTORES)
+    public ResponseEntity<Map<String, Integer>> listarCaracteristicas() {
+        LOGGER.debug("Listando características de sectores");
+        return ResponseEntity.ok(sectorServicio.listarCaracteristicas());
+    }
+
+    /**
+     * Histórico de ocupación: número medio de sectores y de metros cuadrados en cada
+     * estado, por intervalos de {@code paso} entre {@code desde} y {@code hasta}.
+     *
+     * @param desde Inicio del periodo (por ejemplo {@code 2025-01-01} o {@code 2025-01-01T08:00:00Z}).
+     * @param hasta Fin del periodo, excluido.
+     * @param paso Duración de cada intervalo, como mínimo un minuto (por ejemplo {@code 15m}, {@code 1h}, {@code 1d}).
+     * @return ResponseEntity con un elemento por intervalo, o un estado 400 si los parámetros no son válidos.
+     */
+    @GetMapping("/ocupacion")
+    public ResponseEntity<?> ocupacion(@RequestParam(required = false) String desde,
+                                       @RequestParam(required = false) String hasta,
+                                       @RequestParam(required = false) String paso) {
+        LOGGER.debug("Consultando ocupación: desde={}, hasta={}, paso={}", desde, hasta, paso);
+        try {
+            List<OcupacionDto> ocupacion = sectorServicio.consultarOcupacion(desde, hasta, paso);
+            return ResponseEntity.ok(ocupacion);
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Parámetros de ocupación no válidos: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
 
     /**
@@ -58,10 +194,11 @@ public class SectorControlador {
      * @return ResponseEntity que contiene el sector en formato DTO, o un estado 404 si no se encuentra.
      */
     @GetMapping("/{id}")
+    @VersionadoPor(Coleccion.SECTORES)
     public ResponseEntity<SectorDto> obtenerPorId(@PathVariable Long id) {
         LOGGER.debug("Buscando sector por ID: {}", id);
-        return sectorServicio.buscarPorId(id)
-            .map(sector -> ResponseEntity.ok(convertirADto(sector)))
+        return sectorServicio.obtenerPorId(id)
+            .map(ResponseEntity::ok)
             .orElse(ResponseEntity.notFound().build());
     }
 
@@ -72,10 +209,11 @@ public class SectorControlador {
      * @return ResponseEntity que contiene el sector en formato DTO, o un estado 404 si no se encuentra.
      */
     @GetMapping("/nombre/{nombre}")
+    @VersionadoPor(Coleccion.SECTORES)
     public ResponseEntity<SectorDto> obtenerPorNombre(@PathVariable String nombre) {
         LOGGER.debug("Buscando sector por nombre: {}", nombre);
         return sectorServicio.buscarPorNombre(nombre)
-            .map(sector -> ResponseEntity.ok(convertirADto(sector)))
+            .map(ResponseEntity::ok)
             .orElse(ResponseEntity.notFound().build());
     }
 
@@ -100,6 +238,26 @@ public class SectorControlador {
         }
     }
 
+    /**
+     * Cambia el estado de varios sectores en una sola operación (por ejemplo, un pasillo
+     * entero a mantenimiento). Los sectores con algún alquiler activo no se modifican.
+     *
+     * @param cambio IDs y/o filtro de los sectores y estado destino.
+     * @return ResponseEntity con el resultado de cada sector, o un estado 400 si la petición no es válida.
+     */
+    @PutMapping("/estado")
+    public ResponseEntity<?> actualizarEstados(@RequestBody CambioEstadoSectoresDto cambio) {
+        LOGGER.debug("Cambio de estado masivo a {}", cambio.getEstado());
+        try {
+            List<ResultadoEstadoSectorDto> resultados = sectorServicio.actualizarEstados(cambio.getIds(),
+                cambio.getPrefijoNombre(), cambio.getEstadoActual(), cambio.getEstado());
+            return ResponseEntity.ok(resultados);
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Cambio de estado masivo no válido: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     /**
      * Convierte una entidad de sector a un objeto DTO.
      *
@@ -107,13 +265,6 @@ public class SectorControlador {
      * @return Objeto DTO que representa el sector.
      */
     private SectorDto convertirADto(SectorEntidad sector) {
-        SectorDto dto = new SectorDto();
-        dto.setId(sector.getId());
-        dto.setNombre(sector.getNombre());
-        dto.setMetrosCuadrados(sector.getMetrosCuadrados());
-        dto.setPrecioMensual(sector.getPrecioMensual());
-        dto.setCaracteristicas(sector.getCaracteristicas());
-        dto.setEstado(sector.getEstado().name());
-        return dto;
+        return IndiceSectores.aDto(sector);
     }
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package com.example.api_gestion_almacen.controladores;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -7,22 +9,40 @@ import java.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.example.api_gestion_almacen.almacenamiento.FotoAlmacenada;
+import com.example.api_gestion_almacen.almacenamiento.VarianteFoto;
+import com.example.api_gestion_almacen.cache.VersionesColecciones.Coleccion;
 import com.example.api_gestion_almacen.dtos.CrearUsuDto;
+import com.example.api_gestion_almacen.dtos.PaginaDto;
+import com.example.api_gestion_almacen.dtos.ResultadoImportacionDto;
+import com.example.api_gestion_almacen.dtos.UsuarioBusquedaDto;
 import com.example.api_gestion_almacen.dtos.UsuarioDto;
 import com.example.api_gestion_almacen.entidades.UsuarioEntidad;
+import com.example.api_gestion_almacen.seguridad.SesionUsuario;
+import com.example.api_gestion_almacen.seguridad.TokenSesion;
+import com.example.api_gestion_almacen.servicios.ImportacionUsuariosServicio;
 import com.example.api_gestion_almacen.servicios.UsuarioServicio;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 
 /**
  * Controlador REST para gestionar operaciones relacionadas con usuarios.
@@ -38,6 +58,18 @@ public class UsuarioControlador {
     @Autowired
     private UsuarioServicio usuarioServicio; // Servicio para manejar la lógica de negocio relacionada con usuarios
 
+    @Autowired
+    private TokenSesion tokenSesion; // Emisión de tokens de sesión al autenticar
+
+    @Autowired
+    private ImportacionUsuariosServicio importacionUsuariosServicio; // Altas masivas por lotes
+
+    @Autowired
+    private ObjectMapper objectMapper; // Serialización línea a línea de los resultados de importación
+
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String MERGE_PATCH = "application/merge-patch+json";
+
     /**
      * Crea un nuevo usuario.
      * @author andres
@@ -66,6 +98,42 @@ public class UsuarioControlador {
         }
     }
 
+    /**
+     * Importa usuarios en bloque desde NDJSON (un usuario por línea, mismo formato que el alta)
+     * o CSV con cabecera. La respuesta es NDJSON: una línea por fila con su resultado, que se
+     * envía al terminar cada bloque, y una última línea con el resumen.
+     * @author andres
+     *
+     * @param request Petición con el fichero en el cuerpo.
+     * @param response Respuesta en la que se escriben los resultados.
+     * @throws IOException si falla la lectura de la entrada o la escritura de la respuesta.
+     */
+    @PostMapping(path = "/importar", consumes = {NDJSON, "text/csv"})
+    public void importarUsuarios(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        boolean csv = MediaType.parseMediaType(request.getContentType()).isCompatibleWith(MediaType.parseMediaType("text/csv"));
+        logger.info("Iniciando importación de usuarios ({})", csv ? "CSV" : "NDJSON");
+
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding("UTF-8");
+        OutputStream salida = response.getOutputStream();
+        Map<String, Long> resumen = importacionUsuariosServicio.importar(request.getInputStream(), csv,
+            (List<ResultadoImportacionDto> resultados) -> {
+                try {
+                    for (ResultadoImportacionDto resultado : resultados) {
+                        salida.write(objectMapper.writeValueAsBytes(resultado));
+                        salida.write('\n');
+                    }
+                    salida.flush(); // El cliente ve el progreso bloque a bloque
+                } catch (IOException e) {
+                    throw new RuntimeException("Error al escribir la respuesta de importación: " + e.getMessage(), e);
+                }
+            });
+        salida.write(objectMapper.writeValueAsBytes(Map.of("resumen", resumen)));
+        salida.write('\n');
+        salida.flush();
+        logger.info("Importación de usuarios terminada: {}", resumen);
+    }
+
     /**
      * Obtiene un usuario por su ID.
      * @author andres
@@ -74,27 +142,92 @@ public class UsuarioControlador {
      * @return El usuario correspondiente al ID proporcionado.
      */
     @GetMapping(path = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @VersionadoPor(Coleccion.USUARIOS)
     public UsuarioDto obtenerUsuarioPorId(@PathVariable Long id) { 
         logger.info("Obteniendo usuario con ID: {}", id);
         return usuarioServicio.obtenerUsuarioPorId(id); 
     }
 
     /**
-     * Obtiene todos los usuarios.
+     * Descarga la foto de un usuario, o una miniatura si se indica el tamaño.
+     * Admite ETag fuerte (hash del contenido), If-None-Match y peticiones de rango.
+     * @author andres
+     *
+     * @param id El ID del usuario.
+     * @param size Lado en píxeles de la miniatura deseada; si se omite se envía la foto original.
+     * @param request Petición HTTP.
+     * @param response Respuesta HTTP en la que se escribe la imagen.
+     * @throws IOException si falla la lectura del almacén o la escritura de la respuesta.
+     */
+    @GetMapping("/{id}/foto")
+    public void obtenerFoto(@PathVariable Long id, @RequestParam(required = false) Integer size,
+                            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (size != null && size > 0) {
+            Optional<VarianteFoto> variante = usuarioServicio.obtenerVarianteFoto(id, size);
+            if (variante.isPresent()) {
+                EntregaFotos.enviar(variante.get(), request, response);
+                return;
+            }
+            // Sin variante disponible para ese tamaño: se envía la foto original
+        }
+        Optional<FotoAlmacenada> foto = usuarioServicio.obtenerFoto(id);
+        if (foto.isEmpty()) {
+            logger.debug("El usuario {} no tiene foto", id);
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        EntregaFotos.enviar(foto.get(), request, response);
+    }
+
+    /**
+     * Obtiene los usuarios paginados por cursor.
      * @author andres
      *
-     * @return Una lista de todos los usuarios disponibles.
+     * @param cursor Cursor devuelto por la página anterior; se omite para la primera página.
+     * @param tamano Número de usuarios por página; se limita al máximo configurado.
+     * @return La página de usuarios junto con el cursor de la página siguiente.
      */
     @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
-    public List<UsuarioDto> obtenerTodosLosUsuarios() { 
-        logger.info("Obteniendo lista de todos los usuarios");
-        List<UsuarioDto> usuarios = usuarioServicio.obtenerTodosLosUsuarios();
-        logger.info("Total de usuarios encontrados: {}", usuarios.size());
-        return usuarios;
+    @VersionadoPor(Coleccion.USUARIOS)
+    public ResponseEntity<?> obtenerTodosLosUsuarios(@RequestParam(required = false) String cursor,
+                                                     @RequestParam(required = false) Integer tamano) {
+        try {
+            logger.info("Obteniendo página de usuarios");
+            PaginaDto<UsuarioDto> pagina = usuarioServicio.listarUsuarios(cursor, tamano);
+            logger.info("Usuarios devueltos en la página: {}", pagina.getElementos().size());
+            return ResponseEntity.ok(pagina);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Parámetros de paginación no válidos: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
 
  
 
+    /**
+     * Busca usuarios por parte del nombre o del correo electrónico.
+     * @author andres
+     *
+     * @param q Texto buscado; todos sus términos deben aparecer en el nombre o el correo.
+     * @param cursor Cursor devuelto por la página anterior; se omite para la primera página.
+     * @param tamano Número de resultados por página.
+     * @return Los usuarios ordenados por relevancia junto con el cursor de la página siguiente.
+     */
+    @GetMapping(path = "/buscar", produces = MediaType.APPLICATION_JSON_VALUE)
+    @VersionadoPor(Coleccion.USUARIOS)
+    public ResponseEntity<?> buscarUsuarios(@RequestParam String q,
+                                            @RequestParam(required = false) String cursor,
+                                            @RequestParam(required = false) Integer tamano) {
+        try {
+            logger.debug("Buscando usuarios: {}", q);
+            PaginaDto<UsuarioBusquedaDto> pagina = usuarioServicio.buscarUsuarios(q, cursor, tamano);
+            return ResponseEntity.ok(pagina);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Parámetros de búsqueda no válidos: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     /**
      * Actualiza un usuario existente.
      * @author andres
@@ -120,6 +253,41 @@ public class UsuarioControlador {
         }
     }
 
+    /**
+     * Modifica parcialmente un usuario (JSON Merge Patch): solo cambian los campos enviados
+     * y {@code null} borra el valor. El UPDATE solo incluye las columnas modificadas.
+     * @author andres
+     *
+     * @param id El ID del usuario a modificar.
+     * @param parche Objeto JSON con los campos a modificar.
+     * @return El usuario modificado.
+     */
+    @PatchMapping(path = "/{id}", consumes = {MERGE_PATCH, MediaType.APPLICATION_JSON_VALUE}, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> modificarUsuario(@PathVariable Long id, @RequestBody JsonNode parche) {
+        try {
+            logger.info("Iniciando modificación parcial de usuario con ID: {}", id);
+            UsuarioDto usuario = usuarioServicio.modificarUsuario(id, parche);
+            logger.info("Usuario modificado exitosamente. ID: {}", id);
+            return ResponseEntity.ok(usuario);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Parche no válido para el usuario {}: {}", id, e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            logger.error("Error al modificar usuario {}: {}", id, e.getMessage());
+            if ("Usuario no encontrado".equals(e.getMessage())) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+            }
+            if ("El rol especificado no existe".equals(e.getMessage())) {
+                return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+            }
+            if (e.getMessage() != null && e.getMessage().contains("correo electrónico ya está registrado")) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+            }
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", "Error al modificar usuario: " + e.getMessage()));
+        }
+    }
+
     /**
      * Elimina un usuario por su ID.
      * @author andres
@@ -145,7 +313,8 @@ public class UsuarioControlador {
      * @author andres
      *
      * @param credenciales Un mapa que contiene el correo electrónico y la contraseña del usuario.
-     * @return El usuario autenticado si las credenciales son válidas.
+     * @return El usuario autenticado si las credenciales son válidas, con el token de sesión
+     *         firmado en la cabecera {@code Authorization}.
      */
     @PostMapping(path = "/autenticar", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<Object> autenticarUsuario(@RequestBody Map<String, String> credenciales) {
@@ -163,7 +332,10 @@ public class UsuarioControlador {
             
             UsuarioDto usuarioAutenticado = usuarioServicio.autenticarUsuario(correoElectronico, contrasena);
             logger.info("Autenticación exitosa para: {}", correoElectronico);
-            return ResponseEntity.ok(usuarioAutenticado);
+            String token = tokenSesion.emitir(usuarioAutenticado.getId(), usuarioAutenticado.getRolId());
+            return ResponseEntity.ok()
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .body(usuarioAutenticado);
         } catch (RuntimeException e) {
             logger.error("Error de autenticación: {}", e.getMessage());
             return ResponseEntity.status(401)
@@ -175,6 +347,44 @@ public class UsuarioControlador {
         }
     }
 
+    /**
+     * Devuelve la identidad del usuario a partir de su token de sesión, sin consultar la base de datos.
+     * @author andres
+     *
+     * @param sesion Sesión validada por el filtro de tokens, si la petición traía un token válido.
+     * @return El ID de usuario, el rol y la caducidad del token, o 401 si no hay sesión.
+     */
+    @GetMapping(path = "/sesion", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> obtenerSesion(@RequestAttribute(name = SesionUsuario.ATRIBUTO, required = false) SesionUsuario sesion) {
+        if (sesion == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                .body(Map.of("error", "Se requiere un token de sesión"));
+        }
+        return ResponseEntity.ok(sesion);
+    }
+
+    /**
+     * Devuelve las estadísticas de la caché de usuarios.
+     * @author andres
+     *
+     * @return Aciertos, fallos, expulsiones y número de entradas por índice.
+     */
+    @GetMapping(path = "/cache/estadisticas", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Object> estadisticasCache() {
+        return usuarioServicio.estadisticasCache();
+    }
+
+    /**
+     * Devuelve las estadísticas del filtro de Bloom de correos registrados.
+     * @author andres
+     *
+     * @return Consultas evitadas, falsos positivos observados y tasa estimada.
+     */
+    @GetMapping(path = "/cache/filtro-correos", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Object> estadisticasFiltroCorreos() {
+        return usuarioServicio.estadisticasFiltroCorreos();
+    }
+
     /**
      * Confirma el correo electrónico de un usuario.
      * @author andres
@@ -237,6 +447,7 @@ public class UsuarioControlador {
      * @return El usuario correspondiente al correo proporcionado
      */
     @GetMapping(path = "/correo/{email}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @VersionadoPor(Coleccion.USUARIOS)
     public ResponseEntity<?> buscarPorCorreo(@PathVariable String email) {
         try {
             logger.info("Buscando usuario por correo: {}", email);
@@ -0,0 +1,29 @@
+package com.example.api_gestion_almacen.controladores;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import com.example.api_gestion_almacen.cache.VersionesColecciones.Coleccion;
+
+/**
+ * Indica que la respuesta de un GET depende solo de una colección versionada.
+ * {@link InterceptorVersiones} añade el ETag correspondiente y responde 304 antes de
+ * invocar el método si el cliente ya tiene esa versión.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface VersionadoPor {
+
+    /**
+     * @return Colección de la que depende la respuesta.
+     */
+    Coleccion value();
+
+    /**
+     * @return Variable de la ruta con la clave dentro de la colección (por ejemplo,
+     *         {@code usuarioId}); vacío si la respuesta depende de la colección completa.
+     */
+    String clave() default "";
+}
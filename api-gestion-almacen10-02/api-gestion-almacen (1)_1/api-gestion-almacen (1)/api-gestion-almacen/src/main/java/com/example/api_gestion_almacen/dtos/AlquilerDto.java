@@ -1,5 +1,7 @@
 package com.example.api_gestion_almacen.dtos;
 
+import com.example.api_gestion_almacen.entidades.AlquilerEntidad;
+
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
@@ -14,6 +16,27 @@ public class AlquilerDto {
     private String ordenId;
     private String estado;
 
+    public AlquilerDto() {
+    }
+
+    /**
+     * Constructor usado por las consultas de proyección del repositorio, que leen el
+     * nombre del sector en la misma consulta en lugar de cargar la entidad.
+     */
+    public AlquilerDto(Long id, Long sectorId, String sectorNombre, Long usuarioId, LocalDateTime fechaInicio,
+                       LocalDateTime fechaFin, BigDecimal montoPagado, String ordenId,
+                       AlquilerEntidad.EstadoAlquiler estado) {
+        this.id = id;
+        this.sectorId = sectorId;
+        this.sectorNombre = sectorNombre;
+        this.usuarioId = usuarioId;
+        this.fechaInicio = fechaInicio;
+        this.fechaFin = fechaFin;
+        this.montoPagado = montoPagado;
+        this.ordenId = ordenId;
+        this.estado = estado != null ? estado.name() : null;
+    }
+
     // Getters y Setters
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
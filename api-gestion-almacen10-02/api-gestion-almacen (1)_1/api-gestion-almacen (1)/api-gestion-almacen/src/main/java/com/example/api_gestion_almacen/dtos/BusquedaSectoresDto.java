@@ -0,0 +1,25 @@
+package com.example.api_gestion_almacen.dtos;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Página de una búsqueda de sectores junto con las facetas de características:
+ * cuántos sectores de todo el resultado (no solo de la página) tienen cada término.
+ */
+public class BusquedaSectoresDto extends PaginaDto<SectorDto> {
+
+    private Map<String, Integer> facetas;
+
+    public BusquedaSectoresDto() {
+    }
+
+    public BusquedaSectoresDto(List<SectorDto> elementos, String siguienteCursor, Map<String, Integer> facetas) {
+        super(elementos, siguienteCursor);
+        this.facetas = facetas;
+    }
+
+    // Getters y Setters
+    public Map<String, Integer> getFacetas() { return facetas; }
+    public void setFacetas(Map<String, Integer> facetas) { this.facetas = facetas; }
+}
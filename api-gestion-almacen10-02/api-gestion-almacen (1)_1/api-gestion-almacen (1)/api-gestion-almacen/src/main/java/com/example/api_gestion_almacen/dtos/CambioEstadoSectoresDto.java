@@ -0,0 +1,31 @@
+package com.example.api_gestion_almacen.dtos;
+
+import java.util.List;
+
+import com.example.api_gestion_almacen.entidades.SectorEntidad.EstadoSector;
+
+/**
+ * Petición de cambio de estado de varios sectores a la vez. Los sectores se indican
+ * por ID, con un filtro (prefijo del nombre y/o estado actual) o con ambos; se
+ * procesan todos los que cumplan alguno de los dos criterios.
+ */
+public class CambioEstadoSectoresDto {
+
+    private List<Long> ids;
+    private String prefijoNombre;
+    private EstadoSector estadoActual;
+    private EstadoSector estado;
+
+    // Getters y Setters
+    public List<Long> getIds() { return ids; }
+    public void setIds(List<Long> ids) { this.ids = ids; }
+
+    public String getPrefijoNombre() { return prefijoNombre; }
+    public void setPrefijoNombre(String prefijoNombre) { this.prefijoNombre = prefijoNombre; }
+
+    public EstadoSector getEstadoActual() { return estadoActual; }
+    public void setEstadoActual(EstadoSector estadoActual) { this.estadoActual = estadoActual; }
+
+    public EstadoSector getEstado() { return estado; }
+    public void setEstado(EstadoSector estado) { this.estado = estado; }
+}
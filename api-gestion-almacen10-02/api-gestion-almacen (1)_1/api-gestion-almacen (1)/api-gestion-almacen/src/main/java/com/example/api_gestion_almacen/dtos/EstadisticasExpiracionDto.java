@@ -0,0 +1,52 @@
+package com.example.api_gestion_almacen.dtos;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+/**
+ * Métricas de la expiración automática de alquileres desde el arranque.
+ */
+public class EstadisticasExpiracionDto {
+
+    private int pendientes;
+    private LocalDateTime proximoVencimiento;
+    private long finalizados;
+    private long sectoresLiberados;
+    private long lotes;
+    private long retrasoUltimoMs;
+    private long retrasoMaximoMs;
+    private double retrasoMedioMs;
+    private double alquileresPorSegundo;
+    private Instant ultimaEjecucion;
+
+    // Getters y Setters
+    public int getPendientes() { return pendientes; }
+    public void setPendientes(int pendientes) { this.pendientes = pendientes; }
+
+    public LocalDateTime getProximoVencimiento() { return proximoVencimiento; }
+    public void setProximoVencimiento(LocalDateTime proximoVencimiento) { this.proximoVencimiento = proximoVencimiento; }
+
+    public long getFinalizados() { return finalizados; }
+    public void setFinalizados(long finalizados) { this.finalizados = finalizados; }
+
+    public long getSectoresLiberados() { return sectoresLiberados; }
+    public void setSectoresLiberados(long sectoresLiberados) { this.sectoresLiberados = sectoresLiberados; }
+
+    public long getLotes() { return lotes; }
+    public void setLotes(long lotes) { this.lotes = lotes; }
+
+    public long getRetrasoUltimoMs() { return retrasoUltimoMs; }
+    public void setRetrasoUltimoMs(long retrasoUltimoMs) { this.retrasoUltimoMs = retrasoUltimoMs; }
+
+    public long getRetrasoMaximoMs() { return retrasoMaximoMs; }
+    public void setRetrasoMaximoMs(long retrasoMaximoMs) { this.retrasoMaximoMs = retrasoMaximoMs; }
+
+    public double getRetrasoMedioMs() { return retrasoMedioMs; }
+    public void setRetrasoMedioMs(double retrasoMedioMs) { this.retrasoMedioMs = retrasoMedioMs; }
+
+    public double getAlquileresPorSegundo() { return alquileresPorSegundo; }
+    public void setAlquileresPorSegundo(double alquileresPorSegundo) { this.alquileresPorSegundo = alquileresPorSegundo; }
+
+    public Instant getUltimaEjecucion() { return ultimaEjecucion; }
+    public void setUltimaEjecucion(Instant ultimaEjecucion) { this.ultimaEjecucion = ultimaEjecucion; }
+}
@@ -0,0 +1,42 @@
+package com.example.api_gestion_almacen.dtos;
+
+import java.time.Instant;
+
+/**
+ * Cambio de estado de un sector, tal como se envía por el flujo de eventos.
+ */
+public class EventoSectorDto {
+
+    private Long sectorId;
+    private String nombre;
+    private String estadoAnterior;
+    private String estado;
+    private Instant fecha;
+
+    public EventoSectorDto() {
+    }
+
+    public EventoSectorDto(Long sectorId, String nombre, String estadoAnterior, String estado, Instant fecha) {
+        this.sectorId = sectorId;
+        this.nombre = nombre;
+        this.estadoAnterior = estadoAnterior;
+        this.estado = estado;
+        this.fecha = fecha;
+    }
+
+    // Getters y Setters
+    public Long getSectorId() { return sectorId; }
+    public void setSectorId(Long sectorId) { this.sectorId = sectorId; }
+
+    public String getNombre() { return nombre; }
+    public void setNombre(String nombre) { this.nombre = nombre; }
+
+    public String getEstadoAnterior() { return estadoAnterior; }
+    public void setEstadoAnterior(String estadoAnterior) { this.estadoAnterior = estadoAnterior; }
+
+    public String getEstado() { return estado; }
+    public void setEstado(String estado) { this.estado = estado; }
+
+    public Instant getFecha() { return fecha; }
+    public void setFecha(Instant fecha) { this.fecha = fecha; }
+}
@@ -0,0 +1,37 @@
+package com.example.api_gestion_almacen.dtos;
+
+import java.math.BigDecimal;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Ingresos de los alquileres de un grupo del informe: un mes o un sector.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class IngresosDto {
+
+    private String mes;
+    private Long sectorId;
+    private String sectorNombre;
+    private BigDecimal ingresos;
+    private long alquileres;
+
+    public IngresosDto() {
+    }
+
+    // Getters y Setters
+    public String getMes() { return mes; }
+    public void setMes(String mes) { this.mes = mes; }
+
+    public Long getSectorId() { return sectorId; }
+    public void setSectorId(Long sectorId) { this.sectorId = sectorId; }
+
+    public String getSectorNombre() { return sectorNombre; }
+    public void setSectorNombre(String sectorNombre) { this.sectorNombre = sectorNombre; }
+
+    public BigDecimal getIngresos() { return ingresos; }
+    public void setIngresos(BigDecimal ingresos) { this.ingresos = ingresos; }
+
+    public long getAlquileres() { return alquileres; }
+    public void setAlquileres(long alquileres) { this.alquileres = alquileres; }
+}
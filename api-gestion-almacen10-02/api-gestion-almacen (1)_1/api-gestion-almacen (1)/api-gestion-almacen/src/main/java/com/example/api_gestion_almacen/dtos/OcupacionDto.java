@@ -0,0 +1,33 @@
+package com.example.api_gestion_almacen.dtos;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Ocupación media de los sectores durante un intervalo de la serie histórica.
+ */
+public class OcupacionDto {
+
+    private Instant desde;
+    private Map<String, Double> sectores;
+    private Map<String, Double> metrosCuadrados;
+
+    public OcupacionDto() {
+    }
+
+    public OcupacionDto(Instant desde, Map<String, Double> sectores, Map<String, Double> metrosCuadrados) {
+        this.desde = desde;
+        this.sectores = sectores;
+        this.metrosCuadrados = metrosCuadrados;
+    }
+
+    // Getters y Setters
+    public Instant getDesde() { return desde; }
+    public void setDesde(Instant desde) { this.desde = desde; }
+
+    public Map<String, Double> getSectores() { return sectores; }
+    public void setSectores(Map<String, Double> sectores) { this.sectores = sectores; }
+
+    public Map<String, Double> getMetrosCuadrados() { return metrosCuadrados; }
+    public void setMetrosCuadrados(Map<String, Double> metrosCuadrados) { this.metrosCuadrados = metrosCuadrados; }
+}
@@ -0,0 +1,32 @@
+package com.example.api_gestion_almacen.dtos;
+
+import java.util.List;
+
+/**
+ * Página de resultados de un listado paginado por cursor.
+ * El cursor es opaco para el cliente: basta con reenviarlo en la siguiente petición.
+ *
+ * @param <T> Tipo de los elementos de la página.
+ */
+public class PaginaDto<T> {
+
+    private List<T> elementos;
+    private String siguienteCursor;
+
+    public PaginaDto() {
+    }
+
+    public PaginaDto(List<T> elementos, String siguienteCursor) {
+        this.elementos = elementos;
+        this.siguienteCursor = siguienteCursor;
+    }
+
+    // Getters y Setters
+    public List<T> getElementos() { return elementos; }
+    public void setElementos(List<T> elementos) { this.elementos = elementos; }
+
+    public String getSiguienteCursor() { return siguienteCursor; }
+    public void setSiguienteCursor(String siguienteCursor) { this.siguienteCursor = siguienteCursor; }
+
+    public boolean isHaySiguiente() { return siguienteCursor != null; }
+}
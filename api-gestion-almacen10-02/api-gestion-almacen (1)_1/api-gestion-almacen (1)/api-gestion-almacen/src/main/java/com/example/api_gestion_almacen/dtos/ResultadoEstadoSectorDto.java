@@ -0,0 +1,38 @@
+package com.example.api_gestion_almacen.dtos;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Resultado del cambio de estado masivo para un sector.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ResultadoEstadoSectorDto {
+
+    public static final String ACTUALIZADO = "actualizado";
+    public static final String SIN_CAMBIOS = "sin_cambios";
+    public static final String ALQUILER_ACTIVO = "alquiler_activo";
+    public static final String NO_ENCONTRADO = "no_encontrado";
+
+    private Long sectorId;
+    private String resultado;
+    private String estadoAnterior;
+
+    public ResultadoEstadoSectorDto() {
+    }
+
+    public ResultadoEstadoSectorDto(Long sectorId, String resultado, String estadoAnterior) {
+        this.sectorId = sectorId;
+        this.resultado = resultado;
+        this.estadoAnterior = estadoAnterior;
+    }
+
+    // Getters y Setters
+    public Long getSectorId() { return sectorId; }
+    public void setSectorId(Long sectorId) { this.sectorId = sectorId; }
+
+    public String getResultado() { return resultado; }
+    public void setResultado(String resultado) { this.resultado = resultado; }
+
+    public String getEstadoAnterior() { return estadoAnterior; }
+    public void setEstadoAnterior(String estadoAnterior) { this.estadoAnterior = estadoAnterior; }
+}
@@ -0,0 +1,48 @@
+package com.example.api_gestion_almacen.dtos;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Resultado de importar una fila. Se emite una línea NDJSON por fila en cuanto
+ * se procesa el bloque que la contiene.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ResultadoImportacionDto {
+
+    public static final String CREADO = "creado";
+    public static final String DUPLICADO = "duplicado";
+    public static final String ERROR = "error";
+
+    private long fila;
+    private String correoElectronico;
+    private String estado;
+    private Long id;
+    private String mensaje;
+
+    public ResultadoImportacionDto() {
+    }
+
+    public ResultadoImportacionDto(long fila, String correoElectronico, String estado, Long id, String mensaje) {
+        this.fila = fila;
+        this.correoElectronico = correoElectronico;
+        this.estado = estado;
+        this.id = id;
+        this.mensaje = mensaje;
+    }
+
+    // Getters y Setters
+    public long getFila() { return fila; }
+    public void setFila(long fila) { this.fila = fila; }
+
+    public String getCorreoElectronico() { return correoElectronico; }
+    public void setCorreoElectronico(String correoElectronico) { this.correoElectronico = correoElectronico; }
+
+    public String getEstado() { return estado; }
+    public void setEstado(String estado) { this.estado = estado; }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getMensaje() { return mensaje; }
+    public void setMensaje(String mensaje) { this.mensaje = mensaje; }
+}
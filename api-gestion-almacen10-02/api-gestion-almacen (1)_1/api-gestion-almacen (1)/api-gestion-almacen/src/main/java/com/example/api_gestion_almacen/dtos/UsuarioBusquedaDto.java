@@ -0,0 +1,40 @@
+package com.example.api_gestion_almacen.dtos;
+
+/**
+ * Usuario devuelto por la búsqueda por nombre o correo, con su puntuación de relevancia.
+ */
+public class UsuarioBusquedaDto {
+
+    private Long id;
+    private String nombreCompleto;
+    private String correoElectronico;
+    private Long rolId;
+    private int puntuacion;
+
+    public UsuarioBusquedaDto() {
+    }
+
+    public UsuarioBusquedaDto(Long id, String nombreCompleto, String correoElectronico, Long rolId, int puntuacion) {
+        this.id = id;
+        this.nombreCompleto = nombreCompleto;
+        this.correoElectronico = correoElectronico;
+        this.rolId = rolId;
+        this.puntuacion = puntuacion;
+    }
+
+    // Getters y Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getNombreCompleto() { return nombreCompleto; }
+    public void setNombreCompleto(String nombreCompleto) { this.nombreCompleto = nombreCompleto; }
+
+    public String getCorreoElectronico() { return correoElectronico; }
+    public void setCorreoElectronico(String correoElectronico) { this.correoElectronico = correoElectronico; }
+
+    public Long getRolId() { return rolId; }
+    public void setRolId(Long rolId) { this.rolId = rolId; }
+
+    public int getPuntuacion() { return puntuacion; }
+    public void setPuntuacion(int puntuacion) { this.puntuacion = puntuacion; }
+}
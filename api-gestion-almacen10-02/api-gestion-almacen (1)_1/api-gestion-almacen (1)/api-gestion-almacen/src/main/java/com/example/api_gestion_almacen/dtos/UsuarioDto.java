@@ -9,11 +9,30 @@ public class UsuarioDto {
 	    private String movil;
 	    private String correoElectronico;
 	    private Long rolId; 
-	    private byte[] foto;
+	    private String fotoUrl;
 	    private LocalDateTime fechaCreacion;
 	    private boolean correoConfirmado;
 		private boolean google;
 
+	    public UsuarioDto() {
+	    }
+
+	    /**
+	     * Constructor usado por las consultas de proyección del repositorio,
+	     * que solo seleccionan la referencia a la foto, nunca sus bytes.
+	     */
+	    public UsuarioDto(Long id, String nombreCompleto, String movil, String correoElectronico, Long rolId,
+	                      String fotoHash, LocalDateTime fechaCreacion, Boolean correoConfirmado, boolean google) {
+	        this.id = id;
+	        this.nombreCompleto = nombreCompleto;
+	        this.movil = movil;
+	        this.correoElectronico = correoElectronico;
+	        this.rolId = rolId;
+	        this.fotoUrl = urlFoto(id, fotoHash);
+	        this.fechaCreacion = fechaCreacion;
+	        this.correoConfirmado = correoConfirmado != null && correoConfirmado;
+	        this.google = google;
+	    }
 
 	    // Getters y Setters
 	    public Long getId() {
@@ -56,12 +75,12 @@ public class UsuarioDto {
 	        this.rolId = rolId;
 	    }
 
-	    public byte[] getFoto() {
-	        return foto;
+	    public String getFotoUrl() {
+	        return fotoUrl;
 	    }
 
-	    public void setFoto(byte[] foto) {
-	        this.foto = foto;
+	    public void setFotoUrl(String fotoUrl) {
+	        this.fotoUrl = fotoUrl;
 	    }
 
 	    public LocalDateTime getFechaCreacion() {
@@ -86,4 +105,15 @@ public class UsuarioDto {
 		public void setGoogle(boolean google) {
 			this.google = google;
 		}
+
+	    /**
+	     * Construye la URL desde la que se descarga la foto de un usuario.
+	     *
+	     * @param id ID del usuario.
+	     * @param fotoHash Referencia a la foto, o null si el usuario no tiene foto.
+	     * @return La URL relativa de la foto, o null si no tiene.
+	     */
+	    public static String urlFoto(Long id, String fotoHash) {
+	        return fotoHash != null ? "/api/usuarios/" + id + "/foto" : null;
+	    }
 }
@@ -5,7 +5,9 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "alquileres", schema = "gestion_almacenes")
+@Table(name = "alquileres", schema = "gestion_almacenes",
+       indexes = @Index(name = "idx_alquileres_usuario", columnList = "usuario_id, id"), // Listado por usuario paginado por ID
+       uniqueConstraints = @UniqueConstraint(name = "uk_alquileres_orden", columnNames = "orden_id")) // Una orden, un alquiler
 public class AlquilerEntidad {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -3,8 +3,11 @@ package com.example.api_gestion_almacen.entidades;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
+import org.hibernate.annotations.DynamicUpdate;
+
 @Entity
 @Table(name = "usuarios")
+@DynamicUpdate // Los UPDATE solo incluyen las columnas modificadas
 public class UsuarioEntidad {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -20,7 +23,8 @@ public class UsuarioEntidad {
     @Column(nullable = false, unique = true, length = 50)
     private String correoElectronico;
 
-    @ManyToOne
+    // Perezosa: los DTO solo necesitan el ID del rol, que el proxy devuelve sin consultar la tabla roles
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "rol_id")
     private RolEntidad rol;
 
@@ -33,13 +37,17 @@ public class UsuarioEntidad {
     @Column
     private boolean google;
 
-    @Lob
-    @Column(name = "foto", columnDefinition = "LONGBLOB")
-    private byte[] foto;
+    // Referencia (hash SHA-256) a la foto guardada en el almacén de fotos
+    @Column(name = "foto_hash", length = 64)
+    private String fotoHash;
 
     @Column(name = "fecha_creacion", insertable = false, updatable = false)
     private LocalDateTime fechaCreacion;
 
+    // Instante (ms) hasta el que sus tokens de sesión quedan revocados; se guarda para sobrevivir a un reinicio
+    @Column(name = "sesiones_desde")
+    private Long sesionesDesde;
+
     // Getters y Setters
     public Long getId() {
         return id;
@@ -89,12 +97,12 @@ public class UsuarioEntidad {
         this.contrasena = contrasena;
     }
 
-    public byte[] getFoto() {
-        return foto;
+    public String getFotoHash() {
+        return fotoHash;
     }
 
-    public void setFoto(byte[] foto) {
-        this.foto = foto;
+    public void setFotoHash(String fotoHash) {
+        this.fotoHash = fotoHash;
     }
 
     public LocalDateTime getFechaCreacion() {
@@ -105,6 +113,14 @@ public class UsuarioEntidad {
         this.fechaCreacion = fechaCreacion;
     }
 
+    public Long getSesionesDesde() {
+        return sesionesDesde;
+    }
+
+    public void setSesionesDesde(Long sesionesDesde) {
+        this.sesionesDesde = sesionesDesde;
+    }
+
     public boolean isCorreoConfirmado() {
         return correoConfirmado != null ? correoConfirmado : false;
     }
@@ -0,0 +1,77 @@
+package com.example.api_gestion_almacen.eventos;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Búfer circular sin bloqueos para difundir elementos a varios lectores.
+ *
+ * <p>A diferencia de una cola, publicar nunca espera: cada elemento recibe un número de
+ * secuencia creciente y sobrescribe la celda más antigua. Cada lector lleva su propia
+ * posición y lee sin coordinarse con los demás; si se queda más de una vuelta atrás,
+ * los elementos intermedios se han perdido y debe resincronizarse.</p>
+ *
+ * @param <T> Tipo de los elementos.
+ */
+final class AnilloDifusion<T> {
+
+    private final AtomicReferenceArray<Celda<T>> celdas;
+    private final int mascara;
+    private final long inicio; // Secuencia anterior a la primera publicada
+    private final AtomicLong ultima;
+
+    /**
+     * @param capacidad Número de elementos que se conservan; se redondea a potencia de dos.
+     * @param inicio Secuencia inicial; la primera publicación recibe {@code inicio + 1}.
+     */
+    AnilloDifusion(int capacidad, long inicio) {
+        int potencia = Math.max(2, Integer.highestOneBit(capacidad - 1) << 1);
+        this.celdas = new AtomicReferenceArray<>(potencia);
+        this.mascara = potencia - 1;
+        this.inicio = inicio;
+        this.ultima = new AtomicLong(inicio);
+    }
+
+    /**
+     * Publica un elemento sin esperar a los lectores.
+     *
+     * @param elemento Elemento a publicar.
+     * @return Su número de secuencia.
+     */
+    long publicar(T elemento) {
+        long secuencia = ultima.incrementAndGet();
+        celdas.set((int) (secuencia & mascara), new Celda<>(secuencia, elemento));
+        return secuencia;
+    }
+
+    /**
+     * @return La última secuencia reservada (su elemento puede estar aún escribiéndose).
+     */
+    long ultima() {
+        return ultima.get();
+    }
+
+    /**
+     * @param secuencia Secuencia buscada.
+     * @return El elemento, o null si aún no se ha publicado o ya se ha sobrescrito.
+     */
+    T leer(long secuencia) {
+        Celda<T> celda = celdas.get((int) (secuencia & mascara));
+        return celda != null && celda.secuencia() == secuencia ? celda.elemento() : null;
+    }
+
+    /**
+     * @param secuencia Secuencia buscada.
+     * @return false si el elemento ya no está en el búfer (o es de antes del arranque).
+     */
+    boolean conservado(long secuencia) {
+        return secuencia > inicio && secuencia > ultima.get() - celdas.length();
+    }
+
+    int capacidad() {
+        return celdas.length();
+    }
+
+    private record Celda<T>(long secuencia, T elemento) {
+    }
+}
@@ -0,0 +1,289 @@
+package com.example.api_gestion_almacen.eventos;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.example.api_gestion_almacen.dtos.EventoSectorDto;
+import com.example.api_gestion_almacen.dtos.SectorDto;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Difunde los cambios de estado de los sectores a los clientes conectados por
+ * Server-Sent Events.
+ *
+ * <p>Los cambios se publican después del commit en un {@link AnilloDifusion}; publicar no
+ * espera a ningún cliente. Cada cliente tiene su posición en el anillo y, cuando hay
+ * novedades, un hilo le envía lo pendiente (como mucho uno por cliente a la vez).
+ * Según lo retrasado que vaya:</p>
+ * <ul>
+ *   <li>más de media vuelta: los eventos pendientes se agrupan y solo se envía el último
+ *       de cada sector;</li>
+ *   <li>más de una vuelta (o un {@code Last-Event-ID} que ya no está en el anillo): se le
+ *       envía un evento {@code resincronizar} para que recargue {@code GET /api/sectores};</li>
+ *   <li>un envío bloqueado más de {@code sectores.eventos.envio-maximo}: se le desconecta.</li>
+ * </ul>
+ *
+ * <p>Los envíos usan como mucho {@code sectores.eventos.hilos} hilos y se admiten como
+ * mucho {@code sectores.eventos.maximo-clientes} clientes a la vez.</p>
+ *
+ * <p>Las secuencias empiezan en un valor derivado de la hora de arranque, de modo que un
+ * {@code Last-Event-ID} de una ejecución anterior nunca se confunde con uno actual.</p>
+ */
+@Component
+public class DifusorEventosSector {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DifusorEventosSector.class);
+
+    @Value("${sectores.eventos.capacidad:1024}")
+    private int capacidad;
+
+    @Value("${sectores.eventos.timeout:PT30M}")
+    private Duration timeout;
+
+    @Value("${sectores.eventos.envio-maximo:PT30S}")
+    private Duration envioMaximo;
+
+    @Value("${sectores.eventos.hilos:32}")
+    private int hilos;
+
+    @Value("${sectores.eventos.maximo-clientes:1000}")
+    private int maximoClientes;
+
+    private AnilloDifusion<EventoSectorDto> anillo;
+    private final Set<Suscriptor> suscriptores = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger conectados = new AtomicInteger(); // Plazas ocupadas, incluidas las reservadas al suscribir
+    private ThreadPoolExecutor envios;
+
+    @PostConstruct
+    public void iniciar() {
+        anillo = new AnilloDifusion<>(capacidad, System.currentTimeMillis() * 1000);
+        AtomicInteger contador = new AtomicInteger();
+        // Hilos de plataforma: el envío bloquea dentro del emisor y fijaría el hilo portador
+        // de un hilo virtual. La cola no necesita límite: cada cliente tiene como mucho una
+        // tarea pendiente (Suscriptor.enviando), así que está acotada por maximoClientes
+        envios = new ThreadPoolExecutor(hilos, hilos, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), tarea -> {
+            Thread hilo = new Thread(tarea, "eventos-sector-" + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        envios.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void detener() {
+        suscriptores.forEach(suscriptor -> {
+            suscriptor.activo = false;
+            suscriptor.emisor.complete();
+        });
+        suscriptores.clear();
+        envios.shutdownNow();
+    }
+
+    /**
+     * Publica un cambio de estado. Debe llamarse después del commit.
+     *
+     * @param sector Estado confirmado del sector.
+     * @param estadoAnterior Estado que tenía antes del cambio.
+     */
+    public void publicar(SectorDto sector, String estadoAnterior) {
+        anillo.publicar(new EventoSectorDto(sector.getId(), sector.getNombre(), estadoAnterior, sector.getEstado(), Instant.now()));
+        suscriptores.forEach(this::programar);
+    }
+
+    /**
+     * Registra un cliente nuevo.
+     *
+     * @param ultimoId Valor de la cabecera {@code Last-Event-ID}, o null si es la primera conexión.
+     * @return El emisor SSE asociado a la respuesta.
+     * @throws IllegalStateException si ya hay {@code sectores.eventos.maximo-clientes} clientes conectados.
+     */
+    public SseEmitter suscribir(Long ultimoId) {
+        if (conectados.incrementAndGet() > maximoClientes) {
+            conectados.decrementAndGet();
+            throw new IllegalStateException("Se ha alcanzado el máximo de " + maximoClientes + " clientes de eventos");
+        }
+        SseEmitter emisor = new SseEmitter(timeout.toMillis());
+        long ultima = anillo.ultima();
+        Suscriptor suscriptor = new Suscriptor(emisor, ultimoId == null || ultimoId > ultima ? ultima : ultimoId);
+        suscriptor.latido = true; // Envía las cabeceras de inmediato
+        emisor.onCompletion(() -> quitar(suscriptor));
+        emisor.onTimeout(() -> quitar(suscriptor));
+        emisor.onError(error -> quitar(suscriptor));
+        suscriptores.add(suscriptor);
+        programar(suscriptor);
+        return emisor;
+    }
+
+    /**
+     * Envía un comentario a cada cliente para mantener abierta la conexión a través de
+     * proxies, y desconecta a los que llevan demasiado tiempo sin aceptar datos.
+     */
+    @Scheduled(fixedDelayString = "${sectores.eventos.latido:PT15S}")
+    public void latir() {
+        long ahora = System.nanoTime();
+        for (Suscriptor suscriptor : suscriptores) {
+            long inicio = suscriptor.inicioEnvio;
+            if (inicio != 0 && ahora - inicio > envioMaximo.toNanos()) {
+                LOGGER.atInfo().addKeyValue("posicion", suscriptor.posicion)
+                    .log("Cliente de eventos de sectores desconectado por no consumir");
+                quitar(suscriptor);
+                // complete() no espera al envío bloqueado: cierra la respuesta asíncrona para
+                // que el envío falle y el hilo quede libre para los demás clientes
+                suscriptor.emisor.complete();
+                continue;
+            }
+            suscriptor.latido = true;
+            programar(suscriptor);
+        }
+    }
+
+    /**
+     * @return Número de clientes conectados.
+     */
+    public int conectados() {
+        return conectados.get();
+    }
+
+    private void programar(Suscriptor suscriptor) {
+        if (suscriptor.activo && suscriptor.enviando.compareAndSet(false, true)) {
+            envios.execute(() -> drenar(suscriptor));
+        }
+    }
+
+    private void drenar(Suscriptor suscriptor) {
+        while (true) {
+            try {
+                enviarPendientes(suscriptor);
+            } catch (IOException | IllegalStateException e) {
+                // Cliente desconectado o emisor ya completado
+                quitar(suscriptor);
+                suscriptor.enviando.set(false);
+                return;
+            }
+            if (!suscriptor.activo) {
+                suscriptor.emisor.complete();
+                suscriptor.enviando.set(false);
+                return;
+            }
+            suscriptor.enviando.set(false);
+            // Un publicador pudo no programarlo mientras estaba enviando
+            if (!hayPendientes(suscriptor) || !suscriptor.enviando.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    private boolean hayPendientes(Suscriptor suscriptor) {
+        long siguiente = suscriptor.posicion + 1;
+        return suscriptor.latido || anillo.leer(siguiente) != null
+            || (siguiente <= anillo.ultima() && !anillo.conservado(siguiente));
+    }
+
+    private void enviarPendientes(Suscriptor suscriptor) throws IOException {
+        long ultima = anillo.ultima();
+        if (suscriptor.posicion < ultima && !anillo.conservado(suscriptor.posicion + 1)) {
+            enviar(suscriptor, SseEmitter.event().id(Long.toString(ultima)).name("resincronizar")
+                .data(Map.of("motivo", "Se han perdido eventos; recarga el estado de los sectores"), MediaType.APPLICATION_JSON));
+            suscriptor.posicion = ultima;
+        } else if (ultima - suscriptor.posicion > anillo.capacidad() / 2) {
+            enviarAgrupados(suscriptor, ultima);
+        }
+        while (suscriptor.posicion < ultima && suscriptor.activo) {
+            long siguiente = suscriptor.posicion + 1;
+            EventoSectorDto evento = anillo.leer(siguiente);
+            if (evento == null) {
+                if (anillo.conservado(siguiente)) {
+                    break; // Reservado pero aún sin escribir: su publicador volverá a programarlo
+                }
+                return; // Sobrescrito mientras se enviaba; se resincroniza en la siguiente pasada
+            }
+            enviarEvento(suscriptor, siguiente, evento);
+        }
+        if (suscriptor.latido) {
+            suscriptor.latido = false;
+            enviar(suscriptor, SseEmitter.event().comment("latido"));
+        }
+    }
+
+    /**
+     * Envía solo el último evento pendiente de cada sector, en orden de secuencia.
+     */
+    private void enviarAgrupados(Suscriptor suscriptor, long ultima) throws IOException {
+        Map<Long, Long> ultimaPorSector = new LinkedHashMap<>();
+        long hasta = suscriptor.posicion;
+        for (long secuencia = suscriptor.posicion + 1; secuencia <= ultima; secuencia++) {
+            EventoSectorDto evento = anillo.leer(secuencia);
+            if (evento == null) {
+                break;
+            }
+            ultimaPorSector.remove(evento.getSectorId());
+            ultimaPorSector.put(evento.getSectorId(), secuencia);
+            hasta = secuencia;
+        }
+        for (long secuencia : ultimaPorSector.values()) {
+            EventoSectorDto evento = anillo.leer(secuencia);
+            if (evento == null) {
+                return; // Sobrescrito; se resincroniza en la siguiente pasada
+            }
+            enviarEvento(suscriptor, secuencia, evento);
+        }
+        suscriptor.posicion = hasta;
+    }
+
+    private void enviarEvento(Suscriptor suscriptor, long secuencia, EventoSectorDto evento) throws IOException {
+        enviar(suscriptor, SseEmitter.event().id(Long.toString(secuencia)).name("estado")
+            .data(evento, MediaType.APPLICATION_JSON));
+        suscriptor.posicion = secuencia;
+    }
+
+    private void enviar(Suscriptor suscriptor, SseEmitter.SseEventBuilder evento) throws IOException {
+        suscriptor.inicioEnvio = System.nanoTime();
+        try {
+            suscriptor.emisor.send(evento);
+        } finally {
+            suscriptor.inicioEnvio = 0;
+        }
+    }
+
+    private void quitar(Suscriptor suscriptor) {
+        suscriptor.activo = false;
+        if (suscriptores.remove(suscriptor)) {
+            conectados.decrementAndGet();
+        }
+    }
+
+    /** Cliente conectado; solo su hilo de envío escribe en el emisor y en la posición. */
+    private static final class Suscriptor {
+        private final SseEmitter emisor;
+        private final AtomicBoolean enviando = new AtomicBoolean();
+        private volatile long posicion; // Última secuencia enviada
+        private volatile boolean latido;
+        private volatile boolean activo = true;
+        private volatile long inicioEnvio; // System.nanoTime() del envío en curso, 0 si no hay ninguno
+
+        Suscriptor(SseEmitter emisor, long posicion) {
+            this.emisor = emisor;
+            this.posicion = posicion;
+        }
+    }
+}
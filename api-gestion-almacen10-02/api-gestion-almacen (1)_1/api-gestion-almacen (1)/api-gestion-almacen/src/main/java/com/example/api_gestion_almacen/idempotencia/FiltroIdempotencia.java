@@ -0,0 +1,314 @@
+package com.example.api_gestion_almacen.idempotencia;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import com.example.api_gestion_almacen.idempotencia.RegistroIdempotencia.Ejecucion;
+import com.example.api_gestion_almacen.idempotencia.RegistroIdempotencia.Persistida;
+import com.example.api_gestion_almacen.idempotencia.RegistroIdempotencia.Reclamo;
+import com.example.api_gestion_almacen.idempotencia.RegistroIdempotencia.Respuesta;
+import com.example.api_gestion_almacen.seguridad.FiltroTokenSesion;
+import com.example.api_gestion_almacen.seguridad.SesionUsuario;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Hace idempotentes los POST de alta (alquileres y usuarios): un reintento con la misma
+ * cabecera {@code Idempotency-Key} (o, para los alquileres, el mismo {@code ordenId})
+ * recibe la respuesta de la primera ejecución en lugar de repetirla, y un duplicado que
+ * llega mientras la primera está en curso la espera.
+ *
+ * <p>Cada {@code Idempotency-Key} pertenece a quien hace la petición (el usuario de la
+ * sesión o, sin sesión, la dirección del cliente), así que dos usuarios con la misma clave
+ * no comparten respuestas. El {@code ordenId}, en cambio, es global: identifica un pago y
+ * sus reintentos pueden llegar sin sesión o desde otra dirección (callbacks de pago, móviles
+ * que cambian de red). La restricción única de {@code alquileres.orden_id} es la última
+ * defensa si la entrada del registro ya ha caducado. La clave se asocia a la huella SHA-256
+ * del cuerpo: reutilizarla con otro cuerpo es un error del cliente (422).</p>
+ *
+ * <p>Solo se guardan las respuestas 2xx y los 400 y 422, que dependen únicamente del
+ * cuerpo. El resto (un 409 porque el sector estaba ocupado, un 401, un 5xx...) depende
+ * del momento, y el reintento vuelve a ejecutarse.</p>
+ */
+@Component
+@Order(FiltroTokenSesion.ORDEN + 1) // Después del token de sesión, que identifica al usuario
+public class FiltroIdempotencia extends OncePerRequestFilter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FiltroIdempotencia.class);
+
+    static final String CABECERA = "Idempotency-Key";
+    static final String CABECERA_REPETIDA = "Idempotent-Replayed";
+    private static final int LONGITUD_MAXIMA_CLAVE = 200;
+    private static final String RUTA_ALQUILERES = "/api/alquileres";
+
+    @Autowired
+    private RegistroIdempotencia registro;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${idempotencia.rutas:/api/alquileres,/api/usuarios}")
+    private List<String> rutas;
+
+    @Value("${idempotencia.cuerpo-maximo:1MB}")
+    private DataSize cuerpoMaximo;
+
+    @Value("${idempotencia.espera:PT30S}")
+    private Duration esperaMaxima; // Lo que espera un duplicado a que termine la primera ejecución
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !HttpMethod.POST.matches(request.getMethod()) || !rutas.contains(ruta(request));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String cabecera = request.getHeader(CABECERA);
+        if (cabecera != null && (cabecera.isBlank() || cabecera.length() > LONGITUD_MAXIMA_CLAVE)) {
+            responderError(response, HttpServletResponse.SC_BAD_REQUEST,
+                "La cabecera " + CABECERA + " debe tener entre 1 y " + LONGITUD_MAXIMA_CLAVE + " caracteres");
+            return;
+        }
+        String ruta = ruta(request);
+        if (cabecera == null && !ruta.equals(RUTA_ALQUILERES)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        byte[] cuerpo = request.getInputStream().readNBytes((int) cuerpoMaximo.toBytes() + 1);
+        if (cuerpo.length > cuerpoMaximo.toBytes()) {
+            responderError(response, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "Cuerpo de la petición demasiado grande");
+            return;
+        }
+        CuerpoLeido peticion = new CuerpoLeido(request, cuerpo);
+        String clave = cabecera != null ? titular(request) + " POST " + ruta + " " + cabecera.trim() : claveOrden(cuerpo);
+        if (clave == null) {
+            filterChain.doFilter(peticion, response); // Sin clave ni ordenId: petición normal
+            return;
+        }
+        String huella = huella(cuerpo);
+
+        while (true) {
+            Reclamo reclamo = registro.reclamar(clave, huella);
+            Ejecucion ejecucion = reclamo.ejecucion();
+            if (!ejecucion.huella().equals(huella)) {
+                responderError(response, 422, "La clave de idempotencia ya se usó con otra petición");
+                return;
+            }
+            if (reclamo.propia()) {
+                ejecutar(clave, ejecucion, peticion, response, filterChain);
+                return;
+            }
+            Respuesta anterior;
+            try {
+                anterior = ejecucion.resultado().get(esperaMaxima.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                responderError(response, HttpServletResponse.SC_CONFLICT, "Hay una petición con la misma clave de idempotencia en curso");
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ServletException(e);
+            } catch (ExecutionException e) {
+                throw new ServletException(e.getCause());
+            }
+            if (anterior != null) {
+                reproducir(anterior, response);
+                return;
+            }
+            // La primera ejecución falló sin respuesta que repetir: se vuelve a intentar
+        }
+    }
+
+    private void ejecutar(String clave, Ejecucion ejecucion, HttpServletRequest peticion, HttpServletResponse response,
+                          FilterChain filterChain) throws ServletException, IOException {
+        Persistida persistida = registro.buscarPersistida(clave).orElse(null);
+        if (persistida != null) {
+            if (persistida.huella().equals(ejecucion.huella())) {
+                registro.completar(clave, ejecucion, persistida.respuesta());
+                reproducir(persistida.respuesta(), response);
+            } else {
+                registro.abandonar(clave, ejecucion);
+                responderError(response, 422, "La clave de idempotencia ya se usó con otra petición");
+            }
+            return;
+        }
+
+        ContentCachingResponseWrapper captura = new ContentCachingResponseWrapper(response);
+        boolean completada = false;
+        try {
+            filterChain.doFilter(peticion, captura);
+            int estado = captura.getStatus();
+            if (repetible(estado)) {
+                registro.completar(clave, ejecucion,
+                    new Respuesta(estado, captura.getContentType(), captura.getContentAsByteArray()));
+                completada = true;
+            }
+        } finally {
+            if (!completada) {
+                registro.abandonar(clave, ejecucion);
+            }
+            captura.copyBodyToResponse();
+        }
+    }
+
+    private void reproducir(Respuesta respuesta, HttpServletResponse response) throws IOException {
+        LOGGER.debug("Petición repetida: se devuelve la respuesta guardada ({})", respuesta.estado());
+        response.setStatus(respuesta.estado());
+        response.setHeader(CABECERA_REPETIDA, "true");
+        if (respuesta.tipo() != null) {
+            response.setContentType(respuesta.tipo());
+        }
+        response.setContentLength(respuesta.cuerpo().length);
+        response.getOutputStream().write(respuesta.cuerpo());
+    }
+
+    private void responderError(HttpServletResponse response, int estado, String mensaje) throws IOException {
+        response.setStatus(estado);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        response.getWriter().write(objectMapper.writeValueAsString(Map.of("error", mensaje)));
+    }
+
+    /**
+     * Respuestas que un reintento de la misma petición volvería a obtener: las correctas y
+     * los errores de validación del cuerpo.
+     */
+    private static boolean repetible(int estado) {
+        return (estado >= 200 && estado < 300) || estado == HttpServletResponse.SC_BAD_REQUEST || estado == 422;
+    }
+
+    /**
+     * Dueño de las claves explícitas: el usuario autenticado o, sin sesión, la dirección del cliente.
+     */
+    private static String titular(HttpServletRequest request) {
+        Object sesion = request.getAttribute(SesionUsuario.ATRIBUTO);
+        return sesion instanceof SesionUsuario usuario ? "usuario=" + usuario.usuarioId() : "anonimo=" + request.getRemoteAddr();
+    }
+
+    /**
+     * Clave implícita de los alquileres, común a todos los clientes: un pago genera una sola
+     * orden y una orden, un solo alquiler, venga de donde venga el reintento.
+     */
+    private String claveOrden(byte[] cuerpo) {
+        try {
+            JsonNode orden = objectMapper.readTree(cuerpo).get("ordenId");
+            return orden != null && orden.isTextual() && !orden.asText().isBlank()
+                ? "POST " + RUTA_ALQUILERES + " ordenId=" + orden.asText().trim() : null;
+        } catch (IOException e) {
+            return null; // JSON mal formado: que lo rechace el controlador
+        }
+    }
+
+    private static String huella(byte[] cuerpo) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(cuerpo));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String ruta(HttpServletRequest request) {
+        String ruta = request.getRequestURI().substring(request.getContextPath().length());
+        return ruta.length() > 1 && ruta.endsWith("/") ? ruta.substring(0, ruta.length() - 1) : ruta;
+    }
+
+    /**
+     * Petición cuyo cuerpo ya se ha leído para calcular la huella y se vuelve a servir desde memoria.
+     */
+    private static final class CuerpoLeido extends HttpServletRequestWrapper {
+
+        private final byte[] cuerpo;
+
+        CuerpoLeido(HttpServletRequest request, byte[] cuerpo) {
+            super(request);
+            this.cuerpo = cuerpo;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream entrada = new ByteArrayInputStream(cuerpo);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return entrada.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return entrada.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return entrada.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    try { // Todo el cuerpo está ya en memoria
+                        listener.onDataAvailable();
+                        listener.onAllDataRead();
+                    } catch (IOException e) {
+                        listener.onError(e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String codificacion = getCharacterEncoding();
+            Charset juego = codificacion != null ? Charset.forName(codificacion) : StandardCharsets.UTF_8;
+            return new BufferedReader(new InputStreamReader(getInputStream(), juego));
+        }
+
+        @Override
+        public int getContentLength() {
+            return cuerpo.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return cuerpo.length;
+        }
+    }
+}
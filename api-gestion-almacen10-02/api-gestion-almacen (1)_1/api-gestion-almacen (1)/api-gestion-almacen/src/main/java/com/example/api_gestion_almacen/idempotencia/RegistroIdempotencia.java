@@ -0,0 +1,205 @@
+package com.example.api_gestion_almacen.idempotencia;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Ejecuciones de peticiones idempotentes por clave: la huella de la petición y, cuando
+ * termina, la respuesta que se devolvió.
+ *
+ * <p>En memoria es una caché de Caffeine acotada en entradas y con caducidad tras la
+ * escritura. La entrada se crea antes de ejecutar la petición, con la respuesta aún
+ * pendiente, así que un duplicado que llega mientras tanto encuentra la ejecución en
+ * curso y espera su resultado en lugar de repetirla.</p>
+ *
+ * <p>Con {@code idempotencia.persistente=true} las respuestas también se guardan en la
+ * tabla {@code idempotencia}, para reconocer los reintentos después de reiniciar la
+ * aplicación o en otra instancia.</p>
+ */
+@Component
+public class RegistroIdempotencia {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RegistroIdempotencia.class);
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbc;
+
+    @Value("${idempotencia.maximo:10000}")
+    private long maximoEntradas;
+
+    @Value("${idempotencia.ttl:PT24H}")
+    private Duration ttl;
+
+    @Value("${idempotencia.persistente:false}")
+    private boolean persistente;
+
+    private Cache<String, Ejecucion> ejecuciones;
+
+    @PostConstruct
+    void inicializar() {
+        ejecuciones = Caffeine.newBuilder()
+            .maximumSize(maximoEntradas)
+            .expireAfterWrite(ttl)
+            .build();
+        if (persistente) {
+            try {
+                jdbc.getJdbcTemplate().execute("CREATE TABLE IF NOT EXISTS gestion_almacenes.idempotencia ("
+                    + "clave VARCHAR(512) NOT NULL PRIMARY KEY, "
+                    + "huella CHAR(64) NOT NULL, "
+                    + "estado SMALLINT NOT NULL, "
+                    + "tipo VARCHAR(255), "
+                    + "cuerpo MEDIUMBLOB, "
+                    + "fecha_creacion TIMESTAMP(3) NOT NULL, "
+                    + "INDEX idx_idempotencia_fecha (fecha_creacion))");
+            } catch (DataAccessException e) {
+                LOGGER.warn("No se pudo crear la tabla de idempotencia: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Registra una ejecución para la clave si no hay ninguna; si ya la hay, la devuelve.
+     *
+     * @param clave Clave de idempotencia.
+     * @param huella Huella del cuerpo de la petición.
+     * @return La ejecución de la clave y si la acaba de registrar esta llamada.
+     */
+    public Reclamo reclamar(String clave, String huella) {
+        Ejecucion nueva = new Ejecucion(huella, new CompletableFuture<>());
+        Ejecucion existente = ejecuciones.asMap().putIfAbsent(clave, nueva);
+        return existente == null ? new Reclamo(nueva, true) : new Reclamo(existente, false);
+    }
+
+    /**
+     * Busca la respuesta guardada en la tabla, si la persistencia está activa.
+     *
+     * @param clave Clave de idempotencia.
+     * @return La huella y la respuesta guardadas, o vacío.
+     */
+    public Optional<Persistida> buscarPersistida(String clave) {
+        if (!persistente) {
+            return Optional.empty();
+        }
+        try {
+            List<Persistida> filas = jdbc.query("SELECT huella, estado, tipo, cuerpo FROM gestion_almacenes.idempotencia "
+                    + "WHERE clave = :clave AND fecha_creacion > :limite",
+                new MapSqlParameterSource()
+                    .addValue("clave", clave)
+                    .addValue("limite", Timestamp.from(Instant.now().minus(ttl))),
+                (rs, fila) -> new Persistida(rs.getString("huella"),
+                    new Respuesta(rs.getInt("estado"), rs.getString("tipo"), rs.getBytes("cuerpo"))));
+            return filas.stream().findFirst();
+        } catch (DataAccessException e) {
+            LOGGER.warn("No se pudo consultar la tabla de idempotencia: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Guarda la respuesta de una ejecución y despierta a los duplicados que la esperan.
+     *
+     * @param clave Clave de idempotencia.
+     * @param ejecucion Ejecución registrada con {@link #reclamar}.
+     * @param respuesta Respuesta devuelta al cliente.
+     */
+    public void completar(String clave, Ejecucion ejecucion, Respuesta respuesta) {
+        if (persistente) {
+            try {
+                jdbc.update("INSERT IGNORE INTO gestion_almacenes.idempotencia (clave, huella, estado, tipo, cuerpo, fecha_creacion) "
+                        + "VALUES (:clave, :huella, :estado, :tipo, :cuerpo, :fecha)",
+                    new MapSqlParameterSource()
+                        .addValue("clave", clave)
+                        .addValue("huella", ejecucion.huella())
+                        .addValue("estado", respuesta.estado())
+                        .addValue("tipo", respuesta.tipo())
+                        .addValue("cuerpo", respuesta.cuerpo())
+                        .addValue("fecha", Timestamp.from(Instant.now())));
+            } catch (DataAccessException e) {
+                LOGGER.warn("No se pudo guardar la respuesta idempotente: {}", e.getMessage());
+            }
+        }
+        ejecucion.resultado().complete(respuesta);
+    }
+
+    /**
+     * Descarta una ejecución que no dejó respuesta que repetir (error del servidor), para
+     * que el siguiente intento de la misma clave se ejecute. Los duplicados que la esperaban
+     * reciben null y vuelven a intentarlo.
+     *
+     * @param clave Clave de idempotencia.
+     * @param ejecucion Ejecución registrada con {@link #reclamar}.
+     */
+    public void abandonar(String clave, Ejecucion ejecucion) {
+        ejecuciones.asMap().remove(clave, ejecucion);
+        ejecucion.resultado().complete(null);
+    }
+
+    /**
+     * Borra de la tabla las respuestas caducadas.
+     */
+    @Scheduled(fixedDelayString = "${idempotencia.limpieza:PT1H}")
+    public void limpiar() {
+        if (!persistente) {
+            return;
+        }
+        try {
+            int borradas = jdbc.update("DELETE FROM gestion_almacenes.idempotencia WHERE fecha_creacion <= :limite",
+                new MapSqlParameterSource("limite", Timestamp.from(Instant.now().minus(ttl))));
+            LOGGER.atDebug().addKeyValue("borradas", borradas).log("Respuestas idempotentes caducadas borradas");
+        } catch (DataAccessException e) {
+            LOGGER.warn("No se pudo limpiar la tabla de idempotencia: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Ejecución de una petición con clave de idempotencia.
+     *
+     * @param huella Huella del cuerpo de la petición.
+     * @param resultado Respuesta, cuando termine; null si se abandonó.
+     */
+    public record Ejecucion(String huella, CompletableFuture<Respuesta> resultado) {
+    }
+
+    /**
+     * @param ejecucion Ejecución de la clave.
+     * @param propia true si la ha registrado esta petición, que debe ejecutarse.
+     */
+    public record Reclamo(Ejecucion ejecucion, boolean propia) {
+    }
+
+    /**
+     * Respuesta guardada. El array se comparte entre peticiones y no debe modificarse.
+     *
+     * @param estado Código de estado HTTP.
+     * @param tipo Content-Type, o null.
+     * @param cuerpo Cuerpo de la respuesta.
+     */
+    public record Respuesta(int estado, String tipo, byte[] cuerpo) {
+    }
+
+    /**
+     * @param huella Huella de la petición que produjo la respuesta.
+     * @param respuesta Respuesta guardada.
+     */
+    public record Persistida(String huella, Respuesta respuesta) {
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.api_gestion_almacen.registro;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import ch.qos.logback.core.spi.AppenderAttachable;
+import ch.qos.logback.core.spi.AppenderAttachableImpl;
+
+/**
+ * Appender asíncrono de Logback basado en un búfer circular sin bloqueos.
+ * Los hilos de la aplicación solo reservan una celda con un CAS y publican el evento;
+ * un único hilo consumidor lo entrega a los appenders adjuntos (consola, archivo).
+ * Si el búfer está lleno el evento se descarta y se contabiliza, en lugar de
+ * bloquear la petición; los descartes se registran como aviso cuando se vacía el búfer
+ * o, si no llega a vaciarse, cada {@code intervaloInforme} milisegundos.
+ *
+ * <pre>
+ * &lt;appender name="Async" class="com.example.api_gestion_almacen.registro.AnilloAsyncAppender"&gt;
+ *     &lt;capacidad&gt;8192&lt;/capacidad&gt;
+ *     &lt;intervaloInforme&gt;1000&lt;/intervaloInforme&gt;
+ *     &lt;appender-ref ref="Console"/&gt;
+ * &lt;/appender&gt;
+ * </pre>
+ */
+public class AnilloAsyncAppender extends UnsynchronizedAppenderBase<ILoggingEvent> implements AppenderAttachable<ILoggingEvent> {
+
+    private static final long ESPERA_MAXIMA_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final AppenderAttachableImpl<ILoggingEvent> adjuntos = new AppenderAttachableImpl<>();
+    private final AtomicLong cola = new AtomicLong(); // Siguiente posición a reservar por los productores
+    private final AtomicLong descartados = new AtomicLong();
+
+    private int capacidad = 8192;
+    private long intervaloInforme = 1000; // Milisegundos entre avisos de descartes con el búfer ocupado
+    private AtomicReferenceArray<ILoggingEvent> celdas;
+    private int mascara;
+    private volatile long cabeza; // Siguiente posición a consumir; solo la escribe el consumidor
+    private volatile boolean durmiendo;
+    private Thread consumidor;
+    private long ultimoInforme; // System.nanoTime() del último aviso; solo lo usa el consumidor
+
+    public int getCapacidad() {
+        return capacidad;
+    }
+
+    public void setCapacidad(int capacidad) {
+        this.capacidad = capacidad;
+    }
+
+    public long getIntervaloInforme() {
+        return intervaloInforme;
+    }
+
+    public void setIntervaloInforme(long intervaloInforme) {
+        this.intervaloInforme = intervaloInforme;
+    }
+
+    @Override
+    public void start() {
+        if (isStarted()) {
+            return;
+        }
+        if (!adjuntos.iteratorForAppenders().hasNext()) {
+            addError("No hay appenders adjuntos a [" + name + "]");
+            return;
+        }
+        // Capacidad potencia de dos para calcular la celda con una máscara
+        int potencia = Math.max(2, Integer.highestOneBit(capacidad - 1) << 1);
+        celdas = new AtomicReferenceArray<>(potencia);
+        mascara = potencia - 1;
+        super.start();
+
+        ultimoInforme = System.nanoTime();
+        consumidor = new Thread(this::consumir, "registro-async-" + getName());
+        consumidor.setDaemon(true);
+        consumidor.start();
+    }
+
+    @Override
+    public void stop() {
+        if (!isStarted()) {
+            return;
+        }
+        super.stop();
+        LockSupport.unpark(consumidor);
+        try {
+            consumidor.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        adjuntos.detachAndStopAllAppenders();
+    }
+
+    @Override
+    protected void append(ILoggingEvent evento) {
+        // Congelar mensaje, MDC y nombre de hilo antes de cambiar de hilo
+        evento.prepareForDeferredProcessing();
+
+        long posicion;
+        do {
+            posicion = cola.get();
+            if (posicion - cabeza >= celdas.length()) {
+                descartados.incrementAndGet();
+                return;
+            }
+        } while (!cola.compareAndSet(posicion, posicion + 1));
+
+        celdas.lazySet((int) (posicion & mascara), evento);
+        if (durmiendo) {
+            LockSupport.unpark(consumidor);
+        }
+    }
+
+    private void consumir() {
+        long intervaloNanos = TimeUnit.MILLISECONDS.toNanos(intervaloInforme);
+        while (isStarted() || cabeza < cola.get()) {
+            long posicion = cabeza;
+            int indice = (int) (posicion & mascara);
+            ILoggingEvent evento = celdas.get(indice);
+            if (evento == null) {
+                esperar(posicion);
+                continue;
+            }
+            celdas.lazySet(indice, null);
+            cabeza = posicion + 1; // Libera la celda para los productores
+            entregar(evento);
+            // Con el búfer siempre ocupado no llega a vaciarse: el aviso no puede esperar a eso
+            if (posicion + 1 == cola.get() || System.nanoTime() - ultimoInforme >= intervaloNanos) {
+                informarDescartados();
+            }
+        }
+        informarDescartados();
+    }
+
+    private void esperar(long posicion) {
+        if (posicion < cola.get()) {
+            // Celda reservada pero aún no publicada: el productor está a punto de escribirla
+            Thread.onSpinWait();
+            return;
+        }
+        durmiendo = true;
+        if (posicion == cola.get() && isStarted()) {
+            LockSupport.parkNanos(this, ESPERA_MAXIMA_NANOS);
+        }
+        durmiendo = false;
+    }
+
+    private void entregar(ILoggingEvent evento) {
+        try {
+            adjuntos.appendLoopOnAppenders(evento);
+        } catch (RuntimeException e) {
+            addError("Error al entregar un evento de registro", e);
+        }
+    }
+
+    private void informarDescartados() {
+        ultimoInforme = System.nanoTime();
+        long perdidos = descartados.getAndSet(0);
+        if (perdidos > 0 && getContext() instanceof LoggerContext contexto) {
+            entregar(new LoggingEvent(AnilloAsyncAppender.class.getName(), contexto.getLogger(AnilloAsyncAppender.class),
+                Level.WARN, "Búfer de registro lleno: se descartaron {} eventos", null, new Object[] {perdidos}));
+        }
+    }
+
+    @Override
+    public void addAppender(Appender<ILoggingEvent> appender) {
+        adjuntos.addAppender(appender);
+    }
+
+    @Override
+    public Iterator<Appender<ILoggingEvent>> iteratorForAppenders() {
+        return adjuntos.iteratorForAppenders();
+    }
+
+    @Override
+    public Appender<ILoggingEvent> getAppender(String nombre) {
+        return adjuntos.getAppender(nombre);
+    }
+
+    @Override
+    public boolean isAttached(Appender<ILoggingEvent> appender) {
+        return adjuntos.isAttached(appender);
+    }
+
+    @Override
+    public void detachAndStopAllAppenders() {
+        adjuntos.detachAndStopAllAppenders();
+    }
+
+    @Override
+    public boolean detachAppender(Appender<ILoggingEvent> appender) {
+        return adjuntos.detachAppender(appender);
+    }
+
+    @Override
+    public boolean detachAppender(String nombre) {
+        return adjuntos.detachAppender(nombre);
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.api_gestion_almacen.registro;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Muestreo y límite de frecuencia para un punto concreto de registro.
+ * Se declara como constante estática junto a la llamada al logger y se consulta
+ * después de comprobar el nivel, de modo que cuando el nivel está desactivado
+ * no se evalúa nada:
+ *
+ * <pre>
+ * private static final LimiteRegistro LIMITE_BUSQUEDA = LimiteRegistro.porSegundo(5);
+ * ...
+ * if (LOGGER.isDebugEnabled() &amp;&amp; LIMITE_BUSQUEDA.permitir()) { ... }
+ * </pre>
+ *
+ * No usa bloqueos ni reserva memoria.
+ */
+public final class LimiteRegistro {
+
+    private static final long NANOS_POR_SEGUNDO = 1_000_000_000L;
+
+    private final int muestreo;
+    private final int maximoPorSegundo;
+    private final AtomicLong llamadas = new AtomicLong();
+    private final AtomicLong inicioVentana = new AtomicLong(System.nanoTime());
+    private final AtomicInteger emitidosEnVentana = new AtomicInteger();
+    private final AtomicLong suprimidos = new AtomicLong();
+
+    private LimiteRegistro(int muestreo, int maximoPorSegundo) {
+        this.muestreo = Math.max(1, muestreo);
+        this.maximoPorSegundo = maximoPorSegundo;
+    }
+
+    /**
+     * @param maximo Número máximo de mensajes por segundo.
+     * @return Un límite que deja pasar como mucho {@code maximo} mensajes por segundo.
+     */
+    public static LimiteRegistro porSegundo(int maximo) {
+        return new LimiteRegistro(1, maximo);
+    }
+
+    /**
+     * @param cadaN Se registra una de cada {@code cadaN} llamadas.
+     * @param maximoPorSegundo Límite adicional de mensajes por segundo.
+     * @return Un límite que combina muestreo y frecuencia máxima.
+     */
+    public static LimiteRegistro muestreo(int cadaN, int maximoPorSegundo) {
+        return new LimiteRegistro(cadaN, maximoPorSegundo);
+    }
+
+    /**
+     * @return true si esta llamada debe registrarse.
+     */
+    public boolean permitir() {
+        if (muestreo > 1 && llamadas.getAndIncrement() % muestreo != 0) {
+            suprimidos.incrementAndGet();
+            return false;
+        }
+        long ahora = System.nanoTime();
+        long inicio = inicioVentana.get();
+        if (ahora - inicio >= NANOS_POR_SEGUNDO && inicioVentana.compareAndSet(inicio, ahora)) {
+            emitidosEnVentana.set(0);
+        }
+        if (emitidosEnVentana.incrementAndGet() > maximoPorSegundo) {
+            suprimidos.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Devuelve y reinicia el número de mensajes suprimidos desde la última consulta,
+     * para incluirlo en el siguiente mensaje que sí se registra.
+     *
+     * @return Mensajes suprimidos.
+     */
+    public long tomarSuprimidos() {
+        return suprimidos.getAndSet(0);
+    }
+}
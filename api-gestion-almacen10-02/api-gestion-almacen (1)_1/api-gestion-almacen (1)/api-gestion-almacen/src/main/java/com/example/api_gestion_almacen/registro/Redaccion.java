@@ -0,0 +1,42 @@
+package com.example.api_gestion_almacen.registro;
+
+/**
+ * Utilidades para que los valores registrados no incluyan datos binarios,
+ * textos enormes ni secretos. Solo deben invocarse después de comprobar que
+ * el nivel de registro está activo.
+ */
+public final class Redaccion {
+
+    /** Longitud máxima de un texto registrado. */
+    public static final int LONGITUD_MAXIMA = 120;
+
+    private Redaccion() {
+    }
+
+    /**
+     * @param texto Texto procedente del cliente.
+     * @return El texto, recortado si supera {@link #LONGITUD_MAXIMA}.
+     */
+    public static String texto(String texto) {
+        if (texto == null || texto.length() <= LONGITUD_MAXIMA) {
+            return texto;
+        }
+        return texto.substring(0, LONGITUD_MAXIMA) + "…(" + texto.length() + " caracteres)";
+    }
+
+    /**
+     * @param contenido Datos binarios.
+     * @return Solo el tamaño, nunca el contenido.
+     */
+    public static String binario(byte[] contenido) {
+        return contenido == null ? "null" : "[" + contenido.length + " bytes]";
+    }
+
+    /**
+     * @param secreto Valor sensible (contraseñas, tokens).
+     * @return Un marcador que indica si había valor, sin revelarlo.
+     */
+    public static String secreto(String secreto) {
+        return secreto == null ? "null" : "[PROTECTED]";
+    }
+}
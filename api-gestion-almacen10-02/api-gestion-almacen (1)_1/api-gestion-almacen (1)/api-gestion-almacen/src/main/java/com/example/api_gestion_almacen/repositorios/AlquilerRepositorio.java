@@ -1,11 +1,17 @@
 package com.example.api_gestion_almacen.repositorios;
 
+import com.example.api_gestion_almacen.busqueda.Reserva;
+import com.example.api_gestion_almacen.dtos.AlquilerDto;
 import com.example.api_gestion_almacen.entidades.AlquilerEntidad;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Repositorio para gestionar las operaciones de acceso a datos relacionadas con los alquileres.
@@ -37,4 +43,63 @@ public interface AlquilerRepositorio extends JpaRepository<AlquilerEntidad, Long
      * @return Lista de entidades de alquiler cuya fecha de finalización es anterior a la fecha especificada.
      */
     List<AlquilerEntidad> findByFechaFinBefore(LocalDateTime fecha);
+
+    /**
+     * Obtiene los intervalos de todos los alquileres en un estado, sin cargar las entidades.
+     *
+     * @param estado Estado de los alquileres.
+     * @return Una reserva por alquiler.
+     */
+    @Query("SELECT new com.example.api_gestion_almacen.busqueda.Reserva(a.id, a.sector.id, a.fechaInicio, a.fechaFin) "
+         + "FROM AlquilerEntidad a WHERE a.estado = :estado")
+    List<Reserva> listarReservas(@Param("estado") AlquilerEntidad.EstadoAlquiler estado);
+
+    /**
+     * Comprueba si un sector tiene algún alquiler activo que se solape con un intervalo.
+     *
+     * @param sectorId ID del sector.
+     * @param inicio Inicio del intervalo (incluido).
+     * @param fin Fin del intervalo (excluido).
+     * @return true si hay solapamiento.
+     */
+    @Query("SELECT COUNT(a) > 0 FROM AlquilerEntidad a WHERE a.sector.id = :sectorId "
+         + "AND a.estado = com.example.api_gestion_almacen.entidades.AlquilerEntidad.EstadoAlquiler.ACTIVO "
+         + "AND a.fechaInicio < :fin AND a.fechaFin > :inicio")
+    boolean existeSolapamiento(@Param("sectorId") Long sectorId, @Param("inicio") LocalDateTime inicio,
+                               @Param("fin") LocalDateTime fin);
+
+    /**
+     * Obtiene el ID del sector de un alquiler sin cargar la entidad.
+     *
+     * @param id ID del alquiler.
+     * @return El ID del sector, o vacío si el alquiler no existe.
+     */
+    @Query("SELECT a.sector.id FROM AlquilerEntidad a WHERE a.id = :id")
+    Optional<Long> obtenerSectorId(@Param("id") Long id);
+
+    /**
+     * Obtiene una página de los alquileres de un usuario ordenada por ID, con el sector
+     * unido en la misma consulta: una sola ida y vuelta a la base de datos por página, sin
+     * cargar las entidades. Los filtros nulos no se aplican.
+     *
+     * @param usuarioId ID del usuario.
+     * @param despuesDe Último ID de la página anterior (0 para la primera página).
+     * @param estado Estado de los alquileres, o null.
+     * @param desde Solo alquileres que terminan después de esta fecha, o null.
+     * @param hasta Solo alquileres que empiezan antes de esta fecha, o null.
+     * @param limite Número máximo de filas a devolver.
+     * @return Lista de alquileres con ID mayor que el cursor.
+     */
+    @Query("SELECT new com.example.api_gestion_almacen.dtos.AlquilerDto("
+         + "a.id, s.id, s.nombre, a.usuarioId, a.fechaInicio, a.fechaFin, a.montoPagado, a.ordenId, a.estado) "
+         + "FROM AlquilerEntidad a JOIN a.sector s "
+         + "WHERE a.usuarioId = :usuarioId AND a.id > :despuesDe "
+         + "AND (:estado IS NULL OR a.estado = :estado) "
+         + "AND (:desde IS NULL OR a.fechaFin > :desde) "
+         + "AND (:hasta IS NULL OR a.fechaInicio < :hasta) "
+         + "ORDER BY a.id")
+    List<AlquilerDto> listarPaginaUsuario(@Param("usuarioId") Long usuarioId, @Param("despuesDe") long despuesDe,
+                                          @Param("estado") AlquilerEntidad.EstadoAlquiler estado,
+                                          @Param("desde") LocalDateTime desde, @Param("hasta") LocalDateTime hasta,
+                                          Limit limite);
 }
\ No newline at end of file
@@ -1,7 +1,12 @@
 package com.example.api_gestion_almacen.repositorios;
 
 import com.example.api_gestion_almacen.entidades.SectorEntidad;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
@@ -45,4 +50,32 @@ public interface SectorRepositorio extends JpaRepository<SectorEntidad, Long> {
      * @return Lista de entidades de sector que cumplen con el criterio de precio mensual.
      */
     List<SectorEntidad> findByPrecioMensualLessThanEqual(BigDecimal precioMaximo);
+
+    /**
+     * Carga un sector bloqueando su fila hasta el final de la transacción
+     * ({@code SELECT ... FOR UPDATE}), para serializar las reservas del sector entre
+     * transacciones y entre instancias de la aplicación.
+     *
+     * @param id ID del sector.
+     * @return El sector, o vacío si no existe.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM SectorEntidad s WHERE s.id = :id")
+    Optional<SectorEntidad> bloquearPorId(@Param("id") Long id);
+
+    /**
+     * Cambia el estado de un sector solo si sigue en el estado esperado (compare-and-set).
+     * La comprobación y la escritura son una única sentencia, así que dos transacciones
+     * concurrentes no pueden hacer la misma transición: la segunda espera el bloqueo de
+     * la fila y, tras el commit de la primera, ya no cumple la condición.
+     *
+     * @param id ID del sector.
+     * @param esperado Estado que debe tener el sector.
+     * @param nuevo Estado nuevo.
+     * @return 1 si se ha cambiado; 0 si el sector no existe o no estaba en el estado esperado.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE SectorEntidad s SET s.estado = :nuevo WHERE s.id = :id AND s.estado = :esperado")
+    int cambiarEstadoSi(@Param("id") Long id, @Param("esperado") SectorEntidad.EstadoSector esperado,
+                        @Param("nuevo") SectorEntidad.EstadoSector nuevo);
 }
\ No newline at end of file
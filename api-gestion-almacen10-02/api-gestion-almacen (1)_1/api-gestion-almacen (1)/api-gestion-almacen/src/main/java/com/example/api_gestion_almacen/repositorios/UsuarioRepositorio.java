@@ -1,15 +1,20 @@
 package com.example.api_gestion_almacen.repositorios;
 
+import java.util.List;
 import java.util.Optional;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import com.example.api_gestion_almacen.dtos.UsuarioDto;
 import com.example.api_gestion_almacen.entidades.UsuarioEntidad;
 
 /**
  * Interfaz UsuarioRepositorio que extiende JpaRepository.
  * Esta interfaz proporciona métodos para realizar operaciones CRUD
  * sobre la entidad UsuarioRepositorio en la base de datos.
- * 
+ *
  * @author andres
  */
 @Repository
@@ -21,6 +26,27 @@ public interface UsuarioRepositorio extends JpaRepository<UsuarioEntidad, Long>
      * @return Un objeto Optional que contiene el usuario si se encuentra, o vacío si no se encuentra.
      */
     Optional<UsuarioEntidad> findByCorreoElectronico(String correoElectronico);
-}
 
+    /**
+     * Obtiene una página de usuarios ordenada por ID a partir de un cursor (keyset).
+     * La proyección no selecciona la foto, por lo que el coste de la consulta
+     * no depende del tamaño de las imágenes almacenadas.
+     *
+     * @param despuesDe Último ID de la página anterior (0 para la primera página).
+     * @param limite Número máximo de filas a devolver.
+     * @return Lista de usuarios con ID mayor que el cursor.
+     */
+    @Query("SELECT new com.example.api_gestion_almacen.dtos.UsuarioDto("
+         + "u.id, u.nombreCompleto, u.movil, u.correoElectronico, r.id, u.fotoHash, u.fechaCreacion, u.correoConfirmado, u.google) "
+         + "FROM UsuarioEntidad u LEFT JOIN u.rol r WHERE u.id > :despuesDe ORDER BY u.id")
+    List<UsuarioDto> listarPagina(@Param("despuesDe") long despuesDe, Limit limite);
 
+    /**
+     * Obtiene solo la referencia a la foto de un usuario, sin cargar la entidad.
+     *
+     * @param id ID del usuario.
+     * @return El hash de la foto, o vacío si el usuario no existe o no tiene foto.
+     */
+    @Query("SELECT u.fotoHash FROM UsuarioEntidad u WHERE u.id = :id")
+    Optional<String> buscarFotoHash(@Param("id") Long id);
+}
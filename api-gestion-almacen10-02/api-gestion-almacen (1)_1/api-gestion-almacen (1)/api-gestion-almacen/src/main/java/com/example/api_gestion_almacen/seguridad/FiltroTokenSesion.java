@@ -0,0 +1,66 @@
+package com.example.api_gestion_almacen.seguridad;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import com.example.api_gestion_almacen.servicios.UsuarioServicio;
+
+/**
+ * Valida en memoria el token de sesión de la cabecera {@code Authorization: Bearer}
+ * y comprueba con la caché de usuarios que no se ha revocado.
+ * Si es válido deja la {@link SesionUsuario} como atributo de la petición; si es
+ * inválido, ha caducado o se ha revocado responde 401. Las peticiones sin token siguen su curso.
+ */
+@Component
+@Order(FiltroTokenSesion.ORDEN)
+public class FiltroTokenSesion extends OncePerRequestFilter {
+
+    /** Orden del filtro; los que necesitan la {@link SesionUsuario} van detrás. */
+    public static final int ORDEN = 0;
+
+    private static final String PREFIJO = "Bearer ";
+
+    @Autowired
+    private TokenSesion tokenSesion;
+
+    @Autowired
+    private UsuarioServicio usuarioServicio;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String ruta = request.getRequestURI().substring(request.getContextPath().length());
+        // El inicio de sesión no debe fallar porque el cliente envíe un token antiguo
+        return !ruta.startsWith("/api/") || ruta.equals("/api/usuarios/autenticar");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String cabecera = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (cabecera != null && cabecera.startsWith(PREFIJO)) {
+            Optional<SesionUsuario> sesion = tokenSesion.validar(cabecera.substring(PREFIJO.length()).trim())
+                .filter(usuarioServicio::sesionVigente);
+            if (sesion.isEmpty()) {
+                response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+                response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                response.setCharacterEncoding("UTF-8");
+                response.getWriter().write("{\"error\":\"Token de sesión no válido o caducado\"}");
+                return;
+            }
+            request.setAttribute(SesionUsuario.ATRIBUTO, sesion.get());
+        }
+        filterChain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.api_gestion_almacen.seguridad;
+
+import java.time.Instant;
+
+/**
+ * Identidad del usuario extraída de un token de sesión válido.
+ * El filtro {@link FiltroTokenSesion} la deja como atributo de la petición.
+ *
+ * @param usuarioId ID del usuario autenticado.
+ * @param rolId ID de su rol en el momento de autenticarse.
+ * @param emitido Instante de emisión del token.
+ * @param expira Instante a partir del cual el token deja de ser válido.
+ */
+public record SesionUsuario(Long usuarioId, Long rolId, Instant emitido, Instant expira) {
+
+    /** Nombre del atributo de petición donde se guarda la sesión validada. */
+    public static final String ATRIBUTO = "com.example.api_gestion_almacen.seguridad.SesionUsuario";
+}
@@ -0,0 +1,134 @@
+package com.example.api_gestion_almacen.seguridad;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Emite y valida tokens de sesión firmados con HMAC-SHA256.
+ * El token lleva el ID del usuario, su rol y las fechas de emisión y caducidad,
+ * por lo que se valida en memoria sin consultar la base de datos.
+ *
+ * <p>Formato: {@code base64url(carga) "." base64url(firma)}, con una carga binaria de
+ * 33 bytes (versión, usuarioId, rolId, emitido en ms, expira en s).</p>
+ *
+ * <p>La revocación no se guarda aquí, porque se perdería al reiniciar: cada usuario
+ * guarda en la base de datos el instante hasta el que sus sesiones están revocadas
+ * (cambio de contraseña o de rol) y el filtro lo comprueba con la caché de usuarios
+ * ({@code UsuarioServicio.sesionVigente}), que también rechaza a los usuarios borrados.</p>
+ */
+@Component
+public class TokenSesion {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TokenSesion.class);
+    private static final String ALGORITMO = "HmacSHA256";
+    private static final byte VERSION = 1;
+    private static final int LONGITUD_CARGA = 1 + Long.BYTES * 4;
+    private static final Base64.Encoder CODIFICADOR = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODIFICADOR = Base64.getUrlDecoder();
+
+    @Value("${sesion.token.secreto:}")
+    private String secretoConfigurado;
+
+    @Value("${sesion.token.duracion:PT8H}")
+    private Duration duracion;
+
+    private SecretKeySpec clave;
+    private ThreadLocal<Mac> macPorHilo;
+
+    @PostConstruct
+    void inicializar() {
+        byte[] secreto;
+        if (secretoConfigurado == null || secretoConfigurado.isBlank()) {
+            secreto = new byte[32];
+            new SecureRandom().nextBytes(secreto);
+            LOGGER.warn("sesion.token.secreto no configurado: se usa un secreto aleatorio y las sesiones no sobrevivirán a un reinicio");
+        } else {
+            secreto = Base64.getDecoder().decode(secretoConfigurado);
+        }
+        clave = new SecretKeySpec(secreto, ALGORITMO);
+        macPorHilo = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITMO);
+                mac.init(clave);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HMAC-SHA256 no disponible", e);
+            }
+        });
+    }
+
+    /**
+     * Emite un token para un usuario recién autenticado.
+     *
+     * @param usuarioId ID del usuario.
+     * @param rolId ID del rol del usuario (puede ser null).
+     * @return El token firmado.
+     */
+    public String emitir(Long usuarioId, Long rolId) {
+        Instant ahora = Instant.now();
+        ByteBuffer carga = ByteBuffer.allocate(LONGITUD_CARGA)
+            .put(VERSION)
+            .putLong(usuarioId)
+            .putLong(rolId != null ? rolId : 0L)
+            .putLong(ahora.toEpochMilli())
+            .putLong(ahora.plus(duracion).getEpochSecond());
+        byte[] bytes = carga.array();
+        return CODIFICADOR.encodeToString(bytes) + "." + CODIFICADOR.encodeToString(firmar(bytes));
+    }
+
+    /**
+     * Valida la firma y la caducidad de un token.
+     *
+     * @param token Token recibido del cliente.
+     * @return La sesión si el token es válido, o vacío en caso contrario.
+     */
+    public Optional<SesionUsuario> validar(String token) {
+        int punto = token.indexOf('.');
+        if (punto <= 0) {
+            return Optional.empty();
+        }
+        byte[] carga;
+        byte[] firma;
+        try {
+            carga = DECODIFICADOR.decode(token.substring(0, punto));
+            firma = DECODIFICADOR.decode(token.substring(punto + 1));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        if (carga.length != LONGITUD_CARGA || carga[0] != VERSION || !MessageDigest.isEqual(firma, firmar(carga))) {
+            return Optional.empty();
+        }
+
+        ByteBuffer lector = ByteBuffer.wrap(carga, 1, LONGITUD_CARGA - 1);
+        long usuarioId = lector.getLong();
+        long rolId = lector.getLong();
+        long emitido = lector.getLong();
+        long expira = lector.getLong();
+        if (Instant.now().getEpochSecond() >= expira) {
+            return Optional.empty();
+        }
+        return Optional.of(new SesionUsuario(usuarioId, rolId != 0 ? rolId : null,
+            Instant.ofEpochMilli(emitido), Instant.ofEpochSecond(expira)));
+    }
+
+    private byte[] firmar(byte[] carga) {
+        Mac mac = macPorHilo.get();
+        return mac.doFinal(carga);
+    }
+}
@@ -0,0 +1,299 @@
+package com.example.api_gestion_almacen.series;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.api_gestion_almacen.busqueda.IndiceSectores;
+import com.example.api_gestion_almacen.entidades.AlquilerEntidad.EstadoAlquiler;
+
+/**
+ * Ingresos de los alquileres agregados por sector y mes, en céntimos ({@code long}),
+ * para los informes de facturación sin recorrer la tabla de alquileres.
+ *
+ * <p>Cada alquiler no cancelado suma su importe pagado al mes de su fecha de inicio. Los
+ * acumulados se actualizan después del commit de cada alquiler creado o cancelado y se
+ * reconstruyen al arrancar, y después periódicamente, leyendo la tabla una vez: las filas
+ * se guardan en arrays de primitivos y se suman en paralelo con un pool fork-join, cada
+ * tarea sobre su tramo con su propio mapa, que luego se combinan.</p>
+ */
+@Component
+public class IngresosAlquileres {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IngresosAlquileres.class);
+    private static final int UMBRAL_DIVISION = 8192; // Filas por tarea por debajo del cual se suma secuencialmente
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbc;
+
+    private volatile NavigableMap<Integer, Map<Long, Acumulado>> acumulados; // Mes (año * 12 + mes - 1) -> sector; null hasta la primera carga
+    private final AtomicLong modificaciones = new AtomicLong(); // Para no pisar cambios con una recarga antigua
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarAlArrancar() {
+        try {
+            recargar();
+        } catch (DataAccessException e) {
+            LOGGER.warn("No se pudieron cargar los ingresos de alquileres: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Reconciliación periódica con la base de datos.
+     */
+    @Scheduled(initialDelayString = "${alquileres.ingresos.reconciliacion:PT1H}", fixedDelayString = "${alquileres.ingresos.reconciliacion:PT1H}")
+    public void reconciliar() {
+        try {
+            recargar();
+        } catch (DataAccessException e) {
+            LOGGER.warn("No se pudieron reconciliar los ingresos de alquileres: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Lee todos los alquileres no cancelados y sustituye los acumulados. Si mientras tanto
+     * se ha aplicado algún cambio incremental, la lectura puede ser anterior a él y se repite.
+     */
+    public void recargar() {
+        for (int intento = 0; intento < 3; intento++) {
+            long antes = modificaciones.get();
+            long inicio = System.nanoTime();
+            Filas filas = new Filas();
+            jdbc.query("SELECT a.sector_id, a.fecha_inicio, a.monto_pagado FROM gestion_almacenes.alquileres a "
+                    + "WHERE a.estado <> :cancelado",
+                new MapSqlParameterSource("cancelado", EstadoAlquiler.CANCELADO.name()),
+                rs -> {
+                    filas.agregar(rs.getLong("sector_id"), mes(rs.getObject("fecha_inicio", LocalDateTime.class)),
+                        IndiceSectores.aCentimos(rs.getBigDecimal("monto_pagado")));
+                });
+            Map<Long, long[]> sumas = ForkJoinPool.commonPool().invoke(new Suma(filas, 0, filas.tamano));
+            NavigableMap<Integer, Map<Long, Acumulado>> nuevo = new ConcurrentSkipListMap<>();
+            sumas.forEach((clave, suma) -> nuevo
+                .computeIfAbsent((int) (clave >>> 40), m -> new ConcurrentHashMap<>())
+                .put(clave & ((1L << 40) - 1), new Acumulado(suma[0], suma[1])));
+            synchronized (this) {
+                if (modificaciones.get() == antes) {
+                    acumulados = nuevo;
+                    LOGGER.atDebug().addKeyValue("alquileres", filas.tamano).addKeyValue("grupos", sumas.size())
+                        .addKeyValue("duracionMs", (System.nanoTime() - inicio) / 1_000_000)
+                        .log("Ingresos de alquileres recalculados");
+                    return;
+                }
+            }
+        }
+        LOGGER.debug("Recálculo de los ingresos de alquileres aplazado por cambios concurrentes");
+    }
+
+    /**
+     * Suma un alquiler creado. Debe llamarse después del commit.
+     *
+     * @param sectorId ID del sector.
+     * @param fechaInicio Fecha de inicio del alquiler.
+     * @param centimos Importe pagado en céntimos.
+     */
+    public void sumar(Long sectorId, LocalDateTime fechaInicio, long centimos) {
+        aplicar(sectorId, fechaInicio, centimos, 1);
+    }
+
+    /**
+     * Resta un alquiler cancelado. Debe llamarse después del commit.
+     *
+     * @param sectorId ID del sector.
+     * @param fechaInicio Fecha de inicio del alquiler.
+     * @param centimos Importe pagado en céntimos.
+     */
+    public void restar(Long sectorId, LocalDateTime fechaInicio, long centimos) {
+        aplicar(sectorId, fechaInicio, -centimos, -1);
+    }
+
+    private void aplicar(Long sectorId, LocalDateTime fechaInicio, long centimos, long alquileres) {
+        synchronized (this) {
+            modificaciones.incrementAndGet();
+            NavigableMap<Integer, Map<Long, Acumulado>> actual = acumulados;
+            if (actual == null) {
+                return; // La primera carga leerá el estado confirmado
+            }
+            actual.computeIfAbsent(mes(fechaInicio), m -> new ConcurrentHashMap<>())
+                .computeIfAbsent(sectorId, id -> new Acumulado(0, 0))
+                .sumar(centimos, alquileres);
+        }
+    }
+
+    /**
+     * Ingresos por sector entre dos meses, ambos incluidos.
+     *
+     * @param desde Primer mes, o null para empezar por el más antiguo.
+     * @param hasta Último mes, o null para acabar en el más reciente.
+     * @return Para cada sector con ingresos, ordenado por ID: {céntimos, alquileres}.
+     */
+    public Map<Long, long[]> porSector(YearMonth desde, YearMonth hasta) {
+        Map<Long, long[]> resultado = new TreeMap<>();
+        rango(desde, hasta).values().forEach(sectores -> sectores.forEach((sectorId, acumulado) -> {
+            long[] suma = resultado.computeIfAbsent(sectorId, id -> new long[2]);
+            suma[0] += acumulado.centimos.get();
+            suma[1] += acumulado.alquileres.get();
+        }));
+        resultado.values().removeIf(suma -> suma[0] == 0 && suma[1] == 0); // Solo alquileres cancelados
+        return resultado;
+    }
+
+    /**
+     * Ingresos por mes entre dos meses, ambos incluidos.
+     *
+     * @param desde Primer mes, o null para empezar por el más antiguo.
+     * @param hasta Último mes, o null para acabar en el más reciente.
+     * @return Para cada mes con alquileres, en orden: {céntimos, alquileres}.
+     */
+    public Map<YearMonth, long[]> porMes(YearMonth desde, YearMonth hasta) {
+        Map<YearMonth, long[]> resultado = new TreeMap<>();
+        rango(desde, hasta).forEach((mes, sectores) -> {
+            long[] suma = new long[2];
+            sectores.values().forEach(acumulado -> {
+                suma[0] += acumulado.centimos.get();
+                suma[1] += acumulado.alquileres.get();
+            });
+            if (suma[1] != 0 || suma[0] != 0) {
+                resultado.put(YearMonth.of(Math.floorDiv(mes, 12), Math.floorMod(mes, 12) + 1), suma);
+            }
+        });
+        return resultado;
+    }
+
+    private NavigableMap<Integer, Map<Long, Acumulado>> rango(YearMonth desde, YearMonth hasta) {
+        NavigableMap<Integer, Map<Long, Acumulado>> actual = actual();
+        if (desde != null && hasta != null) {
+            return actual.subMap(mes(desde), true, mes(hasta), true);
+        }
+        if (desde != null) {
+            return actual.tailMap(mes(desde), true);
+        }
+        return hasta != null ? actual.headMap(mes(hasta), true) : actual;
+    }
+
+    private NavigableMap<Integer, Map<Long, Acumulado>> actual() {
+        NavigableMap<Integer, Map<Long, Acumulado>> actual = acumulados;
+        if (actual == null) {
+            recargar();
+            actual = acumulados;
+            if (actual == null) {
+                throw new IllegalStateException("Ingresos de alquileres no disponibles");
+            }
+        }
+        return actual;
+    }
+
+    private static int mes(LocalDateTime fecha) {
+        return fecha.getYear() * 12 + fecha.getMonthValue() - 1;
+    }
+
+    private static int mes(YearMonth mes) {
+        return mes.getYear() * 12 + mes.getMonthValue() - 1;
+    }
+
+    /**
+     * Importe y número de alquileres de un sector en un mes.
+     */
+    private static final class Acumulado {
+
+        final AtomicLong centimos;
+        final AtomicLong alquileres;
+
+        Acumulado(long centimos, long alquileres) {
+            this.centimos = new AtomicLong(centimos);
+            this.alquileres = new AtomicLong(alquileres);
+        }
+
+        void sumar(long centimos, long alquileres) {
+            this.centimos.addAndGet(centimos);
+            this.alquileres.addAndGet(alquileres);
+        }
+    }
+
+    /**
+     * Filas leídas de la tabla, en arrays de primitivos que crecen al doble.
+     */
+    private static final class Filas {
+
+        long[] sectores = new long[1024];
+        int[] meses = new int[1024];
+        long[] centimos = new long[1024];
+        int tamano;
+
+        void agregar(long sectorId, int mes, long importe) {
+            if (tamano == sectores.length) {
+                sectores = Arrays.copyOf(sectores, tamano * 2);
+                meses = Arrays.copyOf(meses, tamano * 2);
+                centimos = Arrays.copyOf(centimos, tamano * 2);
+            }
+            sectores[tamano] = sectorId;
+            meses[tamano] = mes;
+            centimos[tamano] = importe;
+            tamano++;
+        }
+    }
+
+    /**
+     * Suma un tramo de filas por (mes, sector). La clave combina el mes en los 24 bits altos
+     * y el ID del sector en los 40 bajos; el resultado es {céntimos, alquileres}.
+     */
+    @SuppressWarnings("serial") // RecursiveTask es Serializable, pero las tareas nunca se serializan
+    private static final class Suma extends RecursiveTask<Map<Long, long[]>> {
+
+        private final Filas filas;
+        private final int desde;
+        private final int hasta;
+
+        Suma(Filas filas, int desde, int hasta) {
+            this.filas = filas;
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        @Override
+        protected Map<Long, long[]> compute() {
+            if (hasta - desde <= UMBRAL_DIVISION) {
+                Map<Long, long[]> sumas = new HashMap<>();
+                for (int i = desde; i < hasta; i++) {
+                    long[] suma = sumas.computeIfAbsent(((long) filas.meses[i] << 40) | filas.sectores[i], clave -> new long[2]);
+                    suma[0] += filas.centimos[i];
+                    suma[1]++;
+                }
+                return sumas;
+            }
+            int medio = (desde + hasta) >>> 1;
+            Suma izquierda = new Suma(filas, desde, medio);
+            izquierda.fork();
+            Map<Long, long[]> derecha = new Suma(filas, medio, hasta).compute();
+            Map<Long, long[]> resultadoIzquierda = izquierda.join();
+            // Se recorre el mapa menor y se suma sobre el mayor
+            Map<Long, long[]> mayor = resultadoIzquierda.size() >= derecha.size() ? resultadoIzquierda : derecha;
+            Map<Long, long[]> menor = mayor == derecha ? resultadoIzquierda : derecha;
+            menor.forEach((clave, suma) -> mayor.merge(clave, suma, (a, b) -> {
+                a[0] += b[0];
+                a[1] += b[1];
+                return a;
+            }));
+            return mayor;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.api_gestion_almacen.series;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Archivo de una serie temporal: una cabecera y una sucesión de bloques que solo se
+ * añaden al final. Cada bloque guarda hasta unos cientos de puntos por columnas:
+ *
+ * <pre>
+ * int32 longitud | cuerpo | int32 CRC32 del cuerpo
+ * cuerpo: n, primer tiempo, último - primer tiempo,
+ *         n-1 deltas de tiempo,
+ *         por cada columna: primer valor y n-1 deltas (zigzag)
+ * </pre>
+ *
+ * <p>Todo son varints, así que un punto cuyo tiempo avanza unos minutos y cuyos valores
+ * cambian en una unidad ocupa unos pocos bytes. Al abrir se recorren solo las cabeceras
+ * de los bloques para construir el índice en memoria; un bloque final incompleto (escritura
+ * interrumpida) se descarta. Las lecturas usan una proyección en memoria del archivo.</p>
+ */
+final class SegmentoSerie implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SegmentoSerie.class);
+    private static final int MAGIA = 0x53455231; // "SER1"
+    private static final int CABECERA = 8;
+
+    private final Path ruta;
+    private final int columnas;
+    private final FileChannel canal;
+    private final List<Bloque> bloques = new ArrayList<>();
+    private long tamano;
+    private volatile MappedByteBuffer mapa;
+
+    private SegmentoSerie(Path ruta, int columnas, FileChannel canal) {
+        this.ruta = ruta;
+        this.columnas = columnas;
+        this.canal = canal;
+    }
+
+    /**
+     * Abre un segmento, creándolo si no existe.
+     *
+     * @param ruta Archivo del segmento.
+     * @param columnas Número de columnas de valores.
+     * @return El segmento abierto.
+     * @throws IOException si el archivo no se puede leer o no es un segmento compatible.
+     */
+    static SegmentoSerie abrir(Path ruta, int columnas) throws IOException {
+        FileChannel canal = FileChannel.open(ruta, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        SegmentoSerie segmento = new SegmentoSerie(ruta, columnas, canal);
+        try {
+            segmento.cargar();
+        } catch (IOException | RuntimeException e) {
+            canal.close();
+            throw e;
+        }
+        return segmento;
+    }
+
+    private void cargar() throws IOException {
+        long tamanoArchivo = canal.size();
+        if (tamanoArchivo < CABECERA) {
+            ByteBuffer cabecera = ByteBuffer.allocate(CABECERA).putInt(MAGIA).putInt(columnas).flip();
+            canal.truncate(0);
+            canal.write(cabecera, 0);
+            canal.force(true);
+            tamano = CABECERA;
+            remapear();
+            return;
+        }
+        MappedByteBuffer completo = canal.map(FileChannel.MapMode.READ_ONLY, 0, tamanoArchivo);
+        if (completo.getInt(0) != MAGIA || completo.getInt(4) != columnas) {
+            throw new IOException("El archivo " + ruta + " no es un segmento de " + columnas + " columnas");
+        }
+        long posicion = CABECERA;
+        while (posicion + 4 <= tamanoArchivo) {
+            int longitud = completo.getInt((int) posicion);
+            if (longitud <= 0 || posicion + 8 + longitud > tamanoArchivo) {
+                break;
+            }
+            ByteBuffer cuerpo = completo.slice((int) posicion + 4, longitud);
+            CRC32 crc = new CRC32();
+            crc.update(cuerpo.duplicate());
+            if ((int) crc.getValue() != completo.getInt((int) posicion + 4 + longitud)) {
+                break;
+            }
+            int n = (int) Varint.leer(cuerpo);
+            long primero = Varint.leer(cuerpo);
+            long ultimo = primero + Varint.leer(cuerpo);
+            bloques.add(new Bloque(primero, ultimo, n, (int) posicion + 4, longitud));
+            posicion += 8 + longitud;
+        }
+        if (posicion < tamanoArchivo) {
+            LOGGER.atWarn().addKeyValue("archivo", ruta).addKeyValue("bytes", tamanoArchivo - posicion)
+                .log("Se descarta el final incompleto de un segmento de serie temporal");
+            canal.truncate(posicion);
+        }
+        tamano = posicion;
+        remapear();
+    }
+
+    /**
+     * Añade un bloque al final del archivo y lo fuerza a disco. Lo llama un único escritor.
+     *
+     * @param tiempos Tiempos de los puntos, no decrecientes.
+     * @param valores Valores por columna: {@code valores[c][i]} es la columna c del punto i.
+     * @param n Número de puntos a escribir.
+     * @throws IOException si falla la escritura.
+     */
+    void escribir(long[] tiempos, long[][] valores, int n) throws IOException {
+        Varint.Escritor cuerpo = new Varint.Escritor();
+        cuerpo.escribir(n);
+        cuerpo.escribir(tiempos[0]);
+        cuerpo.escribir(tiempos[n - 1] - tiempos[0]);
+        for (int i = 1; i < n; i++) {
+            cuerpo.escribir(tiempos[i] - tiempos[i - 1]);
+        }
+        for (int c = 0; c < columnas; c++) {
+            long[] columna = valores[c];
+            cuerpo.escribirConSigno(columna[0]);
+            for (int i = 1; i < n; i++) {
+                cuerpo.escribirConSigno(columna[i] - columna[i - 1]);
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(cuerpo.bytes(), 0, cuerpo.longitud());
+        ByteBuffer bloque = ByteBuffer.allocate(cuerpo.longitud() + 8)
+            .putInt(cuerpo.longitud()).put(cuerpo.bytes(), 0, cuerpo.longitud()).putInt((int) crc.getValue()).flip();
+        long posicion = tamano;
+        while (bloque.hasRemaining()) {
+            posicion += canal.write(bloque, posicion);
+        }
+        canal.force(false);
+        bloques.add(new Bloque(tiempos[0], tiempos[n - 1], n, (int) tamano + 4, cuerpo.longitud()));
+        tamano = posicion;
+        remapear();
+    }
+
+    /**
+     * @return Proyección actual del archivo, que cubre todos los bloques de {@link #bloques()}.
+     */
+    MappedByteBuffer mapa() {
+        return mapa;
+    }
+
+    /**
+     * @return Copia del índice de bloques, en orden de tiempo.
+     */
+    List<Bloque> bloques() {
+        return List.copyOf(bloques);
+    }
+
+    /**
+     * Decodifica un bloque.
+     *
+     * @param mapa Proyección del archivo obtenida con {@link #mapa()}.
+     * @param bloque Bloque a decodificar.
+     * @param columnas Número de columnas de valores.
+     * @return Los tiempos y los valores por columna del bloque.
+     */
+    static Decodificado decodificar(MappedByteBuffer mapa, Bloque bloque, int columnas) {
+        ByteBuffer cuerpo = mapa.slice(bloque.posicion(), bloque.longitud());
+        int n = (int) Varint.leer(cuerpo);
+        long[] tiempos = new long[n];
+        tiempos[0] = Varint.leer(cuerpo);
+        Varint.leer(cuerpo); // Último tiempo, ya presente en el índice
+        for (int i = 1; i < n; i++) {
+            tiempos[i] = tiempos[i - 1] + Varint.leer(cuerpo);
+        }
+        long[][] valores = new long[columnas][n];
+        for (int c = 0; c < columnas; c++) {
+            long[] columna = valores[c];
+            columna[0] = Varint.deszigzag(Varint.leer(cuerpo));
+            for (int i = 1; i < n; i++) {
+                columna[i] = columna[i - 1] + Varint.deszigzag(Varint.leer(cuerpo));
+            }
+        }
+        return new Decodificado(tiempos, valores, n);
+    }
+
+    private void remapear() throws IOException {
+        if (tamano > Integer.MAX_VALUE) {
+            throw new IOException("Segmento demasiado grande: " + ruta);
+        }
+        mapa = canal.map(FileChannel.MapMode.READ_ONLY, 0, tamano);
+    }
+
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+
+    /**
+     * Entrada del índice de bloques.
+     *
+     * @param primerTiempo Tiempo del primer punto.
+     * @param ultimoTiempo Tiempo del último punto.
+     * @param puntos Número de puntos.
+     * @param posicion Posición del cuerpo en el archivo.
+     * @param longitud Longitud del cuerpo en bytes.
+     */
+    record Bloque(long primerTiempo, long ultimoTiempo, int puntos, int posicion, int longitud) {
+    }
+
+    /**
+     * Puntos de un bloque ya decodificados.
+     *
+     * @param tiempos Tiempos de los puntos.
+     * @param valores Valores por columna.
+     * @param puntos Número de puntos válidos.
+     */
+    record Decodificado(long[] tiempos, long[][] valores, int puntos) {
+    }
+}
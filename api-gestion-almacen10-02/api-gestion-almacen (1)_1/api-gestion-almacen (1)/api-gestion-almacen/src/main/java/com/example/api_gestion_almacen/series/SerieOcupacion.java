@@ -0,0 +1,394 @@
+package com.example.api_gestion_almacen.series;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.api_gestion_almacen.dtos.OcupacionDto;
+import com.example.api_gestion_almacen.entidades.SectorEntidad.EstadoSector;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Histórico de ocupación: cuántos sectores y cuántos metros cuadrados había en cada
+ * {@link EstadoSector} en cada momento.
+ *
+ * <p>Se guardan dos series en disco (directorio {@code sectores.ocupacion.directorio}):</p>
+ * <ul>
+ *   <li>{@code puntos-AAAA-MM.seg}: un punto por cada cambio de los totales, con los
+ *       totales resultantes. Entre dos puntos los totales son constantes.</li>
+ *   <li>{@code horas-AAAA.seg}: un resumen por hora con la integral de cada total
+ *       (valor × segundos) y los segundos cubiertos, de modo que la media de cualquier
+ *       conjunto de horas es exacta.</li>
+ * </ul>
+ *
+ * <p>Las consultas con un paso múltiplo de una hora leen los resúmenes (24 puntos por día
+ * consultado, sea cual sea el número de cambios) y solo la hora en curso de los puntos;
+ * las de paso menor recorren los puntos. Los resúmenes se derivan de los puntos: al
+ * arrancar se recalculan las horas que no llegaron a escribirse.</p>
+ *
+ * <p>{@link #registrar} se llama con el candado del índice de sectores, así que solo encola
+ * el punto; cada {@code sectores.ocupacion.volcado} (o antes de una consulta) se aplican los
+ * puntos encolados y se escriben en disco. Una caída pierde como mucho ese intervalo, y al
+ * volver a cargar el índice se registra de nuevo el estado actual. Mientras la aplicación
+ * está parada se supone que los totales no cambian. Si la serie no se puede abrir al
+ * arrancar, el histórico queda desactivado y las consultas no devuelven datos.</p>
+ */
+@Component
+public class SerieOcupacion {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SerieOcupacion.class);
+    private static final long HORA = 3600;
+    private static final EstadoSector[] ESTADOS = EstadoSector.values();
+    // Columnas: sectores por estado y después metros cuadrados por estado, en orden del enum
+    private static final int COLUMNAS = ESTADOS.length * 2;
+
+    @Value("${sectores.ocupacion.directorio:./series/ocupacion}")
+    private String directorio;
+
+    @Value("${sectores.ocupacion.puntos-maximos:10000}")
+    private int puntosMaximos;
+
+    private SerieTemporal puntos;
+    private SerieTemporal horas; // COLUMNAS integrales + segundos cubiertos
+
+    // Hora en curso, aún sin resumen escrito
+    private long horaAbierta;
+    private final long[] integrales = new long[COLUMNAS];
+    private long cubierto;
+    private long integradoHasta;
+    private long[] valores; // Totales vigentes; null si la serie está vacía
+    private volatile boolean activa;
+
+    // Puntos registrados aún sin aplicar, con su propio monitor: registrar no espera a la escritura
+    private final ArrayDeque<Pendiente> pendientes = new ArrayDeque<>();
+
+    @PostConstruct
+    public synchronized void iniciar() {
+        Path raiz = Paths.get(directorio).toAbsolutePath().normalize();
+        try {
+            puntos = new SerieTemporal(raiz, "puntos", COLUMNAS, 256,
+                tiempo -> YearMonth.from(Instant.ofEpochSecond(tiempo).atOffset(ZoneOffset.UTC)).toString());
+            horas = new SerieTemporal(raiz, "horas", COLUMNAS + 1, 24 * 7,
+                tiempo -> Integer.toString(Instant.ofEpochSecond(tiempo).atOffset(ZoneOffset.UTC).getYear()));
+
+            SerieTemporal.Punto ultimaHora = horas.ultimo();
+            SerieTemporal.Cursor cursor = puntos.leer(ultimaHora != null ? ultimaHora.tiempo() + HORA : Long.MIN_VALUE);
+            if (cursor.valido() || cursor.avanzar()) {
+                horaAbierta = ultimaHora != null ? ultimaHora.tiempo() + HORA : hora(cursor.tiempo());
+                integradoHasta = Math.max(cursor.tiempo(), horaAbierta);
+                valores = fila(cursor);
+                while (cursor.avanzar()) {
+                    avanzar(cursor.tiempo());
+                    valores = fila(cursor);
+                }
+                avanzar(ahora());
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.atError().addKeyValue("directorio", raiz).setCause(e)
+                .log("No se pudo abrir la serie de ocupación de sectores; el histórico queda desactivado");
+            cerrarSeries();
+            return;
+        }
+        activa = true;
+        LOGGER.atInfo().addKeyValue("directorio", raiz).log("Serie de ocupación de sectores abierta");
+    }
+
+    @PreDestroy
+    public synchronized void cerrar() {
+        if (activa) {
+            volcar();
+            activa = false;
+        }
+        cerrarSeries();
+    }
+
+    private void cerrarSeries() {
+        for (SerieTemporal serie : new SerieTemporal[] {puntos, horas}) {
+            if (serie != null) {
+                try {
+                    serie.close();
+                } catch (IOException e) {
+                    LOGGER.atWarn().addKeyValue("error", e.getMessage()).log("No se pudo cerrar la serie de ocupación");
+                }
+            }
+        }
+        puntos = null;
+        horas = null;
+    }
+
+    /**
+     * Encola los totales actuales; se guardan en el siguiente volcado si han cambiado.
+     * No escribe en disco ni espera a la escritura.
+     *
+     * @param sectores Número de sectores por estado, indexado por ordinal de {@link EstadoSector}.
+     * @param metrosCuadrados Metros cuadrados por estado, indexados igual.
+     */
+    public void registrar(long[] sectores, long[] metrosCuadrados) {
+        if (!activa) {
+            return;
+        }
+        long[] nuevos = new long[COLUMNAS];
+        System.arraycopy(sectores, 0, nuevos, 0, ESTADOS.length);
+        System.arraycopy(metrosCuadrados, 0, nuevos, ESTADOS.length, ESTADOS.length);
+        long ahora = ahora();
+        synchronized (pendientes) {
+            // Dentro del mismo segundo solo cuenta el último: los anteriores no duran nada
+            if (!pendientes.isEmpty() && pendientes.peekLast().tiempo() == ahora) {
+                pendientes.pollLast();
+            }
+            pendientes.addLast(new Pendiente(ahora, nuevos));
+        }
+    }
+
+    /**
+     * Aplica los puntos encolados, los escribe en disco y cierra las horas ya terminadas.
+     */
+    @Scheduled(fixedDelayString = "${sectores.ocupacion.volcado:PT1M}")
+    public synchronized void volcar() {
+        if (!activa) {
+            return;
+        }
+        try {
+            aplicarPendientes();
+            avanzar(ahora());
+            puntos.volcar();
+        } catch (IOException e) {
+            LOGGER.atWarn().addKeyValue("error", e.getMessage()).log("No se pudo escribir la serie de ocupación");
+        }
+    }
+
+    /**
+     * Ocupación media en intervalos consecutivos de {@code paso} entre {@code desde} y
+     * {@code hasta}. Si el paso es múltiplo de una hora, el inicio se redondea a la hora.
+     * Los intervalos sin datos se omiten; los cubiertos en parte promedian solo lo cubierto.
+     *
+     * @param desde Inicio del periodo.
+     * @param hasta Fin del periodo (excluido).
+     * @param paso Duración de cada intervalo, como mínimo un minuto.
+     * @return Un elemento por intervalo con datos.
+     * @throws IllegalArgumentException si el periodo o el paso no son válidos o hay demasiados intervalos.
+     */
+    public List<OcupacionDto> consultar(Instant desde, Instant hasta, Duration paso) {
+        long segundosPaso = paso.getSeconds();
+        if (segundosPaso < 60) {
+            throw new IllegalArgumentException("El paso mínimo es de un minuto");
+        }
+        boolean porHoras = segundosPaso % HORA == 0;
+        long inicio = porHoras ? hora(desde.getEpochSecond()) : desde.getEpochSecond();
+        long fin = hasta.getEpochSecond();
+        if (inicio >= fin) {
+            throw new IllegalArgumentException("El inicio del periodo debe ser anterior al fin");
+        }
+        if ((fin - inicio - 1) / segundosPaso >= puntosMaximos) {
+            throw new IllegalArgumentException("Demasiados intervalos; el máximo es " + puntosMaximos);
+        }
+
+        long ahora;
+        long horaPendiente; // Las horas anteriores tienen resumen (escrito o pendiente)
+        synchronized (this) {
+            if (!activa) {
+                return List.of();
+            }
+            try {
+                aplicarPendientes();
+            } catch (IOException e) {
+                // Se reintentan en el volcado; la consulta usa lo ya aplicado
+                LOGGER.atWarn().addKeyValue("error", e.getMessage()).log("No se pudo registrar la ocupación de sectores");
+            }
+            ahora = ahora();
+            horaPendiente = valores != null ? horaAbierta : Long.MAX_VALUE;
+        }
+        SerieTemporal.Cursor resumenes = porHoras ? horas.leer(inicio) : null;
+        boolean hayResumen = porHoras && ((resumenes.valido() && resumenes.tiempo() >= inicio) || resumenes.avanzar());
+        Integrador integrador = null;
+
+        List<OcupacionDto> resultado = new ArrayList<>();
+        for (long intervalo = inicio; intervalo < fin; intervalo += segundosPaso) {
+            long finIntervalo = Math.min(Math.min(intervalo + segundosPaso, fin), ahora);
+            long[] sumas = new long[COLUMNAS];
+            long segundos = 0;
+            long desdePuntos = intervalo;
+            if (porHoras) {
+                long limite = Math.min(finIntervalo, horaPendiente);
+                while (hayResumen && resumenes.tiempo() < limite) {
+                    if (resumenes.tiempo() >= intervalo) {
+                        for (int c = 0; c < COLUMNAS; c++) {
+                            sumas[c] += resumenes.valor(c);
+                        }
+                        segundos += resumenes.valor(COLUMNAS);
+                    }
+                    hayResumen = resumenes.avanzar();
+                }
+                desdePuntos = Math.max(intervalo, horaPendiente);
+            }
+            if (desdePuntos < finIntervalo) {
+                if (integrador == null) {
+                    integrador = new Integrador(puntos.leer(desdePuntos));
+                }
+                segundos += integrador.integrar(desdePuntos, finIntervalo, sumas);
+            }
+            if (segundos > 0) {
+                resultado.add(aDto(intervalo, sumas, segundos));
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Añade a la serie los puntos encolados, en orden. Si uno falla, él y los siguientes
+     * vuelven a la cola para el próximo intento.
+     */
+    private void aplicarPendientes() throws IOException {
+        List<Pendiente> lote;
+        synchronized (pendientes) {
+            lote = new ArrayList<>(pendientes);
+            pendientes.clear();
+        }
+        for (int i = 0; i < lote.size(); i++) {
+            try {
+                aplicar(lote.get(i).tiempo(), lote.get(i).valores());
+            } catch (IOException e) {
+                synchronized (pendientes) {
+                    for (int j = lote.size() - 1; j >= i; j--) {
+                        pendientes.addFirst(lote.get(j));
+                    }
+                }
+                throw e;
+            }
+        }
+    }
+
+    private void aplicar(long tiempo, long[] nuevos) throws IOException {
+        if (valores == null) {
+            horaAbierta = hora(tiempo);
+            integradoHasta = tiempo;
+        } else {
+            avanzar(tiempo);
+            if (Arrays.equals(valores, nuevos)) {
+                return;
+            }
+        }
+        puntos.agregar(tiempo, nuevos);
+        valores = nuevos;
+    }
+
+    /** Integra los totales hasta {@code tiempo}, cerrando las horas que terminen antes. */
+    private void avanzar(long tiempo) throws IOException {
+        if (valores == null) {
+            return;
+        }
+        while (tiempo >= horaAbierta + HORA) {
+            integrar(horaAbierta + HORA);
+            if (cubierto > 0) {
+                long[] resumen = Arrays.copyOf(integrales, COLUMNAS + 1);
+                resumen[COLUMNAS] = cubierto;
+                horas.agregar(horaAbierta, resumen); // Si falla, la hora se reintenta en la siguiente llamada
+            }
+            Arrays.fill(integrales, 0);
+            cubierto = 0;
+            horaAbierta += HORA;
+        }
+        integrar(tiempo);
+    }
+
+    private void integrar(long hasta) {
+        long segundos = hasta - integradoHasta;
+        if (segundos > 0) {
+            for (int c = 0; c < COLUMNAS; c++) {
+                integrales[c] += valores[c] * segundos;
+            }
+            cubierto += segundos;
+            integradoHasta = hasta;
+        }
+    }
+
+    private static OcupacionDto aDto(long desde, long[] sumas, long segundos) {
+        Map<String, Double> sectores = new LinkedHashMap<>();
+        Map<String, Double> metros = new LinkedHashMap<>();
+        for (EstadoSector estado : ESTADOS) {
+            sectores.put(estado.name(), media(sumas[estado.ordinal()], segundos));
+            metros.put(estado.name(), media(sumas[ESTADOS.length + estado.ordinal()], segundos));
+        }
+        return new OcupacionDto(Instant.ofEpochSecond(desde), sectores, metros);
+    }
+
+    private static double media(long integral, long segundos) {
+        return Math.round(integral * 100.0 / segundos) / 100.0;
+    }
+
+    private static long[] fila(SerieTemporal.Cursor cursor) {
+        long[] fila = new long[COLUMNAS];
+        for (int c = 0; c < COLUMNAS; c++) {
+            fila[c] = cursor.valor(c);
+        }
+        return fila;
+    }
+
+    private static long hora(long tiempo) {
+        return Math.floorDiv(tiempo, HORA) * HORA;
+    }
+
+    private static long ahora() {
+        return Instant.now().getEpochSecond();
+    }
+
+    /** Totales registrados y aún sin aplicar a la serie. */
+    private record Pendiente(long tiempo, long[] valores) {
+    }
+
+    /** Integra los puntos de la serie por tramos consecutivos, en una sola pasada. */
+    private static final class Integrador {
+        private final SerieTemporal.Cursor cursor;
+
+        Integrador(SerieTemporal.Cursor cursor) {
+            this.cursor = cursor;
+        }
+
+        /**
+         * Suma a {@code sumas} la integral de cada columna en [desde, hasta). Los tramos
+         * deben pedirse en orden.
+         *
+         * @return Segundos del tramo con datos.
+         */
+        long integrar(long desde, long hasta, long[] sumas) {
+            long segundos = 0;
+            long tiempo = desde;
+            while (tiempo < hasta) {
+                long siguiente = cursor.siguienteTiempo();
+                if (!cursor.valido() || siguiente <= tiempo) {
+                    if (!cursor.valido() && siguiente >= hasta) {
+                        break; // Sin datos antes del final del tramo
+                    }
+                    cursor.avanzar();
+                    tiempo = Math.max(tiempo, cursor.tiempo());
+                    continue;
+                }
+                long fin = Math.min(siguiente, hasta);
+                for (int c = 0; c < COLUMNAS; c++) {
+                    sumas[c] += cursor.valor(c) * (fin - tiempo);
+                }
+                segundos += fin - tiempo;
+                tiempo = fin;
+            }
+            return segundos;
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.example.api_gestion_almacen.series;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.function.LongFunction;
+
+/**
+ * Serie temporal de solo añadir con un número fijo de columnas enteras, repartida en un
+ * {@link SegmentoSerie} por periodo (por ejemplo, uno por mes).
+ *
+ * <p>Los puntos nuevos se acumulan en memoria y se escriben como un bloque cuando se llena
+ * o cuando se llama a {@link #volcar()}; mientras tanto también son visibles para las
+ * lecturas. Un único escritor (con el monitor de la serie) y cualquier número de lectores:
+ * un {@link Cursor} trabaja sobre una copia del índice de bloques y de los puntos
+ * pendientes, y lee los bloques de la proyección en memoria sin bloquear.</p>
+ */
+final class SerieTemporal implements Closeable {
+
+    private final Path directorio;
+    private final String prefijo;
+    private final int columnas;
+    private final int tamanoBloque;
+    private final LongFunction<String> periodo;
+    private final TreeMap<String, SegmentoSerie> segmentos = new TreeMap<>();
+
+    private final long[] tiempos;
+    private final long[][] valores;
+    private int pendientes;
+    private String periodoPendiente;
+    private Punto ultimo;
+
+    /**
+     * Abre la serie y sus segmentos existentes.
+     *
+     * @param directorio Directorio de los segmentos.
+     * @param prefijo Prefijo de los archivos: {@code <prefijo>-<periodo>.seg}.
+     * @param columnas Número de columnas de valores.
+     * @param tamanoBloque Puntos por bloque.
+     * @param periodo Periodo de un tiempo; el orden de los periodos debe coincidir con el del tiempo.
+     * @throws IOException si algún segmento no se puede abrir.
+     */
+    SerieTemporal(Path directorio, String prefijo, int columnas, int tamanoBloque, LongFunction<String> periodo) throws IOException {
+        this.directorio = directorio;
+        this.prefijo = prefijo;
+        this.columnas = columnas;
+        this.tamanoBloque = tamanoBloque;
+        this.periodo = periodo;
+        this.tiempos = new long[tamanoBloque];
+        this.valores = new long[columnas][tamanoBloque];
+
+        Files.createDirectories(directorio);
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(directorio, prefijo + "-*.seg")) {
+            for (Path archivo : archivos) {
+                String nombre = archivo.getFileName().toString();
+                segmentos.put(nombre.substring(prefijo.length() + 1, nombre.length() - 4), SegmentoSerie.abrir(archivo, columnas));
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+        for (SegmentoSerie segmento : segmentos.descendingMap().values()) {
+            List<SegmentoSerie.Bloque> bloques = segmento.bloques();
+            if (!bloques.isEmpty()) {
+                SegmentoSerie.Decodificado bloque = SegmentoSerie.decodificar(segmento.mapa(), bloques.get(bloques.size() - 1), columnas);
+                ultimo = punto(bloque, bloque.puntos() - 1);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Añade un punto. Un tiempo anterior al del último punto (un ajuste del reloj) se
+     * sustituye por este para mantener la serie ordenada.
+     *
+     * @param tiempo Tiempo del punto.
+     * @param punto Valores de cada columna.
+     * @throws IOException si hay que escribir el bloque anterior y falla; el punto no se añade.
+     */
+    synchronized void agregar(long tiempo, long[] punto) throws IOException {
+        if (ultimo != null && tiempo < ultimo.tiempo()) {
+            tiempo = ultimo.tiempo();
+        }
+        String periodoPunto = periodo.apply(tiempo);
+        if (pendientes == tamanoBloque || (pendientes > 0 && !periodoPunto.equals(periodoPendiente))) {
+            volcar();
+        }
+        periodoPendiente = periodoPunto;
+        tiempos[pendientes] = tiempo;
+        for (int c = 0; c < columnas; c++) {
+            valores[c][pendientes] = punto[c];
+        }
+        pendientes++;
+        ultimo = new Punto(tiempo, punto.clone());
+    }
+
+    /**
+     * Escribe en disco los puntos pendientes.
+     *
+     * @throws IOException si falla la escritura; los puntos siguen pendientes.
+     */
+    synchronized void volcar() throws IOException {
+        if (pendientes == 0) {
+            return;
+        }
+        SegmentoSerie segmento = segmentos.get(periodoPendiente);
+        if (segmento == null) {
+            segmento = SegmentoSerie.abrir(directorio.resolve(prefijo + "-" + periodoPendiente + ".seg"), columnas);
+            segmentos.put(periodoPendiente, segmento);
+        }
+        segmento.escribir(tiempos, valores, pendientes);
+        pendientes = 0;
+    }
+
+    /**
+     * @return El último punto añadido, o null si la serie está vacía.
+     */
+    synchronized Punto ultimo() {
+        return ultimo;
+    }
+
+    /**
+     * Abre un cursor situado en el último punto con tiempo menor o igual que {@code desde},
+     * o antes del primero si no hay ninguno.
+     *
+     * @param desde Tiempo de inicio de la lectura.
+     * @return El cursor.
+     */
+    Cursor leer(long desde) {
+        List<Fuente> fuentes = new ArrayList<>();
+        synchronized (this) {
+            for (SegmentoSerie segmento : segmentos.values()) {
+                MappedByteBuffer mapa = segmento.mapa();
+                for (SegmentoSerie.Bloque bloque : segmento.bloques()) {
+                    if (bloque.ultimoTiempo() < desde) {
+                        fuentes.clear(); // Basta con el último bloque anterior al inicio
+                    }
+                    fuentes.add(new Fuente(bloque.primerTiempo(), mapa, bloque, null));
+                }
+            }
+            if (pendientes > 0) {
+                long[][] copia = new long[columnas][];
+                for (int c = 0; c < columnas; c++) {
+                    copia[c] = Arrays.copyOf(valores[c], pendientes);
+                }
+                fuentes.add(new Fuente(tiempos[0], null, null,
+                    new SegmentoSerie.Decodificado(Arrays.copyOf(tiempos, pendientes), copia, pendientes)));
+            }
+        }
+        return new Cursor(fuentes, desde);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        IOException error = null;
+        try {
+            volcar();
+        } catch (IOException e) {
+            error = e;
+        }
+        for (SegmentoSerie segmento : segmentos.values()) {
+            try {
+                segmento.close();
+            } catch (IOException e) {
+                error = error != null ? error : e;
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private static Punto punto(SegmentoSerie.Decodificado bloque, int indice) {
+        long[] fila = new long[bloque.valores().length];
+        for (int c = 0; c < fila.length; c++) {
+            fila[c] = bloque.valores()[c][indice];
+        }
+        return new Punto(bloque.tiempos()[indice], fila);
+    }
+
+    /**
+     * Punto de la serie.
+     *
+     * @param tiempo Tiempo del punto.
+     * @param valores Valores de cada columna; no debe modificarse.
+     */
+    record Punto(long tiempo, long[] valores) {
+    }
+
+    /** Bloque en disco o puntos pendientes ya decodificados. */
+    private record Fuente(long primerTiempo, MappedByteBuffer mapa, SegmentoSerie.Bloque bloque, SegmentoSerie.Decodificado memoria) {
+
+        SegmentoSerie.Decodificado decodificar(int columnas) {
+            return memoria != null ? memoria : SegmentoSerie.decodificar(mapa, bloque, columnas);
+        }
+    }
+
+    /**
+     * Recorrido hacia delante de los puntos de la serie. Decodifica cada bloque solo al
+     * llegar a él; el tiempo del siguiente punto se conoce sin decodificarlo gracias al índice.
+     */
+    final class Cursor {
+        private final List<Fuente> fuentes;
+        private int fuente = -1;
+        private SegmentoSerie.Decodificado actual; // null: antes del primer punto
+        private int indice;
+
+        private Cursor(List<Fuente> fuentes, long desde) {
+            this.fuentes = fuentes;
+            int bajo = 0;
+            int alto = fuentes.size();
+            while (bajo < alto) {
+                int medio = (bajo + alto) >>> 1;
+                if (fuentes.get(medio).primerTiempo() <= desde) {
+                    bajo = medio + 1;
+                } else {
+                    alto = medio;
+                }
+            }
+            if (bajo > 0) {
+                fuente = bajo - 1;
+                actual = fuentes.get(fuente).decodificar(columnas);
+                indice = 0;
+                while (indice + 1 < actual.puntos() && actual.tiempos()[indice + 1] <= desde) {
+                    indice++;
+                }
+            }
+        }
+
+        /**
+         * @return true si el cursor está sobre un punto; false si está antes del primero.
+         */
+        boolean valido() {
+            return actual != null;
+        }
+
+        long tiempo() {
+            return actual.tiempos()[indice];
+        }
+
+        long valor(int columna) {
+            return actual.valores()[columna][indice];
+        }
+
+        /**
+         * @return Tiempo del punto siguiente, o {@link Long#MAX_VALUE} si no hay más.
+         */
+        long siguienteTiempo() {
+            if (actual != null && indice + 1 < actual.puntos()) {
+                return actual.tiempos()[indice + 1];
+            }
+            return fuente + 1 < fuentes.size() ? fuentes.get(fuente + 1).primerTiempo() : Long.MAX_VALUE;
+        }
+
+        /**
+         * Pasa al punto siguiente.
+         *
+         * @return false si no hay más puntos; el cursor se queda donde estaba.
+         */
+        boolean avanzar() {
+            if (actual != null && indice + 1 < actual.puntos()) {
+                indice++;
+                return true;
+            }
+            if (fuente + 1 >= fuentes.size()) {
+                return false;
+            }
+            fuente++;
+            actual = fuentes.get(fuente).decodificar(columnas);
+            indice = 0;
+            return true;
+        }
+    }
+}
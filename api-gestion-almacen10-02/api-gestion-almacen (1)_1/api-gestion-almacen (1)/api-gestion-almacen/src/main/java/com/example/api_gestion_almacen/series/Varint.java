@@ -0,0 +1,67 @@
+package com.example.api_gestion_almacen.series;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Enteros de longitud variable (7 bits por byte, el bit alto indica que sigue otro byte)
+ * y codificación zigzag para que los deltas negativos pequeños también ocupen poco.
+ */
+final class Varint {
+
+    private Varint() {
+    }
+
+    static long zigzag(long valor) {
+        return (valor << 1) ^ (valor >> 63);
+    }
+
+    static long deszigzag(long valor) {
+        return (valor >>> 1) ^ -(valor & 1);
+    }
+
+    static long leer(ByteBuffer buffer) {
+        long valor = 0;
+        for (int desplazamiento = 0; desplazamiento < 64; desplazamiento += 7) {
+            byte b = buffer.get();
+            valor |= (long) (b & 0x7F) << desplazamiento;
+            if (b >= 0) {
+                return valor;
+            }
+        }
+        throw new IllegalStateException("Varint demasiado largo");
+    }
+
+    /** Buffer de escritura que crece según hace falta. */
+    static final class Escritor {
+        private byte[] bytes = new byte[256];
+        private int longitud;
+
+        void escribir(long valor) {
+            asegurar(10);
+            while ((valor & ~0x7FL) != 0) {
+                bytes[longitud++] = (byte) ((valor & 0x7F) | 0x80);
+                valor >>>= 7;
+            }
+            bytes[longitud++] = (byte) valor;
+        }
+
+        void escribirConSigno(long valor) {
+            escribir(zigzag(valor));
+        }
+
+        byte[] bytes() {
+            return bytes;
+        }
+
+        int longitud() {
+            return longitud;
+        }
+
+        private void asegurar(int extra) {
+            if (longitud + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, longitud + extra));
+            }
+        }
+    }
+}
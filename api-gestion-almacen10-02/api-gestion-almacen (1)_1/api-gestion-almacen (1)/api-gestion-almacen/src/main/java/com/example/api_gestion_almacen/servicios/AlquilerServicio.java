@@ -1,50 +1,159 @@
 package com.example.api_gestion_almacen.servicios;
 
+import com.example.api_gestion_almacen.busqueda.AgendaSectores;
+import com.example.api_gestion_almacen.busqueda.IndiceSectores;
+import com.example.api_gestion_almacen.busqueda.Reserva;
+import com.example.api_gestion_almacen.cache.VersionesColecciones;
+import com.example.api_gestion_almacen.cache.VersionesColecciones.Coleccion;
+import com.example.api_gestion_almacen.dtos.AlquilerDto;
+import com.example.api_gestion_almacen.dtos.IngresosDto;
+import com.example.api_gestion_almacen.dtos.PaginaDto;
+import com.example.api_gestion_almacen.dtos.SectorDto;
 import com.example.api_gestion_almacen.entidades.AlquilerEntidad;
 import com.example.api_gestion_almacen.entidades.SectorEntidad;
 import com.example.api_gestion_almacen.repositorios.AlquilerRepositorio;
+import com.example.api_gestion_almacen.series.IngresosAlquileres;
+import com.example.api_gestion_almacen.utilidades.CandadosPorClave;
+import com.example.api_gestion_almacen.utilidades.CursorPaginacion;
+import com.example.api_gestion_almacen.utilidades.DespuesDelCommit;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
 
 /**
  * Servicio para gestionar las operaciones relacionadas con los alquileres.
  */
 @Service
 public class AlquilerServicio {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AlquilerServicio.class);
     
     @Autowired
     private AlquilerRepositorio alquilerRepositorio;
     
     @Autowired
     private SectorServicio sectorServicio;
+
+    @Autowired
+    private VersionesColecciones versiones;
+
+    @Autowired
+    private AgendaSectores agendaSectores;
+
+    @Autowired
+    private ExpiracionAlquileresServicio expiracion;
+
+    @Autowired
+    private IngresosAlquileres ingresos;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate; // La transacción se abre y se confirma dentro del candado del sector
+
+    @Value("${alquileres.candados.franjas:256}")
+    private int franjasCandados;
+
+    @Value("${alquileres.listado.tamano-pagina:50}")
+    private int tamanoPagina; // Tamaño de página por defecto del listado de alquileres de un usuario
+
+    @Value("${alquileres.listado.tamano-maximo:200}")
+    private int tamanoMaximoPagina; // Límite superior del tamaño de página que puede pedir el cliente
+
+    private CandadosPorClave candadosSectores;
+
+    @PostConstruct
+    void iniciar() {
+        candadosSectores = new CandadosPorClave(franjasCandados);
+    }
     
     /**
-     * Crea un nuevo alquiler.
+     * Crea un nuevo alquiler para el intervalo [fechaInicio, fechaFin), que puede empezar
+     * ahora o en el futuro. Se rechaza si se solapa con otro alquiler activo del sector.
+     *
+     * <p>El solapamiento se comprueba primero en {@link AgendaSectores} (O(log n), sin
+     * consultar la base de datos) y después, con la fila del sector bloqueada, en la base
+     * de datos, que es la referencia aunque haya varias instancias de la aplicación. Si el
+     * alquiler empieza ya, el sector pasa a OCUPADO en la misma transacción sea cual sea su
+     * estado anterior: el estado puede ir por detrás de la agenda (un alquiler que acaba de
+     * terminar y que {@link #sincronizarEstados()} aún no ha liberado) y no decide si el
+     * sector está libre. Si empieza más adelante, lo ocupará {@link #sincronizarEstados()}.</p>
+     *
+     * <p>Dentro de cada instancia las operaciones sobre un mismo sector esperan en un
+     * candado por franjas que cubre toda la transacción: la espera ocurre en memoria y no
+     * en el bloqueo de la fila, y las operaciones sobre sectores distintos no se esperan
+     * entre sí. Por eso la transacción no la abre el llamador sino este método, después de
+     * tomar el candado.</p>
      *
      * @param sectorId ID del sector que se va a alquilar.
      * @param usuarioId ID del usuario que realiza el alquiler.
      * @param ordenId ID de la orden asociada al alquiler.
      * @param montoPagado Monto pagado por el alquiler.
      * @param fechaInicio Fecha y hora de inicio del alquiler.
-     * @param fechaFin Fecha y hora de finalización del alquiler.
+     * @param fechaFin Fecha y hora de finalización del alquiler (excluida).
      * @return La entidad de alquiler creada.
-     * @throws RuntimeException si el sector no está disponible o no se encuentra.
+     * @throws IllegalArgumentException si las fechas no son válidas.
+     * @throws RuntimeException si el sector no se encuentra, no está libre en esas fechas o
+     *         la orden ya tiene un alquiler.
      */
-    @Transactional
     public AlquilerEntidad crearAlquiler(Long sectorId, Long usuarioId, String ordenId, 
                                         BigDecimal montoPagado, LocalDateTime fechaInicio, 
                                         LocalDateTime fechaFin) {
-        // Verificar y reservar el sector
-        SectorEntidad sector = sectorServicio.buscarPorId(sectorId)
+        if (sectorId == null) {
+            throw new RuntimeException("Sector no encontrado");
+        }
+        if (fechaInicio == null || fechaFin == null || !fechaInicio.isBefore(fechaFin)) {
+            throw new IllegalArgumentException("La fecha de inicio debe ser anterior a la fecha de fin");
+        }
+        if (!fechaFin.isAfter(LocalDateTime.now())) {
+            throw new IllegalArgumentException("La fecha de fin ya ha pasado");
+        }
+        return enSector(sectorId, () -> {
+            if (agendaSectores.solapada(sectorId, fechaInicio, fechaFin).isPresent()) {
+                throw new RuntimeException("El sector ya está alquilado en esas fechas");
+            }
+            try {
+                return transactionTemplate.execute(estado ->
+                    registrarAlquiler(sectorId, usuarioId, ordenId, montoPagado, fechaInicio, fechaFin));
+            } catch (DataIntegrityViolationException e) {
+                // Restricción única de orden_id: la orden ya generó un alquiler
+                throw new RuntimeException("Ya existe un alquiler para esa orden");
+            }
+        });
+    }
+
+    private AlquilerEntidad registrarAlquiler(Long sectorId, Long usuarioId, String ordenId,
+                                              BigDecimal montoPagado, LocalDateTime fechaInicio,
+                                              LocalDateTime fechaFin) {
+        SectorEntidad sector = sectorServicio.bloquearPorId(sectorId)
             .orElseThrow(() -> new RuntimeException("Sector no encontrado"));
-            
-        if (sector.getEstado() != SectorEntidad.EstadoSector.DISPONIBLE) {
-            throw new RuntimeException("El sector no está disponible");
+        if (sector.getEstado() == SectorEntidad.EstadoSector.MANTENIMIENTO) {
+            throw new RuntimeException("El sector está en mantenimiento");
+        }
+        if (alquilerRepositorio.existeSolapamiento(sectorId, fechaInicio, fechaFin)) {
+            throw new RuntimeException("El sector ya está alquilado en esas fechas");
+        }
+        if (!fechaInicio.isAfter(LocalDateTime.now()) && sector.getEstado() != SectorEntidad.EstadoSector.OCUPADO) {
+            // Empieza ya y nada se solapa: el sector se ocupa en la misma transacción. Si aún
+            // constaba como OCUPADO por un alquiler ya terminado, se deja así. La fila está
+            // bloqueada, así que el UPDATE condicional sobre el estado leído no puede fallar
+            sector = sectorServicio.cambiarEstadoSi(sectorId, sector.getEstado(), SectorEntidad.EstadoSector.OCUPADO)
+                .orElseThrow(() -> new RuntimeException("El sector no está disponible"));
         }
         
         // Crear el alquiler
@@ -57,37 +166,209 @@ public class AlquilerServicio {
         alquiler.setFechaFin(fechaFin);
         alquiler.setEstado(AlquilerEntidad.EstadoAlquiler.ACTIVO);
         
-        // Marcar el sector como ocupado
-        sectorServicio.actualizarEstado(sectorId, SectorEntidad.EstadoSector.OCUPADO);
-        
-        return alquilerRepositorio.save(alquiler);
+        AlquilerEntidad guardado = alquilerRepositorio.save(alquiler);
+        Reserva reserva = new Reserva(guardado.getId(), sectorId, fechaInicio, fechaFin);
+        long centimos = IndiceSectores.aCentimos(montoPagado);
+        DespuesDelCommit.ejecutar(() -> {
+            agendaSectores.agregar(reserva);
+            expiracion.programar(reserva);
+            ingresos.sumar(sectorId, fechaInicio, centimos);
+            versiones.incrementar(Coleccion.ALQUILERES, usuarioId);
+        });
+        return guardado;
     }
     
     /**
-     * Lista todos los alquileres de un usuario específico.
+     * Obtiene una página de los alquileres de un usuario ordenada por ID, usando
+     * paginación por cursor. Es una única consulta de proyección con el sector unido, así
+     * que el coste de cada página es constante aunque el usuario tenga muchos alquileres.
      *
      * @param usuarioId ID del usuario cuyos alquileres se desean listar.
-     * @return Lista de entidades de alquiler asociadas al usuario.
+     * @param estado Estado de los alquileres (ACTIVO, FINALIZADO o CANCELADO), o null para todos.
+     * @param desde Solo alquileres que terminan después de esta fecha (fecha o fecha y hora ISO-8601), o null.
+     * @param hasta Solo alquileres que empiezan antes de esta fecha, o null.
+     * @param cursor Cursor devuelto por la página anterior, o null para la primera página.
+     * @param tamano Tamaño de página solicitado, o null para usar el valor por defecto.
+     * @return La página de alquileres y el cursor de la página siguiente, si existe.
+     * @throws IllegalArgumentException si algún filtro o el cursor no es válido.
      */
-    public List<AlquilerEntidad> listarAlquileresUsuario(Long usuarioId) {
-        return alquilerRepositorio.findByUsuarioId(usuarioId);
+    public PaginaDto<AlquilerDto> listarAlquileresUsuario(Long usuarioId, String estado, String desde, String hasta,
+                                                          String cursor, Integer tamano) {
+        long despuesDe = cursor == null || cursor.isBlank() ? 0L : CursorPaginacion.decodificar(cursor);
+        int limite = tamano == null || tamano <= 0 ? tamanoPagina : Math.min(tamano, tamanoMaximoPagina);
+        AlquilerEntidad.EstadoAlquiler filtroEstado;
+        try {
+            filtroEstado = estado == null || estado.isBlank() ? null : AlquilerEntidad.EstadoAlquiler.valueOf(estado.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Estado no válido: " + estado);
+        }
+        LocalDateTime inicio = leerFechaHora(desde);
+        LocalDateTime fin = leerFechaHora(hasta);
+        if (inicio != null && fin != null && !inicio.isBefore(fin)) {
+            throw new IllegalArgumentException("La fecha de inicio debe ser anterior a la fecha de fin");
+        }
+
+        // Se pide una fila extra para saber si hay página siguiente sin un COUNT adicional
+        List<AlquilerDto> alquileres = alquilerRepositorio.listarPaginaUsuario(
+            usuarioId, despuesDe, filtroEstado, inicio, fin, Limit.of(limite + 1));
+        if (alquileres.size() <= limite) {
+            return new PaginaDto<>(alquileres, null);
+        }
+        List<AlquilerDto> pagina = alquileres.subList(0, limite);
+        return new PaginaDto<>(new ArrayList<>(pagina), CursorPaginacion.codificar(pagina.get(limite - 1).getId()));
+    }
+
+    private static LocalDateTime leerFechaHora(String valor) {
+        if (valor == null || valor.isBlank()) {
+            return null;
+        }
+        try {
+            return valor.length() == 10 ? LocalDate.parse(valor).atStartOfDay() : LocalDateTime.parse(valor);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Fecha no válida: " + valor);
+        }
     }
     
     /**
-     * Finaliza un alquiler específico.
+     * Informe de ingresos de los alquileres no cancelados, por mes de inicio o por sector,
+     * servido desde los acumulados en memoria sin consultar la tabla de alquileres.
+     *
+     * @param desde Primer mes incluido ({@code 2025-01} o una fecha de ese mes), o null para empezar por el más antiguo.
+     * @param hasta Último mes incluido, o null para acabar en el más reciente.
+     * @param agrupar {@code mes} (por defecto) o {@code sector}.
+     * @return Un elemento por mes o por sector con ingresos, en orden.
+     * @throws IllegalArgumentException si algún parámetro no es válido.
+     */
+    public List<IngresosDto> consultarIngresos(String desde, String hasta, String agrupar) {
+        YearMonth primero = leerMes(desde);
+        YearMonth ultimo = leerMes(hasta);
+        if (primero != null && ultimo != null && primero.isAfter(ultimo)) {
+            throw new IllegalArgumentException("El mes inicial no puede ser posterior al final");
+        }
+        String agrupacion = agrupar == null || agrupar.isBlank() ? "mes" : agrupar.trim().toLowerCase(Locale.ROOT);
+        List<IngresosDto> resultado = new ArrayList<>();
+        switch (agrupacion) {
+            case "mes" -> ingresos.porMes(primero, ultimo).forEach((mes, suma) -> {
+                IngresosDto dto = aIngresosDto(suma);
+                dto.setMes(mes.toString());
+                resultado.add(dto);
+            });
+            case "sector" -> ingresos.porSector(primero, ultimo).forEach((sectorId, suma) -> {
+                IngresosDto dto = aIngresosDto(suma);
+                dto.setSectorId(sectorId);
+                sectorServicio.obtenerPorId(sectorId).ifPresent(sector -> dto.setSectorNombre(sector.getNombre()));
+                resultado.add(dto);
+            });
+            default -> throw new IllegalArgumentException("Agrupación no válida: " + agrupar + " (mes o sector)");
+        }
+        return resultado;
+    }
+
+    private static IngresosDto aIngresosDto(long[] suma) {
+        IngresosDto dto = new IngresosDto();
+        dto.setIngresos(BigDecimal.valueOf(suma[0], 2));
+        dto.setAlquileres(suma[1]);
+        return dto;
+    }
+
+    private static YearMonth leerMes(String valor) {
+        if (valor == null || valor.isBlank()) {
+            return null;
+        }
+        try {
+            return valor.length() == 7 ? YearMonth.parse(valor) : YearMonth.from(LocalDate.parse(valor));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Mes no válido: " + valor);
+        }
+    }
+
+    /**
+     * Finaliza un alquiler específico. Si estaba ocupando el sector en este momento, el
+     * sector vuelve a quedar disponible. Finalizar un alquiler que ya no está activo no
+     * tiene efecto.
      *
      * @param alquilerId ID del alquiler que se desea finalizar.
      * @throws RuntimeException si el alquiler no se encuentra.
      */
-    @Transactional
     public void finalizarAlquiler(Long alquilerId) {
-        AlquilerEntidad alquiler = alquilerRepositorio.findById(alquilerId)
+        terminarAlquiler(alquilerId, AlquilerEntidad.EstadoAlquiler.FINALIZADO);
+    }
+
+    /**
+     * Cancela un alquiler específico, normalmente una reserva futura, y libera su intervalo
+     * en la agenda del sector. Si ya había empezado, el sector vuelve a quedar disponible.
+     * Cancelar un alquiler que ya no está activo no tiene efecto.
+     *
+     * @param alquilerId ID del alquiler que se desea cancelar.
+     * @throws RuntimeException si el alquiler no se encuentra.
+     */
+    public void cancelarAlquiler(Long alquilerId) {
+        terminarAlquiler(alquilerId, AlquilerEntidad.EstadoAlquiler.CANCELADO);
+    }
+
+    private void terminarAlquiler(Long alquilerId, AlquilerEntidad.EstadoAlquiler destino) {
+        Long sectorId = alquilerRepositorio.obtenerSectorId(alquilerId)
             .orElseThrow(() -> new RuntimeException("Alquiler no encontrado"));
-            
-        alquiler.setEstado(AlquilerEntidad.EstadoAlquiler.FINALIZADO);
-        sectorServicio.actualizarEstado(alquiler.getSector().getId(), 
-                                      SectorEntidad.EstadoSector.DISPONIBLE);
-        
-        alquilerRepositorio.save(alquiler);
+        enSector(sectorId, () -> transactionTemplate.execute(estado -> {
+            AlquilerEntidad alquiler = alquilerRepositorio.findById(alquilerId)
+                .orElseThrow(() -> new RuntimeException("Alquiler no encontrado"));
+            if (alquiler.getEstado() != AlquilerEntidad.EstadoAlquiler.ACTIVO) {
+                return null;
+            }
+            alquiler.setEstado(destino);
+            alquilerRepositorio.save(alquiler);
+            Reserva reserva = new Reserva(alquiler.getId(), sectorId, alquiler.getFechaInicio(), alquiler.getFechaFin());
+            if (reserva.contiene(LocalDateTime.now())) {
+                // Si el sector ya no estaba ocupado (por ejemplo, en mantenimiento) se deja como está
+                sectorServicio.cambiarEstadoSi(sectorId,
+                    SectorEntidad.EstadoSector.OCUPADO, SectorEntidad.EstadoSector.DISPONIBLE);
+            }
+            Long usuarioId = alquiler.getUsuarioId();
+            long centimos = IndiceSectores.aCentimos(alquiler.getMontoPagado());
+            DespuesDelCommit.ejecutar(() -> {
+                agendaSectores.quitar(reserva);
+                if (destino == AlquilerEntidad.EstadoAlquiler.CANCELADO) {
+                    ingresos.restar(sectorId, reserva.inicio(), centimos);
+                }
+                versiones.incrementar(Coleccion.ALQUILERES, usuarioId);
+            });
+            return null;
+        }));
+    }
+
+    /**
+     * Deriva el estado de cada sector de su agenda: OCUPADO si algún alquiler activo lo
+     * ocupa en este momento y DISPONIBLE si no. Así los alquileres futuros ocupan su
+     * sector al empezar y lo liberan al llegar su fecha de fin. Los sectores en
+     * mantenimiento no se modifican.
+     */
+    @Scheduled(initialDelayString = "${alquileres.agenda.sincronizacion:PT1M}", fixedDelayString = "${alquileres.agenda.sincronizacion:PT1M}")
+    public void sincronizarEstados() {
+        LocalDateTime ahora = LocalDateTime.now();
+        int cambiados = 0;
+        try {
+            for (SectorDto sector : sectorServicio.listarTodos()) {
+                SectorEntidad.EstadoSector actual = SectorEntidad.EstadoSector.valueOf(sector.getEstado());
+                if (actual == SectorEntidad.EstadoSector.MANTENIMIENTO) {
+                    continue;
+                }
+                SectorEntidad.EstadoSector derivado = agendaSectores.vigente(sector.getId(), ahora).isPresent()
+                    ? SectorEntidad.EstadoSector.OCUPADO : SectorEntidad.EstadoSector.DISPONIBLE;
+                if (derivado != actual) {
+                    boolean cambiado = enSector(sector.getId(), () -> transactionTemplate.execute(estado ->
+                        sectorServicio.cambiarEstadoSi(sector.getId(), actual, derivado).isPresent()));
+                    cambiados += cambiado ? 1 : 0;
+                }
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("No se pudo sincronizar el estado de los sectores con su agenda: {}", e.getMessage());
+        }
+        if (cambiados > 0) {
+            LOGGER.atInfo().addKeyValue("sectores", cambiados).log("Estado de sectores sincronizado con su agenda");
+        }
+    }
+
+    private <T> T enSector(Long sectorId, Supplier<T> accion) {
+        return candadosSectores.ejecutar(sectorId, accion);
     }
-}
\ No newline at end of file
+}
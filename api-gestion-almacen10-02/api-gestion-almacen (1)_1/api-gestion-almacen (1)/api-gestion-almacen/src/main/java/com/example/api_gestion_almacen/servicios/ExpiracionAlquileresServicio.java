@@ -0,0 +1,306 @@
+package com.example.api_gestion_almacen.servicios;
+
+import com.example.api_gestion_almacen.busqueda.AgendaSectores;
+import com.example.api_gestion_almacen.busqueda.Reserva;
+import com.example.api_gestion_almacen.cache.VersionesColecciones;
+import com.example.api_gestion_almacen.cache.VersionesColecciones.Coleccion;
+import com.example.api_gestion_almacen.dtos.EstadisticasExpiracionDto;
+import com.example.api_gestion_almacen.entidades.AlquilerEntidad.EstadoAlquiler;
+import com.example.api_gestion_almacen.repositorios.AlquilerRepositorio;
+import com.example.api_gestion_almacen.utilidades.DespuesDelCommit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finaliza los alquileres vencidos y libera sus sectores sin intervención manual.
+ *
+ * <p>Las fechas de fin de los alquileres activos se guardan en una cola de prioridad
+ * (montículo) ordenada por vencimiento: comprobar si hay algo vencido es mirar la cima y
+ * programar un alquiler nuevo cuesta O(log n). Cada pocos segundos se sacan todos los
+ * vencidos y se finalizan por lotes, con una sentencia UPDATE por lote para los alquileres
+ * y otra para los sectores, en lugar de una lectura y dos escrituras por alquiler.</p>
+ *
+ * <p>Al arrancar, y después periódicamente, se finalizan directamente en la base de datos
+ * los alquileres que vencieron mientras la aplicación estaba parada o que creó otra
+ * instancia. Las cancelaciones no se quitan de la cola: el UPDATE solo toca alquileres que
+ * sigan activos, así que al vencer no tienen efecto.</p>
+ */
+@Service
+public class ExpiracionAlquileresServicio {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExpiracionAlquileresServicio.class);
+
+    private static final Comparator<Reserva> POR_VENCIMIENTO =
+        Comparator.comparing(Reserva::fin).thenComparing(Reserva::alquilerId);
+
+    @Autowired
+    private AlquilerRepositorio alquilerRepositorio;
+
+    @Autowired
+    private SectorServicio sectorServicio;
+
+    @Autowired
+    private AgendaSectores agendaSectores;
+
+    @Autowired
+    private VersionesColecciones versiones;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbc;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${alquileres.expiracion.lote:500}")
+    private int tamanoLote; // Alquileres como máximo por transacción
+
+    private final PriorityQueue<Reserva> pendientes = new PriorityQueue<>(POR_VENCIMIENTO); // Protegida por this
+    private final Set<Long> programados = new HashSet<>(); // Protegido por this; evita duplicados en la cola
+    private volatile boolean cargada;
+
+    // Métricas
+    private final AtomicLong finalizados = new AtomicLong();
+    private final AtomicLong sectoresLiberados = new AtomicLong();
+    private final AtomicLong lotes = new AtomicLong();
+    private final AtomicLong nanosProcesando = new AtomicLong();
+    private final AtomicLong retrasoTotalMs = new AtomicLong();
+    private final AtomicLong retrasoMaximoMs = new AtomicLong();
+    private volatile long retrasoUltimoMs;
+    private volatile Instant ultimaEjecucion;
+
+    /**
+     * Al arrancar, finaliza los alquileres que vencieron mientras la aplicación estaba
+     * parada y programa el resto.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarAlArrancar() {
+        try {
+            int atrasados = ponerAlDia();
+            List<Reserva> activas = alquilerRepositorio.listarReservas(EstadoAlquiler.ACTIVO);
+            synchronized (this) {
+                activas.forEach(this::encolar);
+                cargada = true;
+            }
+            LOGGER.atInfo().addKeyValue("atrasados", atrasados).addKeyValue("programados", activas.size())
+                .log("Expiración de alquileres iniciada");
+        } catch (DataAccessException e) {
+            LOGGER.warn("No se pudo iniciar la expiración de alquileres: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Programa el vencimiento de un alquiler. Debe llamarse después del commit.
+     *
+     * @param reserva Reserva del alquiler creado.
+     */
+    public synchronized void programar(Reserva reserva) {
+        encolar(reserva);
+    }
+
+    private void encolar(Reserva reserva) {
+        if (programados.add(reserva.alquilerId())) {
+            pendientes.add(reserva);
+        }
+    }
+
+    /**
+     * Finaliza, por lotes, los alquileres de la cola que ya han vencido.
+     */
+    @Scheduled(initialDelayString = "${alquileres.expiracion.intervalo:PT1S}", fixedDelayString = "${alquileres.expiracion.intervalo:PT1S}")
+    public void procesar() {
+        if (!cargada) {
+            return; // Hasta la primera carga, de la que también se encarga la reconciliación
+        }
+        List<Reserva> lote;
+        while (!(lote = sacarVencidos(LocalDateTime.now())).isEmpty()) {
+            try {
+                finalizarLote(lote);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    lote.forEach(this::encolar); // Se reintenta en la siguiente ejecución
+                }
+                LOGGER.warn("No se pudo finalizar un lote de {} alquileres vencidos: {}", lote.size(), e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Finaliza directamente en la base de datos todos los alquileres activos ya vencidos,
+     * estén o no en la cola.
+     */
+    @Scheduled(initialDelayString = "${alquileres.expiracion.reconciliacion:PT5M}", fixedDelayString = "${alquileres.expiracion.reconciliacion:PT5M}")
+    public void reconciliar() {
+        if (!cargada) {
+            cargarAlArrancar();
+            return;
+        }
+        try {
+            int atrasados = ponerAlDia();
+            if (atrasados > 0) {
+                LOGGER.atInfo().addKeyValue("finalizados", atrasados).log("Alquileres vencidos fuera de la cola finalizados");
+            }
+        } catch (DataAccessException e) {
+            LOGGER.warn("No se pudieron finalizar los alquileres vencidos: {}", e.getMessage());
+        }
+    }
+
+    private int ponerAlDia() {
+        int total = 0;
+        while (true) {
+            List<Reserva> vencidas = jdbc.query("SELECT a.id, a.sector_id, a.fecha_inicio, a.fecha_fin "
+                    + "FROM gestion_almacenes.alquileres a WHERE a.estado = :activo AND a.fecha_fin <= :ahora "
+                    + "ORDER BY a.fecha_fin LIMIT :lote",
+                new MapSqlParameterSource()
+                    .addValue("activo", EstadoAlquiler.ACTIVO.name())
+                    .addValue("ahora", LocalDateTime.now())
+                    .addValue("lote", tamanoLote),
+                (rs, fila) -> new Reserva(rs.getLong("id"), rs.getLong("sector_id"),
+                    rs.getObject("fecha_inicio", LocalDateTime.class), rs.getObject("fecha_fin", LocalDateTime.class)));
+            if (vencidas.isEmpty()) {
+                return total;
+            }
+            int finalizadosLote = finalizarLote(vencidas);
+            total += finalizadosLote;
+            if (finalizadosLote == 0 || vencidas.size() < tamanoLote) {
+                return total;
+            }
+        }
+    }
+
+    private synchronized List<Reserva> sacarVencidos(LocalDateTime ahora) {
+        List<Reserva> vencidas = new ArrayList<>();
+        while (vencidas.size() < tamanoLote && !pendientes.isEmpty() && !pendientes.peek().fin().isAfter(ahora)) {
+            Reserva reserva = pendientes.poll();
+            programados.remove(reserva.alquilerId());
+            vencidas.add(reserva);
+        }
+        return vencidas;
+    }
+
+    /**
+     * Finaliza en una transacción los alquileres del lote que sigan activos y vencidos, y
+     * libera sus sectores si no tienen otro alquiler en vigor.
+     *
+     * @return Número de alquileres finalizados.
+     */
+    private int finalizarLote(List<Reserva> lote) {
+        long inicio = System.nanoTime();
+        LocalDateTime ahora = LocalDateTime.now();
+        Set<Long> ids = new LinkedHashSet<>();
+        lote.forEach(reserva -> ids.add(reserva.alquilerId()));
+        MapSqlParameterSource parametros = new MapSqlParameterSource()
+            .addValue("ids", ids)
+            .addValue("activo", EstadoAlquiler.ACTIVO.name())
+            .addValue("finalizado", EstadoAlquiler.FINALIZADO.name())
+            .addValue("ahora", ahora);
+
+        List<Vencido> vencidos = transactionTemplate.execute(estado -> {
+            // 1. Bloquear los que siguen activos: los finalizados o cancelados entretanto se descartan
+            List<Vencido> filas = jdbc.query("SELECT a.id, a.sector_id, a.usuario_id, a.fecha_inicio, a.fecha_fin "
+                    + "FROM gestion_almacenes.alquileres a WHERE a.id IN (:ids) AND a.estado = :activo "
+                    + "AND a.fecha_fin <= :ahora FOR UPDATE",
+                parametros, (rs, fila) -> new Vencido(
+                    new Reserva(rs.getLong("id"), rs.getLong("sector_id"),
+                        rs.getObject("fecha_inicio", LocalDateTime.class), rs.getObject("fecha_fin", LocalDateTime.class)),
+                    rs.getLong("usuario_id")));
+            if (filas.isEmpty()) {
+                return filas;
+            }
+
+            // 2. Un único UPDATE para los alquileres y otro para sus sectores
+            jdbc.update("UPDATE gestion_almacenes.alquileres a SET a.estado = :finalizado "
+                    + "WHERE a.id IN (:ids) AND a.estado = :activo AND a.fecha_fin <= :ahora",
+                parametros);
+            Set<Long> sectores = new LinkedHashSet<>();
+            filas.forEach(vencido -> sectores.add(vencido.reserva().sectorId()));
+            int liberados = sectorServicio.liberarSectores(sectores, ahora);
+
+            DespuesDelCommit.ejecutar(() -> {
+                Set<Long> usuarios = new HashSet<>();
+                for (Vencido vencido : filas) {
+                    agendaSectores.quitar(vencido.reserva());
+                    usuarios.add(vencido.usuarioId());
+                }
+                usuarios.forEach(usuarioId -> versiones.incrementar(Coleccion.ALQUILERES, usuarioId));
+                sectoresLiberados.addAndGet(liberados);
+            });
+            return filas;
+        });
+
+        long duracion = System.nanoTime() - inicio;
+        registrarLote(vencidos, duracion);
+        return vencidos.size();
+    }
+
+    private void registrarLote(List<Vencido> vencidos, long duracionNanos) {
+        lotes.incrementAndGet();
+        nanosProcesando.addAndGet(duracionNanos);
+        ultimaEjecucion = Instant.now();
+        if (vencidos.isEmpty()) {
+            return;
+        }
+        LocalDateTime ahora = LocalDateTime.now();
+        long maximo = 0;
+        for (Vencido vencido : vencidos) {
+            long retraso = Math.max(0, Duration.between(vencido.reserva().fin(), ahora).toMillis());
+            retrasoTotalMs.addAndGet(retraso);
+            maximo = Math.max(maximo, retraso);
+        }
+        long loteMaximo = maximo;
+        retrasoMaximoMs.accumulateAndGet(loteMaximo, Math::max);
+        retrasoUltimoMs = loteMaximo;
+        finalizados.addAndGet(vencidos.size());
+        LOGGER.atInfo().addKeyValue("finalizados", vencidos.size()).addKeyValue("retrasoMaximoMs", loteMaximo)
+            .addKeyValue("duracionMs", duracionNanos / 1_000_000).log("Lote de alquileres vencidos finalizado");
+    }
+
+    /**
+     * Métricas de la expiración desde el arranque.
+     *
+     * @return Tamaño de la cola, retrasos y rendimiento.
+     */
+    public EstadisticasExpiracionDto estadisticas() {
+        EstadisticasExpiracionDto dto = new EstadisticasExpiracionDto();
+        synchronized (this) {
+            dto.setPendientes(pendientes.size());
+            dto.setProximoVencimiento(pendientes.isEmpty() ? null : pendientes.peek().fin());
+        }
+        long total = finalizados.get();
+        long nanos = nanosProcesando.get();
+        dto.setFinalizados(total);
+        dto.setSectoresLiberados(sectoresLiberados.get());
+        dto.setLotes(lotes.get());
+        dto.setRetrasoUltimoMs(retrasoUltimoMs);
+        dto.setRetrasoMaximoMs(retrasoMaximoMs.get());
+        dto.setRetrasoMedioMs(total == 0 ? 0 : (double) retrasoTotalMs.get() / total);
+        dto.setAlquileresPorSegundo(nanos == 0 ? 0 : total * 1e9 / nanos);
+        dto.setUltimaEjecucion(ultimaEjecucion);
+        return dto;
+    }
+
+    private record Vencido(Reserva reserva, long usuarioId) {
+    }
+}
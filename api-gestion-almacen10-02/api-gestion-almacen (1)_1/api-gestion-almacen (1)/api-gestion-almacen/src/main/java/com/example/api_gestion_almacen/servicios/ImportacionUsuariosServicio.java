@@ -0,0 +1,439 @@
+package com.example.api_gestion_almacen.servicios;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.api_gestion_almacen.almacenamiento.AlmacenFotos;
+import com.example.api_gestion_almacen.almacenamiento.GeneradorVariantes;
+import com.example.api_gestion_almacen.busqueda.IndiceUsuarios;
+import com.example.api_gestion_almacen.cache.CacheUsuarios;
+import com.example.api_gestion_almacen.cache.FiltroBloomCorreos;
+import com.example.api_gestion_almacen.cache.RegistroRoles;
+import com.example.api_gestion_almacen.cache.VersionesColecciones;
+import com.example.api_gestion_almacen.cache.VersionesColecciones.Coleccion;
+import com.example.api_gestion_almacen.dtos.CrearUsuDto;
+import com.example.api_gestion_almacen.dtos.RolDto;
+import com.example.api_gestion_almacen.dtos.ResultadoImportacionDto;
+import com.example.api_gestion_almacen.utilidades.LectorCsv;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Servicio de importación masiva de usuarios desde NDJSON o CSV.
+ * La entrada se lee en streaming y se procesa por bloques: cada bloque se valida
+ * contra una instantánea de los roles, comprueba los correos duplicados con una
+ * sola consulta {@code IN} y se inserta con un lote JDBC en su propia transacción.
+ * Los resultados de cada fila se entregan al terminar su bloque.
+ * @author andres
+ */
+@Service
+public class ImportacionUsuariosServicio {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImportacionUsuariosServicio.class);
+
+    private static final String SQL_INSERTAR = "INSERT INTO usuarios "
+        + "(nombre_completo, movil, correo_electronico, rol_id, contrasena, correo_confirmado, google, foto_hash) "
+        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Longitudes de las columnas de UsuarioEntidad; se validan antes para no romper el lote
+    private static final int LONGITUD_NOMBRE = 50;
+    private static final int LONGITUD_MOVIL = 15;
+    private static final int LONGITUD_CORREO = 50;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private RegistroRoles registroRoles;
+
+    @Autowired
+    private AlmacenFotos almacenFotos;
+
+    @Autowired
+    private GeneradorVariantes generadorVariantes;
+
+    @Autowired
+    private CacheUsuarios cacheUsuarios;
+
+    @Autowired
+    private FiltroBloomCorreos filtroCorreos;
+
+    @Autowired
+    private IndiceUsuarios indiceUsuarios;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private VersionesColecciones versiones;
+
+    @Value("${usuarios.importacion.tamano-bloque:500}")
+    private int tamanoBloque; // Filas por consulta de duplicados y por lote de inserción
+
+    /**
+     * Importa usuarios leyendo la entrada en streaming.
+     * @author andres
+     *
+     * @param entrada Cuerpo de la petición.
+     * @param csv true si la entrada es CSV con cabecera; false si es NDJSON (un CrearUsuDto por línea).
+     * @param salida Recibe los resultados de cada bloque, en el orden de las filas.
+     * @return Número de filas creadas, duplicadas y con error.
+     * @throws IOException si falla la lectura de la entrada.
+     */
+    public Map<String, Long> importar(InputStream entrada, boolean csv,
+                                      Consumer<List<ResultadoImportacionDto>> salida) throws IOException {
+        // Instantánea de roles: se valida en memoria en lugar de un findById por fila
+        Set<Long> roles = registroRoles.todos().stream().map(RolDto::getId).collect(Collectors.toSet());
+        Set<String> correosVistos = new HashSet<>(); // Duplicados dentro del propio fichero
+        Map<String, Long> resumen = new LinkedHashMap<>();
+        resumen.put(ResultadoImportacionDto.CREADO, 0L);
+        resumen.put(ResultadoImportacionDto.DUPLICADO, 0L);
+        resumen.put(ResultadoImportacionDto.ERROR, 0L);
+
+        BufferedReader lector = new BufferedReader(new InputStreamReader(entrada, StandardCharsets.UTF_8));
+        FuenteFilas fuente = csv ? new FuenteCsv(new LectorCsv(lector)) : new FuenteNdjson(lector);
+        List<Fila> bloque = new ArrayList<>(tamanoBloque);
+        Fila fila;
+        while ((fila = fuente.siguiente()) != null) {
+            bloque.add(fila);
+            if (bloque.size() == tamanoBloque) {
+                salida.accept(procesarBloque(bloque, roles, correosVistos, resumen));
+                bloque.clear();
+            }
+        }
+        if (!bloque.isEmpty()) {
+            salida.accept(procesarBloque(bloque, roles, correosVistos, resumen));
+        }
+        LOGGER.atInfo().addKeyValue("creados", resumen.get(ResultadoImportacionDto.CREADO))
+            .addKeyValue("duplicados", resumen.get(ResultadoImportacionDto.DUPLICADO))
+            .addKeyValue("errores", resumen.get(ResultadoImportacionDto.ERROR))
+            .log("Importación de usuarios terminada");
+        return resumen;
+    }
+
+    private List<ResultadoImportacionDto> procesarBloque(List<Fila> bloque, Set<Long> roles, Set<String> correosVistos,
+                                                         Map<String, Long> resumen) {
+        ResultadoImportacionDto[] resultados = new ResultadoImportacionDto[bloque.size()];
+        List<Integer> candidatas = new ArrayList<>();
+
+        // 1. Validación en memoria y duplicados dentro del fichero
+        for (int i = 0; i < bloque.size(); i++) {
+            Fila fila = bloque.get(i);
+            String error = fila.error() != null ? fila.error() : validar(fila.datos(), roles);
+            if (error != null) {
+                resultados[i] = resultado(fila, ResultadoImportacionDto.ERROR, null, error);
+            } else if (!correosVistos.add(normalizar(fila.datos().getCorreoElectronico()))) {
+                resultados[i] = resultado(fila, ResultadoImportacionDto.DUPLICADO, null, "Correo repetido en la importación");
+            } else {
+                candidatas.add(i);
+            }
+        }
+
+        // 2. Una sola consulta para los correos que ya existen en la base de datos,
+        //    limitada a los que el filtro de Bloom no puede descartar
+        List<String> correos = candidatas.stream().map(i -> bloque.get(i).datos().getCorreoElectronico())
+            .filter(filtroCorreos::podriaExistir).toList();
+        if (!correos.isEmpty()) {
+            Set<String> existentes = namedParameterJdbcTemplate.queryForList(
+                    "SELECT correo_electronico FROM usuarios WHERE correo_electronico IN (:correos)",
+                    Map.of("correos", correos), String.class)
+                .stream().map(ImportacionUsuariosServicio::normalizar).collect(Collectors.toSet());
+            for (int i = correos.size() - existentes.size(); i > 0; i--) {
+                filtroCorreos.registrarFalsoPositivo();
+            }
+            List<Integer> nuevas = new ArrayList<>(candidatas.size());
+            for (int i : candidatas) {
+                Fila fila = bloque.get(i);
+                if (existentes.contains(normalizar(fila.datos().getCorreoElectronico()))) {
+                    resultados[i] = resultado(fila, ResultadoImportacionDto.DUPLICADO, null, "El correo electrónico ya está registrado");
+                } else {
+                    nuevas.add(i);
+                }
+            }
+            candidatas = nuevas;
+        }
+
+        // 3. Fotos al almacén (fuera de la transacción) e inserción por lotes
+        List<Integer> insertables = new ArrayList<>(candidatas.size());
+        Map<Integer, String> fotos = new HashMap<>();
+        for (int i : candidatas) {
+            byte[] foto = bloque.get(i).datos().getFoto();
+            if (foto == null) {
+                insertables.add(i);
+                continue;
+            }
+            try {
+                String hash = almacenFotos.guardar(foto);
+                generadorVariantes.programar(hash);
+                fotos.put(i, hash);
+                insertables.add(i);
+            } catch (IOException e) {
+                resultados[i] = resultado(bloque.get(i), ResultadoImportacionDto.ERROR, null, "Error al guardar la foto: " + e.getMessage());
+            }
+        }
+        if (!insertables.isEmpty()) {
+            insertar(bloque, insertables, fotos, resultados);
+        }
+
+        List<ResultadoImportacionDto> lista = new ArrayList<>(resultados.length);
+        for (ResultadoImportacionDto r : resultados) {
+            resumen.merge(r.getEstado(), 1L, Long::sum);
+            lista.add(r);
+        }
+        return lista;
+    }
+
+    /**
+     * Inserta las filas en un solo lote JDBC. Si otro proceso ha registrado alguno de los
+     * correos entre la comprobación y la inserción, el lote se deshace y se repite fila a fila
+     * para identificar cuáles son duplicados.
+     */
+    private void insertar(List<Fila> bloque, List<Integer> insertables, Map<Integer, String> fotos,
+                          ResultadoImportacionDto[] resultados) {
+        try {
+            Map<String, Long> ids = transactionTemplate.execute(estado -> {
+                jdbcTemplate.batchUpdate(SQL_INSERTAR, insertables, insertables.size(),
+                    (ps, i) -> asignarParametros(ps, bloque.get(i).datos(), fotos.get(i)));
+                return buscarIds(insertables.stream().map(i -> bloque.get(i).datos().getCorreoElectronico()).toList());
+            });
+            for (int i : insertables) {
+                Fila fila = bloque.get(i);
+                resultados[i] = resultado(fila, ResultadoImportacionDto.CREADO, ids.get(normalizar(fila.datos().getCorreoElectronico())), null);
+            }
+        } catch (DataIntegrityViolationException e) {
+            LOGGER.debug("Conflicto en el lote de importación, se reintenta fila a fila: {}", e.getMessage());
+            for (int i : insertables) {
+                resultados[i] = insertarFila(bloque.get(i), fotos.get(i));
+            }
+        }
+        String[] correos = insertables.stream().map(i -> bloque.get(i).datos().getCorreoElectronico()).toArray(String[]::new);
+        cacheUsuarios.invalidar(null, correos);
+        versiones.incrementar(Coleccion.USUARIOS);
+        for (String correo : correos) {
+            filtroCorreos.agregar(correo);
+        }
+        for (int i : insertables) {
+            if (ResultadoImportacionDto.CREADO.equals(resultados[i].getEstado()) && resultados[i].getId() != null) {
+                CrearUsuDto datos = bloque.get(i).datos();
+                indiceUsuarios.actualizar(resultados[i].getId(), datos.getNombreCompleto().trim(),
+                    datos.getCorreoElectronico().trim(), datos.getRolId());
+            }
+        }
+    }
+
+    /**
+     * Inserta una fila en su propia transacción. Un fallo solo afecta a esa fila: la clave
+     * duplicada es el correo (el ID lo genera la base de datos y no hay otra clave única);
+     * cualquier otra violación, como un rol borrado durante la importación, o un error de
+     * la base de datos se informan como error de la fila.
+     */
+    private ResultadoImportacionDto insertarFila(Fila fila, String fotoHash) {
+        try {
+            Map<String, Long> ids = transactionTemplate.execute(estado -> {
+                jdbcTemplate.update(SQL_INSERTAR, ps -> asignarParametros(ps, fila.datos(), fotoHash));
+                return buscarIds(List.of(fila.datos().getCorreoElectronico()));
+            });
+            return resultado(fila, ResultadoImportacionDto.CREADO, ids.get(normalizar(fila.datos().getCorreoElectronico())), null);
+        } catch (DuplicateKeyException e) {
+            return resultado(fila, ResultadoImportacionDto.DUPLICADO, null, "El correo electrónico ya está registrado");
+        } catch (DataAccessException e) {
+            LOGGER.warn("No se pudo importar la fila {}: {}", fila.numero(), e.getMostSpecificCause().getMessage());
+            return resultado(fila, ResultadoImportacionDto.ERROR, null, "No se pudo guardar el usuario");
+        }
+    }
+
+    private Map<String, Long> buscarIds(List<String> correos) {
+        Map<String, Long> ids = new HashMap<>();
+        namedParameterJdbcTemplate.query(
+            "SELECT id, correo_electronico FROM usuarios WHERE correo_electronico IN (:correos)",
+            Map.of("correos", correos),
+            rs -> {
+                ids.put(normalizar(rs.getString("correo_electronico")), rs.getLong("id"));
+            });
+        return ids;
+    }
+
+    private static void asignarParametros(PreparedStatement ps, CrearUsuDto datos, String fotoHash) throws SQLException {
+        ps.setString(1, datos.getNombreCompleto().trim());
+        ps.setString(2, datos.getMovil());
+        ps.setString(3, datos.getCorreoElectronico().trim());
+        ps.setLong(4, datos.getRolId());
+        ps.setString(5, datos.getContrasena());
+        ps.setBoolean(6, datos.isCorreoConfirmado());
+        ps.setBoolean(7, datos.isGoogle());
+        if (fotoHash != null) {
+            ps.setString(8, fotoHash);
+        } else {
+            ps.setNull(8, Types.VARCHAR);
+        }
+    }
+
+    private static String validar(CrearUsuDto datos, Set<Long> roles) {
+        if (datos.getNombreCompleto() == null || datos.getNombreCompleto().isBlank()) {
+            return "El nombre es obligatorio";
+        }
+        if (datos.getNombreCompleto().trim().length() > LONGITUD_NOMBRE) {
+            return "El nombre supera los " + LONGITUD_NOMBRE + " caracteres";
+        }
+        if (datos.getCorreoElectronico() == null || datos.getCorreoElectronico().isBlank()) {
+            return "El correo electrónico es obligatorio";
+        }
+        if (datos.getCorreoElectronico().trim().length() > LONGITUD_CORREO) {
+            return "El correo electrónico supera los " + LONGITUD_CORREO + " caracteres";
+        }
+        if (datos.getMovil() != null && datos.getMovil().length() > LONGITUD_MOVIL) {
+            return "El móvil supera los " + LONGITUD_MOVIL + " caracteres";
+        }
+        if (datos.getRolId() == null) {
+            return "El rol es obligatorio";
+        }
+        if (!roles.contains(datos.getRolId())) {
+            return "El rol especificado no existe";
+        }
+        return null;
+    }
+
+    private static ResultadoImportacionDto resultado(Fila fila, String estado, Long id, String mensaje) {
+        String correo = fila.datos() != null ? fila.datos().getCorreoElectronico() : null;
+        return new ResultadoImportacionDto(fila.numero(), correo, estado, id, mensaje);
+    }
+
+    private static String normalizar(String correo) {
+        return correo.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /** Fila leída de la entrada: sus datos o el error de formato. */
+    private record Fila(long numero, CrearUsuDto datos, String error) {
+    }
+
+    private interface FuenteFilas {
+        Fila siguiente() throws IOException;
+    }
+
+    /** Una línea JSON por usuario; las líneas vacías se ignoran. */
+    private final class FuenteNdjson implements FuenteFilas {
+        private final BufferedReader lector;
+        private long numero;
+
+        FuenteNdjson(BufferedReader lector) {
+            this.lector = lector;
+        }
+
+        @Override
+        public Fila siguiente() throws IOException {
+            String linea;
+            while ((linea = lector.readLine()) != null) {
+                numero++;
+                if (linea.isBlank()) {
+                    continue;
+                }
+                try {
+                    CrearUsuDto datos = objectMapper.readValue(linea, CrearUsuDto.class);
+                    // Un literal null es JSON válido, pero no describe ningún usuario
+                    return datos != null ? new Fila(numero, datos, null) : new Fila(numero, null, "La línea no contiene un usuario");
+                } catch (JsonProcessingException e) {
+                    return new Fila(numero, null, "JSON no válido: " + e.getOriginalMessage());
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * CSV con cabecera. Columnas reconocidas: nombreCompleto, movil, correoElectronico,
+     * rolId, contrasena, correoConfirmado y google; el resto se ignora.
+     */
+    private static final class FuenteCsv implements FuenteFilas {
+        private final LectorCsv lector;
+        private Map<String, Integer> columnas;
+        private long numero;
+
+        FuenteCsv(LectorCsv lector) {
+            this.lector = lector;
+        }
+
+        @Override
+        public Fila siguiente() throws IOException {
+            if (columnas == null) {
+                List<String> cabecera = lector.leer();
+                if (cabecera == null) {
+                    return null;
+                }
+                columnas = new HashMap<>();
+                for (int i = 0; i < cabecera.size(); i++) {
+                    columnas.put(cabecera.get(i).trim(), i);
+                }
+            }
+            List<String> campos;
+            try {
+                do {
+                    campos = lector.leer();
+                    numero++;
+                } while (campos != null && campos.size() == 1 && campos.get(0).isBlank());
+            } catch (IllegalArgumentException e) {
+                return new Fila(numero, null, e.getMessage());
+            }
+            if (campos == null) {
+                return null;
+            }
+            CrearUsuDto datos = new CrearUsuDto();
+            datos.setNombreCompleto(campo(campos, "nombreCompleto"));
+            datos.setMovil(campo(campos, "movil"));
+            datos.setCorreoElectronico(campo(campos, "correoElectronico"));
+            datos.setContrasena(campo(campos, "contrasena"));
+            datos.setCorreoConfirmado(Boolean.parseBoolean(campo(campos, "correoConfirmado")));
+            datos.setGoogle(Boolean.parseBoolean(campo(campos, "google")));
+            String rolId = campo(campos, "rolId");
+            if (rolId != null) {
+                try {
+                    datos.setRolId(Long.valueOf(rolId.trim()));
+                } catch (NumberFormatException e) {
+                    return new Fila(numero, datos, "rolId no es un número: " + rolId);
+                }
+            }
+            return new Fila(numero, datos, null);
+        }
+
+        private String campo(List<String> campos, String nombre) {
+            Integer indice = columnas.get(nombre);
+            if (indice == null || indice >= campos.size() || campos.get(indice).isEmpty()) {
+                return null;
+            }
+            return campos.get(indice);
+        }
+    }
+}
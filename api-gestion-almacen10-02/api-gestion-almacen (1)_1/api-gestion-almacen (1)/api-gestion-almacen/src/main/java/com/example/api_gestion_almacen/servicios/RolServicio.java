@@ -1,9 +1,13 @@
 package com.example.api_gestion_almacen.servicios;
 
 import java.util.List;
-import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import com.example.api_gestion_almacen.cache.CatalogosSerializados;
+import com.example.api_gestion_almacen.cache.CatalogosSerializados.CatalogoSerializado;
+import com.example.api_gestion_almacen.cache.RegistroRoles;
+import com.example.api_gestion_almacen.cache.VersionesColecciones;
+import com.example.api_gestion_almacen.cache.VersionesColecciones.Coleccion;
 import com.example.api_gestion_almacen.dtos.RolDto;
 import com.example.api_gestion_almacen.entidades.RolEntidad;
 import com.example.api_gestion_almacen.repositorios.RolRepositorio;
@@ -19,6 +23,15 @@ public class RolServicio {
     @Autowired
     private RolRepositorio rolRepositorio; // Repositorio para acceder a los datos de roles
 
+    @Autowired
+    private RegistroRoles registroRoles; // Instantánea en memoria de los roles para las lecturas
+
+    @Autowired
+    private VersionesColecciones versiones; // ETag de los GET de roles
+
+    @Autowired
+    private CatalogosSerializados catalogos; // Listado de roles ya serializado y comprimido
+
     /**
      * Crea un nuevo rol a partir de un RolDto.
      * @author andres
@@ -29,6 +42,8 @@ public class RolServicio {
     public RolDto crearRol(RolDto rolDTO) {
         RolEntidad rolEntidad = aEntidad(rolDTO); // Convertir DTO a entidad
         RolEntidad nuevoRol = rolRepositorio.save(rolEntidad); // Guardar la entidad en la base de datos
+        registroRoles.recargar(); // Publicar la nueva instantánea de roles
+        versiones.incrementar(Coleccion.ROLES);
         return aDto(nuevoRol); // Convertir entidad a DTO y devolver
     }
 
@@ -40,8 +55,7 @@ public class RolServicio {
      * @return El objeto RolDto correspondiente al rol encontrado, o null si no se encuentra.
      */
     public RolDto obtenerRolPorId(Long id) {
-        RolEntidad rolEntidad = rolRepositorio.findById(id).orElse(null); // Buscar la entidad por ID
-        return rolEntidad != null ? aDto(rolEntidad) : null; // Convertir entidad a DTO o devolver null
+        return registroRoles.buscar(id).orElse(null); // Se lee del registro en memoria, sin consultar la base de datos
     }
 
     /**
@@ -51,10 +65,17 @@ public class RolServicio {
      * @return Una lista de objetos RolDto que representan todos los roles.
      */
     public List<RolDto> obtenerTodosLosRoles() {
-        List<RolEntidad> roles = rolRepositorio.findAll(); // Obtener todas las entidades de rol
-        return roles.stream()
-                .map(this::aDto) // Convertir cada entidad a DTO
-                .collect(Collectors.toList()); // Recoger los DTOs en una lista
+        return registroRoles.todos(); // Instantánea en memoria, ordenada por ID
+    }
+
+    /**
+     * Obtiene todos los roles ya serializados en JSON, sin comprimir y comprimido.
+     * @author andres
+     * 
+     * @return El catálogo de roles, que se reconstruye solo cuando cambia algún rol.
+     */
+    public CatalogoSerializado catalogoRoles() {
+        return catalogos.obtener("roles", Coleccion.ROLES, registroRoles::todos);
     }
 
     /**
@@ -69,6 +90,8 @@ public class RolServicio {
         RolEntidad rolEntidad = aEntidad(rolDTO); // Convertir DTO a entidad
         rolEntidad.setId(id); // Asegurarse de que el ID se mantenga
         RolEntidad rolActualizado = rolRepositorio.save(rolEntidad); // Guardar la entidad actualizada
+        registroRoles.recargar();
+        versiones.incrementar(Coleccion.ROLES);
         return aDto(rolActualizado); // Convertir entidad a DTO y devolver
     }
 
@@ -80,6 +103,8 @@ public class RolServicio {
      */
     public void eliminarRol(Long id) {
         rolRepositorio.deleteById(id); // Eliminar la entidad por ID
+        registroRoles.recargar();
+        versiones.incrementar(Coleccion.ROLES);
     }
 
     // Métodos de conversión
@@ -1,14 +1,47 @@
 package com.example.api_gestion_almacen.servicios;
 
+import com.example.api_gestion_almacen.busqueda.AgendaSectores;
+import com.example.api_gestion_almacen.busqueda.IndiceSectores;
+import com.example.api_gestion_almacen.cache.CatalogosSerializados;
+import com.example.api_gestion_almacen.cache.CatalogosSerializados.CatalogoSerializado;
+import com.example.api_gestion_almacen.cache.VersionesColecciones;
+import com.example.api_gestion_almacen.cache.VersionesColecciones.Coleccion;
+import com.example.api_gestion_almacen.dtos.BusquedaSectoresDto;
+import com.example.api_gestion_almacen.dtos.OcupacionDto;
+import com.example.api_gestion_almacen.dtos.ResultadoEstadoSectorDto;
+import com.example.api_gestion_almacen.dtos.SectorDto;
 import com.example.api_gestion_almacen.entidades.SectorEntidad;
+import com.example.api_gestion_almacen.eventos.DifusorEventosSector;
 import com.example.api_gestion_almacen.repositorios.SectorRepositorio;
+import com.example.api_gestion_almacen.series.SerieOcupacion;
+import com.example.api_gestion_almacen.utilidades.CursorPaginacion;
+import com.example.api_gestion_almacen.utilidades.DespuesDelCommit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.Optional;
 
 /**
@@ -21,27 +54,118 @@ public class SectorServicio {
     
     @Autowired
     private SectorRepositorio sectorRepositorio;
+
+    @Autowired
+    private IndiceSectores indiceSectores;
+
+    @Autowired
+    private DifusorEventosSector difusorEventos;
+
+    @Autowired
+    private VersionesColecciones versiones;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbc;
+
+    @Autowired
+    private SerieOcupacion serieOcupacion;
+
+    @Autowired
+    private CatalogosSerializados catalogos;
+
+    @Autowired
+    private AgendaSectores agendaSectores;
+
+    @Value("${sectores.busqueda.tamano-pagina:20}")
+    private int tamanoPaginaBusqueda; // Resultados por página de la búsqueda
+
+    @Value("${sectores.busqueda.tamano-maximo:100}")
+    private int tamanoMaximoPagina; // Límite superior del tamaño de página que puede pedir el cliente
+
+    @Value("${sectores.estado-masivo.maximo:1000}")
+    private int maximoCambioMasivo; // Sectores como máximo por petición de cambio masivo
+    
+    /**
+     * Lista todos los sectores desde el índice en memoria.
+     *
+     * @return Lista de todos los sectores, ordenados por ID.
+     */
+    public List<SectorDto> listarTodos() {
+        return indiceSectores.todos();
+    }
     
     /**
-     * Lista todos los sectores.
+     * Todos los sectores ya serializados, para {@code GET /api/sectores}.
+     *
+     * @return El catálogo de sectores en JSON, sin comprimir y comprimido.
+     */
+    public CatalogoSerializado catalogoSectores() {
+        return catalogos.obtener("sectores", Coleccion.SECTORES, indiceSectores::todos);
+    }
+
+    /**
+     * Sectores disponibles ya serializados, para {@code GET /api/sectores/disponibles}.
      *
-     * @return Lista de todas las entidades de sector.
+     * @return El catálogo de sectores disponibles en JSON, sin comprimir y comprimido.
      */
-    public List<SectorEntidad> listarTodos() {
-        return sectorRepositorio.findAll();
+    public CatalogoSerializado catalogoDisponibles() {
+        return catalogos.obtener("sectores-disponibles", Coleccion.SECTORES, this::listarDisponibles);
     }
     
     /**
-     * Lista todos los sectores que están disponibles.
+     * Lista todos los sectores que están disponibles, desde el índice en memoria.
+     *
+     * @return Lista de sectores disponibles, ordenados por ID.
+     */
+    public List<SectorDto> listarDisponibles() {
+        return indiceSectores.porEstado(SectorEntidad.EstadoSector.DISPONIBLE);
+    }
+
+    /**
+     * Lista los sectores que se pueden alquilar en todo el intervalo [desde, hasta): los
+     * que no están en mantenimiento ni tienen ningún alquiler activo que se solape con él.
+     * Si el intervalo empieza ya, además deben estar libres ahora.
      *
-     * @return Lista de entidades de sector que están disponibles.
+     * @param desde Inicio del intervalo (fecha o fecha y hora ISO-8601).
+     * @param hasta Fin del intervalo, excluido.
+     * @return Lista de sectores libres en el intervalo, ordenados por ID.
+     * @throws IllegalArgumentException si las fechas no son válidas.
      */
-    public List<SectorEntidad> listarDisponibles() {
-        return sectorRepositorio.findByEstado(SectorEntidad.EstadoSector.DISPONIBLE);
+    public List<SectorDto> listarDisponiblesEntre(String desde, String hasta) {
+        LocalDateTime inicio = leerFechaHora(desde);
+        LocalDateTime fin = leerFechaHora(hasta);
+        if (!inicio.isBefore(fin)) {
+            throw new IllegalArgumentException("La fecha de inicio debe ser anterior a la fecha de fin");
+        }
+        boolean empiezaYa = !inicio.isAfter(LocalDateTime.now());
+        List<SectorDto> disponibles = new ArrayList<>();
+        for (SectorDto sector : indiceSectores.todos()) {
+            String estado = sector.getEstado();
+            if (estado.equals(SectorEntidad.EstadoSector.MANTENIMIENTO.name())
+                    || (empiezaYa && estado.equals(SectorEntidad.EstadoSector.OCUPADO.name()))) {
+                continue;
+            }
+            if (agendaSectores.solapada(sector.getId(), inicio, fin).isEmpty()) {
+                disponibles.add(sector);
+            }
+        }
+        return disponibles;
+    }
+
+    private static LocalDateTime leerFechaHora(String valor) {
+        if (valor == null || valor.isBlank()) {
+            throw new IllegalArgumentException("Fecha requerida");
+        }
+        try {
+            return valor.length() == 10 ? LocalDate.parse(valor).atStartOfDay() : LocalDateTime.parse(valor);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Fecha no válida: " + valor);
+        }
     }
     
     /**
-     * Busca un sector por su ID.
+     * Busca un sector por su ID en la base de datos. Lo usan las operaciones que
+     * necesitan la entidad gestionada (por ejemplo, al crear un alquiler).
      *
      * @param id ID del sector que se desea buscar.
      * @return Un objeto Optional que contiene el sector si se encuentra, o vacío si no se encuentra.
@@ -49,20 +173,125 @@ public class SectorServicio {
     public Optional<SectorEntidad> buscarPorId(Long id) {
         return sectorRepositorio.findById(id);
     }
+
+    /**
+     * Busca un sector por su ID y bloquea su fila (SELECT ... FOR UPDATE) hasta el final
+     * de la transacción en curso, para comprobar y modificar sus alquileres sin que otra
+     * transacción lo haga a la vez.
+     *
+     * @param id ID del sector.
+     * @return Un objeto Optional que contiene el sector si se encuentra, o vacío si no se encuentra.
+     */
+    @Transactional
+    public Optional<SectorEntidad> bloquearPorId(Long id) {
+        return sectorRepositorio.bloquearPorId(id);
+    }
+
+    /**
+     * Obtiene un sector por su ID desde el índice en memoria.
+     *
+     * @param id ID del sector que se desea obtener.
+     * @return Un objeto Optional que contiene el sector si se encuentra, o vacío si no se encuentra.
+     */
+    public Optional<SectorDto> obtenerPorId(Long id) {
+        return indiceSectores.porId(id);
+    }
     
     /**
-     * Busca un sector por su nombre.
+     * Busca un sector por su nombre desde el índice en memoria.
      *
      * @param nombre Nombre del sector que se desea buscar.
      * @return Un objeto Optional que contiene el sector si se encuentra, o vacío si no se encuentra.
      */
-    public Optional<SectorEntidad> buscarPorNombre(String nombre) {
+    public Optional<SectorDto> buscarPorNombre(String nombre) {
         LOGGER.debug("Buscando sector por nombre: {}", nombre);
-        return sectorRepositorio.findByNombre(nombre);
+        return indiceSectores.porNombre(nombre);
     }
     
     /**
-     * Actualiza el estado de un sector específico.
+     * Busca sectores combinando superficie mínima, precio máximo, estado y características,
+     * desde el índice en memoria.
+     *
+     * @param minMetrosCuadrados Superficie mínima en m², o null.
+     * @param maxPrecio Precio mensual máximo, o null.
+     * @param estado Estado de los sectores, o null para cualquiera.
+     * @param caracteristicas Características buscadas (cada valor puede llevar varias separadas por comas), o null.
+     * @param modo {@code todas} (por defecto) si deben cumplirse todas las características, {@code alguna} si basta con una.
+     * @param orden Orden: id (por defecto), m2, -m2, precio o -precio.
+     * @param cursor Cursor devuelto por la página anterior; se omite para la primera página.
+     * @param tamano Número de resultados por página.
+     * @return Los sectores en el orden pedido, el cursor de la página siguiente y las facetas de características.
+     * @throws IllegalArgumentException si el modo, el orden o el cursor no son válidos.
+     */
+    public BusquedaSectoresDto buscarSectores(Integer minMetrosCuadrados, BigDecimal maxPrecio,
+                                              SectorEntidad.EstadoSector estado, List<String> caracteristicas,
+                                              String modo, String orden, String cursor, Integer tamano) {
+        boolean todas;
+        if (modo == null || modo.isBlank() || modo.trim().equalsIgnoreCase("todas")) {
+            todas = true;
+        } else if (modo.trim().equalsIgnoreCase("alguna")) {
+            todas = false;
+        } else {
+            throw new IllegalArgumentException("Modo no válido: " + modo + " (todas o alguna)");
+        }
+        IndiceSectores.Orden criterio = IndiceSectores.Orden.desde(orden);
+        long desde = cursor == null || cursor.isBlank() ? 0L : CursorPaginacion.decodificar(cursor);
+        if (desde < 0 || desde > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Cursor de paginación no válido");
+        }
+        int limite = tamano == null || tamano <= 0 ? tamanoPaginaBusqueda : Math.min(tamano, tamanoMaximoPagina);
+        Long maxCentimos = maxPrecio != null ? IndiceSectores.aCentimos(maxPrecio) : null;
+        IndiceSectores.Resultado resultado = indiceSectores.buscar(minMetrosCuadrados, maxCentimos, estado,
+            caracteristicas != null ? caracteristicas : List.of(), todas, criterio, (int) desde, limite);
+        long siguiente = desde + resultado.sectores().size();
+        return new BusquedaSectoresDto(resultado.sectores(),
+            siguiente < resultado.total() ? CursorPaginacion.codificar(siguiente) : null, resultado.facetas());
+    }
+
+    /**
+     * Términos de características de todos los sectores, desde el índice en memoria.
+     *
+     * @return Número de sectores con cada término, por orden alfabético.
+     */
+    public Map<String, Integer> listarCaracteristicas() {
+        return indiceSectores.caracteristicas();
+    }
+    
+    /**
+     * Consulta el histórico de ocupación de los sectores.
+     *
+     * @param desde Inicio del periodo (instante ISO-8601 o fecha, en UTC); por defecto, 24 horas antes del fin.
+     * @param hasta Fin del periodo, excluido; por defecto, ahora.
+     * @param paso Duración de cada intervalo (por ejemplo {@code 15m}, {@code 1h}, {@code P1D}); por defecto, una hora.
+     * @return La ocupación media de cada intervalo con datos.
+     * @throws IllegalArgumentException si algún parámetro no es válido.
+     */
+    public List<OcupacionDto> consultarOcupacion(String desde, String hasta, String paso) {
+        Instant fin = hasta == null || hasta.isBlank() ? Instant.now() : leerInstante(hasta);
+        Instant inicio = desde == null || desde.isBlank() ? fin.minus(Duration.ofDays(1)) : leerInstante(desde);
+        Duration intervalo;
+        try {
+            intervalo = paso == null || paso.isBlank() ? Duration.ofHours(1) : DurationStyle.detectAndParse(paso.trim());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Paso no válido: " + paso);
+        }
+        return serieOcupacion.consultar(inicio, fin, intervalo);
+    }
+
+    private static Instant leerInstante(String valor) {
+        try {
+            return valor.length() == 10
+                ? LocalDate.parse(valor).atStartOfDay(ZoneOffset.UTC).toInstant()
+                : Instant.parse(valor);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Fecha no válida: " + valor);
+        }
+    }
+    
+    /**
+     * Actualiza el estado de un sector específico. El índice en memoria, la versión de
+     * los sectores y el flujo de eventos se actualizan cuando se confirma la transacción,
+     * también cuando esta la abre un alquiler.
      *
      * @param id ID del sector cuyo estado se desea actualizar.
      * @param estado Nuevo estado del sector.
@@ -73,7 +302,217 @@ public class SectorServicio {
     public SectorEntidad actualizarEstado(Long id, SectorEntidad.EstadoSector estado) {
         SectorEntidad sector = sectorRepositorio.findById(id)
             .orElseThrow(() -> new RuntimeException("Sector no encontrado"));
+        SectorEntidad.EstadoSector anterior = sector.getEstado();
         sector.setEstado(estado);
-        return sectorRepositorio.save(sector);
+        SectorEntidad guardado = sectorRepositorio.save(sector);
+        publicarAlConfirmar(guardado, anterior);
+        return guardado;
+    }
+
+    /**
+     * Cambia el estado de un sector solo si está en el estado esperado, con una única
+     * sentencia UPDATE condicional. Es la forma segura de reservar un sector: de varias
+     * transacciones concurrentes que intenten la misma transición, solo una la consigue.
+     *
+     * @param id ID del sector.
+     * @param esperado Estado que debe tener el sector.
+     * @param nuevo Estado nuevo.
+     * @return El sector con el estado nuevo, o vacío si no estaba en el estado esperado.
+     * @throws RuntimeException si el sector no se encuentra.
+     */
+    @Transactional
+    public Optional<SectorEntidad> cambiarEstadoSi(Long id, SectorEntidad.EstadoSector esperado,
+                                                   SectorEntidad.EstadoSector nuevo) {
+        if (sectorRepositorio.cambiarEstadoSi(id, esperado, nuevo) == 0) {
+            if (!sectorRepositorio.existsById(id)) {
+                throw new RuntimeException("Sector no encontrado");
+            }
+            return Optional.empty();
+        }
+        SectorEntidad sector = sectorRepositorio.findById(id)
+            .orElseThrow(() -> new RuntimeException("Sector no encontrado"));
+        publicarAlConfirmar(sector, esperado);
+        return Optional.of(sector);
+    }
+
+    /**
+     * Actualiza el índice, la versión de los sectores y el flujo de eventos cuando se
+     * confirme la transacción en curso.
+     */
+    private void publicarAlConfirmar(SectorEntidad sector, SectorEntidad.EstadoSector anterior) {
+        SectorDto confirmado = IndiceSectores.aDto(sector);
+        boolean cambiado = anterior != sector.getEstado();
+        DespuesDelCommit.ejecutar(() -> {
+            indiceSectores.actualizar(confirmado);
+            versiones.incrementar(Coleccion.SECTORES);
+            if (cambiado) {
+                difusorEventos.publicar(confirmado, anterior.name());
+            }
+        });
+    }
+
+    /**
+     * Pasa a DISPONIBLE, con una sola sentencia UPDATE, los sectores indicados que sigan
+     * OCUPADOS sin ningún alquiler activo en vigor en el instante dado. Lo usa la
+     * expiración de alquileres después de finalizar un lote. El índice, los eventos y la
+     * versión de los sectores se actualizan tras el commit.
+     *
+     * @param ids IDs de los sectores cuyos alquileres han terminado.
+     * @param ahora Instante de referencia.
+     * @return Número de sectores liberados.
+     */
+    @Transactional
+    public int liberarSectores(Collection<Long> ids, LocalDateTime ahora) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        MapSqlParameterSource parametros = new MapSqlParameterSource()
+            .addValue("ids", ids)
+            .addValue("ocupado", SectorEntidad.EstadoSector.OCUPADO.name())
+            .addValue("disponible", SectorEntidad.EstadoSector.DISPONIBLE.name())
+            .addValue("activo", "ACTIVO")
+            .addValue("ahora", ahora);
+        String sinAlquilerEnVigor = "NOT EXISTS (SELECT 1 FROM gestion_almacenes.alquileres a WHERE a.sector_id = s.id "
+            + "AND a.estado = :activo AND a.fecha_inicio <= :ahora AND a.fecha_fin > :ahora)";
+        // 1. Bloquear y leer los sectores que se van a liberar, para el índice y los eventos
+        List<SectorDto> liberados = jdbc.query("SELECT s.id, s.nombre, s.metros_cuadrados, s.precio_mensual, s.caracteristicas "
+                + "FROM gestion_almacenes.sectores s WHERE s.id IN (:ids) AND s.estado = :ocupado AND " + sinAlquilerEnVigor
+                + " FOR UPDATE",
+            parametros, (rs, fila) -> {
+                SectorDto sector = new SectorDto();
+                sector.setId(rs.getLong("id"));
+                sector.setNombre(rs.getString("nombre"));
+                sector.setMetrosCuadrados(rs.getInt("metros_cuadrados"));
+                sector.setPrecioMensual(rs.getBigDecimal("precio_mensual"));
+                sector.setCaracteristicas(rs.getString("caracteristicas"));
+                sector.setEstado(SectorEntidad.EstadoSector.DISPONIBLE.name());
+                return sector;
+            });
+        if (liberados.isEmpty()) {
+            return 0;
+        }
+
+        // 2. Un único UPDATE condicional para todos
+        int actualizados = jdbc.update("UPDATE gestion_almacenes.sectores s SET s.estado = :disponible "
+                + "WHERE s.id IN (:ids) AND s.estado = :ocupado AND " + sinAlquilerEnVigor,
+            parametros);
+
+        DespuesDelCommit.ejecutar(() -> {
+            indiceSectores.actualizar(liberados);
+            versiones.incrementar(Coleccion.SECTORES);
+            liberados.forEach(sector -> difusorEventos.publicar(sector, SectorEntidad.EstadoSector.OCUPADO.name()));
+        });
+        return actualizados;
+    }
+
+    /**
+     * Cambia el estado de varios sectores con una sola sentencia UPDATE condicional, que
+     * no toca los sectores con un alquiler activo en vigor. Si el destino es MANTENIMIENTO
+     * tampoco toca los que tienen reservas futuras, porque el sector no se podría entregar;
+     * a los demás estados las reservas futuras no les afectan. Antes se bloquean las filas
+     * afectadas (SELECT ... FOR UPDATE) para poder informar del resultado de cada una.
+     * El índice, los eventos y la versión de los sectores se actualizan tras el commit.
+     *
+     * @param ids IDs de los sectores, o null.
+     * @param prefijoNombre Filtro por prefijo del nombre, o null.
+     * @param estadoActual Filtro por estado actual, o null.
+     * @param estado Estado destino.
+     * @return El resultado de cada sector, en el orden de la petición.
+     * @throws IllegalArgumentException si falta el estado, no se indica ningún sector o se superan los permitidos.
+     */
+    @Transactional
+    public List<ResultadoEstadoSectorDto> actualizarEstados(List<Long> ids, String prefijoNombre,
+                                                            SectorEntidad.EstadoSector estadoActual,
+                                                            SectorEntidad.EstadoSector estado) {
+        if (estado == null) {
+            throw new IllegalArgumentException("Falta el estado destino");
+        }
+        boolean hayFiltro = (prefijoNombre != null && !prefijoNombre.isBlank()) || estadoActual != null;
+        if ((ids == null || ids.isEmpty()) && !hayFiltro) {
+            throw new IllegalArgumentException("Indica los IDs de los sectores o un filtro");
+        }
+        Set<Long> objetivo = new LinkedHashSet<>();
+        if (ids != null) {
+            ids.stream().filter(Objects::nonNull).forEach(objetivo::add);
+        }
+        if (hayFiltro) {
+            objetivo.addAll(indiceSectores.filtrar(prefijoNombre == null || prefijoNombre.isBlank() ? null : prefijoNombre, estadoActual));
+        }
+        if (objetivo.size() > maximoCambioMasivo) {
+            throw new IllegalArgumentException("Como máximo " + maximoCambioMasivo + " sectores por petición");
+        }
+        if (objetivo.isEmpty()) {
+            return List.of();
+        }
+
+        MapSqlParameterSource parametros = new MapSqlParameterSource()
+            .addValue("ids", objetivo)
+            .addValue("estado", estado.name())
+            .addValue("activo", "ACTIVO")
+            .addValue("ahora", LocalDateTime.now());
+        // En vigor, o también futuro si el sector pasa a mantenimiento
+        String alquilerQueImpide = "EXISTS (SELECT 1 FROM gestion_almacenes.alquileres a WHERE a.sector_id = s.id "
+            + "AND a.estado = :activo AND a.fecha_fin > :ahora"
+            + (estado == SectorEntidad.EstadoSector.MANTENIMIENTO ? "" : " AND a.fecha_inicio <= :ahora") + ")";
+        // 1. Bloquear las filas y leer su estado y si tienen un alquiler que impida el cambio
+        Map<Long, SectorDto> actuales = new HashMap<>();
+        Set<Long> conAlquiler = new HashSet<>();
+        jdbc.query("SELECT s.id, s.nombre, s.metros_cuadrados, s.precio_mensual, s.caracteristicas, s.estado, "
+                + alquilerQueImpide + " AS con_alquiler "
+                + "FROM gestion_almacenes.sectores s WHERE s.id IN (:ids) FOR UPDATE",
+            parametros, rs -> {
+                SectorDto sector = new SectorDto();
+                sector.setId(rs.getLong("id"));
+                sector.setNombre(rs.getString("nombre"));
+                sector.setMetrosCuadrados(rs.getInt("metros_cuadrados"));
+                sector.setPrecioMensual(rs.getBigDecimal("precio_mensual"));
+                sector.setCaracteristicas(rs.getString("caracteristicas"));
+                sector.setEstado(rs.getString("estado"));
+                actuales.put(sector.getId(), sector);
+                if (rs.getBoolean("con_alquiler")) {
+                    conAlquiler.add(sector.getId());
+                }
+            });
+
+        // 2. Un único UPDATE condicional para todos
+        int actualizados = jdbc.update("UPDATE gestion_almacenes.sectores s SET s.estado = :estado "
+                + "WHERE s.id IN (:ids) AND s.estado <> :estado "
+                + "AND NOT " + alquilerQueImpide,
+            parametros);
+
+        List<ResultadoEstadoSectorDto> resultados = new ArrayList<>(objetivo.size());
+        List<SectorDto> cambiados = new ArrayList<>();
+        Map<Long, String> anteriores = new HashMap<>();
+        for (Long id : objetivo) {
+            SectorDto sector = actuales.get(id);
+            if (sector == null) {
+                resultados.add(new ResultadoEstadoSectorDto(id, ResultadoEstadoSectorDto.NO_ENCONTRADO, null));
+            } else if (estado.name().equals(sector.getEstado())) {
+                resultados.add(new ResultadoEstadoSectorDto(id, ResultadoEstadoSectorDto.SIN_CAMBIOS, sector.getEstado()));
+            } else if (conAlquiler.contains(id)) {
+                resultados.add(new ResultadoEstadoSectorDto(id, ResultadoEstadoSectorDto.ALQUILER_ACTIVO, sector.getEstado()));
+            } else {
+                resultados.add(new ResultadoEstadoSectorDto(id, ResultadoEstadoSectorDto.ACTUALIZADO, sector.getEstado()));
+                anteriores.put(id, sector.getEstado());
+                sector.setEstado(estado.name());
+                cambiados.add(sector);
+            }
+        }
+        if (actualizados != cambiados.size()) {
+            // Solo con un alquiler creado en paralelo y aún sin confirmar al bloquear las filas
+            LOGGER.atWarn().addKeyValue("esperados", cambiados.size()).addKeyValue("actualizados", actualizados)
+                .log("El cambio de estado masivo no coincide con las filas bloqueadas");
+        }
+        LOGGER.atInfo().addKeyValue("estado", estado).addKeyValue("solicitados", objetivo.size())
+            .addKeyValue("actualizados", actualizados).log("Cambio de estado masivo de sectores");
+
+        DespuesDelCommit.ejecutar(() -> {
+            indiceSectores.actualizar(cambiados);
+            if (!cambiados.isEmpty()) {
+                versiones.incrementar(Coleccion.SECTORES);
+            }
+            cambiados.forEach(sector -> difusorEventos.publicar(sector, anteriores.get(sector.getId())));
+        });
+        return resultados;
     }
-}
\ No newline at end of file
+}
@@ -1,17 +1,45 @@
 package com.example.api_gestion_almacen.servicios;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.example.api_gestion_almacen.almacenamiento.AlmacenFotos;
+import com.example.api_gestion_almacen.almacenamiento.FotoAlmacenada;
+import com.example.api_gestion_almacen.almacenamiento.GeneradorVariantes;
+import com.example.api_gestion_almacen.almacenamiento.VarianteFoto;
+import com.example.api_gestion_almacen.busqueda.IndiceUsuarios;
+import com.example.api_gestion_almacen.cache.CacheUsuarios;
+import com.example.api_gestion_almacen.cache.FiltroBloomCorreos;
+import com.example.api_gestion_almacen.cache.RegistroRoles;
+import com.example.api_gestion_almacen.cache.UsuarioCacheado;
+import com.example.api_gestion_almacen.cache.VersionesColecciones;
+import com.example.api_gestion_almacen.cache.VersionesColecciones.Coleccion;
 import com.example.api_gestion_almacen.dtos.CrearUsuDto;
+import com.example.api_gestion_almacen.dtos.PaginaDto;
+import com.example.api_gestion_almacen.dtos.UsuarioBusquedaDto;
 import com.example.api_gestion_almacen.dtos.UsuarioDto;
 import com.example.api_gestion_almacen.entidades.RolEntidad;
 import com.example.api_gestion_almacen.entidades.UsuarioEntidad;
 import com.example.api_gestion_almacen.repositorios.RolRepositorio;
+import com.example.api_gestion_almacen.registro.LimiteRegistro;
+import com.example.api_gestion_almacen.registro.Redaccion;
 import com.example.api_gestion_almacen.repositorios.UsuarioRepositorio;
+import com.example.api_gestion_almacen.seguridad.SesionUsuario;
+import com.example.api_gestion_almacen.utilidades.CursorPaginacion;
+import com.fasterxml.jackson.databind.JsonNode;
 
 /**
  * Servicio para gestionar las operaciones relacionadas con los usuarios.
@@ -21,12 +49,52 @@ import com.example.api_gestion_almacen.repositorios.UsuarioRepositorio;
 @Service
 public class UsuarioServicio {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(UsuarioServicio.class);
+    private static final LimiteRegistro LIMITE_BUSQUEDA_CORREO = LimiteRegistro.muestreo(10, 10); // 1 de cada 10, máximo 10/s
+
+    // Campos que admite PATCH; id y fechaCreacion no se pueden modificar
+    private static final Set<String> CAMPOS_MODIFICABLES = Set.of(
+        "nombreCompleto", "movil", "correoElectronico", "rolId", "contrasena", "foto", "correoConfirmado", "google");
+
     @Autowired
     private UsuarioRepositorio usuarioRepositorio; // Repositorio para acceder a los datos de usuarios
     
     @Autowired
     private RolRepositorio rolRepositorio;
 
+    @Autowired
+    private RegistroRoles registroRoles; // Validación de roles en memoria, sin consultar la tabla roles
+
+    @Autowired
+    private AlmacenFotos almacenFotos; // Almacén externo donde se guardan los bytes de las fotos
+
+    @Autowired
+    private GeneradorVariantes generadorVariantes; // Miniaturas de las fotos para listados
+
+    @Autowired
+    private CacheUsuarios cacheUsuarios; // Caché de lectura por ID y correo; se invalida en cada escritura
+
+    @Autowired
+    private TransactionTemplate transactionTemplate; // Carga y modificación en la misma transacción para los PATCH
+
+    @Autowired
+    private IndiceUsuarios indiceUsuarios; // Búsqueda por parte del nombre o del correo
+
+    @Autowired
+    private FiltroBloomCorreos filtroCorreos; // Descarta sin consulta los correos que seguro no están registrados
+
+    @Autowired
+    private VersionesColecciones versiones; // ETag de los GET de usuarios
+
+    @Value("${usuarios.listado.tamano-pagina:50}")
+    private int tamanoPagina; // Tamaño de página por defecto del listado de usuarios
+
+    @Value("${usuarios.listado.tamano-maximo:200}")
+    private int tamanoMaximoPagina; // Límite superior del tamaño de página que puede pedir el cliente
+
+    @Value("${usuarios.busqueda.tamano-pagina:20}")
+    private int tamanoPaginaBusqueda; // Resultados por página de la búsqueda
+
     /**
      * Crea un nuevo usuario a partir de un UsuarioDto.
      * @author andres
@@ -35,33 +103,43 @@ public class UsuarioServicio {
      * @return El objeto UsuarioDto del usuario creado.
      */
     public CrearUsuDto crearUsuario(CrearUsuDto crearUsuDTO) {
-        System.out.println("UsuarioServicio.crearUsuario - Iniciando");
-        System.out.println("Datos recibidos: " + crearUsuDTO);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.atDebug().addKeyValue("correo", Redaccion.texto(crearUsuDTO.getCorreoElectronico()))
+                .addKeyValue("rolId", crearUsuDTO.getRolId())
+                .addKeyValue("contrasena", Redaccion.secreto(crearUsuDTO.getContrasena()))
+                .addKeyValue("foto", Redaccion.binario(crearUsuDTO.getFoto()))
+                .log("Creando usuario");
+        }
         
         // Verificar si el correo ya existe
-        if (usuarioRepositorio.findByCorreoElectronico(crearUsuDTO.getCorreoElectronico()).isPresent()) {
+        if (correoRegistrado(crearUsuDTO.getCorreoElectronico())) {
             throw new RuntimeException("El correo electrónico ya está registrado");
         }
         
         try {
             // 1. Convertir DTO a entidad
             UsuarioEntidad usuarioEntidad = aEntidad2(crearUsuDTO);
-            System.out.println("Entidad creada: " + usuarioEntidad);
             
             // 2. Guardar en base de datos
             UsuarioEntidad usuarioGuardado = usuarioRepositorio.save(usuarioEntidad);
-            System.out.println("Usuario guardado en BD: " + usuarioGuardado);
+            LOGGER.atInfo().addKeyValue("id", usuarioGuardado.getId()).log("Usuario guardado en BD");
+            cacheUsuarios.invalidar(usuarioGuardado.getId(), usuarioGuardado.getCorreoElectronico());
+            versiones.incrementar(Coleccion.USUARIOS);
+            indexar(usuarioGuardado);
+            filtroCorreos.agregar(usuarioGuardado.getCorreoElectronico());
             
             // 3. Convertir entidad guardada a DTO
-            CrearUsuDto usuarioCreado = new CrearUsuDto();
-            usuarioCreado= aDto2(usuarioGuardado);
-            
-            System.out.println("DTO de respuesta: " + usuarioCreado);
-            return usuarioCreado;
+            return aDto2(usuarioGuardado);
             
+        } catch (DataIntegrityViolationException e) {
+            // La restricción única decide si el filtro dejó pasar un alta concurrente con el mismo correo
+            if (buscarEnCachePorCorreo(crearUsuDTO.getCorreoElectronico()).isPresent()) {
+                throw new RuntimeException("El correo electrónico ya está registrado");
+            }
+            LOGGER.error("Error al crear usuario: {}", e.getMessage(), e);
+            throw new RuntimeException("Error al crear usuario: " + e.getMessage());
         } catch (Exception e) {
-            System.err.println("Error al crear usuario: " + e.getMessage());
-            e.printStackTrace();
+            LOGGER.error("Error al crear usuario: {}", e.getMessage(), e);
             throw new RuntimeException("Error al crear usuario: " + e.getMessage());
         }
     }
@@ -74,37 +152,72 @@ public class UsuarioServicio {
      * @return El objeto UsuarioDto correspondiente al usuario encontrado, o null si no se encuentra.
      */
     public UsuarioDto obtenerUsuarioPorId(Long id) {
-        UsuarioEntidad usuarioEntidad = usuarioRepositorio.findById(id).orElse(null); // Buscar la entidad por ID
-        return usuarioEntidad != null ? aDto(usuarioEntidad) : null; // Convertir entidad a DTO o devolver null
+        // Se consulta la caché y, si no está, la base de datos
+        return cacheUsuarios.buscarPorId(id, clave -> usuarioRepositorio.findById(clave).map(this::aCache))
+            .map(UsuarioCacheado::usuario)
+            .orElse(null);
     }
 
     /**
-     * Obtiene todos los usuarios disponibles.
+     * Comprueba que una sesión no se ha revocado: el usuario sigue existiendo y el token
+     * se emitió después del último cambio de su contraseña o de su rol. El instante de
+     * revocación se guarda con el usuario, así que se conserva tras un reinicio; se lee
+     * de la caché de usuarios, que se invalida en cada escritura.
+     *
+     * @param sesion Sesión extraída de un token con firma válida.
+     * @return true si la sesión sigue vigente.
+     */
+    public boolean sesionVigente(SesionUsuario sesion) {
+        return cacheUsuarios.buscarPorId(sesion.usuarioId(), clave -> usuarioRepositorio.findById(clave).map(this::aCache))
+            .map(usuario -> usuario.aceptaSesion(sesion.emitido()))
+            .orElse(false);
+    }
+
+    /**
+     * Obtiene una página de usuarios ordenada por ID, usando paginación por cursor.
+     * La consulta es una proyección que no carga la foto, de modo que el coste
+     * de cada página es constante con independencia del número de usuarios.
      * @author andres
      * 
-     * @return Una lista de objetos UsuarioDto que representan todos los usuarios.
+     * @param cursor Cursor devuelto por la página anterior, o null para la primera página.
+     * @param tamano Tamaño de página solicitado, o null para usar el valor por defecto.
+     * @return La página de usuarios y el cursor de la página siguiente, si existe.
+     * @throws IllegalArgumentException si el cursor no es válido.
      */
-    public List<UsuarioDto> obtenerTodosLosUsuarios() {
-        System.out.println("API - UsuarioServicio.obtenerTodosLosUsuarios - Iniciando");
-        try {
-            List<UsuarioEntidad> usuarios = usuarioRepositorio.findAll();
-            System.out.println("API - UsuarioServicio.obtenerTodosLosUsuarios - Usuarios encontrados en BD: " + usuarios.size());
-            
-            List<UsuarioDto> usuariosDto = usuarios.stream()
-                .map(this::aDto)
-                .collect(Collectors.toList());
-            
-            System.out.println("API - UsuarioServicio.obtenerTodosLosUsuarios - UsuariosDTO convertidos: " + usuariosDto.size());
-            for (UsuarioDto dto : usuariosDto) {
-                System.out.println("API - Usuario: " + dto.getId() + " - " + dto.getNombreCompleto() + " - Rol: " + dto.getRolId());
-            }
-            
-            return usuariosDto;
-        } catch (Exception e) {
-            System.err.println("API - UsuarioServicio.obtenerTodosLosUsuarios - Error: " + e.getMessage());
-            e.printStackTrace();
-            throw e;
+    public PaginaDto<UsuarioDto> listarUsuarios(String cursor, Integer tamano) {
+        long despuesDe = cursor == null || cursor.isBlank() ? 0L : CursorPaginacion.decodificar(cursor);
+        int limite = tamano == null || tamano <= 0 ? tamanoPagina : Math.min(tamano, tamanoMaximoPagina);
+
+        // Se pide una fila extra para saber si hay página siguiente sin un COUNT adicional
+        List<UsuarioDto> usuarios = usuarioRepositorio.listarPagina(despuesDe, Limit.of(limite + 1));
+        if (usuarios.size() <= limite) {
+            return new PaginaDto<>(usuarios, null);
+        }
+        List<UsuarioDto> pagina = usuarios.subList(0, limite);
+        return new PaginaDto<>(new ArrayList<>(pagina), CursorPaginacion.codificar(pagina.get(limite - 1).getId()));
+    }
+
+    /**
+     * Busca usuarios por parte del nombre o del correo en el índice en memoria.
+     * Todos los términos de la consulta deben aparecer; los resultados se ordenan por relevancia.
+     * @author andres
+     * 
+     * @param consulta Texto buscado.
+     * @param cursor Cursor devuelto por la página anterior, o null para la primera página.
+     * @param tamano Tamaño de página solicitado, o null para usar el valor por defecto.
+     * @return La página de resultados y el cursor de la página siguiente, si existe.
+     * @throws IllegalArgumentException si el cursor no es válido.
+     */
+    public PaginaDto<UsuarioBusquedaDto> buscarUsuarios(String consulta, String cursor, Integer tamano) {
+        long desde = cursor == null || cursor.isBlank() ? 0L : CursorPaginacion.decodificar(cursor);
+        if (desde < 0 || desde > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Cursor de paginación no válido");
         }
+        int limite = tamano == null || tamano <= 0 ? tamanoPaginaBusqueda : Math.min(tamano, tamanoMaximoPagina);
+        IndiceUsuarios.Resultado resultado = indiceUsuarios.buscar(consulta, (int) desde, limite);
+        long siguiente = desde + resultado.usuarios().size();
+        return new PaginaDto<>(resultado.usuarios(),
+            siguiente < resultado.total() ? CursorPaginacion.codificar(siguiente) : null);
     }
 
     /* 
@@ -116,16 +229,22 @@ public class UsuarioServicio {
      * @return El objeto UsuarioDto del usuario actualizado.
      */
     public CrearUsuDto actualizarUsuario(Long id, CrearUsuDto usuarioDTO) {
-        System.out.println("UsuarioServicio.actualizarUsuario - Iniciando actualización del usuario " + id);
-        System.out.println("Datos recibidos: " + usuarioDTO);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.atDebug().addKeyValue("id", id)
+                .addKeyValue("correo", Redaccion.texto(usuarioDTO.getCorreoElectronico()))
+                .addKeyValue("contrasena", Redaccion.secreto(usuarioDTO.getContrasena()))
+                .addKeyValue("foto", Redaccion.binario(usuarioDTO.getFoto()))
+                .log("Actualizando usuario");
+        }
 
         // 1. Verificar que el usuario existe
         UsuarioEntidad usuarioExistente = usuarioRepositorio.findById(id)
             .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
 
         // 2. Verificar si el nuevo correo ya existe (si se está cambiando)
-        if (!usuarioExistente.getCorreoElectronico().equals(usuarioDTO.getCorreoElectronico()) &&
-            usuarioRepositorio.findByCorreoElectronico(usuarioDTO.getCorreoElectronico()).isPresent()) {
+        String correoAnterior = usuarioExistente.getCorreoElectronico();
+        if (!correoAnterior.equals(usuarioDTO.getCorreoElectronico()) &&
+            correoRegistrado(usuarioDTO.getCorreoElectronico())) {
             throw new RuntimeException("El correo electrónico ya está registrado");
         }
 
@@ -137,38 +256,209 @@ public class UsuarioServicio {
             usuarioExistente.setGoogle(usuarioDTO.isGoogle());
 
             // 4. Actualizar el rol si ha cambiado
+            boolean cambianCredenciales = false; // Los tokens llevan el rol y dependen de la contraseña
             if (usuarioDTO.getRolId() != null) {
-                RolEntidad nuevoRol = rolRepositorio.findById(usuarioDTO.getRolId())
-                    .orElseThrow(() -> new RuntimeException("El rol especificado no existe"));
+                RolEntidad nuevoRol = referenciaRol(usuarioDTO.getRolId());
+                cambianCredenciales = usuarioExistente.getRol() == null || !nuevoRol.getId().equals(usuarioExistente.getRol().getId());
                 usuarioExistente.setRol(nuevoRol);
             }
 
             // 5. Actualizar la contraseña solo si se proporciona una nueva
             if (usuarioDTO.getContrasena() != null && !usuarioDTO.getContrasena().trim().isEmpty()) {
                 usuarioExistente.setContrasena(usuarioDTO.getContrasena());
+                cambianCredenciales = true;
+            }
+            if (cambianCredenciales) {
+                revocarSesiones(usuarioExistente);
             }
 
             // 6. Actualizar la foto si se proporciona una nueva
             if (usuarioDTO.getFoto() != null) {
-                usuarioExistente.setFoto(usuarioDTO.getFoto());
+                usuarioExistente.setFotoHash(guardarFoto(usuarioDTO.getFoto()));
             }
 
             // 7. Guardar los cambios
             UsuarioEntidad usuarioActualizado = usuarioRepositorio.save(usuarioExistente);
-            System.out.println("Usuario actualizado en BD: " + usuarioActualizado);
+            LOGGER.atInfo().addKeyValue("id", id).log("Usuario actualizado en BD");
+            cacheUsuarios.invalidar(id, correoAnterior, usuarioActualizado.getCorreoElectronico());
+            versiones.incrementar(Coleccion.USUARIOS);
+            indexar(usuarioActualizado);
+            if (!correoAnterior.equals(usuarioActualizado.getCorreoElectronico())) {
+                filtroCorreos.agregar(usuarioActualizado.getCorreoElectronico());
+            }
 
             // 8. Convertir a DTO y devolver
-            CrearUsuDto usuarioResponse = aDto2(usuarioActualizado);
-            System.out.println("DTO de respuesta: " + usuarioResponse);
-            return usuarioResponse;
+            return aDto2(usuarioActualizado);
 
         } catch (Exception e) {
-            System.err.println("Error al actualizar usuario: " + e.getMessage());
-            e.printStackTrace();
+            LOGGER.error("Error al actualizar usuario {}: {}", id, e.getMessage(), e);
             throw new RuntimeException("Error al actualizar usuario: " + e.getMessage());
         }
     }
 
+    /**
+     * Aplica una modificación parcial con semántica JSON Merge Patch (RFC 7396):
+     * solo cambian los campos presentes y {@code null} borra el valor (si el campo lo admite).
+     * La entidad se carga y se modifica en la misma transacción, y gracias a
+     * {@code @DynamicUpdate} el UPDATE solo incluye las columnas que han cambiado.
+     * La foto solo se toca si el parche incluye el campo {@code foto}.
+     * @author andres
+     * 
+     * @param id El ID del usuario.
+     * @param parche Objeto JSON con los campos a modificar.
+     * @return El usuario modificado.
+     * @throws IllegalArgumentException si el parche no es válido.
+     * @throws RuntimeException si el usuario no existe o el correo ya está registrado.
+     */
+    public UsuarioDto modificarUsuario(Long id, JsonNode parche) {
+        if (parche == null || !parche.isObject()) {
+            throw new IllegalArgumentException("El parche debe ser un objeto JSON");
+        }
+        // Validación y trabajo fuera de la transacción: campos, correo nuevo y foto
+        for (Iterator<String> campos = parche.fieldNames(); campos.hasNext();) {
+            String campo = campos.next();
+            if (!CAMPOS_MODIFICABLES.contains(campo)) {
+                throw new IllegalArgumentException("Campo no modificable: " + campo);
+            }
+        }
+        String correoNuevo = parche.has("correoElectronico") ? textoObligatorio(parche, "correoElectronico") : null;
+        String fotoHash = null;
+        if (parche.has("foto") && !parche.get("foto").isNull()) {
+            if (!parche.get("foto").isTextual()) {
+                throw new IllegalArgumentException("La foto debe enviarse en base64");
+            }
+            try {
+                fotoHash = guardarFoto(parche.get("foto").binaryValue());
+            } catch (IOException e) {
+                throw new IllegalArgumentException("La foto debe enviarse en base64");
+            }
+        }
+        String fotoFinal = fotoHash;
+
+        String[] correoAnterior = new String[1];
+        UsuarioDto resultado;
+        try {
+            resultado = transactionTemplate.execute(estado -> {
+                UsuarioEntidad usuario = usuarioRepositorio.findById(id)
+                    .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
+                correoAnterior[0] = usuario.getCorreoElectronico();
+
+                if (parche.has("nombreCompleto")) {
+                    usuario.setNombreCompleto(textoObligatorio(parche, "nombreCompleto"));
+                }
+                if (parche.has("movil")) {
+                    usuario.setMovil(textoOpcional(parche, "movil"));
+                }
+                if (correoNuevo != null && !correoNuevo.equals(usuario.getCorreoElectronico())) {
+                    if (correoRegistrado(correoNuevo)) {
+                        throw new RuntimeException("El correo electrónico ya está registrado");
+                    }
+                    usuario.setCorreoElectronico(correoNuevo);
+                }
+                if (parche.has("rolId")) {
+                    JsonNode rolId = parche.get("rolId");
+                    if (!rolId.canConvertToLong()) {
+                        throw new IllegalArgumentException("rolId debe ser un número");
+                    }
+                    if (usuario.getRol() == null || usuario.getRol().getId() != rolId.asLong()) {
+                        usuario.setRol(referenciaRol(rolId.asLong()));
+                        revocarSesiones(usuario);
+                    }
+                }
+                if (parche.has("contrasena")) {
+                    usuario.setContrasena(textoObligatorio(parche, "contrasena"));
+                    revocarSesiones(usuario);
+                }
+                if (parche.has("correoConfirmado")) {
+                    usuario.setCorreoConfirmado(booleano(parche, "correoConfirmado"));
+                }
+                if (parche.has("google")) {
+                    usuario.setGoogle(booleano(parche, "google"));
+                }
+                if (parche.has("foto")) {
+                    usuario.setFotoHash(fotoFinal);
+                }
+                // Sin save(): la entidad está gestionada y el flush del commit genera el UPDATE
+                return aDto(usuario);
+            });
+        } catch (DataIntegrityViolationException e) {
+            throw new RuntimeException("El correo electrónico ya está registrado");
+        }
+
+        LOGGER.atInfo().addKeyValue("id", id).addKeyValue("campos", parche.size()).log("Usuario modificado parcialmente");
+        cacheUsuarios.invalidar(id, correoAnterior[0], resultado.getCorreoElectronico());
+        versiones.incrementar(Coleccion.USUARIOS);
+        indiceUsuarios.actualizar(id, resultado.getNombreCompleto(), resultado.getCorreoElectronico(), resultado.getRolId());
+        if (!resultado.getCorreoElectronico().equals(correoAnterior[0])) {
+            filtroCorreos.agregar(resultado.getCorreoElectronico());
+        }
+        return resultado;
+    }
+
+    /** Los tokens llevan el rol y dependen de la contraseña: los emitidos hasta ahora dejan de valer. */
+    private static void revocarSesiones(UsuarioEntidad usuario) {
+        usuario.setSesionesDesde(System.currentTimeMillis());
+    }
+
+    private static String textoObligatorio(JsonNode parche, String campo) {
+        JsonNode valor = parche.get(campo);
+        if (!valor.isTextual() || valor.asText().isBlank()) {
+            throw new IllegalArgumentException(campo + " debe ser un texto no vacío");
+        }
+        return valor.asText();
+    }
+
+    private static String textoOpcional(JsonNode parche, String campo) {
+        JsonNode valor = parche.get(campo);
+        if (valor.isNull()) {
+            return null;
+        }
+        if (!valor.isTextual()) {
+            throw new IllegalArgumentException(campo + " debe ser un texto o null");
+        }
+        return valor.asText();
+    }
+
+    private static boolean booleano(JsonNode parche, String campo) {
+        JsonNode valor = parche.get(campo);
+        if (!valor.isBoolean()) {
+            throw new IllegalArgumentException(campo + " debe ser true o false");
+        }
+        return valor.asBoolean();
+    }
+
+    /**
+     * Obtiene la foto de un usuario desde el almacén de fotos.
+     * Solo se consulta la referencia en la base de datos; los bytes nunca pasan por MySQL.
+     * @author andres
+     * 
+     * @param id El ID del usuario.
+     * @return La foto almacenada, o vacío si el usuario no existe o no tiene foto.
+     * @throws IOException si no se puede leer del almacén.
+     */
+    public Optional<FotoAlmacenada> obtenerFoto(Long id) throws IOException {
+        Optional<String> hash = usuarioRepositorio.buscarFotoHash(id);
+        return hash.isPresent() ? almacenFotos.buscar(hash.get()) : Optional.empty();
+    }
+
+    /**
+     * Obtiene una versión reducida de la foto de un usuario.
+     * @author andres
+     * 
+     * @param id El ID del usuario.
+     * @param tamano Lado en píxeles solicitado; se ajusta a la variante más cercana que lo cubra.
+     * @return La variante, o vacío si el usuario no tiene foto, el tamaño supera todas las
+     *         variantes o el formato no permite redimensionarla.
+     */
+    public Optional<VarianteFoto> obtenerVarianteFoto(Long id, int tamano) {
+        Optional<Integer> tamanoVariante = generadorVariantes.ajustarTamano(tamano);
+        if (tamanoVariante.isEmpty()) {
+            return Optional.empty();
+        }
+        return usuarioRepositorio.buscarFotoHash(id)
+            .flatMap(hash -> generadorVariantes.obtener(hash, tamanoVariante.get()));
+    }
+
     /** Elimina un usuario por su ID.
      * @author andres
      * 
@@ -176,6 +466,9 @@ public class UsuarioServicio {
      */
     public void eliminarUsuario(Long id) {
         usuarioRepositorio.deleteById(id); // Eliminar la entidad por ID
+        cacheUsuarios.invalidar(id);
+        versiones.incrementar(Coleccion.USUARIOS);
+        indiceUsuarios.eliminar(id); // Sus tokens dejan de valer: sesionVigente ya no lo encuentra
     }
 
     /**
@@ -188,25 +481,26 @@ public class UsuarioServicio {
      * @throws RuntimeException Si las credenciales son inválidas.
      */
     public UsuarioDto autenticarUsuario(String correoElectronico, String contrasena) {
-        Optional<UsuarioEntidad> usuarioOpt = usuarioRepositorio.findByCorreoElectronico(correoElectronico);
+        Optional<UsuarioCacheado> usuarioOpt = buscarEnCachePorCorreo(correoElectronico);
         
         if (!usuarioOpt.isPresent()) {
             throw new RuntimeException("Usuario no encontrado");
         }
         
-        UsuarioEntidad usuario = usuarioOpt.get();
+        UsuarioCacheado usuario = usuarioOpt.get();
+        UsuarioDto usuarioDto = usuario.usuario();
 
          // Verificar correo confirmado
-        if (!usuario.isCorreoConfirmado()) {
+        if (!usuarioDto.isCorreoConfirmado()) {
             throw new RuntimeException("Correo electrónico no confirmado");
         }
 
-        // Verificar contrasena
-        if (!contrasena.equals(usuario.getContrasena())) {
+        // Verificar contrasena (la caché solo guarda su huella)
+        if (!usuario.contrasenaCoincide(contrasena)) {
             throw new RuntimeException("Contraseña incorrecta");
         }
         
-        return aDto(usuario);
+        return usuarioDto;
     }
 
     /**
@@ -222,8 +516,10 @@ public class UsuarioServicio {
             
         usuario.setCorreoConfirmado(true);
         usuarioRepositorio.save(usuario);
+        cacheUsuarios.invalidar(usuario.getId(), usuario.getCorreoElectronico());
+        versiones.incrementar(Coleccion.USUARIOS);
         
-        System.out.println("Correo confirmado para usuario: " + email);
+        LOGGER.atInfo().addKeyValue("id", usuario.getId()).log("Correo confirmado");
     }
 
     /**
@@ -235,23 +531,29 @@ public class UsuarioServicio {
      * @throws RuntimeException Si el usuario no existe o hay un error al actualizar
      */
     public void actualizarContrasenaUsuario(String email, String nuevaContrasena) {
-        System.out.println("UsuarioServicio.actualizarContrasenaUsuario - Iniciando actualización de contraseña para " + email);
-        
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.atDebug().addKeyValue("correo", Redaccion.texto(email))
+                .addKeyValue("contrasena", Redaccion.secreto(nuevaContrasena))
+                .log("Actualizando contraseña");
+        }
+
         // 1. Buscar usuario por email
         UsuarioEntidad usuario = usuarioRepositorio.findByCorreoElectronico(email)
             .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
             
         try {
-            // 2. Actualizar contraseña
+            // 2. Actualizar contraseña e invalidar las sesiones abiertas con la anterior
             usuario.setContrasena(nuevaContrasena);
+            revocarSesiones(usuario);
             
             // 3. Guardar cambios
             usuarioRepositorio.save(usuario);
-            System.out.println("Contraseña actualizada exitosamente para: " + email);
+            LOGGER.atInfo().addKeyValue("id", usuario.getId()).log("Contraseña actualizada");
+            cacheUsuarios.invalidar(usuario.getId(), usuario.getCorreoElectronico());
+            versiones.incrementar(Coleccion.USUARIOS);
             
         } catch (Exception e) {
-            System.err.println("Error al actualizar contraseña: " + e.getMessage());
-            e.printStackTrace();
+            LOGGER.error("Error al actualizar contraseña del usuario {}: {}", usuario.getId(), e.getMessage(), e);
             throw new RuntimeException("Error al actualizar contraseña: " + e.getMessage());
         }
     }
@@ -264,8 +566,7 @@ public class UsuarioServicio {
      * @return El objeto UsuarioDto del usuario encontrado, o null si no se encuentra.
      */
     public UsuarioDto buscarPorCorreo(String correoElectronico) {
-        Optional<UsuarioEntidad> usuarioOpt = usuarioRepositorio.findByCorreoElectronico(correoElectronico);
-        return usuarioOpt.map(this::aDto).orElse(null);
+        return buscarEnCachePorCorreo(correoElectronico).map(UsuarioCacheado::usuario).orElse(null);
     }
 
     /**
@@ -276,30 +577,20 @@ public class UsuarioServicio {
      * @return UsuarioDto si existe, null si no existe
      */
     public UsuarioDto buscarPorCorreoElectronico(String correoElectronico) {
-        System.out.println("UsuarioServicio.buscarPorCorreoElectronico - Buscando usuario con correo: " + correoElectronico);
-        
         try {
-            Optional<UsuarioEntidad> usuarioOpt = usuarioRepositorio.findByCorreoElectronico(correoElectronico);
+            Optional<UsuarioCacheado> usuarioOpt = buscarEnCachePorCorreo(correoElectronico);
             
             if (!usuarioOpt.isPresent()) {
-                System.out.println("Usuario no encontrado para correo: " + correoElectronico);
+                registrarBusquedaCorreo(correoElectronico, null, false, false);
                 return null;
             }
             
-            UsuarioEntidad usuario = usuarioOpt.get();
-            UsuarioDto usuarioDto = aDto(usuario);
-            
-            System.out.println("Usuario encontrado -> ID: " + usuarioDto.getId() + 
-                             ", Nombre: " + usuarioDto.getNombreCompleto() + 
-                             ", Email: " + usuarioDto.getCorreoElectronico() + 
-                             ", Google: " + usuarioDto.isGoogle() +
-                             ", Confirmado: " + usuarioDto.isCorreoConfirmado());
-            
+            UsuarioDto usuarioDto = usuarioOpt.get().usuario();
+            registrarBusquedaCorreo(correoElectronico, usuarioDto.getId(), usuarioDto.isGoogle(), usuarioDto.isCorreoConfirmado());
             return usuarioDto;
             
         } catch (Exception e) {
-            System.err.println("Error al buscar usuario por correo: " + e.getMessage());
-            e.printStackTrace();
+            LOGGER.error("Error al buscar usuario por correo: {}", e.getMessage(), e);
             throw new RuntimeException("Error al buscar usuario por correo: " + e.getMessage());
         }
     }
@@ -312,31 +603,89 @@ public class UsuarioServicio {
      * @return Optional con el usuario si existe, o vacío si no existe
      */
     public Optional<UsuarioEntidad> buscarPorCorreoElectronico2(String correoElectronico) {
-        System.out.println("UsuarioServicio.buscarPorCorreoElectronico - Buscando usuario con correo: " + correoElectronico);
-        
         try {
             Optional<UsuarioEntidad> usuarioOpt = usuarioRepositorio.findByCorreoElectronico(correoElectronico);
             
             if (usuarioOpt.isPresent()) {
                 UsuarioEntidad usuario = usuarioOpt.get();
-                System.out.println("Usuario encontrado -> ID: " + usuario.getId() + 
-                                 ", Nombre: " + usuario.getNombreCompleto() + 
-                                 ", Email: " + usuario.getCorreoElectronico() + 
-                                 ", Google: " + usuario.isGoogle() +
-                                 ", Confirmado: " + usuario.isCorreoConfirmado());
+                registrarBusquedaCorreo(correoElectronico, usuario.getId(), usuario.isGoogle(), usuario.isCorreoConfirmado());
             } else {
-                System.out.println("Usuario no encontrado para correo: " + correoElectronico);
+                registrarBusquedaCorreo(correoElectronico, null, false, false);
             }
             
             return usuarioOpt;
             
         } catch (Exception e) {
-            System.err.println("Error al buscar usuario por correo: " + e.getMessage());
-            e.printStackTrace();
+            LOGGER.error("Error al buscar usuario por correo: {}", e.getMessage(), e);
             throw new RuntimeException("Error al buscar usuario por correo: " + e.getMessage());
         }
     }
 
+    /**
+     * Estadísticas de la caché de usuarios (aciertos, fallos, expulsiones).
+     * @author andres
+     * 
+     * @return Las estadísticas por índice de la caché.
+     */
+    public Map<String, Object> estadisticasCache() {
+        return cacheUsuarios.estadisticas();
+    }
+
+    /**
+     * Estadísticas del filtro de Bloom de correos registrados.
+     * @author andres
+     * 
+     * @return Consultas evitadas, falsos positivos y tasa estimada.
+     */
+    public Map<String, Object> estadisticasFiltroCorreos() {
+        return filtroCorreos.estadisticas();
+    }
+
+    /**
+     * Comprueba si un correo ya está registrado. Solo se consulta la base de datos
+     * cuando el filtro de Bloom no puede descartarlo.
+     * @author andres
+     */
+    private boolean correoRegistrado(String correoElectronico) {
+        if (correoElectronico == null || !filtroCorreos.podriaExistir(correoElectronico)) {
+            return false;
+        }
+        if (buscarEnCachePorCorreo(correoElectronico).isPresent()) {
+            return true;
+        }
+        filtroCorreos.registrarFalsoPositivo();
+        return false;
+    }
+
+    /**
+     * Busca un usuario por correo en la caché, consultando la base de datos solo si no está.
+     * Las búsquedas sin resultado no se guardan, así que un usuario recién creado se ve al instante.
+     * @author andres
+     */
+    private Optional<UsuarioCacheado> buscarEnCachePorCorreo(String correoElectronico) {
+        return cacheUsuarios.buscarPorCorreo(correoElectronico,
+            correo -> usuarioRepositorio.findByCorreoElectronico(correo).map(this::aCache));
+    }
+
+    /**
+     * Registra el resultado de una búsqueda por correo. Es la ruta más frecuente del
+     * servicio, así que solo se registra una de cada diez búsquedas, con un máximo de
+     * mensajes por segundo, y no se reserva memoria si el nivel DEBUG está desactivado.
+     * @author andres
+     */
+    private static void registrarBusquedaCorreo(String correo, Long id, boolean google, boolean confirmado) {
+        if (!LOGGER.isDebugEnabled() || !LIMITE_BUSQUEDA_CORREO.permitir()) {
+            return;
+        }
+        LOGGER.atDebug()
+            .addKeyValue("correo", Redaccion.texto(correo))
+            .addKeyValue("id", id)
+            .addKeyValue("google", google)
+            .addKeyValue("confirmado", confirmado)
+            .addKeyValue("suprimidos", LIMITE_BUSQUEDA_CORREO.tomarSuprimidos())
+            .log(id != null ? "Usuario encontrado por correo" : "Usuario no encontrado por correo");
+    }
+
     /**
      * Convierte un UsuarioDto a una UsuarioEntidad.
      * @author andres
@@ -358,7 +707,6 @@ public class UsuarioServicio {
             usuarioEntidad.setRol(rol);
         }
         
-        usuarioEntidad.setFoto(usuarioDTO.getFoto());
         usuarioEntidad.setFechaCreacion(usuarioDTO.getFechaCreacion());
         usuarioEntidad.setCorreoConfirmado(usuarioDTO.isCorreoConfirmado());
         usuarioEntidad.setGoogle(usuarioDTO.isGoogle());
@@ -370,23 +718,64 @@ public class UsuarioServicio {
         usuarioEntidad.setMovil(crearUsuDTO.getMovil());
         usuarioEntidad.setCorreoElectronico(crearUsuDTO.getCorreoElectronico());
         
-        // Cargar el rol completo desde la base de datos
+        // Validar el rol en memoria y asignar solo la referencia (sin SELECT sobre roles)
         if (crearUsuDTO.getRolId() != null) {
-            RolEntidad rol = rolRepositorio.findById(crearUsuDTO.getRolId())
-                .orElseThrow(() -> new RuntimeException("El rol especificado no existe"));
-            usuarioEntidad.setRol(rol);
+            usuarioEntidad.setRol(referenciaRol(crearUsuDTO.getRolId()));
         } else {
             throw new RuntimeException("El rol es obligatorio");
         }
         
         usuarioEntidad.setContrasena(crearUsuDTO.getContrasena());
-        usuarioEntidad.setFoto(crearUsuDTO.getFoto());
+        if (crearUsuDTO.getFoto() != null) {
+            usuarioEntidad.setFotoHash(guardarFoto(crearUsuDTO.getFoto()));
+        }
         usuarioEntidad.setGoogle(crearUsuDTO.isGoogle());
         usuarioEntidad.setCorreoConfirmado(crearUsuDTO.isCorreoConfirmado());
         
         return usuarioEntidad;
     }
 
+    /**
+     * Añade o actualiza un usuario en el índice de búsqueda.
+     * @author andres
+     */
+    private void indexar(UsuarioEntidad usuario) {
+        indiceUsuarios.actualizar(usuario.getId(), usuario.getNombreCompleto(), usuario.getCorreoElectronico(),
+            usuario.getRol() != null ? usuario.getRol().getId() : null);
+    }
+
+    /**
+     * Devuelve una referencia perezosa al rol después de comprobar en el registro que existe.
+     * @author andres
+     * 
+     * @param rolId ID del rol.
+     * @return La referencia al rol, que no se carga de la base de datos.
+     * @throws RuntimeException si el rol no existe.
+     */
+    private RolEntidad referenciaRol(Long rolId) {
+        if (!registroRoles.existe(rolId)) {
+            throw new RuntimeException("El rol especificado no existe");
+        }
+        return rolRepositorio.getReferenceById(rolId);
+    }
+
+    /**
+     * Guarda una foto en el almacén y devuelve su referencia.
+     * @author andres
+     * 
+     * @param foto Bytes de la imagen.
+     * @return El hash que identifica la foto en el almacén.
+     */
+    private String guardarFoto(byte[] foto) {
+        try {
+            String hash = almacenFotos.guardar(foto);
+            generadorVariantes.programar(hash); // Miniaturas en segundo plano
+            return hash;
+        } catch (IOException e) {
+            throw new RuntimeException("Error al guardar la foto: " + e.getMessage(), e);
+        }
+    }
+
     /**
      * Convierte una entidad Usuario a DTO.
      * @author andres
@@ -403,20 +792,27 @@ public class UsuarioServicio {
         dto.setMovil(usuarioEntidad.getMovil());
         dto.setCorreoElectronico(usuarioEntidad.getCorreoElectronico());
         dto.setRolId(usuarioEntidad.getRol().getId());
-        dto.setFoto(usuarioEntidad.getFoto());
+        dto.setFotoUrl(UsuarioDto.urlFoto(usuarioEntidad.getId(), usuarioEntidad.getFotoHash()));
         dto.setFechaCreacion(usuarioEntidad.getFechaCreacion());
         dto.setCorreoConfirmado(usuarioEntidad.isCorreoConfirmado());
         dto.setGoogle(usuarioEntidad.isGoogle());
         
         return dto;
     }
+    /**
+     * Convierte una entidad Usuario en una entrada de la caché (sin foto ni contraseña en claro).
+     * @author andres
+     */
+    private UsuarioCacheado aCache(UsuarioEntidad usuarioEntidad) {
+        return UsuarioCacheado.crear(aDto(usuarioEntidad), usuarioEntidad.getContrasena(), usuarioEntidad.getSesionesDesde());
+    }
+
     private CrearUsuDto aDto2(UsuarioEntidad usuarioEntidad) {
         CrearUsuDto usuarioDTO = new CrearUsuDto(); // Crear un nuevo DTO
         usuarioDTO.setNombreCompleto(usuarioEntidad.getNombreCompleto()); // Establecer el nombre completo
         usuarioDTO.setMovil(usuarioEntidad.getMovil()); // Establecer el número de móvil
         usuarioDTO.setCorreoElectronico(usuarioEntidad.getCorreoElectronico()); // Establecer el correo electrónico
         usuarioDTO.setRolId(usuarioEntidad.getRol().getId());
-        usuarioDTO.setFoto(usuarioEntidad.getFoto()); // Establecer la foto
         usuarioDTO.setCorreoConfirmado(usuarioEntidad.isCorreoConfirmado()); // Establecer el estado de confirmación del correo
         usuarioDTO.setGoogle(usuarioEntidad.isGoogle());
         
@@ -0,0 +1,58 @@
+package com.example.api_gestion_almacen.utilidades;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Candados repartidos en franjas por clave: las operaciones sobre la misma clave se
+ * ejecutan de una en una y las de claves distintas casi nunca se esperan entre sí.
+ * El número de candados es fijo, así que la memoria no crece con el número de claves;
+ * dos claves que comparten franja solo se serializan entre ellas.
+ */
+public final class CandadosPorClave {
+
+    private final ReentrantLock[] candados;
+    private final int mascara;
+
+    /**
+     * @param franjas Número de candados; se redondea a la siguiente potencia de dos.
+     */
+    public CandadosPorClave(int franjas) {
+        int tamano = franjas <= 1 ? 1 : Integer.highestOneBit(franjas - 1) << 1;
+        candados = new ReentrantLock[tamano];
+        for (int i = 0; i < tamano; i++) {
+            candados[i] = new ReentrantLock();
+        }
+        mascara = tamano - 1;
+    }
+
+    /**
+     * Ejecuta una acción con el candado de la clave.
+     *
+     * @param clave Clave, por ejemplo el ID de un sector.
+     * @param accion Acción a ejecutar.
+     * @param <T> Tipo del resultado.
+     * @return El resultado de la acción.
+     */
+    public <T> T ejecutar(long clave, Supplier<T> accion) {
+        ReentrantLock candado = candados[franja(clave)];
+        candado.lock();
+        try {
+            return accion.get();
+        } finally {
+            candado.unlock();
+        }
+    }
+
+    /**
+     * @return Número de franjas.
+     */
+    public int franjas() {
+        return candados.length;
+    }
+
+    int franja(long clave) {
+        long mezcla = clave * 0x9E3779B97F4A7C15L; // Fibonacci: IDs consecutivos caen en franjas distintas
+        return (int) (mezcla >>> 40) & mascara;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.api_gestion_almacen.utilidades;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Codifica y decodifica los cursores de la paginación por clave (keyset).
+ * El cursor es el último ID devuelto, serializado en base64 URL-safe para que
+ * el cliente lo trate como un token opaco.
+ */
+public final class CursorPaginacion {
+
+    private static final Base64.Encoder CODIFICADOR = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODIFICADOR = Base64.getUrlDecoder();
+
+    private CursorPaginacion() {
+    }
+
+    /**
+     * Genera el cursor que apunta justo después del ID indicado.
+     *
+     * @param ultimoId Último ID incluido en la página actual.
+     * @return Cursor opaco para pedir la página siguiente.
+     */
+    public static String codificar(long ultimoId) {
+        return CODIFICADOR.encodeToString(ByteBuffer.allocate(Long.BYTES).putLong(ultimoId).array());
+    }
+
+    /**
+     * Obtiene el ID contenido en un cursor.
+     *
+     * @param cursor Cursor recibido del cliente.
+     * @return El ID a partir del cual continuar.
+     * @throws IllegalArgumentException si el cursor no es válido.
+     */
+    public static long decodificar(String cursor) {
+        byte[] bytes;
+        try {
+            bytes = DECODIFICADOR.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor de paginación no válido");
+        }
+        if (bytes.length != Long.BYTES) {
+            throw new IllegalArgumentException("Cursor de paginación no válido");
+        }
+        return ByteBuffer.wrap(bytes).getLong();
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.api_gestion_almacen.utilidades;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Ejecuta una acción cuando la transacción en curso se confirma, de modo que las
+ * estructuras en memoria nunca reflejen cambios que después se deshacen.
+ * Si no hay transacción activa, la acción se ejecuta en el momento.
+ */
+public final class DespuesDelCommit {
+
+    private DespuesDelCommit() {
+    }
+
+    /**
+     * @param accion Acción a ejecutar tras el commit (no se ejecuta si hay rollback).
+     */
+    public static void ejecutar(Runnable accion) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            accion.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                accion.run();
+            }
+        });
+    }
+}
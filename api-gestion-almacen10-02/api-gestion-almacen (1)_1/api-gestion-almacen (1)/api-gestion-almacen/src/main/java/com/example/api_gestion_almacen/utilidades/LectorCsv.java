@@ -0,0 +1,90 @@
+package com.example.api_gestion_almacen.utilidades;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lector CSV en streaming (RFC 4180): separador coma, campos entre comillas
+ * dobles con {@code ""} como comilla escapada y saltos de línea dentro de comillas.
+ * Lee registro a registro, sin cargar el fichero completo en memoria.
+ */
+public final class LectorCsv {
+
+    private final Reader entrada;
+    private int siguiente = -2; // -2: aún no leído
+    private long registrosLeidos;
+
+    /**
+     * @param entrada Texto CSV; conviene que sea un {@link java.io.BufferedReader}.
+     */
+    public LectorCsv(Reader entrada) {
+        this.entrada = entrada;
+    }
+
+    /**
+     * Lee el siguiente registro.
+     *
+     * @return Los campos del registro, o null al llegar al final.
+     * @throws IOException si falla la lectura.
+     * @throws IllegalArgumentException si hay unas comillas sin cerrar.
+     */
+    public List<String> leer() throws IOException {
+        int c = consumir();
+        if (c == -1) {
+            return null;
+        }
+        List<String> campos = new ArrayList<>();
+        StringBuilder campo = new StringBuilder();
+        boolean entreComillas = false;
+        while (true) {
+            if (entreComillas) {
+                if (c == -1) {
+                    throw new IllegalArgumentException("Comillas sin cerrar en el registro " + (registrosLeidos + 1));
+                }
+                if (c == '"') {
+                    if (mirar() == '"') {
+                        consumir();
+                        campo.append('"');
+                    } else {
+                        entreComillas = false;
+                    }
+                } else {
+                    campo.append((char) c);
+                }
+            } else if (c == '"' && campo.isEmpty()) {
+                entreComillas = true;
+            } else if (c == ',') {
+                campos.add(campo.toString());
+                campo.setLength(0);
+            } else if (c == '\n' || c == -1) {
+                break;
+            } else if (c == '\r') {
+                if (mirar() == '\n') {
+                    consumir();
+                }
+                break;
+            } else {
+                campo.append((char) c);
+            }
+            c = consumir();
+        }
+        campos.add(campo.toString());
+        registrosLeidos++;
+        return campos;
+    }
+
+    private int consumir() throws IOException {
+        int c = siguiente != -2 ? siguiente : entrada.read();
+        siguiente = -2;
+        return c;
+    }
+
+    private int mirar() throws IOException {
+        if (siguiente == -2) {
+            siguiente = entrada.read();
+        }
+        return siguiente;
+    }
+}
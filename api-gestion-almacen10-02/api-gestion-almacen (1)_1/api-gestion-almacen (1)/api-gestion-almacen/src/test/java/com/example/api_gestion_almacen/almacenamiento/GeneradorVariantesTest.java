@@ -0,0 +1,79 @@
+package com.example.api_gestion_almacen.almacenamiento;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Generación de variantes a partir de una foto PNG de 600x400 guardada en disco.
+ */
+class GeneradorVariantesTest {
+
+    private static final String HASH = "ab0123456789";
+
+    @TempDir
+    Path directorio;
+
+    private GeneradorVariantes generador;
+
+    @BeforeEach
+    void preparar() throws Exception {
+        Path original = directorio.resolve("original.png");
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(600, 400, BufferedImage.TYPE_INT_RGB), "png", png);
+        Files.write(original, png.toByteArray());
+
+        FotoAlmacenada foto = mock(FotoAlmacenada.class);
+        when(foto.abrir()).thenAnswer(invocacion -> Files.newByteChannel(original));
+        AlmacenFotos almacen = mock(AlmacenFotos.class);
+        when(almacen.buscar(HASH)).thenReturn(Optional.of(foto));
+
+        generador = new GeneradorVariantes();
+        ReflectionTestUtils.setField(generador, "almacenFotos", almacen);
+        ReflectionTestUtils.setField(generador, "directorio", directorio.toString());
+        ReflectionTestUtils.setField(generador, "tamanos", new int[] {64, 128});
+        ReflectionTestUtils.setField(generador, "capacidadCache", 1_000_000L);
+        ReflectionTestUtils.setField(generador, "hilos", 1);
+        ReflectionTestUtils.setField(generador, "maximoPixeles", 25_000_000L);
+        generador.inicializar();
+    }
+
+    @AfterEach
+    void detener() {
+        generador.detener();
+    }
+
+    @Test
+    void generaUnaMiniaturaCuadradaDelTamanoPedido() throws Exception {
+        Optional<VarianteFoto> variante = generador.obtener(HASH, 64);
+
+        assertTrue(variante.isPresent());
+        BufferedImage miniatura = ImageIO.read(new ByteArrayInputStream(variante.get().contenido()));
+        assertEquals(64, miniatura.getWidth());
+        assertEquals(64, miniatura.getHeight());
+    }
+
+    @Test
+    void noDecodificaLasImagenesDeDemasiadosPixeles() {
+        ReflectionTestUtils.setField(generador, "maximoPixeles", 600L * 400 - 1);
+
+        assertEquals(Optional.empty(), generador.obtener(HASH, 64));
+        assertEquals(Optional.empty(), generador.obtener("desconocido", 64));
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.api_gestion_almacen.busqueda;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.api_gestion_almacen.entidades.AlquilerEntidad.EstadoAlquiler;
+import com.example.api_gestion_almacen.repositorios.AlquilerRepositorio;
+
+/**
+ * Agenda de sectores sobre una tabla de alquileres simulada; las consultas se comparan
+ * con un recorrido completo de las reservas.
+ */
+class AgendaSectoresTest {
+
+    private static final LocalDateTime ORIGEN = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    private final List<Reserva> activas = new ArrayList<>();
+    private Runnable duranteLaLectura = () -> { };
+    private AlquilerRepositorio repositorio;
+    private AgendaSectores agenda;
+
+    @BeforeEach
+    void preparar() {
+        repositorio = mock(AlquilerRepositorio.class);
+        when(repositorio.listarReservas(EstadoAlquiler.ACTIVO)).thenAnswer(invocacion -> {
+            List<Reserva> lectura = List.copyOf(activas);
+            duranteLaLectura.run();
+            return lectura;
+        });
+        agenda = new AgendaSectores();
+        ReflectionTestUtils.setField(agenda, "alquilerRepositorio", repositorio);
+    }
+
+    @Test
+    void coincideConLaFuerzaBruta() {
+        Random aleatorio = new Random(3);
+        long alquilerId = 0;
+        for (long sector = 1; sector <= 20; sector++) {
+            int dia = 0;
+            for (int i = 0; i < 30; i++) { // Reservas sin solapes, a veces contiguas
+                int inicio = dia + aleatorio.nextInt(3);
+                int fin = inicio + 1 + aleatorio.nextInt(10);
+                activas.add(new Reserva(++alquilerId, sector, dia(inicio), dia(fin)));
+                dia = fin;
+            }
+        }
+        agenda.recargar();
+
+        for (int i = 0; i < 20_000; i++) {
+            long sector = 1 + aleatorio.nextInt(21); // El 21 no tiene reservas
+            LocalDateTime inicio = ORIGEN.plusHours(aleatorio.nextInt(24 * 250));
+            LocalDateTime fin = inicio.plusHours(1 + aleatorio.nextInt(24 * 5));
+
+            List<Reserva> solapan = activas.stream().filter(r -> r.sectorId() == sector
+                && r.inicio().isBefore(fin) && r.fin().isAfter(inicio)).toList();
+            Optional<Reserva> solapada = agenda.solapada(sector, inicio, fin);
+            assertEquals(!solapan.isEmpty(), solapada.isPresent(), sector + " " + inicio + " " + fin);
+            solapada.ifPresent(r -> assertTrue(solapan.contains(r)));
+
+            Optional<Reserva> vigente = activas.stream().filter(r -> r.sectorId() == sector && r.contiene(inicio)).findFirst();
+            assertEquals(vigente, agenda.vigente(sector, inicio));
+        }
+    }
+
+    @Test
+    void losExtremosSonInicioIncluidoYFinExcluido() {
+        Reserva reserva = new Reserva(1L, 1L, dia(10), dia(20));
+        activas.add(reserva);
+        agenda.recargar();
+
+        assertEquals(Optional.empty(), agenda.solapada(1L, dia(0), dia(10))); // Termina cuando empieza la reserva
+        assertEquals(Optional.empty(), agenda.solapada(1L, dia(20), dia(30))); // Empieza cuando termina la reserva
+        assertEquals(Optional.of(reserva), agenda.solapada(1L, dia(19), dia(30)));
+        assertEquals(Optional.of(reserva), agenda.solapada(1L, dia(0), dia(40)));
+        assertEquals(Optional.of(reserva), agenda.vigente(1L, dia(10)));
+        assertEquals(Optional.empty(), agenda.vigente(1L, dia(20)));
+    }
+
+    @Test
+    void agregarYQuitarActualizanLaAgenda() {
+        agenda.recargar();
+        Reserva reserva = new Reserva(1L, 1L, dia(10), dia(20));
+
+        agenda.agregar(reserva);
+        assertEquals(Optional.of(reserva), agenda.vigente(1L, dia(15)));
+
+        agenda.quitar(new Reserva(2L, 1L, dia(10), dia(20))); // Otro alquiler con el mismo inicio: no se quita
+        assertEquals(Optional.of(reserva), agenda.vigente(1L, dia(15)));
+
+        agenda.quitar(reserva);
+        assertEquals(Optional.empty(), agenda.vigente(1L, dia(15)));
+        agenda.quitar(new Reserva(3L, 9L, dia(10), dia(20))); // Sector sin agenda
+    }
+
+    @Test
+    void seCargaAlPrimerUsoYNoPisaLosCambiosConcurrentes() {
+        Reserva confirmada = new Reserva(1L, 1L, dia(10), dia(20));
+        agenda.agregar(confirmada); // Antes de la primera carga no se guarda nada
+        activas.add(confirmada);
+        Reserva nueva = new Reserva(2L, 2L, dia(10), dia(20));
+        duranteLaLectura = () -> { // Un alta confirmada mientras se lee la tabla
+            duranteLaLectura = () -> { };
+            activas.add(nueva);
+            agenda.agregar(nueva);
+        };
+
+        assertEquals(Optional.of(confirmada), agenda.vigente(1L, dia(15)));
+        assertEquals(Optional.of(nueva), agenda.vigente(2L, dia(15)));
+        verify(repositorio, times(2)).listarReservas(EstadoAlquiler.ACTIVO); // La primera lectura se descartó
+    }
+
+    @Test
+    void sinCargaPosibleLaConsultaFalla() {
+        duranteLaLectura = () -> agenda.agregar(new Reserva(1L, 1L, dia(10), dia(20)));
+
+        assertThrows(IllegalStateException.class, () -> agenda.vigente(1L, dia(15)));
+        verify(repositorio, times(3)).listarReservas(EstadoAlquiler.ACTIVO);
+    }
+
+    private static LocalDateTime dia(int dia) {
+        return ORIGEN.plusDays(dia);
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.api_gestion_almacen.busqueda;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.api_gestion_almacen.busqueda.IndiceSectores.Orden;
+import com.example.api_gestion_almacen.cache.VersionesColecciones;
+import com.example.api_gestion_almacen.dtos.BusquedaSectoresDto;
+import com.example.api_gestion_almacen.dtos.SectorDto;
+import com.example.api_gestion_almacen.entidades.SectorEntidad;
+import com.example.api_gestion_almacen.entidades.SectorEntidad.EstadoSector;
+import com.example.api_gestion_almacen.repositorios.SectorRepositorio;
+import com.example.api_gestion_almacen.series.SerieOcupacion;
+import com.example.api_gestion_almacen.servicios.SectorServicio;
+
+/**
+ * Búsqueda multicriterio del índice de sectores, cargado desde un repositorio simulado.
+ * Los casos aleatorios se comparan con un filtrado y una ordenación por fuerza bruta.
+ */
+class IndiceSectoresTest {
+
+    private static final String[] CARACTERISTICAS = {"Climatizado", "Muelle de carga", "Alarma", "Planta baja", "Acceso 24h"};
+
+    private final List<SectorEntidad> tabla = new ArrayList<>();
+    private IndiceSectores indice;
+
+    @BeforeEach
+    void preparar() {
+        SectorRepositorio repositorio = mock(SectorRepositorio.class);
+        when(repositorio.findAll()).thenAnswer(invocacion -> new ArrayList<>(tabla));
+        indice = new IndiceSectores();
+        ReflectionTestUtils.setField(indice, "sectorRepositorio", repositorio);
+        ReflectionTestUtils.setField(indice, "versiones", mock(VersionesColecciones.class));
+        ReflectionTestUtils.setField(indice, "serieOcupacion", mock(SerieOcupacion.class));
+    }
+
+    @Test
+    void losLimitesDeLosRangosSeIncluyen() {
+        sector(1, 19, "49.99", EstadoSector.DISPONIBLE, null);
+        sector(2, 20, "50.00", EstadoSector.DISPONIBLE, null);
+        sector(3, 21, "50.01", EstadoSector.DISPONIBLE, null);
+        indice.recargar();
+
+        assertEquals(List.of(2L, 3L), ids(buscar(20, null)));
+        assertEquals(List.of(1L, 2L), ids(buscar(null, IndiceSectores.aCentimos(new BigDecimal("50.00")))));
+        assertEquals(List.of(2L), ids(buscar(20, 5000L)));               // Intersección de los dos rangos
+        assertEquals(List.of(), ids(buscar(21, 4999L)));                 // Rangos disjuntos
+        assertEquals(List.of(1L, 2L, 3L), ids(buscar(Integer.MIN_VALUE, Long.MAX_VALUE)));
+        assertEquals(List.of(), ids(buscar(22, null)));                  // Por encima del mayor
+        assertEquals(List.of(), ids(buscar(null, 4998L)));               // Por debajo del menor
+    }
+
+    @Test
+    void aCentimosRedondeaHaciaAbajo() {
+        assertEquals(5000, IndiceSectores.aCentimos(new BigDecimal("50")));
+        assertEquals(5000, IndiceSectores.aCentimos(new BigDecimal("50.00")));
+        assertEquals(5000, IndiceSectores.aCentimos(new BigDecimal("50.009"))); // Un máximo de 50,009 no admite 50,01
+        assertEquals(5001, IndiceSectores.aCentimos(new BigDecimal("50.01")));
+        assertEquals(0, IndiceSectores.aCentimos(new BigDecimal("0.001")));
+        assertEquals(-1, IndiceSectores.aCentimos(new BigDecimal("-0.001")));
+    }
+
+    @Test
+    void lasCaracteristicasSeCombinanConTodasOAlguna() {
+        sector(1, 10, "10.00", EstadoSector.DISPONIBLE, "Climatizado, Alarma");
+        sector(2, 10, "10.00", EstadoSector.DISPONIBLE, "climatizado");
+        sector(3, 10, "10.00", EstadoSector.OCUPADO, "ALARMA; Planta baja");
+        sector(4, 10, "10.00", EstadoSector.DISPONIBLE, null);
+        indice.recargar();
+
+        assertEquals(List.of(1L), ids(indice.buscar(null, null, null, List.of("alarma", "CLIMATIZADO"), true, Orden.ID, 0, 10)));
+        assertEquals(List.of(1L), ids(indice.buscar(null, null, null, List.of("alarma, climatizado"), true, Orden.ID, 0, 10)));
+        assertEquals(List.of(1L, 2L, 3L), ids(indice.buscar(null, null, null, List.of("alarma", "climatizado"), false, Orden.ID, 0, 10)));
+        assertEquals(List.of(1L), ids(indice.buscar(null, null, EstadoSector.DISPONIBLE, List.of("alarma"), false, Orden.ID, 0, 10)));
+        assertEquals(List.of(), ids(indice.buscar(null, null, null, List.of("alarma", "sotano"), true, Orden.ID, 0, 10)));
+        assertEquals(List.of(3L), ids(indice.buscar(null, null, null, List.of("planta baja", "sotano"), false, Orden.ID, 0, 10)));
+        assertEquals(List.of(1L, 2L, 3L, 4L), ids(indice.buscar(null, null, null, List.of(" , "), true, Orden.ID, 0, 10)));
+    }
+
+    @Test
+    void lasFacetasCuentanLosTerminosDeLasCoincidencias() {
+        sector(1, 10, "10.00", EstadoSector.DISPONIBLE, "Climatizado, Alarma");
+        sector(2, 30, "10.00", EstadoSector.DISPONIBLE, "climatizado");
+        sector(3, 30, "10.00", EstadoSector.OCUPADO, "Alarma, Planta baja");
+        indice.recargar();
+
+        IndiceSectores.Resultado todos = indice.buscar(null, null, null, List.of(), true, Orden.ID, 0, 1);
+        assertEquals(Map.of("alarma", 2, "climatizado", 2, "planta baja", 1), todos.facetas());
+        assertEquals(List.of("alarma", "climatizado", "planta baja"), new ArrayList<>(todos.facetas().keySet()));
+        assertEquals(1, todos.sectores().size()); // Las facetas cuentan todas las coincidencias, no solo la página
+
+        IndiceSectores.Resultado grandes = indice.buscar(20, null, null, List.of(), true, Orden.ID, 0, 10);
+        assertEquals(Map.of("alarma", 1, "climatizado", 1, "planta baja", 1), grandes.facetas());
+        IndiceSectores.Resultado sinNada = indice.buscar(99, null, null, List.of(), true, Orden.ID, 0, 10);
+        assertEquals(Map.of(), sinNada.facetas());
+        assertEquals(Map.of("alarma", 2, "climatizado", 2, "planta baja", 1), indice.caracteristicas());
+    }
+
+    @Test
+    void cadaOrdenRecorreLosArraysOrdenados() {
+        sector(1, 30, "20.00", EstadoSector.DISPONIBLE, null);
+        sector(2, 10, "30.00", EstadoSector.DISPONIBLE, null);
+        sector(3, 20, "10.00", EstadoSector.DISPONIBLE, null);
+        sector(4, 10, "10.00", EstadoSector.DISPONIBLE, null);
+        indice.recargar();
+
+        assertEquals(List.of(1L, 2L, 3L, 4L), ids(indice.buscar(null, null, null, List.of(), true, Orden.ID, 0, 10)));
+        assertEquals(List.of(2L, 4L, 3L, 1L), ids(indice.buscar(null, null, null, List.of(), true, Orden.METROS_ASC, 0, 10)));
+        assertEquals(List.of(1L, 3L, 4L, 2L), ids(indice.buscar(null, null, null, List.of(), true, Orden.METROS_DESC, 0, 10)));
+        assertEquals(List.of(3L, 4L, 1L, 2L), ids(indice.buscar(null, null, null, List.of(), true, Orden.PRECIO_ASC, 0, 10)));
+        assertEquals(List.of(2L, 1L, 4L, 3L), ids(indice.buscar(null, null, null, List.of(), true, Orden.PRECIO_DESC, 0, 10)));
+
+        assertEquals(Orden.ID, Orden.desde(null));
+        assertEquals(Orden.ID, Orden.desde(" "));
+        assertEquals(Orden.METROS_DESC, Orden.desde(" -M2 "));
+        assertEquals(Orden.PRECIO_ASC, Orden.desde("precio"));
+        assertThrows(IllegalArgumentException.class, () -> Orden.desde("nombre"));
+    }
+
+    @Test
+    void elCursorContinuaDondeTerminoLaPaginaAnterior() {
+        for (long id = 1; id <= 23; id++) {
+            sector(id, (int) (id % 5) * 10, "10.00", id % 3 == 0 ? EstadoSector.OCUPADO : EstadoSector.DISPONIBLE, null);
+        }
+        indice.recargar();
+        SectorServicio servicio = new SectorServicio();
+        ReflectionTestUtils.setField(servicio, "indiceSectores", indice);
+        ReflectionTestUtils.setField(servicio, "tamanoPaginaBusqueda", 20);
+        ReflectionTestUtils.setField(servicio, "tamanoMaximoPagina", 100);
+
+        List<Long> recorridos = new ArrayList<>();
+        String cursor = null;
+        int paginas = 0;
+        do {
+            BusquedaSectoresDto pagina = servicio.buscarSectores(10, null, EstadoSector.DISPONIBLE, null, null, "-m2", cursor, 4);
+            pagina.getElementos().forEach(sector -> recorridos.add(sector.getId()));
+            cursor = pagina.getSiguienteCursor();
+            paginas++;
+        } while (cursor != null);
+
+        assertEquals(ids(indice.buscar(10, null, EstadoSector.DISPONIBLE, List.of(), true, Orden.METROS_DESC, 0, 100)), recorridos);
+        assertEquals(13, recorridos.size());
+        assertEquals(4, paginas);
+        assertNull(servicio.buscarSectores(10, null, EstadoSector.DISPONIBLE, null, null, "-m2", null, 13).getSiguienteCursor());
+        assertThrows(IllegalArgumentException.class,
+            () -> servicio.buscarSectores(null, null, null, null, "ninguna", null, null, null));
+    }
+
+    @Test
+    void coincideConLaFuerzaBruta() {
+        Random aleatorio = new Random(11);
+        for (long id = 1; id <= 400; id++) {
+            StringBuilder caracteristicas = new StringBuilder();
+            for (String caracteristica : CARACTERISTICAS) {
+                if (aleatorio.nextInt(3) == 0) {
+                    caracteristicas.append(caracteristica).append(", ");
+                }
+            }
+            sector(id, 5 + aleatorio.nextInt(20) * 5, BigDecimal.valueOf(1000 + aleatorio.nextInt(400) * 25, 2).toPlainString(),
+                EstadoSector.values()[aleatorio.nextInt(EstadoSector.values().length)], caracteristicas.toString());
+        }
+        indice.recargar();
+
+        for (int consulta = 0; consulta < 300; consulta++) {
+            Integer minMetros = aleatorio.nextBoolean() ? 5 + aleatorio.nextInt(20) * 5 : null; // Valores existentes: límites exactos
+            Long maxCentimos = aleatorio.nextBoolean() ? 1000L + aleatorio.nextInt(400) * 25 : null;
+            EstadoSector estado = aleatorio.nextBoolean() ? EstadoSector.values()[aleatorio.nextInt(EstadoSector.values().length)] : null;
+            List<String> terminos = new ArrayList<>();
+            for (int i = aleatorio.nextInt(3); i > 0; i--) {
+                terminos.add(CARACTERISTICAS[aleatorio.nextInt(CARACTERISTICAS.length)]);
+            }
+            boolean todas = aleatorio.nextBoolean();
+            Orden orden = Orden.values()[aleatorio.nextInt(Orden.values().length)];
+            int desde = aleatorio.nextInt(4) * 10;
+            String descripcion = minMetros + " " + maxCentimos + " " + estado + " " + terminos + " " + todas + " " + orden + " " + desde;
+
+            List<SectorEntidad> esperados = tabla.stream()
+                .filter(s -> minMetros == null || s.getMetrosCuadrados() >= minMetros)
+                .filter(s -> maxCentimos == null || IndiceSectores.aCentimos(s.getPrecioMensual()) <= maxCentimos)
+                .filter(s -> estado == null || s.getEstado() == estado)
+                .filter(s -> terminos.isEmpty() || (todas
+                    ? terminos.stream().allMatch(t -> tiene(s, t))
+                    : terminos.stream().anyMatch(t -> tiene(s, t))))
+                .sorted(comparador(orden))
+                .toList();
+            Map<String, Integer> facetas = new TreeMap<>();
+            esperados.forEach(s -> Texto.caracteristicas(s.getCaracteristicas()).forEach(t -> facetas.merge(t, 1, Integer::sum)));
+
+            IndiceSectores.Resultado resultado = indice.buscar(minMetros, maxCentimos, estado, terminos, todas, orden, desde, 10);
+
+            List<Long> pagina = esperados.stream().skip(desde).limit(10).map(SectorEntidad::getId).toList();
+            assertEquals(pagina, ids(resultado), descripcion);
+            assertEquals(esperados.size(), resultado.total(), descripcion);
+            assertEquals(facetas, resultado.facetas(), descripcion);
+        }
+    }
+
+    /** Ascendentes con empates por ID; los descendentes recorren el mismo array al revés. */
+    private static Comparator<SectorEntidad> comparador(Orden orden) {
+        Comparator<SectorEntidad> porId = Comparator.comparing(SectorEntidad::getId);
+        return switch (orden) {
+            case ID -> porId;
+            case METROS_ASC -> Comparator.comparing(SectorEntidad::getMetrosCuadrados).thenComparing(porId);
+            case METROS_DESC -> Comparator.comparing(SectorEntidad::getMetrosCuadrados).thenComparing(porId).reversed();
+            case PRECIO_ASC -> Comparator.comparing(SectorEntidad::getPrecioMensual).thenComparing(porId);
+            case PRECIO_DESC -> Comparator.comparing(SectorEntidad::getPrecioMensual).thenComparing(porId).reversed();
+        };
+    }
+
+    private static boolean tiene(SectorEntidad sector, String caracteristica) {
+        Set<String> terminos = Texto.caracteristicas(sector.getCaracteristicas());
+        return terminos.containsAll(Texto.caracteristicas(caracteristica));
+    }
+
+    private IndiceSectores.Resultado buscar(Integer minMetros, Long maxCentimos) {
+        return indice.buscar(minMetros, maxCentimos, null, List.of(), true, Orden.ID, 0, 10);
+    }
+
+    private void sector(long id, int metros, String precio, EstadoSector estado, String caracteristicas) {
+        SectorEntidad sector = new SectorEntidad();
+        sector.setId(id);
+        sector.setNombre("Sector " + id);
+        sector.setMetrosCuadrados(metros);
+        sector.setPrecioMensual(new BigDecimal(precio));
+        sector.setEstado(estado);
+        sector.setCaracteristicas(caracteristicas);
+        tabla.add(sector);
+    }
+
+    private static List<Long> ids(IndiceSectores.Resultado resultado) {
+        return resultado.sectores().stream().map(SectorDto::getId).toList();
+    }
+}
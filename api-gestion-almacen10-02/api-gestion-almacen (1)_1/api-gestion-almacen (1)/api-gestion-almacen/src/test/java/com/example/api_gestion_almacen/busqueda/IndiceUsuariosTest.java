@@ -0,0 +1,219 @@
+package com.example.api_gestion_almacen.busqueda;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.api_gestion_almacen.dtos.UsuarioBusquedaDto;
+
+/**
+ * Índice de usuarios cargado desde una tabla simulada; los resultados de los términos de
+ * tres o más caracteres se comparan con una búsqueda por fuerza bruta.
+ */
+class IndiceUsuariosTest {
+
+    private static final String[] NOMBRES = {"Ana", "Andrés", "Juan", "María", "José", "Lucía", "Martín", "Sofía", "Íñigo", "Carmen"};
+    private static final String[] APELLIDOS = {"García", "Martínez", "López", "Sánchez", "Pérez", "Gómez", "Fernández", "Ruiz", "Díaz", "Muñoz"};
+
+    private final TreeMap<Long, String[]> tabla = new TreeMap<>(); // id -> {nombre, correo}
+    private IndiceUsuarios indice;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void preparar() {
+        JdbcTemplate jdbc = mock(JdbcTemplate.class);
+        when(jdbc.query(anyString(), any(RowMapper.class), any(Object.class))).thenAnswer(invocacion -> {
+            RowMapper<Object> mapeo = invocacion.getArgument(1);
+            long despuesDe = invocacion.getArgument(2);
+            AtomicReference<Map.Entry<Long, String[]>> actual = new AtomicReference<>();
+            ResultSet fila = mock(ResultSet.class);
+            when(fila.getLong(1)).thenAnswer(i -> actual.get().getKey());
+            when(fila.getString(2)).thenAnswer(i -> actual.get().getValue()[0]);
+            when(fila.getString(3)).thenAnswer(i -> actual.get().getValue()[1]);
+            when(fila.getObject(4, Long.class)).thenReturn(2L);
+            List<Object> bloque = new ArrayList<>();
+            for (Map.Entry<Long, String[]> usuario : tabla.tailMap(despuesDe, false).entrySet()) {
+                if (bloque.size() == 10_000) {
+                    break;
+                }
+                actual.set(usuario);
+                bloque.add(mapeo.mapRow(fila, bloque.size()));
+            }
+            return bloque;
+        });
+        indice = new IndiceUsuarios();
+        ReflectionTestUtils.setField(indice, "jdbcTemplate", jdbc);
+    }
+
+    @Test
+    void encuentraPorParteDelNombreSinTildesNiMayusculas() {
+        tabla.put(1L, new String[] {"Andrés Martínez", "andres@correo.com"});
+        tabla.put(2L, new String[] {"Lucía López", "lucia@correo.com"});
+        tabla.put(3L, new String[] {"Juan Pérez", "jp@empresa.es"});
+        indice.cargar();
+
+        assertEquals(List.of(1L), ids(indice.buscar("MARTI", 0, 10)));
+        assertEquals(List.of(2L), ids(indice.buscar("lucía", 0, 10)));
+        assertEquals(List.of(1L), ids(indice.buscar("tinez", 0, 10)));
+        assertEquals(List.of(3L), ids(indice.buscar("empresa", 0, 10)));
+        assertEquals(List.of(), ids(indice.buscar("xyz", 0, 10)));
+        assertEquals(List.of(), ids(indice.buscar("  ", 0, 10)));
+    }
+
+    @Test
+    void losTerminosCortosBuscanPorPrefijoDePalabra() {
+        tabla.put(1L, new String[] {"Ana Ruiz", "ana@correo.com"});
+        tabla.put(2L, new String[] {"Juan Díaz", "juan@correo.com"});
+        indice.cargar();
+
+        assertEquals(List.of(1L), ids(indice.buscar("an", 0, 10))); // "juan" contiene "an" pero no empieza por él
+        assertEquals(List.of(2L), ids(indice.buscar("d", 0, 10)));
+    }
+
+    @Test
+    void todosLosTerminosDebenAparecer() {
+        tabla.put(1L, new String[] {"María García", "maria.garcia@correo.com"});
+        tabla.put(2L, new String[] {"María López", "mlopez@correo.com"});
+        indice.cargar();
+
+        assertEquals(List.of(2L), ids(indice.buscar("maria lopez", 0, 10)));
+        assertEquals(2, indice.buscar("maria", 0, 10).total());
+    }
+
+    @Test
+    void seOrdenaPorRelevancia() {
+        tabla.put(1L, new String[] {"Sofía Carmena", "scarmena@correo.com"}); // prefijo de palabra: 4
+        tabla.put(2L, new String[] {"Carmen Ruiz", "cruiz@correo.com"});      // palabra exacta: 6
+        tabla.put(3L, new String[] {"Ana Díaz", "carmen"});                   // correo exacto: 10
+        tabla.put(4L, new String[] {"José Mocarmen", "jm@correo.com"});       // en medio de una palabra: 1
+        indice.cargar();
+
+        IndiceUsuarios.Resultado resultado = indice.buscar("carmen", 0, 10);
+
+        assertEquals(List.of(3L, 2L, 1L, 4L), ids(resultado));
+        assertEquals(List.of(10, 6, 4, 1), resultado.usuarios().stream().map(UsuarioBusquedaDto::getPuntuacion).toList());
+    }
+
+    @Test
+    void paginaLosResultadosConElTotal() {
+        for (long id = 1; id <= 25; id++) {
+            tabla.put(id, new String[] {"Usuario Prueba " + id, "prueba" + id + "@correo.com"});
+        }
+        indice.cargar();
+
+        IndiceUsuarios.Resultado primera = indice.buscar("prueba", 0, 10);
+        IndiceUsuarios.Resultado ultima = indice.buscar("prueba", 20, 10);
+        IndiceUsuarios.Resultado fuera = indice.buscar("prueba", 30, 10);
+
+        assertEquals(25, primera.total());
+        assertEquals(10, primera.usuarios().size());
+        assertEquals(5, ultima.usuarios().size());
+        assertEquals(List.of(), fuera.usuarios());
+        Set<Long> todos = new HashSet<>();
+        for (int desde = 0; desde < 25; desde += 10) {
+            todos.addAll(ids(indice.buscar("prueba", desde, 10)));
+        }
+        assertEquals(25, todos.size());
+    }
+
+    @Test
+    void lasModificacionesYBorradosSeReflejan() {
+        tabla.put(1L, new String[] {"Ana Ruiz", "ana@correo.com"});
+        indice.cargar();
+
+        indice.actualizar(1L, "Ana Gómez", "ana@correo.com", 2L);
+        indice.actualizar(2L, "Martín Ruiz", "martin@correo.com", 2L);
+
+        assertEquals(List.of(2L), ids(indice.buscar("ruiz", 0, 10)));
+        assertEquals(List.of(1L), ids(indice.buscar("gomez", 0, 10)));
+        indice.eliminar(2L);
+        assertEquals(List.of(), ids(indice.buscar("ruiz", 0, 10)));
+    }
+
+    @Test
+    void coincideConLaFuerzaBrutaTrasMuchasModificaciones() {
+        Random aleatorio = new Random(7);
+        for (long id = 1; id <= 3_000; id++) {
+            tabla.put(id, usuarioAleatorio(aleatorio, id));
+        }
+        indice.cargar();
+        int altas = tabla.size();
+        for (int i = 0; i < 4_000; i++) { // Suficientes para forzar compactaciones
+            long id = 1 + aleatorio.nextInt(3_500);
+            if (aleatorio.nextInt(5) == 0) {
+                tabla.remove(id);
+                indice.eliminar(id);
+            } else {
+                String[] usuario = usuarioAleatorio(aleatorio, id);
+                tabla.put(id, usuario);
+                indice.actualizar(id, usuario[0], usuario[1], 2L);
+                altas++;
+            }
+        }
+        Object estado = ReflectionTestUtils.getField(indice, "estado");
+        int numDocs = (int) ReflectionTestUtils.getField(estado, "numDocs");
+        assertTrue(numDocs < altas, "Se ha compactado");
+        assertTrue(numDocs - tabla.size() <= Math.max(1000, numDocs / 4), "Huecos tras compactar: " + (numDocs - tabla.size()));
+
+        List<String> consultas = new ArrayList<>(List.of("mar", "nez", "garcia lopez", "ana", "inigo", "correo", "z3", "fernandez ruiz"));
+        for (int i = 0; i < 50; i++) {
+            String[] usuario = usuarioAleatorio(aleatorio, 1);
+            String nombre = Texto.normalizar(usuario[0]);
+            int inicio = aleatorio.nextInt(nombre.length() - 3);
+            consultas.add(nombre.substring(inicio, inicio + 3 + aleatorio.nextInt(Math.min(5, nombre.length() - inicio - 3) + 1)).trim());
+        }
+        for (String consulta : consultas) {
+            Set<Long> esperados = fuerzaBruta(consulta);
+            IndiceUsuarios.Resultado resultado = indice.buscar(consulta, 0, Integer.MAX_VALUE);
+            assertEquals(esperados, new HashSet<>(ids(resultado)), consulta);
+            assertEquals(esperados.size(), resultado.total(), consulta);
+        }
+    }
+
+    private Set<Long> fuerzaBruta(String consulta) {
+        List<String> terminos = Texto.palabras(Texto.normalizar(consulta));
+        Set<Long> ids = new HashSet<>();
+        tabla.forEach((id, usuario) -> {
+            String nombre = Texto.normalizar(usuario[0]);
+            String correo = Texto.normalizar(usuario[1]);
+            if (terminos.stream().allMatch(termino -> termino.length() >= 3
+                    ? nombre.contains(termino) || correo.contains(termino)
+                    : Arrays.stream((nombre + " " + correo).split("[^a-z0-9]+")).anyMatch(p -> p.startsWith(termino)))) {
+                ids.add(id);
+            }
+        });
+        return ids;
+    }
+
+    private static String[] usuarioAleatorio(Random aleatorio, long id) {
+        String nombre = NOMBRES[aleatorio.nextInt(NOMBRES.length)];
+        String apellido1 = APELLIDOS[aleatorio.nextInt(APELLIDOS.length)];
+        String apellido2 = APELLIDOS[aleatorio.nextInt(APELLIDOS.length)];
+        return new String[] {nombre + " " + apellido1 + " " + apellido2,
+            Texto.normalizar(nombre) + "." + Texto.normalizar(apellido1) + id + "@correo.com"};
+    }
+
+    private static List<Long> ids(IndiceUsuarios.Resultado resultado) {
+        return resultado.usuarios().stream().map(UsuarioBusquedaDto::getId).toList();
+    }
+}
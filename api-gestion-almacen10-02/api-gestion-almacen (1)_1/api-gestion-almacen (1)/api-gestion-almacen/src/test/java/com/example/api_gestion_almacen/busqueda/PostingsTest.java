@@ -0,0 +1,55 @@
+package com.example.api_gestion_almacen.busqueda;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+class PostingsTest {
+
+    @Test
+    void agregarIgnoraElMismoDocumentoSeguido() {
+        Postings postings = new Postings();
+        for (int doc : new int[] {1, 1, 2, 5, 5, 5, 9}) {
+            postings.agregar(doc);
+        }
+
+        assertEquals(4, postings.tamano());
+        assertArrayEquals(new int[] {1, 2, 5, 9}, Arrays.copyOf(postings.documentos(), postings.tamano()));
+    }
+
+    @Test
+    void laInterseccionCoincideConLaFuerzaBruta() {
+        Random aleatorio = new Random(11);
+        for (int prueba = 0; prueba < 500; prueba++) {
+            // Tamaños parecidos (recorrido lineal) y muy distintos (búsqueda galopante)
+            int tamanoA = 1 + aleatorio.nextInt(prueba % 2 == 0 ? 200 : 20);
+            int tamanoB = prueba % 2 == 0 ? 1 + aleatorio.nextInt(200) : 400 + aleatorio.nextInt(2_000);
+            int[] a = listaAleatoria(aleatorio, tamanoA, 3_000);
+            int[] b = listaAleatoria(aleatorio, tamanoB, 3_000);
+            int[] relleno = Arrays.copyOf(b, b.length + 7); // Solo cuentan los elementos válidos
+            Arrays.fill(relleno, b.length, relleno.length, -1);
+
+            int[] esperado = IntStream.of(a).filter(x -> Arrays.binarySearch(b, x) >= 0).toArray();
+            assertArrayEquals(esperado, Postings.interseccion(a, a.length, relleno, b.length));
+            assertArrayEquals(esperado, Postings.interseccion(relleno, b.length, a, a.length));
+        }
+    }
+
+    @Test
+    void laInterseccionConUnaListaVaciaEsVacia() {
+        int[] b = IntStream.range(0, 100).toArray();
+
+        assertArrayEquals(new int[0], Postings.interseccion(new int[0], 0, b, b.length));
+        assertArrayEquals(new int[] {0, 99}, Postings.interseccion(new int[] {0, 99}, 2, b, b.length));
+        assertArrayEquals(new int[0], Postings.interseccion(new int[] {100, 200}, 2, b, b.length));
+    }
+
+    private static int[] listaAleatoria(Random aleatorio, int tamano, int maximo) {
+        return aleatorio.ints(tamano, 0, maximo).sorted().distinct().toArray();
+    }
+}
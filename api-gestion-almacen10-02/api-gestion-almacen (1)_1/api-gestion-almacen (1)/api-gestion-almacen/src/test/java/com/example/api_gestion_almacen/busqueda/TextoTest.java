@@ -0,0 +1,24 @@
+package com.example.api_gestion_almacen.busqueda;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class TextoTest {
+
+    @Test
+    void normalizarQuitaTildesYMayusculas() {
+        assertEquals("inigo munoz", Texto.normalizar("  Íñigo MUÑOZ "));
+        assertEquals("andres@correo.com", Texto.normalizar("Andrés@Correo.com"));
+        assertEquals("", Texto.normalizar(null));
+    }
+
+    @Test
+    void palabrasSeparaPorCualquierCaracterNoAlfanumerico() {
+        assertEquals(List.of("maria", "garcia", "3", "correo", "com"), Texto.palabras("maria.garcia-3@correo.com"));
+        assertEquals(List.of("ana", "ruiz"), Texto.palabras("  ana   ruiz "));
+        assertEquals(List.of(), Texto.palabras(""));
+    }
+}
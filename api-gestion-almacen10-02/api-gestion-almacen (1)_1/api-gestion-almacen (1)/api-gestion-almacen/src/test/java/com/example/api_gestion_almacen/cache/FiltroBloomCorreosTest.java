@@ -0,0 +1,129 @@
+package com.example.api_gestion_almacen.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Filtro de Bloom construido sobre una tabla de usuarios simulada.
+ */
+class FiltroBloomCorreosTest {
+
+    private final List<String> correos = new ArrayList<>(); // El índice + 1 es el ID
+    private Runnable duranteLaLectura = () -> { };
+    private JdbcTemplate jdbc;
+    private FiltroBloomCorreos filtro;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void preparar() throws Exception {
+        jdbc = mock(JdbcTemplate.class);
+        when(jdbc.queryForObject(anyString(), eq(Long.class))).thenAnswer(invocacion -> (long) correos.size());
+        when(jdbc.query(anyString(), any(RowMapper.class), any(Object.class))).thenAnswer(invocacion -> {
+            duranteLaLectura.run();
+            RowMapper<Object[]> mapeo = invocacion.getArgument(1);
+            long despuesDe = invocacion.getArgument(2);
+            int[] actual = new int[1];
+            ResultSet fila = mock(ResultSet.class);
+            when(fila.getLong(1)).thenAnswer(i -> actual[0] + 1L);
+            when(fila.getString(2)).thenAnswer(i -> correos.get(actual[0]));
+            List<Object[]> bloque = new ArrayList<>();
+            for (actual[0] = (int) despuesDe; actual[0] < correos.size() && bloque.size() < 10_000; actual[0]++) {
+                bloque.add(mapeo.mapRow(fila, bloque.size()));
+            }
+            return bloque;
+        });
+
+        filtro = new FiltroBloomCorreos();
+        ReflectionTestUtils.setField(filtro, "jdbcTemplate", jdbc);
+        ReflectionTestUtils.setField(filtro, "capacidad", 1_000L);
+        ReflectionTestUtils.setField(filtro, "tasaObjetivo", 0.01);
+    }
+
+    @Test
+    void antesDeConstruirseRespondeSiempreQuiza() {
+        assertTrue(filtro.podriaExistir("nuevo@correo.com"));
+        assertEquals(false, filtro.estadisticas().get("listo"));
+    }
+
+    @Test
+    void losCorreosRegistradosNuncaSeDescartan() {
+        for (int i = 0; i < 25_000; i++) { // Más de un bloque y más que la capacidad prevista
+            correos.add("usuario" + i + "@correo.com");
+        }
+        filtro.reconstruir();
+
+        for (String correo : correos) {
+            assertTrue(filtro.podriaExistir(correo), correo);
+        }
+        assertTrue(filtro.podriaExistir("  USUARIO7@Correo.com "), "El correo se normaliza");
+        assertEquals(0L, filtro.estadisticas().get("descartadasSinConsulta"));
+    }
+
+    @Test
+    void laTasaDeFalsosPositivosSeAcercaALaObjetivo() {
+        for (int i = 0; i < 1_000; i++) {
+            correos.add("usuario" + i + "@correo.com");
+        }
+        filtro.reconstruir();
+
+        int falsosPositivos = 0;
+        int pruebas = 100_000;
+        for (int i = 0; i < pruebas; i++) {
+            if (filtro.podriaExistir("otro" + i + "@correo.com")) {
+                falsosPositivos++;
+            }
+        }
+        double tasa = (double) falsosPositivos / pruebas;
+        assertTrue(tasa < 0.02, "Tasa de falsos positivos " + tasa);
+        assertTrue((double) filtro.estadisticas().get("tasaFalsosPositivosEstimada") < 0.02);
+        assertEquals((long) pruebas - falsosPositivos, filtro.estadisticas().get("descartadasSinConsulta"));
+    }
+
+    @Test
+    void lasAltasPosterioresYLasDuranteLaReconstruccionSeConservan() {
+        correos.add("a@correo.com");
+        filtro.reconstruir();
+        filtro.agregar("b@correo.com");
+        assertTrue(filtro.podriaExistir("b@correo.com"));
+
+        // Un alta confirmada mientras se lee la tabla no aparece en la lectura
+        duranteLaLectura = () -> filtro.agregar("c@correo.com");
+        filtro.reconstruir();
+
+        assertTrue(filtro.podriaExistir("a@correo.com"));
+        assertTrue(filtro.podriaExistir("c@correo.com"));
+    }
+
+    @Test
+    void siFallaLaReconstruccionSeMantieneElFiltroAnterior() {
+        correos.add("a@correo.com");
+        filtro.reconstruir();
+        when(jdbc.queryForObject(anyString(), eq(Long.class))).thenThrow(new DataAccessResourceFailureException("sin conexión"));
+
+        filtro.reconstruir();
+
+        Map<String, Object> estadisticas = filtro.estadisticas();
+        assertEquals(true, estadisticas.get("listo"));
+        assertEquals(1L, estadisticas.get("reconstrucciones"));
+        assertTrue(filtro.podriaExistir("a@correo.com"));
+        assertNull(ReflectionTestUtils.getField(filtro, "enConstruccion"));
+    }
+}
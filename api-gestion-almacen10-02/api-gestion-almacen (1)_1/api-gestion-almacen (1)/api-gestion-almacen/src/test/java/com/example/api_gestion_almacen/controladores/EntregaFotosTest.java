@@ -0,0 +1,124 @@
+package com.example.api_gestion_almacen.controladores;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.example.api_gestion_almacen.almacenamiento.VarianteFoto;
+
+/**
+ * Cabeceras Range, If-Range e If-None-Match al enviar una variante de 100 bytes.
+ */
+class EntregaFotosTest {
+
+    private static final long[] COMPLETA = new long[0];
+
+    @Test
+    void interpretaLosRangosDeUnSoloTramo() {
+        assertArrayEquals(new long[] {0, 9}, EntregaFotos.interpretarRango("bytes=0-9", 100));
+        assertArrayEquals(new long[] {90, 99}, EntregaFotos.interpretarRango("bytes=90-150", 100)); // Fin recortado
+        assertArrayEquals(new long[] {42, 42}, EntregaFotos.interpretarRango("bytes= 42-42 ", 100));
+        assertArrayEquals(new long[] {40, 99}, EntregaFotos.interpretarRango("bytes=40-", 100));   // Abierto
+        assertArrayEquals(new long[] {99, 99}, EntregaFotos.interpretarRango("bytes=99-", 100));
+        assertArrayEquals(new long[] {80, 99}, EntregaFotos.interpretarRango("bytes=-20", 100));   // Sufijo
+        assertArrayEquals(new long[] {0, 99}, EntregaFotos.interpretarRango("bytes=-500", 100));   // Sufijo mayor que la foto
+    }
+
+    @Test
+    void losRangosFueraDeLaFotoNoSonSatisfacibles() {
+        assertNull(EntregaFotos.interpretarRango("bytes=100-", 100));
+        assertNull(EntregaFotos.interpretarRango("bytes=100-200", 100));
+        assertNull(EntregaFotos.interpretarRango("bytes=-0", 100));
+        assertNull(EntregaFotos.interpretarRango("bytes=0-", 0));
+        assertNull(EntregaFotos.interpretarRango("bytes=-5", 0));
+    }
+
+    @Test
+    void lasCabecerasMalFormadasOMultiplesDevuelvenLaFotoCompleta() {
+        for (String cabecera : new String[] {"bytes=0-9,20-29", "bytes=-5, 0-1", "items=0-9", "bytes=", "bytes=-",
+                "bytes=5", "bytes=a-9", "bytes=0-z", "bytes=9-5", "bytes=--5", "bytes=+1-5", "bytes=5--3",
+                "bytes=99999999999999999999-"}) {
+            assertArrayEquals(COMPLETA, EntregaFotos.interpretarRango(cabecera, 100), cabecera);
+        }
+    }
+
+    @Test
+    void unRangoSatisfacibleDevuelve206ConSusBytes() throws Exception {
+        MockHttpServletResponse respuesta = enviar("bytes=-3", null, null);
+
+        assertEquals(206, respuesta.getStatus());
+        assertEquals("bytes 97-99/100", respuesta.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(3, respuesta.getContentLengthLong());
+        assertArrayEquals(new byte[] {97, 98, 99}, respuesta.getContentAsByteArray());
+    }
+
+    @Test
+    void unRangoNoSatisfacibleDevuelve416SinCuerpo() throws Exception {
+        MockHttpServletResponse respuesta = enviar("bytes=100-", null, null);
+
+        assertEquals(416, respuesta.getStatus());
+        assertEquals("bytes */100", respuesta.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(0, respuesta.getContentAsByteArray().length);
+    }
+
+    @Test
+    void variosRangosOUnaCabeceraMalFormadaDevuelven200Completa() throws Exception {
+        for (String cabecera : new String[] {"bytes=0-1,5-6", "bytes=9-5"}) {
+            MockHttpServletResponse respuesta = enviar(cabecera, null, null);
+
+            assertEquals(200, respuesta.getStatus(), cabecera);
+            assertNull(respuesta.getHeader(HttpHeaders.CONTENT_RANGE), cabecera);
+            assertArrayEquals(contenido(), respuesta.getContentAsByteArray(), cabecera);
+        }
+    }
+
+    @Test
+    void ifRangeSoloAplicaElRangoConElEtagActual() throws Exception {
+        assertEquals(206, enviar("bytes=0-9", "\"abc-64\"", null).getStatus());
+
+        for (String ifRange : new String[] {"\"otra-64\"", "W/\"abc-64\"", "Tue, 15 Oct 2024 10:00:00 GMT"}) {
+            MockHttpServletResponse respuesta = enviar("bytes=0-9", ifRange, null);
+
+            assertEquals(200, respuesta.getStatus(), ifRange);
+            assertEquals(100, respuesta.getContentAsByteArray().length, ifRange);
+        }
+    }
+
+    @Test
+    void ifNoneMatchTienePrioridadSobreElRango() throws Exception {
+        MockHttpServletResponse respuesta = enviar("bytes=0-9", null, "\"otra-64\", W/\"abc-64\"");
+
+        assertEquals(304, respuesta.getStatus());
+        assertEquals("\"abc-64\"", respuesta.getHeader(HttpHeaders.ETAG));
+        assertEquals(0, respuesta.getContentAsByteArray().length);
+    }
+
+    private static MockHttpServletResponse enviar(String rango, String ifRange, String ifNoneMatch) throws Exception {
+        MockHttpServletRequest peticion = new MockHttpServletRequest("GET", "/usuarios/1/foto");
+        if (rango != null) {
+            peticion.addHeader(HttpHeaders.RANGE, rango);
+        }
+        if (ifRange != null) {
+            peticion.addHeader(HttpHeaders.IF_RANGE, ifRange);
+        }
+        if (ifNoneMatch != null) {
+            peticion.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        MockHttpServletResponse respuesta = new MockHttpServletResponse();
+        EntregaFotos.enviar(new VarianteFoto("abc", 64, contenido(), "image/jpeg"), peticion, respuesta);
+        return respuesta;
+    }
+
+    private static byte[] contenido() {
+        byte[] bytes = new byte[100];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+}
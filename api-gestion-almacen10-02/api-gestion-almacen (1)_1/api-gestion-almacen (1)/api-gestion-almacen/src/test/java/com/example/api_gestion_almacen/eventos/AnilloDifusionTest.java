@@ -0,0 +1,89 @@
+package com.example.api_gestion_almacen.eventos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class AnilloDifusionTest {
+
+    @Test
+    void lasSecuenciasEmpiezanDespuesDelInicio() {
+        AnilloDifusion<String> anillo = new AnilloDifusion<>(4, 1000);
+
+        assertEquals(1000, anillo.ultima());
+        assertFalse(anillo.conservado(1000)); // De antes del arranque
+        assertNull(anillo.leer(1001));        // Aún no publicada
+        assertEquals(1001, anillo.publicar("a"));
+        assertEquals(1002, anillo.publicar("b"));
+        assertEquals(1002, anillo.ultima());
+        assertEquals("a", anillo.leer(1001));
+        assertEquals("b", anillo.leer(1002));
+        assertTrue(anillo.conservado(1001));
+        assertTrue(anillo.conservado(1003)); // Reservable: todavía cabe en el búfer
+    }
+
+    @Test
+    void laCapacidadSeRedondeaAPotenciaDeDos() {
+        assertEquals(2, new AnilloDifusion<>(1, 0).capacidad());
+        assertEquals(2, new AnilloDifusion<>(2, 0).capacidad());
+        assertEquals(4, new AnilloDifusion<>(3, 0).capacidad());
+        assertEquals(1024, new AnilloDifusion<>(1024, 0).capacidad());
+        assertEquals(2048, new AnilloDifusion<>(1025, 0).capacidad());
+    }
+
+    @Test
+    void alDarLaVueltaSePierdenLosMasAntiguos() {
+        AnilloDifusion<Long> anillo = new AnilloDifusion<>(4, 0);
+        for (long i = 1; i <= 10; i++) {
+            anillo.publicar(i * 100);
+        }
+
+        for (long secuencia = 1; secuencia <= 6; secuencia++) {
+            assertNull(anillo.leer(secuencia), "Secuencia " + secuencia);
+            assertFalse(anillo.conservado(secuencia), "Secuencia " + secuencia);
+        }
+        for (long secuencia = 7; secuencia <= 10; secuencia++) {
+            assertEquals(secuencia * 100, anillo.leer(secuencia)); // Misma celda que secuencia - 4, sin confundirse
+            assertTrue(anillo.conservado(secuencia), "Secuencia " + secuencia);
+        }
+        assertNull(anillo.leer(11));
+        assertNull(anillo.leer(14)); // Celda de la 10: no se devuelve un elemento de otra vuelta
+    }
+
+    @Test
+    void laSecuenciaSigueCreciendoConVariosPublicadores() throws Exception {
+        AnilloDifusion<Integer> anillo = new AnilloDifusion<>(1 << 16, 0);
+        ExecutorService ejecutor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> tareas = new ArrayList<>();
+            for (int hilo = 0; hilo < 4; hilo++) {
+                tareas.add(ejecutor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        long secuencia = anillo.publicar(i);
+                        assertEquals(i, anillo.leer(secuencia)); // Nadie ha dado la vuelta todavía
+                    }
+                }));
+            }
+            for (Future<?> tarea : tareas) {
+                tarea.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            ejecutor.shutdownNow();
+        }
+
+        assertEquals(40_000, anillo.ultima());
+        for (long secuencia = 1; secuencia <= 40_000; secuencia++) {
+            assertTrue(anillo.leer(secuencia) != null, "Secuencia " + secuencia);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.api_gestion_almacen.eventos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class DifusorEventosSectorTest {
+
+    private DifusorEventosSector difusor;
+
+    @BeforeEach
+    void preparar() {
+        difusor = new DifusorEventosSector();
+        ReflectionTestUtils.setField(difusor, "capacidad", 16);
+        ReflectionTestUtils.setField(difusor, "timeout", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(difusor, "envioMaximo", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(difusor, "hilos", 2);
+        ReflectionTestUtils.setField(difusor, "maximoClientes", 2);
+        difusor.iniciar();
+    }
+
+    @AfterEach
+    void detener() {
+        difusor.detener();
+    }
+
+    @Test
+    void rechazaLosClientesPorEncimaDelMaximo() {
+        difusor.suscribir(null);
+        difusor.suscribir(null);
+
+        IllegalStateException error = assertThrows(IllegalStateException.class, () -> difusor.suscribir(null));
+        assertEquals("Se ha alcanzado el máximo de 2 clientes de eventos", error.getMessage());
+        assertEquals(2, difusor.conectados()); // El rechazo no ocupa plaza
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.api_gestion_almacen.idempotencia;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import com.example.api_gestion_almacen.seguridad.SesionUsuario;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.http.HttpServletResponse;
+
+class FiltroIdempotenciaTest {
+
+    private static final String ALTA = "{\"usuarioId\":1,\"sectorId\":2}";
+
+    private FiltroIdempotencia filtro;
+    private final AtomicInteger ejecuciones = new AtomicInteger();
+    private volatile int estadoControlador = 201;
+
+    /** Controlador simulado: lee el cuerpo y responde con el número de ejecución. */
+    private final FilterChain controlador = (peticion, respuesta) -> {
+        String cuerpo = new String(peticion.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        int numero = ejecuciones.incrementAndGet();
+        ((HttpServletResponse) respuesta).setStatus(estadoControlador);
+        respuesta.setContentType("application/json");
+        respuesta.getWriter().write("{\"ejecucion\":" + numero + ",\"longitud\":" + cuerpo.length() + "}");
+    };
+
+    @BeforeEach
+    void preparar() {
+        RegistroIdempotencia registro = new RegistroIdempotencia();
+        ReflectionTestUtils.setField(registro, "maximoEntradas", 1000L);
+        ReflectionTestUtils.setField(registro, "ttl", Duration.ofHours(24));
+        registro.inicializar();
+
+        filtro = new FiltroIdempotencia();
+        ReflectionTestUtils.setField(filtro, "registro", registro);
+        ReflectionTestUtils.setField(filtro, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(filtro, "rutas", List.of("/api/alquileres", "/api/usuarios"));
+        ReflectionTestUtils.setField(filtro, "cuerpoMaximo", DataSize.ofKilobytes(1));
+        ReflectionTestUtils.setField(filtro, "esperaMaxima", Duration.ofSeconds(10));
+    }
+
+    @Test
+    void unReintentoRecibeLaRespuestaGuardada() throws Exception {
+        MockHttpServletResponse primera = enviar(peticion("/api/alquileres", "clave-1", ALTA, null));
+        MockHttpServletResponse segunda = enviar(peticion("/api/alquileres", "clave-1", ALTA, null));
+
+        assertEquals(1, ejecuciones.get());
+        assertEquals(201, primera.getStatus());
+        assertNull(primera.getHeader(FiltroIdempotencia.CABECERA_REPETIDA));
+        assertEquals(201, segunda.getStatus());
+        assertEquals("true", segunda.getHeader(FiltroIdempotencia.CABECERA_REPETIDA));
+        assertEquals(primera.getContentAsString(), segunda.getContentAsString());
+    }
+
+    @Test
+    void laMismaClaveConOtroCuerpoDa422() throws Exception {
+        enviar(peticion("/api/alquileres", "clave-1", ALTA, null));
+        MockHttpServletResponse otra = enviar(peticion("/api/alquileres", "clave-1", "{\"usuarioId\":1,\"sectorId\":3}", null));
+
+        assertEquals(422, otra.getStatus());
+        assertEquals(1, ejecuciones.get());
+    }
+
+    @Test
+    void elOrdenIdEsLaClaveImplicitaDeLosAlquileres() throws Exception {
+        String alta = "{\"ordenId\":\"PAGO-9\",\"sectorId\":2}";
+        enviar(peticion("/api/alquileres", null, alta, null));
+        MockHttpServletResponse reintento = enviar(peticion("/api/alquileres", null, alta, null));
+
+        assertEquals(1, ejecuciones.get());
+        assertEquals("true", reintento.getHeader(FiltroIdempotencia.CABECERA_REPETIDA));
+
+        enviar(peticion("/api/usuarios", null, alta, null)); // Sin cabecera fuera de alquileres: sin idempotencia
+        enviar(peticion("/api/usuarios", null, alta, null));
+        assertEquals(3, ejecuciones.get());
+    }
+
+    @Test
+    void unDuplicadoEnCursoEsperaYRecibeLaMismaRespuesta() throws Exception {
+        CountDownLatch dentro = new CountDownLatch(1);
+        CountDownLatch continuar = new CountDownLatch(1);
+        FilterChain lento = (peticion, respuesta) -> {
+            dentro.countDown();
+            try {
+                continuar.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            controlador.doFilter(peticion, respuesta);
+        };
+
+        CompletableFuture<MockHttpServletResponse> primera = CompletableFuture.supplyAsync(
+            () -> enviarSinExcepcion(peticion("/api/alquileres", "clave-1", ALTA, null), lento));
+        assertTrue(dentro.await(10, TimeUnit.SECONDS));
+        CompletableFuture<MockHttpServletResponse> duplicado = CompletableFuture.supplyAsync(
+            () -> enviarSinExcepcion(peticion("/api/alquileres", "clave-1", ALTA, null), lento));
+        Thread.sleep(100); // El duplicado encuentra la ejecución en curso
+        continuar.countDown();
+
+        MockHttpServletResponse original = primera.get(10, TimeUnit.SECONDS);
+        MockHttpServletResponse repetida = duplicado.get(10, TimeUnit.SECONDS);
+        assertEquals(1, ejecuciones.get());
+        assertEquals(201, repetida.getStatus());
+        assertEquals("true", repetida.getHeader(FiltroIdempotencia.CABECERA_REPETIDA));
+        assertEquals(original.getContentAsString(), repetida.getContentAsString());
+    }
+
+    @Test
+    void dosUsuariosConLaMismaClaveNoCompartenRespuesta() throws Exception {
+        enviar(peticion("/api/alquileres", "clave-1", ALTA, 1L));
+        MockHttpServletResponse otroUsuario = enviar(peticion("/api/alquileres", "clave-1", ALTA, 2L));
+        MockHttpServletResponse anonimo = enviar(peticion("/api/alquileres", "clave-1", ALTA, null));
+
+        assertEquals(3, ejecuciones.get());
+        assertNull(otroUsuario.getHeader(FiltroIdempotencia.CABECERA_REPETIDA));
+        assertNull(anonimo.getHeader(FiltroIdempotencia.CABECERA_REPETIDA));
+
+        MockHttpServletResponse mismoUsuario = enviar(peticion("/api/alquileres", "clave-1", ALTA, 2L));
+        assertEquals(3, ejecuciones.get());
+        assertEquals("true", mismoUsuario.getHeader(FiltroIdempotencia.CABECERA_REPETIDA));
+    }
+
+    @Test
+    void elOrdenIdEsComunATodosLosClientes() throws Exception {
+        String alta = "{\"ordenId\":\"PAGO-9\",\"sectorId\":2}";
+        enviar(peticion("/api/alquileres", null, alta, 1L));
+        MockHttpServletRequest callback = peticion("/api/alquileres", null, alta, null); // Sin sesión y desde otra red
+        callback.setRemoteAddr("203.0.113.7");
+        MockHttpServletResponse reintento = enviar(callback);
+
+        assertEquals(1, ejecuciones.get());
+        assertEquals("true", reintento.getHeader(FiltroIdempotencia.CABECERA_REPETIDA));
+    }
+
+    @Test
+    void unConflictoNoSeGuardaYElReintentoSeEjecuta() throws Exception {
+        estadoControlador = 409; // El sector no estaba disponible en ese momento
+        enviar(peticion("/api/alquileres", "clave-1", ALTA, null));
+        estadoControlador = 201;
+        MockHttpServletResponse reintento = enviar(peticion("/api/alquileres", "clave-1", ALTA, null));
+
+        assertEquals(2, ejecuciones.get());
+        assertEquals(201, reintento.getStatus());
+        assertNull(reintento.getHeader(FiltroIdempotencia.CABECERA_REPETIDA));
+    }
+
+    @Test
+    void unErrorDeValidacionSeGuarda() throws Exception {
+        estadoControlador = 400;
+        enviar(peticion("/api/alquileres", "clave-1", ALTA, null));
+        estadoControlador = 201;
+        MockHttpServletResponse reintento = enviar(peticion("/api/alquileres", "clave-1", ALTA, null));
+
+        assertEquals(1, ejecuciones.get());
+        assertEquals(400, reintento.getStatus());
+        assertEquals("true", reintento.getHeader(FiltroIdempotencia.CABECERA_REPETIDA));
+    }
+
+    @Test
+    void elCuerpoReleidoAdmiteLecturaAsincrona() throws Exception {
+        AtomicInteger avisos = new AtomicInteger();
+        FilterChain asincrono = (peticion, respuesta) -> peticion.getInputStream().setReadListener(new ReadListener() {
+            @Override
+            public void onDataAvailable() {
+                avisos.incrementAndGet();
+            }
+
+            @Override
+            public void onAllDataRead() {
+                avisos.addAndGet(10);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                avisos.addAndGet(100);
+            }
+        });
+
+        enviar(peticion("/api/alquileres", "clave-1", ALTA, null), asincrono);
+        assertEquals(11, avisos.get());
+    }
+
+    private MockHttpServletRequest peticion(String ruta, String clave, String cuerpo, Long usuarioId) {
+        MockHttpServletRequest peticion = new MockHttpServletRequest("POST", ruta);
+        peticion.setContentType("application/json");
+        peticion.setContent(cuerpo.getBytes(StandardCharsets.UTF_8));
+        if (clave != null) {
+            peticion.addHeader(FiltroIdempotencia.CABECERA, clave);
+        }
+        if (usuarioId != null) {
+            peticion.setAttribute(SesionUsuario.ATRIBUTO,
+                new SesionUsuario(usuarioId, 1L, Instant.now(), Instant.now().plusSeconds(3600)));
+        }
+        return peticion;
+    }
+
+    private MockHttpServletResponse enviar(MockHttpServletRequest peticion) throws Exception {
+        return enviar(peticion, controlador);
+    }
+
+    private MockHttpServletResponse enviar(MockHttpServletRequest peticion, FilterChain cadena) throws Exception {
+        MockHttpServletResponse respuesta = new MockHttpServletResponse();
+        filtro.doFilter(peticion, respuesta, cadena);
+        return respuesta;
+    }
+
+    private MockHttpServletResponse enviarSinExcepcion(MockHttpServletRequest peticion, FilterChain cadena) {
+        try {
+            return enviar(peticion, cadena);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.api_gestion_almacen.registro;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import ch.qos.logback.core.read.ListAppender;
+
+/**
+ * Entrega y descartes con un appender adjunto que retiene el primer evento hasta que la
+ * prueba lo suelta, de modo que el búfer se llena de forma determinista.
+ */
+class AnilloAsyncAppenderTest {
+
+    private final LoggerContext contexto = new LoggerContext();
+    private final Logger logger = contexto.getLogger("prueba");
+    private final CountDownLatch dentro = new CountDownLatch(1);
+    private final CountDownLatch soltar = new CountDownLatch(1);
+    private final ListAppender<ILoggingEvent> recibidos = new ListAppender<>() {
+        @Override
+        protected void append(ILoggingEvent evento) {
+            super.append(evento);
+            dentro.countDown();
+            try {
+                soltar.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    };
+    private AnilloAsyncAppender appender;
+
+    @BeforeEach
+    void preparar() {
+        contexto.setMDCAdapter(new LogbackMDCAdapter()); // Sin él, prepareForDeferredProcessing falla
+        recibidos.setContext(contexto);
+        recibidos.start();
+        appender = new AnilloAsyncAppender();
+        appender.setContext(contexto);
+        appender.setName("prueba");
+        appender.setCapacidad(2);
+        appender.addAppender(recibidos);
+    }
+
+    @AfterEach
+    void detener() {
+        soltar.countDown();
+        appender.stop();
+    }
+
+    @Test
+    void losDescartesSeAvisanSinEsperarAQueSeVacieElBufer() throws Exception {
+        appender.setIntervaloInforme(0);
+        appender.start();
+
+        appender.doAppend(evento("1"));
+        assertTrue(dentro.await(10, TimeUnit.SECONDS)); // El consumidor retiene el 1: el búfer queda libre
+        for (int i = 2; i <= 6; i++) {
+            appender.doAppend(evento(Integer.toString(i))); // 2 y 3 ocupan el búfer; 4, 5 y 6 se descartan
+        }
+        soltar.countDown();
+        appender.stop();
+
+        // Con el búfer aún ocupado por 2 y 3, el aviso va justo después del 1
+        assertEquals(List.of("1", "Búfer de registro lleno: se descartaron 3 eventos", "2", "3"), mensajes());
+        assertEquals(Level.WARN, recibidos.list.get(1).getLevel());
+    }
+
+    @Test
+    void sinDescartesNoHayAviso() throws Exception {
+        appender.start();
+
+        appender.doAppend(evento("1"));
+        assertTrue(dentro.await(10, TimeUnit.SECONDS));
+        appender.doAppend(evento("2"));
+        soltar.countDown();
+        appender.stop();
+
+        assertEquals(List.of("1", "2"), mensajes());
+    }
+
+    private LoggingEvent evento(String mensaje) {
+        return new LoggingEvent(AnilloAsyncAppenderTest.class.getName(), logger, Level.INFO, mensaje, null, null);
+    }
+
+    private List<String> mensajes() {
+        return recibidos.list.stream().map(ILoggingEvent::getFormattedMessage).toList();
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.api_gestion_almacen.seguridad;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class TokenSesionTest {
+
+    private static final String SECRETO = Base64.getEncoder().encodeToString(new byte[32]);
+    private static final String OTRO_SECRETO = Base64.getEncoder().encodeToString("otro secreto de 32 bytes........".getBytes());
+
+    @Test
+    void unTokenEmitidoSeValidaConSusDatos() {
+        TokenSesion tokens = tokenSesion(SECRETO, Duration.ofHours(8));
+        Instant antes = Instant.now();
+
+        SesionUsuario sesion = tokens.validar(tokens.emitir(42L, 3L)).orElseThrow();
+
+        assertEquals(42L, sesion.usuarioId());
+        assertEquals(3L, sesion.rolId());
+        assertFalse(sesion.emitido().isBefore(antes.minusMillis(1)));
+        assertEquals(sesion.emitido().plus(Duration.ofHours(8)).getEpochSecond(), sesion.expira().getEpochSecond());
+        assertNull(tokens.validar(tokens.emitir(42L, null)).orElseThrow().rolId());
+    }
+
+    @Test
+    void unTokenAlteradoSeRechaza() {
+        TokenSesion tokens = tokenSesion(SECRETO, Duration.ofHours(8));
+        String token = tokens.emitir(42L, 3L);
+        String[] partes = token.split("\\.");
+        byte[] carga = Base64.getUrlDecoder().decode(partes[0]);
+        carga[8] ^= 1; // Otro usuarioId con la firma original
+        String cargaAlterada = Base64.getUrlEncoder().withoutPadding().encodeToString(carga);
+        byte[] firma = Base64.getUrlDecoder().decode(partes[1]);
+        firma[0] ^= 1;
+        String firmaAlterada = Base64.getUrlEncoder().withoutPadding().encodeToString(firma);
+
+        assertEquals(Optional.empty(), tokens.validar(cargaAlterada + "." + partes[1]));
+        assertEquals(Optional.empty(), tokens.validar(partes[0] + "." + firmaAlterada));
+        assertEquals(Optional.empty(), tokens.validar(partes[0]));
+        assertEquals(Optional.empty(), tokens.validar("." + partes[1]));
+        assertEquals(Optional.empty(), tokens.validar("no es base64!." + partes[1]));
+        assertEquals(Optional.empty(), tokens.validar(partes[0] + "x." + partes[1])); // Longitud de carga incorrecta
+    }
+
+    @Test
+    void unTokenFirmadoConOtroSecretoSeRechaza() {
+        String ajeno = tokenSesion(OTRO_SECRETO, Duration.ofHours(8)).emitir(42L, 3L);
+
+        assertEquals(Optional.empty(), tokenSesion(SECRETO, Duration.ofHours(8)).validar(ajeno));
+    }
+
+    @Test
+    void unTokenCaducadoSeRechaza() {
+        TokenSesion tokens = tokenSesion(SECRETO, Duration.ofSeconds(-1));
+
+        assertEquals(Optional.empty(), tokens.validar(tokens.emitir(42L, 3L)));
+    }
+
+    @Test
+    void sinSecretoConfiguradoSeUsaUnoAleatorio() {
+        TokenSesion primera = tokenSesion("", Duration.ofHours(8));
+        TokenSesion segunda = tokenSesion("", Duration.ofHours(8));
+        String token = primera.emitir(42L, 3L);
+
+        assertTrue(primera.validar(token).isPresent());
+        assertEquals(Optional.empty(), segunda.validar(token));
+    }
+
+    private static TokenSesion tokenSesion(String secreto, Duration duracion) {
+        TokenSesion tokens = new TokenSesion();
+        ReflectionTestUtils.setField(tokens, "secretoConfigurado", secreto);
+        ReflectionTestUtils.setField(tokens, "duracion", duracion);
+        tokens.inicializar();
+        return tokens;
+    }
+}
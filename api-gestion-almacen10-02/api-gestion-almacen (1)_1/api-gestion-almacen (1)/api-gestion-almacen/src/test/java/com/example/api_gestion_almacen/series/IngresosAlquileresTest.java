@@ -0,0 +1,171 @@
+package com.example.api_gestion_almacen.series;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Los acumulados mantenidos con {@code sumar}/{@code restar} después de cada alta y
+ * cancelación deben coincidir con recalcular la tabla completa con un GROUP BY.
+ */
+class IngresosAlquileresTest {
+
+    /** Fila de la tabla de alquileres simulada. */
+    private static final class Alquiler {
+        final long sectorId;
+        final LocalDateTime fechaInicio;
+        final BigDecimal montoPagado;
+        boolean cancelado;
+
+        Alquiler(long sectorId, LocalDateTime fechaInicio, BigDecimal montoPagado) {
+            this.sectorId = sectorId;
+            this.fechaInicio = fechaInicio;
+            this.montoPagado = montoPagado;
+        }
+
+        long centimos() {
+            return montoPagado.movePointRight(2).longValueExact();
+        }
+    }
+
+    private final List<Alquiler> tabla = new ArrayList<>();
+
+    @BeforeEach
+    void preparar() {
+        tabla.clear();
+    }
+
+    @Test
+    void losAcumuladosTrasAltasYCancelacionesCoincidenConElRecalculo() throws Exception {
+        Random aleatorio = new Random(42);
+        IngresosAlquileres ingresos = nuevosIngresos();
+        for (int i = 0; i < 10_000; i++) { // Más filas que el umbral: la recarga se reparte en tareas
+            crear(ingresos, aleatorio);
+        }
+        ingresos.recargar();
+
+        for (int operacion = 0; operacion < 2_000; operacion++) {
+            if (aleatorio.nextInt(3) > 0 || tabla.isEmpty()) {
+                crear(ingresos, aleatorio);
+            } else {
+                Alquiler alquiler = tabla.get(aleatorio.nextInt(tabla.size()));
+                if (!alquiler.cancelado) {
+                    alquiler.cancelado = true;
+                    ingresos.restar(alquiler.sectorId, alquiler.fechaInicio, alquiler.centimos());
+                }
+            }
+        }
+
+        comprobar(ingresos, null, null);
+        comprobar(ingresos, YearMonth.of(2025, 3), YearMonth.of(2025, 9));
+        comprobar(ingresos, YearMonth.of(2025, 6), null);
+        comprobar(ingresos, null, YearMonth.of(2024, 12));
+
+        IngresosAlquileres recargados = nuevosIngresos(); // Reconstrucción completa: mismo resultado
+        recargados.recargar();
+        assertIguales(ingresos.porSector(null, null), recargados.porSector(null, null));
+        assertIguales(ingresos.porMes(null, null), recargados.porMes(null, null));
+    }
+
+    @Test
+    void unSectorConTodosSusAlquileresCanceladosDesaparece() {
+        IngresosAlquileres ingresos = nuevosIngresos();
+        ingresos.recargar();
+        LocalDateTime fecha = LocalDateTime.of(2025, 5, 10, 12, 0);
+        ingresos.sumar(7L, fecha, 12_345);
+        assertArrayEquals(new long[] {12_345, 1}, ingresos.porSector(null, null).get(7L));
+
+        ingresos.restar(7L, fecha, 12_345);
+        assertEquals(Map.of(), ingresos.porSector(null, null));
+        assertEquals(Map.of(), ingresos.porMes(null, null));
+    }
+
+    @Test
+    void losCambiosAnterioresALaPrimeraCargaNoSeCuentanDosVeces() {
+        IngresosAlquileres ingresos = nuevosIngresos();
+        Alquiler alquiler = new Alquiler(3, LocalDateTime.of(2025, 1, 31, 23, 59), new BigDecimal("99.90"));
+        tabla.add(alquiler);
+        ingresos.sumar(alquiler.sectorId, alquiler.fechaInicio, alquiler.centimos()); // Sin cargar: se ignora
+
+        assertArrayEquals(new long[] {9_990, 1}, ingresos.porMes(null, null).get(YearMonth.of(2025, 1)));
+    }
+
+    private void crear(IngresosAlquileres ingresos, Random aleatorio) {
+        LocalDateTime inicio = LocalDateTime.of(2024, 1, 1, 0, 0)
+            .plusDays(aleatorio.nextInt(730)).plusMinutes(aleatorio.nextInt(1440));
+        Alquiler alquiler = new Alquiler(1 + aleatorio.nextInt(20), inicio,
+            BigDecimal.valueOf(100 + aleatorio.nextInt(200_000), 2));
+        tabla.add(alquiler);
+        ingresos.sumar(alquiler.sectorId, alquiler.fechaInicio, alquiler.centimos());
+    }
+
+    private void comprobar(IngresosAlquileres ingresos, YearMonth desde, YearMonth hasta) {
+        // SELECT sector_id, SUM(monto_pagado), COUNT(*) ... WHERE estado <> 'CANCELADO' GROUP BY sector_id
+        Map<Long, long[]> porSector = new TreeMap<>();
+        // ... GROUP BY YEAR(fecha_inicio), MONTH(fecha_inicio)
+        Map<YearMonth, long[]> porMes = new TreeMap<>();
+        for (Alquiler alquiler : tabla) {
+            YearMonth mes = YearMonth.from(alquiler.fechaInicio);
+            if (alquiler.cancelado || (desde != null && mes.isBefore(desde)) || (hasta != null && mes.isAfter(hasta))) {
+                continue;
+            }
+            long[] sector = porSector.computeIfAbsent(alquiler.sectorId, id -> new long[2]);
+            sector[0] += alquiler.centimos();
+            sector[1]++;
+            long[] mensual = porMes.computeIfAbsent(mes, m -> new long[2]);
+            mensual[0] += alquiler.centimos();
+            mensual[1]++;
+        }
+        assertIguales(porSector, ingresos.porSector(desde, hasta));
+        assertIguales(porMes, ingresos.porMes(desde, hasta));
+    }
+
+    private static <K> void assertIguales(Map<K, long[]> esperado, Map<K, long[]> obtenido) {
+        assertEquals(esperado.keySet(), obtenido.keySet());
+        esperado.forEach((clave, suma) -> assertArrayEquals(suma, obtenido.get(clave), "Grupo " + clave));
+    }
+
+    /** Ingresos cuya consulta de recarga lee las filas no canceladas de {@link #tabla}. */
+    private IngresosAlquileres nuevosIngresos() {
+        NamedParameterJdbcTemplate jdbc = mock(NamedParameterJdbcTemplate.class);
+        doAnswer(invocacion -> {
+            RowCallbackHandler manejador = invocacion.getArgument(2);
+            Alquiler[] actual = new Alquiler[1];
+            ResultSet fila = mock(ResultSet.class);
+            when(fila.getLong("sector_id")).thenAnswer(i -> actual[0].sectorId);
+            when(fila.getObject("fecha_inicio", LocalDateTime.class)).thenAnswer(i -> actual[0].fechaInicio);
+            when(fila.getBigDecimal("monto_pagado")).thenAnswer(i -> actual[0].montoPagado);
+            for (Alquiler alquiler : tabla) {
+                if (!alquiler.cancelado) {
+                    actual[0] = alquiler;
+                    manejador.processRow(fila);
+                }
+            }
+            return null;
+        }).when(jdbc).query(anyString(), any(SqlParameterSource.class), any(RowCallbackHandler.class));
+        IngresosAlquileres ingresos = new IngresosAlquileres();
+        ReflectionTestUtils.setField(ingresos, "jdbc", jdbc);
+        return ingresos;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.api_gestion_almacen.series;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.api_gestion_almacen.dtos.OcupacionDto;
+import com.example.api_gestion_almacen.entidades.SectorEntidad.EstadoSector;
+
+/**
+ * Registro de la ocupación sin escritura a disco hasta el volcado, y arranque con un
+ * directorio que no se puede usar.
+ */
+class SerieOcupacionTest {
+
+    private static final int ESTADOS = EstadoSector.values().length;
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    void registrarNoEscribeHastaElVolcado() throws IOException {
+        SerieOcupacion serie = abrir(directorio);
+        long[] sectores = new long[ESTADOS];
+        sectores[EstadoSector.OCUPADO.ordinal()] = 3;
+        try {
+            serie.registrar(sectores, new long[ESTADOS]);
+            assertFalse(hayPuntos());
+
+            Instant ahora = Instant.now();
+            serie.consultar(ahora.minusSeconds(120), ahora.plusSeconds(60), Duration.ofMinutes(1));
+            assertFalse(hayPuntos()); // La consulta aplica el punto en memoria, no lo escribe
+
+            serie.volcar();
+            assertTrue(hayPuntos());
+        } finally {
+            serie.cerrar();
+        }
+
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            Path archivo = archivos.filter(a -> a.getFileName().toString().startsWith("puntos-")).findFirst().orElseThrow();
+            try (SegmentoSerie segmento = SegmentoSerie.abrir(archivo, ESTADOS * 2)) {
+                List<SegmentoSerie.Bloque> bloques = segmento.bloques();
+                SegmentoSerie.Decodificado bloque = SegmentoSerie.decodificar(segmento.mapa(), bloques.get(0), ESTADOS * 2);
+                assertEquals(1, bloque.puntos());
+                assertEquals(3, bloque.valores()[EstadoSector.OCUPADO.ordinal()][0]);
+            }
+        }
+    }
+
+    @Test
+    void unDirectorioInutilizableDesactivaElHistorico() throws IOException {
+        Path archivo = Files.createFile(directorio.resolve("no-es-un-directorio"));
+        SerieOcupacion serie = abrir(archivo.resolve("ocupacion"));
+
+        serie.registrar(new long[ESTADOS], new long[ESTADOS]);
+        serie.volcar();
+        Instant ahora = Instant.now();
+        assertEquals(List.of(), serie.consultar(ahora.minusSeconds(3600), ahora, Duration.ofMinutes(1)));
+        serie.cerrar();
+    }
+
+    private static SerieOcupacion abrir(Path ruta) {
+        SerieOcupacion serie = new SerieOcupacion();
+        ReflectionTestUtils.setField(serie, "directorio", ruta.toString());
+        ReflectionTestUtils.setField(serie, "puntosMaximos", 10_000);
+        serie.iniciar();
+        return serie;
+    }
+
+    private boolean hayPuntos() throws IOException {
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            return archivos.anyMatch(archivo -> archivo.getFileName().toString().startsWith("puntos-"));
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.api_gestion_almacen.series;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongFunction;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Series y segmentos en un directorio temporal: cambio de segmento al cambiar de periodo,
+ * bloques llenos, reapertura y descarte de un bloque final incompleto.
+ */
+class SerieTemporalTest {
+
+    private static final int COLUMNAS = 2;
+    private static final int TAMANO_BLOQUE = 4;
+    private static final LongFunction<String> PERIODO = tiempo -> String.format("%04d", tiempo / 100); // Periodos de 100 unidades
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    void cadaPeriodoVaASuSegmento() throws IOException {
+        try (SerieTemporal serie = abrir()) {
+            for (long tiempo = 0; tiempo < 250; tiempo += 10) {
+                serie.agregar(tiempo, new long[] {tiempo, -tiempo});
+            }
+        }
+
+        assertEquals(List.of("ocupacion-0000.seg", "ocupacion-0001.seg", "ocupacion-0002.seg"), archivos());
+        try (SegmentoSerie segmento = SegmentoSerie.abrir(directorio.resolve("ocupacion-0001.seg"), COLUMNAS)) {
+            List<SegmentoSerie.Bloque> bloques = segmento.bloques();
+            assertEquals(3, bloques.size()); // 10 puntos en bloques de 4: 4 + 4 + 2
+            assertEquals(100, bloques.get(0).primerTiempo());
+            assertEquals(190, bloques.get(bloques.size() - 1).ultimoTiempo());
+            SegmentoSerie.Decodificado ultimo = SegmentoSerie.decodificar(segmento.mapa(), bloques.get(2), COLUMNAS);
+            assertEquals(2, ultimo.puntos());
+            assertArrayEquals(new long[] {180, 190}, ultimo.tiempos());
+            assertArrayEquals(new long[] {-180, -190}, ultimo.valores()[1]);
+        }
+    }
+
+    @Test
+    void laSerieReabiertaConservaLosPuntosYElUltimo() throws IOException {
+        try (SerieTemporal serie = abrir()) {
+            for (long tiempo = 0; tiempo < 250; tiempo += 10) {
+                serie.agregar(tiempo, new long[] {tiempo % 3, 1000 - tiempo});
+            }
+        }
+
+        try (SerieTemporal serie = abrir()) {
+            assertEquals(240, serie.ultimo().tiempo());
+            assertArrayEquals(new long[] {0, 760}, serie.ultimo().valores());
+            serie.agregar(300, new long[] {7, 7}); // Pendiente, sin volcar: también se lee
+
+            List<Long> tiempos = new ArrayList<>();
+            SerieTemporal.Cursor cursor = serie.leer(0);
+            assertTrue(cursor.valido());
+            do {
+                tiempos.add(cursor.tiempo());
+                if (cursor.tiempo() < 300) {
+                    assertEquals(cursor.tiempo() % 3, cursor.valor(0));
+                    assertEquals(1000 - cursor.tiempo(), cursor.valor(1));
+                }
+            } while (cursor.avanzar());
+            assertEquals(26, tiempos.size());
+            assertEquals(300L, tiempos.get(tiempos.size() - 1));
+        }
+    }
+
+    @Test
+    void elCursorEmpiezaEnElUltimoPuntoAnteriorAlInicio() throws IOException {
+        try (SerieTemporal serie = abrir()) {
+            for (long tiempo = 0; tiempo < 250; tiempo += 10) {
+                serie.agregar(tiempo, new long[] {tiempo, 0});
+            }
+            serie.volcar();
+
+            SerieTemporal.Cursor cursor = serie.leer(155);
+            assertEquals(150, cursor.tiempo());
+            assertEquals(160, cursor.siguienteTiempo());
+            assertTrue(cursor.avanzar());
+            assertEquals(160, cursor.valor(0));
+
+            assertFalse(serie.leer(-1).valido());
+            SerieTemporal.Cursor alFinal = serie.leer(1000);
+            assertEquals(240, alFinal.tiempo());
+            assertEquals(Long.MAX_VALUE, alFinal.siguienteTiempo());
+            assertFalse(alFinal.avanzar());
+        }
+    }
+
+    @Test
+    void unTiempoAnteriorAlUltimoSeSustituyePorEste() throws IOException {
+        try (SerieTemporal serie = abrir()) {
+            assertNull(serie.ultimo());
+            serie.agregar(50, new long[] {1, 1});
+            serie.agregar(40, new long[] {2, 2});
+            assertEquals(50, serie.ultimo().tiempo());
+            assertArrayEquals(new long[] {2, 2}, serie.ultimo().valores());
+        }
+    }
+
+    @Test
+    void seDescartaUnBloqueFinalIncompleto() throws IOException {
+        Path archivo = directorio.resolve("ocupacion-0000.seg");
+        long tamanoValido;
+        try (SegmentoSerie segmento = SegmentoSerie.abrir(archivo, COLUMNAS)) {
+            segmento.escribir(new long[] {1, 2}, new long[][] {{10, 20}, {30, 40}}, 2);
+            tamanoValido = Files.size(archivo);
+            segmento.escribir(new long[] {3, 4}, new long[][] {{50, 60}, {70, 80}}, 2);
+        }
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.WRITE)) {
+            canal.truncate(Files.size(archivo) - 3); // Escritura interrumpida a mitad del segundo bloque
+        }
+
+        try (SegmentoSerie segmento = SegmentoSerie.abrir(archivo, COLUMNAS)) {
+            assertEquals(1, segmento.bloques().size());
+            assertEquals(tamanoValido, Files.size(archivo));
+            segmento.escribir(new long[] {5}, new long[][] {{90}, {100}}, 1);
+        }
+        try (SegmentoSerie segmento = SegmentoSerie.abrir(archivo, COLUMNAS)) {
+            assertEquals(2, segmento.bloques().size());
+            assertArrayEquals(new long[] {100}, SegmentoSerie.decodificar(segmento.mapa(), segmento.bloques().get(1), COLUMNAS).valores()[1]);
+        }
+    }
+
+    @Test
+    void unBloqueConCrcIncorrectoSeDescarta() throws IOException {
+        Path archivo = directorio.resolve("ocupacion-0000.seg");
+        try (SegmentoSerie segmento = SegmentoSerie.abrir(archivo, COLUMNAS)) {
+            segmento.escribir(new long[] {1}, new long[][] {{10}, {20}}, 1);
+        }
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.WRITE)) {
+            canal.write(ByteBuffer.wrap(new byte[] {0x7F}), 13); // Dentro del cuerpo del bloque
+        }
+
+        try (SegmentoSerie segmento = SegmentoSerie.abrir(archivo, COLUMNAS)) {
+            assertTrue(segmento.bloques().isEmpty());
+            assertEquals(8, Files.size(archivo)); // Solo la cabecera
+        }
+    }
+
+    private SerieTemporal abrir() throws IOException {
+        return new SerieTemporal(directorio, "ocupacion", COLUMNAS, TAMANO_BLOQUE, PERIODO);
+    }
+
+    private List<String> archivos() throws IOException {
+        try (Stream<Path> lista = Files.list(directorio)) {
+            return lista.map(archivo -> archivo.getFileName().toString()).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.api_gestion_almacen.series;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.Test;
+
+class VarintTest {
+
+    private static final long[] EXTREMOS = {0, 1, -1, 63, -64, 64, 127, 128, 300, -300, 16_383, 16_384,
+        Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE - 1, Long.MIN_VALUE + 1};
+
+    @Test
+    void losValoresSinSignoSeLeenComoSeEscribieron() {
+        long[] valores = {0, 1, 127, 128, 255, 16_383, 16_384, Integer.MAX_VALUE, Long.MAX_VALUE, -1, Long.MIN_VALUE};
+        Varint.Escritor escritor = new Varint.Escritor();
+        for (long valor : valores) {
+            escritor.escribir(valor);
+        }
+        ByteBuffer lectura = ByteBuffer.wrap(escritor.bytes(), 0, escritor.longitud());
+        for (long valor : valores) {
+            assertEquals(valor, Varint.leer(lectura));
+        }
+        assertFalse(lectura.hasRemaining());
+    }
+
+    @Test
+    void losValoresConSignoSeLeenComoSeEscribieron() {
+        Varint.Escritor escritor = new Varint.Escritor();
+        long[] aleatorios = ThreadLocalRandom.current().longs(10_000).toArray(); // Más de 256 bytes: el buffer crece
+        for (long valor : EXTREMOS) {
+            escritor.escribirConSigno(valor);
+        }
+        for (long valor : aleatorios) {
+            escritor.escribirConSigno(valor);
+        }
+        ByteBuffer lectura = ByteBuffer.wrap(escritor.bytes(), 0, escritor.longitud());
+        for (long valor : EXTREMOS) {
+            assertEquals(valor, Varint.deszigzag(Varint.leer(lectura)));
+        }
+        for (long valor : aleatorios) {
+            assertEquals(valor, Varint.deszigzag(Varint.leer(lectura)));
+        }
+        assertFalse(lectura.hasRemaining());
+    }
+
+    @Test
+    void losDeltasPequenosOcupanUnByte() {
+        for (long delta = -64; delta <= 63; delta++) {
+            Varint.Escritor escritor = new Varint.Escritor();
+            escritor.escribirConSigno(delta);
+            assertEquals(1, escritor.longitud(), "Delta " + delta);
+        }
+        Varint.Escritor escritor = new Varint.Escritor();
+        escritor.escribirConSigno(64);
+        assertEquals(2, escritor.longitud());
+    }
+
+    @Test
+    void zigzagIntercalaPositivosYNegativos() {
+        assertEquals(0, Varint.zigzag(0));
+        assertEquals(1, Varint.zigzag(-1));
+        assertEquals(2, Varint.zigzag(1));
+        assertEquals(3, Varint.zigzag(-2));
+        assertEquals(-1L, Varint.zigzag(Long.MIN_VALUE));
+        for (long valor : EXTREMOS) {
+            assertEquals(valor, Varint.deszigzag(Varint.zigzag(valor)));
+        }
+    }
+}
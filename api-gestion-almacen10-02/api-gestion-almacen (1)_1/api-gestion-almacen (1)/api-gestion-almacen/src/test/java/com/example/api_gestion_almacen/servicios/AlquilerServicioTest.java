@@ -0,0 +1,269 @@
+package com.example.api_gestion_almacen.servicios;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.api_gestion_almacen.busqueda.AgendaSectores;
+import com.example.api_gestion_almacen.busqueda.Reserva;
+import com.example.api_gestion_almacen.cache.VersionesColecciones;
+import com.example.api_gestion_almacen.entidades.AlquilerEntidad;
+import com.example.api_gestion_almacen.entidades.AlquilerEntidad.EstadoAlquiler;
+import com.example.api_gestion_almacen.entidades.SectorEntidad;
+import com.example.api_gestion_almacen.entidades.SectorEntidad.EstadoSector;
+import com.example.api_gestion_almacen.repositorios.AlquilerRepositorio;
+import com.example.api_gestion_almacen.series.IngresosAlquileres;
+
+/**
+ * Alta de alquileres contra una base de datos simulada en memoria: la tabla de alquileres
+ * y el estado de cada sector, con la agenda real por encima.
+ */
+class AlquilerServicioTest {
+
+    private static final BigDecimal IMPORTE = new BigDecimal("100.00");
+    private static final int HILOS = 16;
+
+    private AlquilerServicio servicio;
+    private final List<AlquilerEntidad> alquileres = new CopyOnWriteArrayList<>();
+    private final Map<Long, EstadoSector> estados = new ConcurrentHashMap<>();
+    private final AtomicLong siguienteId = new AtomicLong();
+    private volatile long latenciaMs; // Duración simulada de la comprobación de solapamiento en la BD
+    private volatile CountDownLatch coincidencia; // Comprobaciones que deben coincidir en el tiempo
+    private final AtomicInteger sinCoincidir = new AtomicInteger();
+
+    @BeforeEach
+    void preparar() {
+        AlquilerRepositorio repositorio = mock(AlquilerRepositorio.class);
+        when(repositorio.existeSolapamiento(any(), any(), any())).thenAnswer(invocacion -> {
+            Long sectorId = invocacion.getArgument(0);
+            LocalDateTime inicio = invocacion.getArgument(1);
+            LocalDateTime fin = invocacion.getArgument(2);
+            boolean solapa = alquileres.stream().anyMatch(a -> a.getSector().getId().equals(sectorId)
+                && a.getEstado() == EstadoAlquiler.ACTIVO && a.getFechaInicio().isBefore(fin) && a.getFechaFin().isAfter(inicio));
+            if (latenciaMs > 0) {
+                Thread.sleep(latenciaMs); // Ventana entre la comprobación y la inserción
+            }
+            CountDownLatch esperada = coincidencia;
+            if (esperada != null && esperada.getCount() > 0) {
+                esperada.countDown();
+                if (!esperada.await(10, TimeUnit.SECONDS)) {
+                    sinCoincidir.incrementAndGet();
+                }
+            }
+            return solapa;
+        });
+        when(repositorio.save(any(AlquilerEntidad.class))).thenAnswer(invocacion -> {
+            AlquilerEntidad alquiler = invocacion.getArgument(0);
+            if (alquileres.stream().anyMatch(a -> a.getOrdenId().equals(alquiler.getOrdenId()))) {
+                throw new DataIntegrityViolationException("uk_alquileres_orden");
+            }
+            alquiler.setId(siguienteId.incrementAndGet());
+            alquileres.add(alquiler);
+            return alquiler;
+        });
+        when(repositorio.listarReservas(EstadoAlquiler.ACTIVO)).thenAnswer(invocacion -> alquileres.stream()
+            .filter(a -> a.getEstado() == EstadoAlquiler.ACTIVO)
+            .map(a -> new Reserva(a.getId(), a.getSector().getId(), a.getFechaInicio(), a.getFechaFin()))
+            .toList());
+
+        SectorServicio sectores = mock(SectorServicio.class);
+        when(sectores.bloquearPorId(any())).thenAnswer(invocacion -> Optional.ofNullable(sector(invocacion.getArgument(0))));
+        when(sectores.cambiarEstadoSi(any(), any(), any())).thenAnswer(invocacion -> {
+            Long id = invocacion.getArgument(0);
+            EstadoSector esperado = invocacion.getArgument(1);
+            EstadoSector nuevo = invocacion.getArgument(2);
+            return estados.replace(id, esperado, nuevo) ? Optional.of(sector(id)) : Optional.empty();
+        });
+
+        AgendaSectores agenda = new AgendaSectores();
+        ReflectionTestUtils.setField(agenda, "alquilerRepositorio", repositorio);
+
+        TransactionTemplate transacciones = mock(TransactionTemplate.class);
+        when(transacciones.execute(any())).thenAnswer(invocacion ->
+            invocacion.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+
+        servicio = new AlquilerServicio();
+        ReflectionTestUtils.setField(servicio, "alquilerRepositorio", repositorio);
+        ReflectionTestUtils.setField(servicio, "sectorServicio", sectores);
+        ReflectionTestUtils.setField(servicio, "agendaSectores", agenda);
+        ReflectionTestUtils.setField(servicio, "versiones", mock(VersionesColecciones.class));
+        ReflectionTestUtils.setField(servicio, "expiracion", mock(ExpiracionAlquileresServicio.class));
+        ReflectionTestUtils.setField(servicio, "ingresos", mock(IngresosAlquileres.class));
+        ReflectionTestUtils.setField(servicio, "transactionTemplate", transacciones);
+        ReflectionTestUtils.setField(servicio, "franjasCandados", 256);
+        servicio.iniciar();
+    }
+
+    @Test
+    void unAlquilerInmediatoOcupaElSectorAunqueSuEstadoSigaOcupado() {
+        estados.put(1L, EstadoSector.OCUPADO); // Un alquiler anterior terminó y aún no se ha sincronizado
+        LocalDateTime ahora = LocalDateTime.now();
+
+        AlquilerEntidad alquiler = servicio.crearAlquiler(1L, 7L, "orden-1", IMPORTE, ahora.minusMinutes(1), ahora.plusDays(30));
+
+        assertEquals(EstadoAlquiler.ACTIVO, alquiler.getEstado());
+        assertEquals(EstadoSector.OCUPADO, estados.get(1L));
+    }
+
+    @Test
+    void unAlquilerInmediatoOcupaUnSectorDisponible() {
+        estados.put(1L, EstadoSector.DISPONIBLE);
+        LocalDateTime ahora = LocalDateTime.now();
+
+        servicio.crearAlquiler(1L, 7L, "orden-1", IMPORTE, ahora.minusMinutes(1), ahora.plusDays(30));
+
+        assertEquals(EstadoSector.OCUPADO, estados.get(1L));
+    }
+
+    @Test
+    void unAlquilerFuturoNoCambiaElEstado() {
+        estados.put(1L, EstadoSector.DISPONIBLE);
+        LocalDateTime ahora = LocalDateTime.now();
+
+        servicio.crearAlquiler(1L, 7L, "orden-1", IMPORTE, ahora.plusDays(1), ahora.plusDays(30));
+
+        assertEquals(EstadoSector.DISPONIBLE, estados.get(1L));
+    }
+
+    @Test
+    void seRechazaUnAlquilerQueSeSolapaONoCabe() {
+        estados.put(1L, EstadoSector.DISPONIBLE);
+        estados.put(2L, EstadoSector.MANTENIMIENTO);
+        LocalDateTime ahora = LocalDateTime.now();
+        servicio.crearAlquiler(1L, 7L, "orden-1", IMPORTE, ahora.plusDays(1), ahora.plusDays(10));
+
+        RuntimeException solapado = assertThrows(RuntimeException.class,
+            () -> servicio.crearAlquiler(1L, 8L, "orden-2", IMPORTE, ahora.plusDays(5), ahora.plusDays(20)));
+        assertEquals("El sector ya está alquilado en esas fechas", solapado.getMessage());
+        RuntimeException mantenimiento = assertThrows(RuntimeException.class,
+            () -> servicio.crearAlquiler(2L, 8L, "orden-3", IMPORTE, ahora, ahora.plusDays(20)));
+        assertEquals("El sector está en mantenimiento", mantenimiento.getMessage());
+
+        servicio.crearAlquiler(1L, 8L, "orden-4", IMPORTE, ahora.plusDays(10), ahora.plusDays(20)); // Contiguo: cabe
+        assertEquals(2, alquileres.size());
+    }
+
+    @Test
+    void unaOrdenSoloGeneraUnAlquiler() {
+        estados.put(1L, EstadoSector.DISPONIBLE);
+        estados.put(2L, EstadoSector.DISPONIBLE);
+        LocalDateTime ahora = LocalDateTime.now();
+        servicio.crearAlquiler(1L, 7L, "orden-1", IMPORTE, ahora.plusDays(1), ahora.plusDays(10));
+
+        RuntimeException repetida = assertThrows(RuntimeException.class,
+            () -> servicio.crearAlquiler(2L, 7L, "orden-1", IMPORTE, ahora.plusDays(1), ahora.plusDays(10)));
+
+        assertEquals("Ya existe un alquiler para esa orden", repetida.getMessage());
+        assertEquals(1, alquileres.size());
+    }
+
+    @Test
+    void deVariasReservasSimultaneasDelMismoSectorSoloProsperaUna() throws Exception {
+        estados.put(1L, EstadoSector.DISPONIBLE);
+        latenciaMs = 5;
+        LocalDateTime ahora = LocalDateTime.now();
+        AtomicInteger correctas = new AtomicInteger();
+        AtomicInteger rechazadas = new AtomicInteger();
+
+        ejecutarEnParalelo(HILOS, hilo -> {
+            try {
+                servicio.crearAlquiler(1L, (long) hilo, "orden-" + hilo, IMPORTE, ahora.minusMinutes(1), ahora.plusDays(30));
+                correctas.incrementAndGet();
+            } catch (RuntimeException e) {
+                assertEquals("El sector ya está alquilado en esas fechas", e.getMessage());
+                rechazadas.incrementAndGet();
+            }
+        });
+
+        assertEquals(1, correctas.get());
+        assertEquals(HILOS - 1, rechazadas.get());
+        assertEquals(1, alquileres.size());
+        assertEquals(EstadoSector.OCUPADO, estados.get(1L));
+    }
+
+    @Test
+    void lasReservasDeSectoresDistintosNoSeEsperanEntreSi() throws Exception {
+        int porHilo = 5;
+        for (long sector = 1; sector <= (long) HILOS * porHilo; sector++) {
+            estados.put(sector, EstadoSector.DISPONIBLE);
+        }
+        // La primera comprobación de cada hilo espera a que todos estén dentro a la vez:
+        // si las reservas de sectores distintos se serializasen, nunca coincidirían
+        coincidencia = new CountDownLatch(HILOS);
+        LocalDateTime ahora = LocalDateTime.now();
+
+        ejecutarEnParalelo(HILOS, hilo -> {
+            for (int i = 0; i < porHilo; i++) {
+                long sector = 1 + (long) i * HILOS + hilo;
+                servicio.crearAlquiler(sector, (long) hilo, "orden-" + sector, IMPORTE, ahora.plusDays(1), ahora.plusDays(30));
+            }
+        });
+
+        assertEquals(HILOS * porHilo, alquileres.size());
+        assertEquals(0, sinCoincidir.get(), "Las reservas de sectores distintos deberían ir en paralelo");
+    }
+
+    private static void ejecutarEnParalelo(int hilos, TareaHilo tarea) throws Exception {
+        ExecutorService ejecutor = Executors.newFixedThreadPool(hilos);
+        try {
+            CountDownLatch salida = new CountDownLatch(1);
+            List<Future<?>> resultados = new ArrayList<>();
+            for (int hilo = 0; hilo < hilos; hilo++) {
+                int numero = hilo;
+                resultados.add(ejecutor.submit(() -> {
+                    salida.await();
+                    tarea.ejecutar(numero);
+                    return null;
+                }));
+            }
+            salida.countDown();
+            for (Future<?> resultado : resultados) {
+                resultado.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            ejecutor.shutdownNow();
+        }
+    }
+
+    @FunctionalInterface
+    private interface TareaHilo {
+        void ejecutar(int hilo) throws Exception;
+    }
+
+    private SectorEntidad sector(Long id) {
+        EstadoSector estado = estados.get(id);
+        if (estado == null) {
+            return null;
+        }
+        SectorEntidad sector = new SectorEntidad();
+        sector.setId(id);
+        sector.setEstado(estado);
+        return sector;
+    }
+}
@@ -0,0 +1,250 @@
+package com.example.api_gestion_almacen.servicios;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.api_gestion_almacen.busqueda.AgendaSectores;
+import com.example.api_gestion_almacen.busqueda.Reserva;
+import com.example.api_gestion_almacen.cache.VersionesColecciones;
+import com.example.api_gestion_almacen.cache.VersionesColecciones.Coleccion;
+import com.example.api_gestion_almacen.dtos.EstadisticasExpiracionDto;
+import com.example.api_gestion_almacen.entidades.AlquilerEntidad.EstadoAlquiler;
+import com.example.api_gestion_almacen.repositorios.AlquilerRepositorio;
+
+/**
+ * Expiración de alquileres contra una tabla de alquileres simulada en memoria que
+ * interpreta las consultas del servicio.
+ */
+class ExpiracionAlquileresServicioTest {
+
+    private static final int LOTE = 3;
+
+    private final Map<Long, Fila> alquileres = new TreeMap<>();
+    private final List<Integer> lotesBloqueados = new ArrayList<>();
+    private int fallosPendientes; // Bloqueos que fallarán antes de tocar nada
+    private AgendaSectores agenda;
+    private VersionesColecciones versiones;
+    private NamedParameterJdbcTemplate jdbc;
+    private ExpiracionAlquileresServicio servicio;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void preparar() {
+        jdbc = mock(NamedParameterJdbcTemplate.class);
+        when(jdbc.query(anyString(), any(SqlParameterSource.class), any(RowMapper.class))).thenAnswer(invocacion -> {
+            String sql = invocacion.getArgument(0);
+            SqlParameterSource parametros = invocacion.getArgument(1);
+            RowMapper<Object> mapeo = invocacion.getArgument(2);
+            LocalDateTime ahora = (LocalDateTime) parametros.getValue("ahora");
+            List<Fila> filas;
+            if (sql.contains("FOR UPDATE")) {
+                if (fallosPendientes > 0) {
+                    fallosPendientes--;
+                    throw new QueryTimeoutException("Tiempo de espera de bloqueo agotado");
+                }
+                Collection<Long> ids = (Collection<Long>) parametros.getValue("ids");
+                filas = alquileres.values().stream().filter(f -> ids.contains(f.id) && f.vencido(ahora)).toList();
+                lotesBloqueados.add(filas.size());
+            } else {
+                filas = alquileres.values().stream().filter(f -> f.vencido(ahora))
+                    .sorted(Comparator.comparing((Fila f) -> f.fin))
+                    .limit((int) parametros.getValue("lote")).toList();
+            }
+            return mapear(filas, mapeo);
+        });
+        when(jdbc.update(anyString(), any(SqlParameterSource.class))).thenAnswer(invocacion -> {
+            SqlParameterSource parametros = invocacion.getArgument(1);
+            Collection<Long> ids = (Collection<Long>) parametros.getValue("ids");
+            LocalDateTime ahora = (LocalDateTime) parametros.getValue("ahora");
+            int actualizados = 0;
+            for (Fila fila : alquileres.values()) {
+                if (ids.contains(fila.id) && fila.vencido(ahora)) {
+                    fila.estado = EstadoAlquiler.FINALIZADO;
+                    actualizados++;
+                }
+            }
+            return actualizados;
+        });
+
+        AlquilerRepositorio repositorio = mock(AlquilerRepositorio.class);
+        when(repositorio.listarReservas(EstadoAlquiler.ACTIVO)).thenAnswer(invocacion -> alquileres.values().stream()
+            .filter(f -> f.estado == EstadoAlquiler.ACTIVO).map(Fila::reserva).toList());
+        SectorServicio sectores = mock(SectorServicio.class);
+        when(sectores.liberarSectores(any(), any())).thenAnswer(invocacion -> invocacion.<Collection<Long>>getArgument(0).size());
+        TransactionTemplate transacciones = mock(TransactionTemplate.class);
+        when(transacciones.execute(any())).thenAnswer(invocacion ->
+            invocacion.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        agenda = mock(AgendaSectores.class);
+        versiones = mock(VersionesColecciones.class);
+
+        servicio = new ExpiracionAlquileresServicio();
+        ReflectionTestUtils.setField(servicio, "alquilerRepositorio", repositorio);
+        ReflectionTestUtils.setField(servicio, "sectorServicio", sectores);
+        ReflectionTestUtils.setField(servicio, "agendaSectores", agenda);
+        ReflectionTestUtils.setField(servicio, "versiones", versiones);
+        ReflectionTestUtils.setField(servicio, "jdbc", jdbc);
+        ReflectionTestUtils.setField(servicio, "transactionTemplate", transacciones);
+        ReflectionTestUtils.setField(servicio, "tamanoLote", LOTE);
+    }
+
+    @Test
+    void alArrancarFinalizaLosAtrasadosPorLotesYProgramaElResto() {
+        LocalDateTime ahora = LocalDateTime.now();
+        for (long id = 1; id <= 7; id++) {
+            alquilar(id, id, 100 + id % 2, ahora.minusHours(id));
+        }
+        alquilar(8, 8, 100, ahora.plusDays(2));
+        alquilar(9, 9, 100, ahora.plusDays(1));
+
+        servicio.cargarAlArrancar();
+
+        assertEquals(List.of(3, 3, 1), lotesBloqueados);
+        for (long id = 1; id <= 7; id++) {
+            assertEquals(EstadoAlquiler.FINALIZADO, alquileres.get(id).estado);
+            verify(agenda).quitar(alquileres.get(id).reserva());
+        }
+        // Lotes por vencimiento {7, 6, 5}, {4, 3, 2}, {1}: una versión por usuario y lote
+        verify(versiones, times(2)).incrementar(eq(Coleccion.ALQUILERES), eq(100L));
+        verify(versiones, times(3)).incrementar(eq(Coleccion.ALQUILERES), eq(101L));
+        EstadisticasExpiracionDto estadisticas = servicio.estadisticas();
+        assertEquals(7, estadisticas.getFinalizados());
+        assertEquals(7, estadisticas.getSectoresLiberados());
+        assertEquals(2, estadisticas.getPendientes());
+        assertEquals(alquileres.get(9L).fin, estadisticas.getProximoVencimiento());
+    }
+
+    @Test
+    void procesarFinalizaSoloLosVencidosQueSiguenActivos() {
+        servicio.cargarAlArrancar();
+        LocalDateTime ahora = LocalDateTime.now();
+        for (long id = 1; id <= 5; id++) {
+            servicio.programar(alquilar(id, id, 100, ahora.minusSeconds(id)));
+        }
+        servicio.programar(alquilar(6, 6, 100, ahora.minusSeconds(1)));
+        alquileres.get(6L).estado = EstadoAlquiler.CANCELADO; // La cancelación no lo quita de la cola
+        servicio.programar(alquilar(7, 7, 100, ahora.plusDays(1)));
+        servicio.programar(alquileres.get(7L).reserva()); // Duplicado: se ignora
+
+        servicio.procesar();
+
+        assertEquals(List.of(3, 2), lotesBloqueados);
+        for (long id = 1; id <= 5; id++) {
+            assertEquals(EstadoAlquiler.FINALIZADO, alquileres.get(id).estado);
+        }
+        assertEquals(EstadoAlquiler.CANCELADO, alquileres.get(6L).estado);
+        assertEquals(EstadoAlquiler.ACTIVO, alquileres.get(7L).estado);
+        verify(agenda, never()).quitar(alquileres.get(6L).reserva());
+        assertEquals(1, servicio.estadisticas().getPendientes());
+        assertEquals(5, servicio.estadisticas().getFinalizados());
+    }
+
+    @Test
+    void antesDeLaPrimeraCargaNoSeProcesaNada() {
+        servicio.programar(alquilar(1, 1, 100, LocalDateTime.now().minusMinutes(1)));
+
+        servicio.procesar();
+
+        assertEquals(EstadoAlquiler.ACTIVO, alquileres.get(1L).estado);
+        verify(jdbc, never()).update(anyString(), any(SqlParameterSource.class));
+    }
+
+    @Test
+    void unLoteQueFallaSeReintentaEnLaSiguienteEjecucion() {
+        servicio.cargarAlArrancar();
+        servicio.programar(alquilar(1, 1, 100, LocalDateTime.now().minusMinutes(1)));
+        fallosPendientes = 1;
+
+        servicio.procesar();
+        assertEquals(EstadoAlquiler.ACTIVO, alquileres.get(1L).estado);
+        assertEquals(1, servicio.estadisticas().getPendientes());
+
+        servicio.procesar();
+        assertEquals(EstadoAlquiler.FINALIZADO, alquileres.get(1L).estado);
+        assertEquals(0, servicio.estadisticas().getPendientes());
+    }
+
+    @Test
+    void laReconciliacionFinalizaLosQueNoEstanEnLaCola() {
+        servicio.cargarAlArrancar();
+        alquilar(1, 1, 100, LocalDateTime.now().minusMinutes(1)); // Creado por otra instancia
+
+        servicio.procesar();
+        assertEquals(EstadoAlquiler.ACTIVO, alquileres.get(1L).estado);
+
+        servicio.reconciliar();
+        assertEquals(EstadoAlquiler.FINALIZADO, alquileres.get(1L).estado);
+    }
+
+    private Reserva alquilar(long id, long sectorId, long usuarioId, LocalDateTime fin) {
+        Fila fila = new Fila(id, sectorId, usuarioId, fin.minusDays(30), fin);
+        alquileres.put(id, fila);
+        return fila.reserva();
+    }
+
+    private static List<Object> mapear(List<Fila> filas, RowMapper<Object> mapeo) throws Exception {
+        Fila[] actual = new Fila[1];
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong("id")).thenAnswer(i -> actual[0].id);
+        when(rs.getLong("sector_id")).thenAnswer(i -> actual[0].sectorId);
+        when(rs.getLong("usuario_id")).thenAnswer(i -> actual[0].usuarioId);
+        when(rs.getObject("fecha_inicio", LocalDateTime.class)).thenAnswer(i -> actual[0].inicio);
+        when(rs.getObject("fecha_fin", LocalDateTime.class)).thenAnswer(i -> actual[0].fin);
+        List<Object> resultado = new ArrayList<>();
+        for (Fila fila : filas) {
+            actual[0] = fila;
+            resultado.add(mapeo.mapRow(rs, resultado.size()));
+        }
+        return resultado;
+    }
+
+    private static final class Fila {
+        final long id;
+        final long sectorId;
+        final long usuarioId;
+        final LocalDateTime inicio;
+        final LocalDateTime fin;
+        EstadoAlquiler estado = EstadoAlquiler.ACTIVO;
+
+        Fila(long id, long sectorId, long usuarioId, LocalDateTime inicio, LocalDateTime fin) {
+            this.id = id;
+            this.sectorId = sectorId;
+            this.usuarioId = usuarioId;
+            this.inicio = inicio;
+            this.fin = fin;
+        }
+
+        boolean vencido(LocalDateTime ahora) {
+            return estado == EstadoAlquiler.ACTIVO && !fin.isAfter(ahora);
+        }
+
+        Reserva reserva() {
+            return new Reserva(id, sectorId, inicio, fin);
+        }
+    }
+}
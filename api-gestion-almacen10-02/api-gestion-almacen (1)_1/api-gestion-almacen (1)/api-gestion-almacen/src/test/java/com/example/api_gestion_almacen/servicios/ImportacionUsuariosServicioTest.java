@@ -0,0 +1,140 @@
+package com.example.api_gestion_almacen.servicios;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.api_gestion_almacen.almacenamiento.AlmacenFotos;
+import com.example.api_gestion_almacen.almacenamiento.GeneradorVariantes;
+import com.example.api_gestion_almacen.busqueda.IndiceUsuarios;
+import com.example.api_gestion_almacen.cache.CacheUsuarios;
+import com.example.api_gestion_almacen.cache.FiltroBloomCorreos;
+import com.example.api_gestion_almacen.cache.RegistroRoles;
+import com.example.api_gestion_almacen.cache.VersionesColecciones;
+import com.example.api_gestion_almacen.dtos.ResultadoImportacionDto;
+import com.example.api_gestion_almacen.dtos.RolDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Importación NDJSON con un lote que choca con la base de datos y se repite fila a fila;
+ * cada fila falla según su correo.
+ */
+class ImportacionUsuariosServicioTest {
+
+    private final List<ResultadoImportacionDto> resultados = new ArrayList<>();
+    private ImportacionUsuariosServicio servicio;
+
+    @BeforeEach
+    void preparar() throws Exception {
+        JdbcTemplate jdbc = mock(JdbcTemplate.class);
+        when(jdbc.batchUpdate(anyString(), anyList(), anyInt(), any()))
+            .thenThrow(new DataIntegrityViolationException("Conflicto en el lote"));
+        when(jdbc.update(anyString(), any(PreparedStatementSetter.class))).thenAnswer(invocacion -> {
+            String[] correo = new String[1];
+            PreparedStatement ps = mock(PreparedStatement.class);
+            doAnswer(i -> correo[0] = i.getArgument(1)).when(ps).setString(eq(3), anyString());
+            invocacion.<PreparedStatementSetter>getArgument(1).setValues(ps);
+            return switch (correo[0]) {
+                case "ocupado@correo.com" -> throw new DuplicateKeyException("Duplicate entry for key 'usuarios.correo_electronico'");
+                case "rol@correo.com" -> throw new DataIntegrityViolationException("Cannot add or update a child row: rol_id");
+                case "lento@correo.com" -> throw new QueryTimeoutException("Lock wait timeout exceeded");
+                default -> 1;
+            };
+        });
+        NamedParameterJdbcTemplate named = mock(NamedParameterJdbcTemplate.class);
+        doAnswer(invocacion -> {
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getString("correo_electronico")).thenReturn("nueva@correo.com");
+            when(rs.getLong("id")).thenReturn(10L);
+            invocacion.<RowCallbackHandler>getArgument(2).processRow(rs);
+            return null;
+        }).when(named).query(anyString(), anyMap(), any(RowCallbackHandler.class));
+        TransactionTemplate transacciones = mock(TransactionTemplate.class);
+        when(transacciones.execute(any())).thenAnswer(invocacion ->
+            invocacion.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        RolDto rol = new RolDto();
+        rol.setId(2L);
+        RegistroRoles roles = mock(RegistroRoles.class);
+        when(roles.todos()).thenReturn(List.of(rol));
+        FiltroBloomCorreos filtro = mock(FiltroBloomCorreos.class); // Descarta todos: no se consulta la tabla
+
+        servicio = new ImportacionUsuariosServicio();
+        ReflectionTestUtils.setField(servicio, "jdbcTemplate", jdbc);
+        ReflectionTestUtils.setField(servicio, "namedParameterJdbcTemplate", named);
+        ReflectionTestUtils.setField(servicio, "transactionTemplate", transacciones);
+        ReflectionTestUtils.setField(servicio, "registroRoles", roles);
+        ReflectionTestUtils.setField(servicio, "almacenFotos", mock(AlmacenFotos.class));
+        ReflectionTestUtils.setField(servicio, "generadorVariantes", mock(GeneradorVariantes.class));
+        ReflectionTestUtils.setField(servicio, "cacheUsuarios", mock(CacheUsuarios.class));
+        ReflectionTestUtils.setField(servicio, "filtroCorreos", filtro);
+        ReflectionTestUtils.setField(servicio, "indiceUsuarios", mock(IndiceUsuarios.class));
+        ReflectionTestUtils.setField(servicio, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(servicio, "versiones", mock(VersionesColecciones.class));
+        ReflectionTestUtils.setField(servicio, "tamanoBloque", 10);
+    }
+
+    @Test
+    void soloLaClaveDuplicadaSeInformaComoDuplicado() throws Exception {
+        Map<String, Long> resumen = importar(usuario("nueva@correo.com"), usuario("ocupado@correo.com"),
+            usuario("rol@correo.com"), usuario("lento@correo.com"));
+
+        assertEquals(List.of(ResultadoImportacionDto.CREADO, ResultadoImportacionDto.DUPLICADO,
+            ResultadoImportacionDto.ERROR, ResultadoImportacionDto.ERROR), estados());
+        assertEquals(10L, resultados.get(0).getId());
+        assertEquals("El correo electrónico ya está registrado", resultados.get(1).getMensaje());
+        assertEquals(Map.of(ResultadoImportacionDto.CREADO, 1L, ResultadoImportacionDto.DUPLICADO, 1L,
+            ResultadoImportacionDto.ERROR, 2L), resumen);
+    }
+
+    @Test
+    void unaLineaNullEsUnErrorDeEsaFila() throws Exception {
+        importar("null", "", "{\"nombreCompleto\":", usuario("nueva@correo.com"));
+
+        assertEquals(List.of(ResultadoImportacionDto.ERROR, ResultadoImportacionDto.ERROR, ResultadoImportacionDto.CREADO),
+            estados());
+        assertEquals(1L, resultados.get(0).getFila());
+        assertEquals("La línea no contiene un usuario", resultados.get(0).getMensaje());
+        assertEquals(4L, resultados.get(2).getFila());
+    }
+
+    private Map<String, Long> importar(String... lineas) throws Exception {
+        byte[] ndjson = String.join("\n", lineas).getBytes(StandardCharsets.UTF_8);
+        return servicio.importar(new ByteArrayInputStream(ndjson), false, resultados::addAll);
+    }
+
+    private List<String> estados() {
+        return resultados.stream().map(ResultadoImportacionDto::getEstado).toList();
+    }
+
+    private static String usuario(String correo) {
+        return "{\"nombreCompleto\":\"Ana Ruiz\",\"correoElectronico\":\"" + correo + "\",\"rolId\":2,\"contrasena\":\"x\"}";
+    }
+}
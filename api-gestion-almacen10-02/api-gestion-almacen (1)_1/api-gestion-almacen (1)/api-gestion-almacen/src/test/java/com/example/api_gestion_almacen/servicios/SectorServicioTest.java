@@ -0,0 +1,145 @@
+package com.example.api_gestion_almacen.servicios;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.api_gestion_almacen.busqueda.IndiceSectores;
+import com.example.api_gestion_almacen.cache.VersionesColecciones;
+import com.example.api_gestion_almacen.dtos.ResultadoEstadoSectorDto;
+import com.example.api_gestion_almacen.entidades.SectorEntidad.EstadoSector;
+import com.example.api_gestion_almacen.eventos.DifusorEventosSector;
+
+/**
+ * Cambio de estado masivo contra unas tablas de sectores y alquileres simuladas en
+ * memoria que interpretan las condiciones de fechas de las consultas del servicio.
+ */
+class SectorServicioTest {
+
+    private final Map<Long, String> estados = new TreeMap<>();
+    private final List<Alquiler> alquileres = new ArrayList<>();
+    private SectorServicio servicio;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void preparar() throws Exception {
+        NamedParameterJdbcTemplate jdbc = mock(NamedParameterJdbcTemplate.class);
+        doAnswer(invocacion -> {
+            String sql = invocacion.getArgument(0);
+            SqlParameterSource parametros = invocacion.getArgument(1);
+            RowCallbackHandler filas = invocacion.getArgument(2);
+            long[] actual = new long[1];
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getLong("id")).thenAnswer(i -> actual[0]);
+            when(rs.getString("nombre")).thenAnswer(i -> "Sector " + actual[0]);
+            when(rs.getInt("metros_cuadrados")).thenReturn(20);
+            when(rs.getBigDecimal("precio_mensual")).thenReturn(new BigDecimal("100.00"));
+            when(rs.getString("estado")).thenAnswer(i -> estados.get(actual[0]));
+            when(rs.getBoolean("con_alquiler")).thenAnswer(i -> conAlquiler(sql, actual[0], parametros));
+            for (Long id : (Collection<Long>) parametros.getValue("ids")) {
+                if (estados.containsKey(id)) {
+                    actual[0] = id;
+                    filas.processRow(rs);
+                }
+            }
+            return null;
+        }).when(jdbc).query(anyString(), any(SqlParameterSource.class), any(RowCallbackHandler.class));
+        when(jdbc.update(anyString(), any(SqlParameterSource.class))).thenAnswer(invocacion -> {
+            String sql = invocacion.getArgument(0);
+            SqlParameterSource parametros = invocacion.getArgument(1);
+            String estado = (String) parametros.getValue("estado");
+            int actualizados = 0;
+            for (Long id : (Collection<Long>) parametros.getValue("ids")) {
+                if (estados.containsKey(id) && !estado.equals(estados.get(id)) && !conAlquiler(sql, id, parametros)) {
+                    estados.put(id, estado);
+                    actualizados++;
+                }
+            }
+            return actualizados;
+        });
+
+        servicio = new SectorServicio();
+        ReflectionTestUtils.setField(servicio, "jdbc", jdbc);
+        ReflectionTestUtils.setField(servicio, "indiceSectores", mock(IndiceSectores.class));
+        ReflectionTestUtils.setField(servicio, "versiones", mock(VersionesColecciones.class));
+        ReflectionTestUtils.setField(servicio, "difusorEventos", mock(DifusorEventosSector.class));
+        ReflectionTestUtils.setField(servicio, "maximoCambioMasivo", 1000);
+    }
+
+    @Test
+    void soloUnAlquilerEnVigorImpideElCambioDeEstado() {
+        LocalDateTime ahora = LocalDateTime.now();
+        estados.put(1L, EstadoSector.OCUPADO.name());
+        alquileres.add(new Alquiler(1L, ahora.plusDays(5), ahora.plusDays(30))); // Reserva futura
+        estados.put(2L, EstadoSector.OCUPADO.name());
+        alquileres.add(new Alquiler(2L, ahora.minusDays(5), ahora.plusDays(5))); // En vigor
+        estados.put(3L, EstadoSector.OCUPADO.name());
+        alquileres.add(new Alquiler(3L, ahora.minusDays(30), ahora.minusDays(1))); // Vencido, aún sin finalizar
+
+        List<ResultadoEstadoSectorDto> resultados = servicio.actualizarEstados(List.of(1L, 2L, 3L, 4L), null, null,
+            EstadoSector.DISPONIBLE);
+
+        assertEquals(List.of(ResultadoEstadoSectorDto.ACTUALIZADO, ResultadoEstadoSectorDto.ALQUILER_ACTIVO,
+            ResultadoEstadoSectorDto.ACTUALIZADO, ResultadoEstadoSectorDto.NO_ENCONTRADO), resultados(resultados));
+        assertEquals(EstadoSector.DISPONIBLE.name(), estados.get(1L));
+        assertEquals(EstadoSector.OCUPADO.name(), estados.get(2L));
+        assertEquals(EstadoSector.DISPONIBLE.name(), estados.get(3L));
+    }
+
+    @Test
+    void elMantenimientoTambienRespetaLasReservasFuturas() {
+        LocalDateTime ahora = LocalDateTime.now();
+        estados.put(1L, EstadoSector.DISPONIBLE.name());
+        alquileres.add(new Alquiler(1L, ahora.plusDays(5), ahora.plusDays(30)));
+        estados.put(2L, EstadoSector.DISPONIBLE.name());
+        alquileres.add(new Alquiler(2L, ahora.minusDays(30), ahora.minusDays(1)));
+        estados.put(3L, EstadoSector.MANTENIMIENTO.name());
+
+        List<ResultadoEstadoSectorDto> resultados = servicio.actualizarEstados(List.of(1L, 2L, 3L), null, null,
+            EstadoSector.MANTENIMIENTO);
+
+        assertEquals(List.of(ResultadoEstadoSectorDto.ALQUILER_ACTIVO, ResultadoEstadoSectorDto.ACTUALIZADO,
+            ResultadoEstadoSectorDto.SIN_CAMBIOS), resultados(resultados));
+        assertEquals(EstadoSector.DISPONIBLE.name(), estados.get(1L));
+        assertEquals(EstadoSector.MANTENIMIENTO.name(), estados.get(2L));
+    }
+
+    /**
+     * Evalúa la subconsulta de alquileres según las condiciones de fechas que incluya la
+     * sentencia, para que una consulta sin ellas cuente también las reservas futuras.
+     */
+    private boolean conAlquiler(String sql, long sectorId, SqlParameterSource parametros) {
+        LocalDateTime ahora = (LocalDateTime) parametros.getValue("ahora");
+        boolean hastaElFin = sql.contains("a.fecha_fin > :ahora");
+        boolean desdeElInicio = sql.contains("a.fecha_inicio <= :ahora");
+        return alquileres.stream().anyMatch(a -> a.sectorId == sectorId
+            && (!hastaElFin || a.fin.isAfter(ahora))
+            && (!desdeElInicio || !a.inicio.isAfter(ahora)));
+    }
+
+    private static List<String> resultados(List<ResultadoEstadoSectorDto> resultados) {
+        return resultados.stream().map(ResultadoEstadoSectorDto::getResultado).toList();
+    }
+
+    private record Alquiler(long sectorId, LocalDateTime inicio, LocalDateTime fin) {
+    }
+}
@@ -0,0 +1,269 @@
+package com.example.api_gestion_almacen.servicios;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.api_gestion_almacen.almacenamiento.AlmacenFotos;
+import com.example.api_gestion_almacen.almacenamiento.GeneradorVariantes;
+import com.example.api_gestion_almacen.busqueda.IndiceUsuarios;
+import com.example.api_gestion_almacen.cache.CacheUsuarios;
+import com.example.api_gestion_almacen.cache.FiltroBloomCorreos;
+import com.example.api_gestion_almacen.cache.RegistroRoles;
+import com.example.api_gestion_almacen.cache.UsuarioCacheado;
+import com.example.api_gestion_almacen.cache.VersionesColecciones;
+import com.example.api_gestion_almacen.cache.VersionesColecciones.Coleccion;
+import com.example.api_gestion_almacen.dtos.UsuarioDto;
+import com.example.api_gestion_almacen.entidades.RolEntidad;
+import com.example.api_gestion_almacen.entidades.UsuarioEntidad;
+import com.example.api_gestion_almacen.repositorios.RolRepositorio;
+import com.example.api_gestion_almacen.repositorios.UsuarioRepositorio;
+import com.example.api_gestion_almacen.seguridad.SesionUsuario;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * PATCH de usuarios (JSON Merge Patch) sobre una entidad gestionada simulada.
+ */
+class UsuarioServicioTest {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final String REGISTRADO = "ocupado@correo.com";
+
+    private UsuarioEntidad usuario;
+    private UsuarioServicio servicio;
+    private UsuarioRepositorio usuarioRepositorio;
+    private TransactionTemplate transacciones;
+    private CacheUsuarios cacheUsuarios;
+    private IndiceUsuarios indiceUsuarios;
+    private FiltroBloomCorreos filtroCorreos;
+    private VersionesColecciones versiones;
+    private AlmacenFotos almacenFotos;
+
+    @BeforeEach
+    void preparar() throws Exception {
+        usuario = new UsuarioEntidad();
+        usuario.setId(1L);
+        usuario.setNombreCompleto("Ana Ruiz");
+        usuario.setMovil("600000000");
+        usuario.setCorreoElectronico("ana@correo.com");
+        usuario.setRol(rol(2L));
+        usuario.setContrasena("secreta");
+        usuario.setCorreoConfirmado(true);
+        usuario.setFotoHash("hash-anterior");
+        usuario.setFechaCreacion(LocalDateTime.of(2024, 5, 1, 10, 0));
+
+        usuarioRepositorio = mock(UsuarioRepositorio.class);
+        when(usuarioRepositorio.findById(1L)).thenReturn(Optional.of(usuario));
+        when(usuarioRepositorio.findByCorreoElectronico(anyString())).thenAnswer(invocacion -> {
+            if (!REGISTRADO.equals(invocacion.getArgument(0))) {
+                return Optional.empty();
+            }
+            UsuarioEntidad otro = new UsuarioEntidad();
+            otro.setId(2L);
+            otro.setCorreoElectronico(REGISTRADO);
+            otro.setRol(rol(2L));
+            return Optional.of(otro);
+        });
+        RolRepositorio rolRepositorio = mock(RolRepositorio.class);
+        when(rolRepositorio.getReferenceById(any())).thenAnswer(invocacion -> rol(invocacion.getArgument(0)));
+        RegistroRoles registroRoles = mock(RegistroRoles.class);
+        when(registroRoles.existe(any())).thenAnswer(invocacion -> invocacion.<Long>getArgument(0) <= 3);
+        transacciones = mock(TransactionTemplate.class);
+        when(transacciones.execute(any())).thenAnswer(invocacion ->
+            invocacion.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        cacheUsuarios = mock(CacheUsuarios.class);
+        when(cacheUsuarios.buscarPorCorreo(anyString(), any())).thenAnswer(invocacion ->
+            invocacion.<Function<String, Optional<UsuarioCacheado>>>getArgument(1).apply(invocacion.getArgument(0)));
+        filtroCorreos = mock(FiltroBloomCorreos.class);
+        when(filtroCorreos.podriaExistir(anyString())).thenReturn(true); // Sin descartes: siempre se consulta
+        almacenFotos = mock(AlmacenFotos.class);
+        when(almacenFotos.guardar(any())).thenReturn("hash-nuevo");
+        indiceUsuarios = mock(IndiceUsuarios.class);
+        versiones = mock(VersionesColecciones.class);
+
+        servicio = new UsuarioServicio();
+        ReflectionTestUtils.setField(servicio, "usuarioRepositorio", usuarioRepositorio);
+        ReflectionTestUtils.setField(servicio, "rolRepositorio", rolRepositorio);
+        ReflectionTestUtils.setField(servicio, "registroRoles", registroRoles);
+        ReflectionTestUtils.setField(servicio, "almacenFotos", almacenFotos);
+        ReflectionTestUtils.setField(servicio, "generadorVariantes", mock(GeneradorVariantes.class));
+        ReflectionTestUtils.setField(servicio, "cacheUsuarios", cacheUsuarios);
+        ReflectionTestUtils.setField(servicio, "transactionTemplate", transacciones);
+        ReflectionTestUtils.setField(servicio, "indiceUsuarios", indiceUsuarios);
+        ReflectionTestUtils.setField(servicio, "filtroCorreos", filtroCorreos);
+        ReflectionTestUtils.setField(servicio, "versiones", versiones);
+    }
+
+    @Test
+    void soloCambianLosCamposEnviados() throws Exception {
+        UsuarioDto resultado = servicio.modificarUsuario(1L, parche("{\"nombreCompleto\":\"Ana Gómez\",\"movil\":null}"));
+
+        assertEquals("Ana Gómez", usuario.getNombreCompleto());
+        assertNull(usuario.getMovil()); // null en el parche borra el campo
+        assertEquals("ana@correo.com", usuario.getCorreoElectronico());
+        assertEquals("secreta", usuario.getContrasena());
+        assertEquals("hash-anterior", usuario.getFotoHash());
+        assertEquals(2L, usuario.getRol().getId());
+        assertEquals(LocalDateTime.of(2024, 5, 1, 10, 0), usuario.getFechaCreacion());
+        assertEquals("Ana Gómez", resultado.getNombreCompleto());
+
+        verify(usuarioRepositorio, never()).save(any()); // La entidad gestionada se guarda en el commit
+        verify(cacheUsuarios).invalidar(1L, "ana@correo.com", "ana@correo.com");
+        verify(versiones).incrementar(Coleccion.USUARIOS);
+        verify(indiceUsuarios).actualizar(1L, "Ana Gómez", "ana@correo.com", 2L);
+        verify(filtroCorreos, never()).agregar(anyString());
+        assertNull(usuario.getSesionesDesde());
+    }
+
+    @Test
+    void unCorreoNuevoLibreSeGuardaYSeAnadeAlFiltro() throws Exception {
+        servicio.modificarUsuario(1L, parche("{\"correoElectronico\":\"ana.ruiz@correo.com\"}"));
+
+        assertEquals("ana.ruiz@correo.com", usuario.getCorreoElectronico());
+        verify(cacheUsuarios).invalidar(1L, "ana@correo.com", "ana.ruiz@correo.com");
+        verify(indiceUsuarios).actualizar(1L, "Ana Ruiz", "ana.ruiz@correo.com", 2L);
+        verify(filtroCorreos).agregar("ana.ruiz@correo.com");
+    }
+
+    @Test
+    void unCorreoYaRegistradoSeRechaza() {
+        RuntimeException error = assertThrows(RuntimeException.class,
+            () -> servicio.modificarUsuario(1L, parche("{\"correoElectronico\":\"" + REGISTRADO + "\"}")));
+
+        assertEquals("El correo electrónico ya está registrado", error.getMessage());
+        assertEquals("ana@correo.com", usuario.getCorreoElectronico());
+        verifyNoInteractions(indiceUsuarios);
+
+        // La restricción única decide si otro usuario lo registra entre la comprobación y el commit
+        doThrow(new DataIntegrityViolationException("uk_correo")).when(transacciones).execute(any());
+        RuntimeException concurrente = assertThrows(RuntimeException.class,
+            () -> servicio.modificarUsuario(1L, parche("{\"correoElectronico\":\"nuevo@correo.com\"}")));
+        assertEquals("El correo electrónico ya está registrado", concurrente.getMessage());
+    }
+
+    @Test
+    void cambiarElRolOLaContrasenaRevocaLasSesiones() throws Exception {
+        servicio.modificarUsuario(1L, parche("{\"rolId\":2}")); // El mismo rol: nada que revocar
+        assertNull(usuario.getSesionesDesde());
+
+        long antes = System.currentTimeMillis();
+        servicio.modificarUsuario(1L, parche("{\"rolId\":3}"));
+        assertEquals(3L, usuario.getRol().getId());
+        assertNotNull(usuario.getSesionesDesde());
+        assertTrue(usuario.getSesionesDesde() >= antes);
+
+        usuario.setSesionesDesde(0L);
+        servicio.modificarUsuario(1L, parche("{\"contrasena\":\"otra\"}"));
+        assertEquals("otra", usuario.getContrasena());
+        assertTrue(usuario.getSesionesDesde() >= antes);
+    }
+
+    @Test
+    void soloSonVigentesLasSesionesPosterioresALaRevocacionDeUnUsuarioExistente() {
+        when(cacheUsuarios.buscarPorId(any(), any())).thenAnswer(invocacion ->
+            invocacion.<Function<Long, Optional<UsuarioCacheado>>>getArgument(1).apply(invocacion.getArgument(0)));
+        Instant revocacion = Instant.now();
+        usuario.setSesionesDesde(revocacion.toEpochMilli()); // Guardado en la base de datos: sobrevive a un reinicio
+
+        assertFalse(servicio.sesionVigente(sesion(1L, revocacion.minusSeconds(60))));
+        assertFalse(servicio.sesionVigente(sesion(1L, revocacion))); // Emitido en el mismo milisegundo
+        assertTrue(servicio.sesionVigente(sesion(1L, revocacion.plusMillis(1))));
+        assertFalse(servicio.sesionVigente(sesion(9L, revocacion.plusMillis(1)))); // Usuario borrado
+
+        usuario.setSesionesDesde(null);
+        assertTrue(servicio.sesionVigente(sesion(1L, revocacion.minusSeconds(60))));
+    }
+
+    @Test
+    void laFotoSeGuardaEnElAlmacenOSeQuitaConNull() throws Exception {
+        byte[] imagen = "imagen".getBytes(StandardCharsets.UTF_8);
+
+        UsuarioDto conFoto = servicio.modificarUsuario(1L,
+            parche("{\"foto\":\"" + Base64.getEncoder().encodeToString(imagen) + "\"}"));
+        assertEquals("hash-nuevo", usuario.getFotoHash());
+        assertEquals("/api/usuarios/1/foto", conFoto.getFotoUrl());
+        verify(almacenFotos).guardar(imagen);
+
+        UsuarioDto sinFoto = servicio.modificarUsuario(1L, parche("{\"foto\":null}"));
+        assertNull(usuario.getFotoHash());
+        assertNull(sinFoto.getFotoUrl());
+    }
+
+    @Test
+    void losParchesInvalidosSeRechazanSinTocarElUsuario() {
+        String[] invalidos = {
+            "[]",
+            "{\"id\":5}",
+            "{\"fechaCreacion\":\"2020-01-01T00:00:00\"}",
+            "{\"nombreCompleto\":\"  \"}",
+            "{\"nombreCompleto\":null}",
+            "{\"movil\":600000000}",
+            "{\"correoElectronico\":null}",
+            "{\"rolId\":\"admin\"}",
+            "{\"correoConfirmado\":\"si\"}",
+            "{\"foto\":42}",
+        };
+        for (String invalido : invalidos) {
+            assertThrows(IllegalArgumentException.class, () -> servicio.modificarUsuario(1L, parche(invalido)), invalido);
+        }
+        assertThrows(IllegalArgumentException.class, () -> servicio.modificarUsuario(1L, null));
+
+        assertEquals("Ana Ruiz", usuario.getNombreCompleto());
+        assertEquals("600000000", usuario.getMovil());
+        verifyNoInteractions(cacheUsuarios, indiceUsuarios, versiones);
+        assertNull(usuario.getSesionesDesde());
+    }
+
+    @Test
+    void unRolInexistenteOUnUsuarioInexistenteSeRechazan() {
+        RuntimeException rol = assertThrows(RuntimeException.class,
+            () -> servicio.modificarUsuario(1L, parche("{\"rolId\":99}")));
+        assertEquals("El rol especificado no existe", rol.getMessage());
+
+        RuntimeException usuarioInexistente = assertThrows(RuntimeException.class,
+            () -> servicio.modificarUsuario(9L, parche("{\"nombreCompleto\":\"Nadie\"}")));
+        assertEquals("Usuario no encontrado", usuarioInexistente.getMessage());
+        verifyNoInteractions(indiceUsuarios);
+        assertNull(usuario.getSesionesDesde());
+    }
+
+    private static JsonNode parche(String json) throws Exception {
+        return JSON.readTree(json);
+    }
+
+    private static SesionUsuario sesion(Long usuarioId, Instant emitido) {
+        return new SesionUsuario(usuarioId, 2L, emitido, emitido.plusSeconds(3600));
+    }
+
+    private static RolEntidad rol(Long id) {
+        RolEntidad rol = new RolEntidad();
+        rol.setId(id);
+        return rol;
+    }
+}
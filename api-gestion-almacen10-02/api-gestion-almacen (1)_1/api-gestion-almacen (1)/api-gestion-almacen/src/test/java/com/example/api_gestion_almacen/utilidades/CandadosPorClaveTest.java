@@ -0,0 +1,165 @@
+package com.example.api_gestion_almacen.utilidades;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Prueba de concurrencia de las reservas de sectores: el patrón de
+ * {@code AlquilerServicio.crearAlquiler} (comprobar estado, esperar la base de datos y
+ * escribir) dentro de {@link CandadosPorClave}, con la latencia de la transacción simulada.
+ */
+class CandadosPorClaveTest {
+
+    private static final int HILOS = 8;
+
+    @Test
+    void ningunSectorSeReservaDosVeces() throws Exception {
+        int sectores = 64;
+        CandadosPorClave candados = new CandadosPorClave(256);
+        boolean[] ocupado = new boolean[sectores]; // Sin sincronizar: solo lo protege el candado
+        AtomicIntegerArray reservas = new AtomicIntegerArray(sectores);
+
+        ejecutarEnParalelo(HILOS, hilo -> {
+            for (int intento = 0; intento < 200; intento++) {
+                int sector = ThreadLocalRandom.current().nextInt(sectores);
+                candados.ejecutar(sector, () -> {
+                    if (!ocupado[sector]) {
+                        esperar(20_000); // Ventana entre la lectura y la escritura
+                        ocupado[sector] = true;
+                        reservas.incrementAndGet(sector);
+                    }
+                    return null;
+                });
+            }
+        });
+
+        for (int sector = 0; sector < sectores; sector++) {
+            assertTrue(reservas.get(sector) <= 1, "Sector " + sector + " reservado " + reservas.get(sector) + " veces");
+        }
+    }
+
+    @Test
+    void lasClavesDeFranjasDistintasSeEjecutanALaVez() throws Exception {
+        CandadosPorClave candados = new CandadosPorClave(256);
+        long[] claves = clavesDeFranjasDistintas(candados, HILOS);
+        CountDownLatch todosDentro = new CountDownLatch(HILOS);
+        AtomicIntegerArray coincidieron = new AtomicIntegerArray(HILOS);
+
+        ejecutarEnParalelo(HILOS, hilo -> candados.ejecutar(claves[hilo], () -> {
+            todosDentro.countDown();
+            // Con un candado compartido, el primero esperaría aquí sin que entrase nadie más
+            coincidieron.set(hilo, esperarATodos(todosDentro) ? 1 : 0);
+            return null;
+        }));
+
+        for (int hilo = 0; hilo < HILOS; hilo++) {
+            assertEquals(1, coincidieron.get(hilo), "El hilo " + hilo + " no coincidió con los demás");
+        }
+    }
+
+    @Test
+    void unaSolaFranjaSerializaTodasLasClaves() throws Exception {
+        CandadosPorClave candados = new CandadosPorClave(1);
+        AtomicInteger dentro = new AtomicInteger();
+        AtomicInteger maximo = new AtomicInteger();
+
+        ejecutarEnParalelo(HILOS, hilo -> {
+            for (int i = 0; i < 50; i++) {
+                candados.ejecutar((long) i * HILOS + hilo, () -> {
+                    maximo.accumulateAndGet(dentro.incrementAndGet(), Math::max);
+                    esperar(20_000);
+                    dentro.decrementAndGet();
+                    return null;
+                });
+            }
+        });
+
+        assertEquals(1, maximo.get());
+    }
+
+    @Test
+    void lasClavesConsecutivasSeRepartenEntreFranjas() {
+        CandadosPorClave candados = new CandadosPorClave(256);
+        assertEquals(256, candados.franjas());
+        boolean[] usadas = new boolean[candados.franjas()];
+        int distintas = 0;
+        for (long clave = 1; clave <= 256; clave++) {
+            int franja = candados.franja(clave);
+            if (!usadas[franja]) {
+                usadas[franja] = true;
+                distintas++;
+            }
+        }
+        assertTrue(distintas > 128, "Solo " + distintas + " franjas distintas para 256 claves consecutivas");
+    }
+
+    private static long[] clavesDeFranjasDistintas(CandadosPorClave candados, int cuantas) {
+        long[] claves = new long[cuantas];
+        boolean[] usadas = new boolean[candados.franjas()];
+        int n = 0;
+        for (long clave = 1; n < cuantas; clave++) {
+            int franja = candados.franja(clave);
+            if (!usadas[franja]) {
+                usadas[franja] = true;
+                claves[n++] = clave;
+            }
+        }
+        return claves;
+    }
+
+    private static void ejecutarEnParalelo(int hilos, TareaHilo tarea) throws Exception {
+        ExecutorService ejecutor = Executors.newFixedThreadPool(hilos);
+        try {
+            CountDownLatch salida = new CountDownLatch(1);
+            List<Future<?>> resultados = new ArrayList<>();
+            for (int hilo = 0; hilo < hilos; hilo++) {
+                int numero = hilo;
+                resultados.add(ejecutor.submit(() -> {
+                    salida.await();
+                    tarea.ejecutar(numero);
+                    return null;
+                }));
+            }
+            salida.countDown();
+            for (Future<?> resultado : resultados) {
+                resultado.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            ejecutor.shutdownNow();
+        }
+    }
+
+    private static boolean esperarATodos(CountDownLatch todosDentro) {
+        try {
+            return todosDentro.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static void esperar(long nanos) {
+        long fin = System.nanoTime() + nanos;
+        while (System.nanoTime() < fin) {
+            Thread.onSpinWait();
+        }
+    }
+
+    @FunctionalInterface
+    private interface TareaHilo {
+        void ejecutar(int hilo) throws Exception;
+    }
+}
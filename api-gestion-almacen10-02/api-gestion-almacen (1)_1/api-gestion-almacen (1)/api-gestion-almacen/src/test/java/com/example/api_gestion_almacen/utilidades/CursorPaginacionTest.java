@@ -0,0 +1,33 @@
+package com.example.api_gestion_almacen.utilidades;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class CursorPaginacionTest {
+
+    @Test
+    void elCursorDevuelveElMismoId() {
+        for (long id : new long[] {0, 1, 49, 50, 1_000_000_007L, Long.MAX_VALUE, -1, Long.MIN_VALUE}) {
+            assertEquals(id, CursorPaginacion.decodificar(CursorPaginacion.codificar(id)));
+        }
+    }
+
+    @Test
+    void elCursorEsSeguroEnUnaUrl() {
+        String cursor = CursorPaginacion.codificar(-1); // Todos los bits a 1: caracteres 62 y 63 de base64
+        assertTrue(cursor.matches("[A-Za-z0-9_-]+"), cursor);
+        assertEquals(11, cursor.length()); // 8 bytes sin relleno
+    }
+
+    @Test
+    void unCursorManipuladoSeRechaza() {
+        for (String cursor : new String[] {"", "AAAA", "no es base64!", "AAAAAAAAAAAAAAAA", CursorPaginacion.codificar(5) + "A"}) {
+            IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> CursorPaginacion.decodificar(cursor), cursor);
+            assertEquals("Cursor de paginación no válido", error.getMessage());
+        }
+    }
+}
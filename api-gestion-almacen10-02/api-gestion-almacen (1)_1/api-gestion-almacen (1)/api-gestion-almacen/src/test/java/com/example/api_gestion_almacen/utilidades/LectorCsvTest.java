@@ -0,0 +1,76 @@
+package com.example.api_gestion_almacen.utilidades;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class LectorCsvTest {
+
+    @Test
+    void leeRegistrosSimples() throws IOException {
+        assertEquals(List.of(List.of("nombre", "correo", "rol"), List.of("Ana", "ana@correo.com", "2")),
+            leerTodo("nombre,correo,rol\nAna,ana@correo.com,2\n"));
+    }
+
+    @Test
+    void admiteFinDeLineaCrlfYUltimaLineaSinSalto() throws IOException {
+        assertEquals(List.of(List.of("a", "b"), List.of("c", "d"), List.of("e", "f")),
+            leerTodo("a,b\r\nc,d\r\ne,f"));
+        assertEquals(List.of(List.of("a"), List.of("b")), leerTodo("a\rb\r")); // CR solo también separa registros
+    }
+
+    @Test
+    void losCamposEntreComillasAdmitenComasComillasYSaltos() throws IOException {
+        String csv = "\"Pérez, Ana\",\"dice \"\"hola\"\"\",\"línea 1\r\nlínea 2\"\r\nsiguiente,,\"\"\r\n";
+
+        List<List<String>> registros = leerTodo(csv);
+
+        assertEquals(List.of("Pérez, Ana", "dice \"hola\"", "línea 1\r\nlínea 2"), registros.get(0));
+        assertEquals(List.of("siguiente", "", ""), registros.get(1));
+        assertEquals(2, registros.size());
+    }
+
+    @Test
+    void lasComillasEnMedioDeUnCampoSinComillasSonLiterales() throws IOException {
+        assertEquals(List.of(List.of("12\" pulgadas", "x")), leerTodo("12\" pulgadas,x"));
+    }
+
+    @Test
+    void unaLineaVaciaEsUnRegistroConUnCampoVacio() throws IOException {
+        assertEquals(List.of(List.of("a"), List.of(""), List.of("b")), leerTodo("a\n\nb\n"));
+        assertEquals(List.of(), leerTodo(""));
+    }
+
+    @Test
+    void unasComillasSinCerrarIndicanElRegistro() throws IOException {
+        LectorCsv lector = new LectorCsv(new StringReader("a,b\nc,\"sin cerrar\n"));
+        lector.leer();
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, lector::leer);
+        assertEquals("Comillas sin cerrar en el registro 2", error.getMessage());
+    }
+
+    @Test
+    void trasElUltimoRegistroDevuelveNull() throws IOException {
+        LectorCsv lector = new LectorCsv(new StringReader("a\r\n"));
+        assertEquals(List.of("a"), lector.leer());
+        assertNull(lector.leer());
+        assertNull(lector.leer());
+    }
+
+    private static List<List<String>> leerTodo(String csv) throws IOException {
+        LectorCsv lector = new LectorCsv(new StringReader(csv));
+        List<List<String>> registros = new ArrayList<>();
+        for (List<String> registro = lector.leer(); registro != null; registro = lector.leer()) {
+            registros.add(registro);
+        }
+        return registros;
+    }
+}